@@ -0,0 +1,32 @@
+package com.g7.framework.redis.reactive;
+
+import com.g7.framework.redis.reactive.lock.ReactiveLockEndpoint;
+import com.g7.framework.redis.reactive.lock.ReactiveLockRegistry;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * 锁注册表 actuator endpoint,classpath 中存在 actuator 且 endpoint 已暴露时自动注册
+ * 在 {@link ReactiveRedisAutoConfiguration} 之后处理,此时锁注册表已经注册,{@link ConditionalOnBean} 才能匹配
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+@AutoConfiguration
+@ConditionalOnClass({Endpoint.class, ConditionalOnAvailableEndpoint.class, ReactiveLockRegistry.class})
+@AutoConfigureAfter(ReactiveRedisAutoConfiguration.class)
+public class ReactiveLockEndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(ReactiveLockRegistry.class)
+    @ConditionalOnAvailableEndpoint(endpoint = ReactiveLockEndpoint.class)
+    public ReactiveLockEndpoint reactiveLockEndpoint(ReactiveLockRegistry reactiveLockRegistry) {
+        return new ReactiveLockEndpoint(reactiveLockRegistry);
+    }
+}
@@ -1,29 +1,52 @@
 package com.g7.framework.redis.reactive;
 
+import com.g7.framework.redis.reactive.lock.AdaptiveReactiveLockBackoff;
+import com.g7.framework.redis.reactive.lock.ExponentialReactiveLockBackoff;
+import com.g7.framework.redis.reactive.lock.ExtendedReactiveLockRegistry;
+import com.g7.framework.redis.reactive.lock.LocalReactiveLockRegistry;
+import com.g7.framework.redis.reactive.lock.MicrometerReactiveLockMetrics;
+import com.g7.framework.redis.reactive.lock.NearExpiryReactiveLockBackoff;
+import com.g7.framework.redis.reactive.lock.ReactiveLockBackoff;
+import com.g7.framework.redis.reactive.lock.ReactiveLockMetrics;
 import com.g7.framework.redis.reactive.lock.ReactiveLockRegistry;
+import com.g7.framework.redis.reactive.lock.RedisQuorumReactiveLockRegistry;
 import com.g7.framework.redis.reactive.lock.RedisReactiveLockRegistry;
 import com.g7.framework.redis.reactive.operation.*;
 import com.g7.framework.redis.reactive.properties.RedisReactiveLockProperties;
+import com.g7.framework.redis.reactive.properties.RedisReactiveOperationProperties;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * @author dreamyao
  * @title
@@ -33,8 +56,10 @@ import reactor.core.publisher.Flux;
 @AutoConfiguration
 @ConditionalOnClass({ReactiveRedisConnectionFactory.class, ReactiveRedisTemplate.class,
         ReactiveLockRegistry.class, Flux.class})
-@AutoConfigureAfter(RedisAutoConfiguration.class)
-@EnableConfigurationProperties(RedisReactiveLockProperties.class)
+@AutoConfigureAfter(value = RedisAutoConfiguration.class, name = {
+        "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration"})
+@EnableConfigurationProperties({RedisReactiveLockProperties.class, RedisReactiveOperationProperties.class})
 public class ReactiveRedisAutoConfiguration {
 
     private static final Logger logger = LoggerFactory.getLogger(ReactiveRedisAutoConfiguration.class);
@@ -71,58 +96,268 @@ public class ReactiveRedisAutoConfiguration {
     }
 
     @Bean
-    @ConditionalOnMissingBean
+    @ConditionalOnMissingBean(ReactiveLockRegistry.class)
     @ConditionalOnBean(name = "reactiveStringRedisTemplate")
-    public ReactiveLockRegistry reactiveLockRegistry(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
-                                                     RedisReactiveLockProperties redisReactiveLockProperties) {
-        ReactiveLockRegistry redisReactiveLockRegistry = new RedisReactiveLockRegistry(
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.lock", name = "mode", havingValue = "redis",
+            matchIfMissing = true)
+    public ExtendedReactiveLockRegistry reactiveLockRegistry(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                                             RedisReactiveLockProperties redisReactiveLockProperties,
+                                                             ObjectProvider<ReactiveLockMetrics> reactiveLockMetrics) {
+        RedisReactiveLockRegistry redisReactiveLockRegistry = new RedisReactiveLockRegistry(
                 reactiveStringRedisTemplate,
                 redisReactiveLockProperties.getExpireEvictIdle(),
                 redisReactiveLockProperties.getExpireAfter(),
                 redisReactiveLockProperties.getRegistryKeyPrefix());
+        redisReactiveLockRegistry.setReleaseNotification(redisReactiveLockProperties.isReleaseNotification());
+        redisReactiveLockRegistry.setRetryInterval(redisReactiveLockProperties.isReleaseNotification() ?
+                redisReactiveLockProperties.getReleaseNotificationRetryInterval() :
+                redisReactiveLockProperties.getRetryInterval());
+        redisReactiveLockRegistry.setWatchdog(redisReactiveLockProperties.isWatchdog());
+        redisReactiveLockRegistry.setWatchdogInterval(redisReactiveLockProperties.getWatchdogInterval());
+        redisReactiveLockRegistry.setFairWaiterTimeout(redisReactiveLockProperties.getFairWaiterTimeout());
+        redisReactiveLockRegistry.setBackoff(reactiveLockBackoff(redisReactiveLockProperties));
+        redisReactiveLockRegistry.setLinger(redisReactiveLockProperties.getLeaseLinger());
+        reactiveLockMetrics.ifAvailable(redisReactiveLockRegistry::setMetrics);
         logger.info("load reactive redis reactive lock registry success,registry key prefix:{}," +
                         "default expire duration:{}", redisReactiveLockProperties.getRegistryKeyPrefix(),
                 redisReactiveLockProperties.getExpireAfter());
         return redisReactiveLockRegistry;
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.lock", name = "mode", havingValue = "quorum")
+    public ReactiveLockRegistry reactiveQuorumLockRegistry(RedisReactiveLockProperties redisReactiveLockProperties,
+                                                           ObjectProvider<ReactiveLockMetrics> reactiveLockMetrics) {
+        List<String> quorumNodes = redisReactiveLockProperties.getQuorumNodes();
+        Assert.notEmpty(quorumNodes, "'spring.reactive.redis.lock.quorum-nodes' cannot be empty in quorum mode");
+        List<LettuceConnectionFactory> connectionFactories = new ArrayList<>(quorumNodes.size());
+        for (String quorumNode : quorumNodes) {
+            RedisURI redisURI = RedisURI.create(quorumNode);
+            RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(redisURI.getHost(),
+                    redisURI.getPort());
+            configuration.setDatabase(redisURI.getDatabase());
+            configuration.setUsername(redisURI.getUsername());
+            if (redisURI.getPassword() != null) {
+                configuration.setPassword(RedisPassword.of(redisURI.getPassword()));
+            }
+            connectionFactories.add(new LettuceConnectionFactory(configuration));
+        }
+        RedisQuorumReactiveLockRegistry redisQuorumReactiveLockRegistry = new RedisQuorumReactiveLockRegistry(
+                connectionFactories,
+                redisReactiveLockProperties.getExpireEvictIdle(),
+                redisReactiveLockProperties.getExpireAfter(),
+                redisReactiveLockProperties.getRegistryKeyPrefix());
+        redisQuorumReactiveLockRegistry.setManageConnectionFactories(true);
+        redisQuorumReactiveLockRegistry.setNodeTimeout(redisReactiveLockProperties.getQuorumNodeTimeout());
+        redisQuorumReactiveLockRegistry.setClockDriftFactor(redisReactiveLockProperties.getQuorumClockDriftFactor());
+        redisQuorumReactiveLockRegistry.setRetryInterval(redisReactiveLockProperties.getRetryInterval());
+        redisQuorumReactiveLockRegistry.setBackoff(reactiveLockBackoff(redisReactiveLockProperties));
+        reactiveLockMetrics.ifAvailable(redisQuorumReactiveLockRegistry::setMetrics);
+        logger.info("load reactive redis quorum lock registry success,registry key prefix:{},node count:{}," +
+                        "default expire duration:{}", redisReactiveLockProperties.getRegistryKeyPrefix(),
+                quorumNodes.size(), redisReactiveLockProperties.getExpireAfter());
+        return redisQuorumReactiveLockRegistry;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.lock", name = "mode", havingValue = "local")
+    public ReactiveLockRegistry reactiveLocalLockRegistry(RedisReactiveLockProperties redisReactiveLockProperties,
+                                                          ObjectProvider<ReactiveLockMetrics> reactiveLockMetrics) {
+        LocalReactiveLockRegistry localReactiveLockRegistry = new LocalReactiveLockRegistry(
+                redisReactiveLockProperties.getExpireEvictIdle(),
+                redisReactiveLockProperties.getExpireAfter());
+        reactiveLockMetrics.ifAvailable(localReactiveLockRegistry::setMetrics);
+        logger.info("load reactive local lock registry success,locks are exclusive within this instance only");
+        return localReactiveLockRegistry;
+    }
+
+    /**
+     * 按配置创建退避策略,fixed 时返回 null 由锁按重试间隔固定退避
+     */
+    private static ReactiveLockBackoff reactiveLockBackoff(RedisReactiveLockProperties redisReactiveLockProperties) {
+        switch (redisReactiveLockProperties.getBackoff()) {
+            case NEAR_EXPIRY:
+                return new NearExpiryReactiveLockBackoff(redisReactiveLockProperties.getBackoffMinInterval(),
+                        redisReactiveLockProperties.getBackoffMaxInterval());
+            case EXPONENTIAL:
+                return new ExponentialReactiveLockBackoff(redisReactiveLockProperties.getBackoffMinInterval(),
+                        redisReactiveLockProperties.getBackoffMaxInterval(),
+                        redisReactiveLockProperties.getBackoffJitter());
+            case ADAPTIVE:
+                return new AdaptiveReactiveLockBackoff(redisReactiveLockProperties.getBackoffMinInterval(),
+                        redisReactiveLockProperties.getBackoffMaxInterval());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 操作对象共享的拦截器链,容器中的 {@link RedisOperationInterceptor} 按顺序加入;没有拦截器时操作不做任何拦截
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RedisOperationInterceptors redisOperationInterceptors(
+            ObjectProvider<RedisOperationInterceptor> redisOperationInterceptors,
+            RedisReactiveOperationProperties redisReactiveOperationProperties) {
+        List<RedisOperationInterceptor> interceptors = redisOperationInterceptors.orderedStream()
+                .collect(Collectors.toCollection(ArrayList::new));
+        if (redisReactiveOperationProperties.isLogEnabled()) {
+            interceptors.add(new LoggingRedisOperationInterceptor());
+        }
+        if (interceptors.isEmpty()) {
+            return RedisOperationInterceptors.NONE;
+        }
+        logger.info("load redis operation interceptors success,interceptor count:{},sample rate:{}",
+                interceptors.size(), redisReactiveOperationProperties.getSampleRate());
+        return new RedisOperationInterceptors(interceptors, redisReactiveOperationProperties.getSampleRate(),
+                redisReactiveOperationProperties.getMaxPayloadLength());
+    }
+
+    /**
+     * Value.get 与 Hash.get 的近端缓存,只缓存配置了区域的KEY前缀
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.operation.near-cache", name = "enabled",
+            havingValue = "true")
+    public ReactiveRedisNearCache reactiveRedisNearCache(
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+            RedisReactiveOperationProperties redisReactiveOperationProperties) {
+        RedisReactiveOperationProperties.NearCache properties = redisReactiveOperationProperties.getNearCache();
+        List<NearCacheRegion> regions = properties.getRegions().stream()
+                .map(region -> new NearCacheRegion(region.getPrefix(), region.getMaxEntries(),
+                        region.getMaxWeight(), region.getTtl()))
+                .collect(Collectors.toList());
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(regions);
+        nearCache.setInvalidator(new RedisNearCacheInvalidator(reactiveRedisConnectionFactory,
+                properties.getInvalidation()));
+        logger.info("load redis near cache success,invalidation:{},regions:{}", properties.getInvalidation(),
+                regions);
+        return nearCache;
+    }
+
+    /**
+     * 合并并发的相同读取,Value 与 Hash 共享
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.operation", name = "coalescing-enabled",
+            havingValue = "true")
+    public RedisOperationCoalescer redisOperationCoalescer() {
+        return new RedisOperationCoalescer();
+    }
+
+    /**
+     * 把窗口内的 Value.get 与 Hash.get 合并为 MGET/HMGET,Value 与 Hash 共享
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(ReactiveRedisTemplate.class)
+    @ConditionalOnProperty(prefix = "spring.reactive.redis.operation.batch", name = "enabled", havingValue = "true")
+    public RedisReadBatcher redisReadBatcher(
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisReactiveOperationProperties redisReactiveOperationProperties,
+            ObjectProvider<RedisBatchMetrics> redisBatchMetrics) {
+        RedisReactiveOperationProperties.Batch properties = redisReactiveOperationProperties.getBatch();
+        RedisReadBatcher batcher = new RedisReadBatcher(reactiveRedisTemplate, properties.getMaxSize(),
+                properties.getMaxDelay());
+        batcher.setMetrics(redisBatchMetrics.getIfAvailable(() -> RedisBatchMetrics.NONE));
+        logger.info("load redis read batcher success,max size:{},max delay:{}", properties.getMaxSize(),
+                properties.getMaxDelay());
+        return batcher;
+    }
+
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(ReactiveRedisTemplate.class)
     public ReactiveRedisValue reactiveRedisValue(
-            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisValue(reactiveRedisTemplate);
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisOperationInterceptors redisOperationInterceptors,
+            ObjectProvider<ReactiveRedisNearCache> reactiveRedisNearCache,
+            ObjectProvider<RedisOperationCoalescer> redisOperationCoalescer,
+            ObjectProvider<RedisReadBatcher> redisReadBatcher) {
+        return new ReactiveRedisValue(reactiveRedisTemplate, redisOperationInterceptors,
+                reactiveRedisNearCache.getIfAvailable(), redisOperationCoalescer.getIfAvailable(),
+                redisReadBatcher.getIfAvailable());
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(ReactiveRedisTemplate.class)
     public ReactiveRedisHash reactiveRedisHash(
-            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisHash(reactiveRedisTemplate);
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisOperationInterceptors redisOperationInterceptors,
+            ObjectProvider<ReactiveRedisNearCache> reactiveRedisNearCache,
+            ObjectProvider<RedisOperationCoalescer> redisOperationCoalescer,
+            ObjectProvider<RedisReadBatcher> redisReadBatcher) {
+        return new ReactiveRedisHash(reactiveRedisTemplate, redisOperationInterceptors,
+                reactiveRedisNearCache.getIfAvailable(), redisOperationCoalescer.getIfAvailable(),
+                redisReadBatcher.getIfAvailable());
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(ReactiveRedisTemplate.class)
     public ReactiveRedisList reactiveRedisList(
-            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisList(reactiveRedisTemplate);
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisOperationInterceptors redisOperationInterceptors) {
+        return new ReactiveRedisList(reactiveRedisTemplate, redisOperationInterceptors);
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(ReactiveRedisTemplate.class)
     public ReactiveRedisSet reactiveRedisSet(
-            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisSet(reactiveRedisTemplate);
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisOperationInterceptors redisOperationInterceptors) {
+        return new ReactiveRedisSet(reactiveRedisTemplate, redisOperationInterceptors);
     }
 
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnBean(ReactiveRedisTemplate.class)
     public ReactiveRedisZSet reactiveRedisZSet(
-            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
-        return new ReactiveRedisZSet(reactiveRedisTemplate);
+            @Autowired ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisOperationInterceptors redisOperationInterceptors) {
+        return new ReactiveRedisZSet(reactiveRedisTemplate, redisOperationInterceptors);
+    }
+
+    /**
+     * 锁指标,classpath 中存在 Micrometer 且容器中存在 MeterRegistry 时自动注册
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class ReactiveLockMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnProperty(prefix = "spring.reactive.redis.lock", name = "metrics-enabled", havingValue = "true",
+                matchIfMissing = true)
+        public ReactiveLockMetrics reactiveLockMetrics(MeterRegistry meterRegistry,
+                                                       RedisReactiveLockProperties redisReactiveLockProperties) {
+            return new MicrometerReactiveLockMetrics(meterRegistry,
+                    redisReactiveLockProperties.getMetricsKeyGroupDepth(),
+                    redisReactiveLockProperties.getMetricsKeyGroupDelimiter());
+        }
+    }
+
+    /**
+     * 批量读取指标,classpath 中存在 Micrometer 且容器中存在 MeterRegistry 时自动注册
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class RedisBatchMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnProperty(prefix = "spring.reactive.redis.operation.batch", name = "enabled",
+                havingValue = "true")
+        public RedisBatchMetrics redisBatchMetrics(MeterRegistry meterRegistry) {
+            return new MicrometerRedisBatchMetrics(meterRegistry);
+        }
     }
 }
@@ -1,17 +1,30 @@
 package com.g7.framework.redis.reactive.lock;
 
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * 抽象自动清理反应锁注册表
@@ -24,10 +37,37 @@ public abstract class AbstractAutoCleanupReactiveLockRegistry implements Reactiv
     protected static final Duration DEFAULT_EXPIRE_EVICT_IDLE = Duration.ofMinutes(3);
     protected static final Duration DEFAULT_MAX_LOCK_LIFETIME = Duration.ofMinutes(10);
     private static final Logger logger = LoggerFactory.getLogger(AbstractAutoCleanupReactiveLockRegistry.class);
+    private static final int EVICT_BATCH_SIZE = 512;
+    private static final int MAX_IN_FLIGHT_EVICT_BATCHES = 4;
+    private static final String LOCK = "lock";
+    private static final String REENTRANT = "reentrant";
+    private static final String FAIR = "fair";
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private static final String MULTI = "multi";
+    private static final int CONTENTION_HISTORY_SIZE = 256;
+    private static final Duration CONTENTION_HISTORY_HALF_LIFE = Duration.ofHours(1);
     private final Scheduler scheduler = Schedulers.newSingle("redis-lock-evict", true);
+    /**
+     * 进程内的排他锁,第一次操作时创建并放入清理索引,空闲超过最大锁定寿命后由定时驱逐移除;
+     * 之后的操作直接复用,不再创建锁对象
+     */
     private final ConcurrentMap<String, StatefulReactiveLock> lockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, StatefulReactiveLock> reentrantLockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, StatefulReactiveLock> fairLockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, StatefulReactiveLock> readLockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, StatefulReactiveLock> writeLockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<List<String>, StatefulReactiveLock> multiLockRegistry = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, StatefulReactiveSemaphore> semaphoreRegistry = new ConcurrentHashMap<>(16);
     private final Duration expireEvictIdle;
     private final Duration maxLockLifeTime;
+    private final LockExpiryIndex expiryIndex;
+    private final LockContentionHistory contentionHistory = new LockContentionHistory(CONTENTION_HISTORY_SIZE,
+            CONTENTION_HISTORY_HALF_LIFE);
+    private final Function<String, StatefulReactiveLock> lockFactory = this::newReactiveLock;
+    private ReactiveLockMetrics metrics = ReactiveLockMetrics.NONE;
+    private ReactiveLockBackoff backoff;
+    private Duration linger;
 
     /**
      * 实例化一个新的抽象自动清理反应锁注册表
@@ -37,6 +77,33 @@ public abstract class AbstractAutoCleanupReactiveLockRegistry implements Reactiv
     public AbstractAutoCleanupReactiveLockRegistry(Duration expireEvictIdle, Duration maxLockLifeTime) {
         this.expireEvictIdle = expireEvictIdle;
         this.maxLockLifeTime = maxLockLifeTime;
+        this.expiryIndex = new LockExpiryIndex(expireEvictIdle);
+    }
+
+    /**
+     * 设置锁指标回调,只对之后创建的锁生效
+     * @param metrics 指标回调
+     */
+    public void setMetrics(ReactiveLockMetrics metrics) {
+        Assert.notNull(metrics, "'metrics' cannot be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * 设置获取锁失败后的退避策略,只对之后创建的锁生效;为空时锁按重试间隔固定退避
+     * @param backoff 退避策略
+     */
+    public void setBackoff(ReactiveLockBackoff backoff) {
+        this.backoff = backoff;
+    }
+
+    /**
+     * 设置租约保留时间,只对之后创建的锁生效,为空时不保留;应远小于锁过期时间
+     * @param linger 保留时间
+     * @see AbstractReactiveLock#setLinger(Duration)
+     */
+    public void setLinger(Duration linger) {
+        this.linger = linger;
     }
 
     /**
@@ -46,13 +113,259 @@ public abstract class AbstractAutoCleanupReactiveLockRegistry implements Reactiv
      */
     protected abstract StatefulReactiveLock newReactiveLock(String lockKey);
 
+    /**
+     * 返回只记录锁KEY的句柄,每次操作时才取得锁对象,见 {@link #pin(String)}
+     * @param lockKey 锁KEY
+     * @return reactive lock
+     */
     @Override
     public ReactiveLock obtain(String lockKey) {
-        ReactiveLock reactiveLock = lockRegistry.get(lockKey);
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        return new ReactiveLockHandle(this, lockKey);
+    }
+
+    /**
+     * 取得锁KEY当前的锁对象并登记一个使用者,有使用者的锁不会被驱逐;锁对象已存在时只读取注册表,
+     * 不存在或刚被驱逐时在注册表该KEY的桶锁内创建。使用结束后必须调用 {@link #unpin(String, StatefulReactiveLock)}
+     * @param lockKey 锁KEY
+     * @return stateful reactive lock
+     */
+    protected StatefulReactiveLock pin(String lockKey) {
+        StatefulReactiveLock lock = this.lockRegistry.get(lockKey);
+        if (lock != null && (!(lock instanceof AbstractReactiveLock) || ((AbstractReactiveLock) lock).pin())) {
+            return lock;
+        }
+        return this.lockRegistry.compute(lockKey, (key, current) -> {
+            StatefulReactiveLock pinned = current == null ?
+                    indexed(this.lockRegistry, key, newReactiveLock(key), this.lockFactory) : current;
+            // 驱逐在同一个桶锁内完成,注册表中的锁总能登记成功
+            if (pinned instanceof AbstractReactiveLock) {
+                ((AbstractReactiveLock) pinned).pin();
+            }
+            return pinned;
+        });
+    }
+
+    /**
+     * 注销一个使用者,锁对象留在注册表中供之后的操作复用,空闲后由定时驱逐移除
+     * @param lockKey 锁KEY
+     * @param lock    {@link #pin(String)} 返回的锁对象
+     */
+    protected void unpin(String lockKey, StatefulReactiveLock lock) {
+        if (lock instanceof AbstractReactiveLock) {
+            ((AbstractReactiveLock) lock).unpin();
+        }
+    }
+
+    /**
+     * 获取可重入锁对象,供支持可重入锁的注册表实现 {@link ExtendedReactiveLockRegistry#obtainReentrant(String)}
+     * @param lockKey 锁KEY
+     * @param factory 创建锁对象
+     * @return reactive lock
+     */
+    protected ReactiveLock obtainReentrant(String lockKey, Function<String, StatefulReactiveLock> factory) {
+        return obtain(this.reentrantLockRegistry, lockKey, factory);
+    }
+
+    /**
+     * 获取多KEY锁对象,锁KEY排序去重,同一组KEY无论传入顺序如何都对应同一个锁对象
+     * @param lockKeys 锁KEY列表
+     * @param factory  以有序且不重复的锁KEY创建锁对象
+     * @return reactive lock
+     */
+    protected ReactiveLock obtainMulti(Collection<String> lockKeys,
+                                       Function<List<String>, StatefulReactiveLock> factory) {
+        Assert.notEmpty(lockKeys, "'lockKeys' cannot be empty");
+        List<String> sortedKeys = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(lockKeys)));
+        ReactiveLock reactiveLock = multiLockRegistry.get(sortedKeys);
         if (reactiveLock != null) {
             return reactiveLock;
         }
-        return lockRegistry.computeIfAbsent(lockKey, this::newReactiveLock);
+        return multiLockRegistry.computeIfAbsent(sortedKeys,
+                keys -> indexed(multiLockRegistry, keys, factory.apply(keys), factory));
+    }
+
+    /**
+     * 获取公平锁对象
+     * @param lockKey 锁KEY
+     * @param factory 创建锁对象
+     * @return reactive lock
+     */
+    protected ReactiveLock obtainFair(String lockKey, Function<String, StatefulReactiveLock> factory) {
+        return obtain(this.fairLockRegistry, lockKey, factory);
+    }
+
+    /**
+     * 获取读写锁对象
+     * @param lockKey      锁KEY
+     * @param readFactory  创建读锁对象
+     * @param writeFactory 创建写锁对象
+     * @return reactive read write lock
+     */
+    protected ReactiveReadWriteLock obtainReadWriteLock(String lockKey,
+                                                        Function<String, StatefulReactiveLock> readFactory,
+                                                        Function<String, StatefulReactiveLock> writeFactory) {
+        return new ReactiveReadWriteLock() {
+
+            @Override
+            public ReactiveLock readLock() {
+                return obtain(readLockRegistry, lockKey, readFactory);
+            }
+
+            @Override
+            public ReactiveLock writeLock() {
+                return obtain(writeLockRegistry, lockKey, writeFactory);
+            }
+        };
+    }
+
+    /**
+     * 获取信号量对象
+     * @param semaphoreKey 信号量KEY
+     * @param permits      许可总数,与本注册表中已创建的同KEY信号量不一致时抛出 {@link IllegalArgumentException},
+     *                     跨节点与驱逐后的一致性由信号量实现检查
+     * @param factory      创建信号量对象
+     * @return reactive semaphore
+     */
+    protected ReactiveSemaphore obtainSemaphore(String semaphoreKey, int permits,
+                                                BiFunction<String, Integer, StatefulReactiveSemaphore> factory) {
+        ReactiveSemaphore reactiveSemaphore = semaphoreRegistry.get(semaphoreKey);
+        if (reactiveSemaphore == null) {
+            reactiveSemaphore = semaphoreRegistry.computeIfAbsent(semaphoreKey,
+                    key -> indexed(semaphoreRegistry, key, factory.apply(key, permits), null));
+        }
+        if (reactiveSemaphore.getPermits() != permits) {
+            throw new IllegalArgumentException("Semaphore(" + semaphoreKey + ") was obtained with " +
+                    reactiveSemaphore.getPermits() + " permits, cannot obtain it with " + permits + " permits");
+        }
+        return reactiveSemaphore;
+    }
+
+    private ReactiveLock obtain(ConcurrentMap<String, StatefulReactiveLock> registry, String lockKey,
+                                Function<String, StatefulReactiveLock> factory) {
+        ReactiveLock reactiveLock = registry.get(lockKey);
+        if (reactiveLock != null) {
+            return reactiveLock;
+        }
+        return registry.computeIfAbsent(lockKey, key -> indexed(registry, key, factory.apply(key), factory));
+    }
+
+    private <K, V> V indexed(ConcurrentMap<K, V> registry, K key, V value, Function<K, V> factory) {
+        if (value instanceof AbstractReactiveLock) {
+            configure(key, (AbstractReactiveLock) value);
+        }
+        schedule(registry, key, value, factory, System.currentTimeMillis());
+        return value;
+    }
+
+    private void configure(Object key, AbstractReactiveLock lock) {
+        // 多键锁按第一个KEY分组
+        String lockKey = key instanceof List ? String.valueOf(((List<?>) key).get(0)) : String.valueOf(key);
+        lock.bindMetrics(this.metrics, this.metrics.group(lockKey));
+        if (this.backoff != null) {
+            lock.setBackoff(this.backoff);
+        }
+        if (this.linger != null) {
+            lock.setLinger(this.linger);
+        }
+    }
+
+    private <K, V> void schedule(ConcurrentMap<K, V> registry, K key, V value, Function<K, V> factory, long now) {
+        this.expiryIndex.schedule(new LockExpiryIndex.Candidate(registry, key, value, factory),
+                now + this.maxLockLifeTime.toMillis());
+    }
+
+    /**
+     * 本实例当前持有的锁,包括租约保留中的锁,按持有时间从长到短排序;只遍历进程内的注册表,不访问 redis
+     * @param limit 最多返回的数量
+     * @return 锁状态
+     */
+    public List<ReactiveLockInfo> heldLocks(int limit) {
+        return topLocks(limit, lock -> lock.heldSince() > 0,
+                Comparator.comparingLong(ReactiveLockInfo::getHeldSince), null);
+    }
+
+    /**
+     * 本实例内竞争最多的锁,按排队等待者数量、竞争次数从多到少排序;只遍历进程内的注册表,不访问 redis
+     * 计数包含同一个KEY已被驱逐的锁对象的历史,驱逐后不再使用的KEY也会保留一段时间,见 {@link LockContentionHistory}
+     * @param limit 最多返回的数量
+     * @return 锁状态
+     */
+    public List<ReactiveLockInfo> contendedLocks(int limit) {
+        return topLocks(limit, lock -> lock.contentions() > 0 || lock.waiterCount() > 0,
+                Comparator.comparingInt(ReactiveLockInfo::getWaiters).reversed()
+                        .thenComparing(Comparator.comparingLong(ReactiveLockInfo::getContentions).reversed()),
+                this.contentionHistory.snapshot(System.currentTimeMillis()));
+    }
+
+    /**
+     * 本实例注册表中的锁数量
+     * @return int
+     */
+    public int registeredLocks() {
+        return this.lockRegistry.size() + this.reentrantLockRegistry.size() + this.fairLockRegistry.size() +
+                this.readLockRegistry.size() + this.writeLockRegistry.size() + this.multiLockRegistry.size();
+    }
+
+    private List<ReactiveLockInfo> topLocks(int limit, Predicate<AbstractReactiveLock> filter,
+                                            Comparator<ReactiveLockInfo> order,
+                                            @Nullable Map<String, ReactiveLockInfo> history) {
+        Assert.isTrue(limit > 0, "'limit' must be positive");
+        // 容量为 limit 的堆,堆顶是当前排名最后的锁,只为满足条件的锁生成快照
+        PriorityQueue<ReactiveLockInfo> top = new PriorityQueue<>(limit + 1, order.reversed());
+        collect(top, limit, this.lockRegistry, LOCK, filter, history);
+        collect(top, limit, this.reentrantLockRegistry, REENTRANT, filter, history);
+        collect(top, limit, this.fairLockRegistry, FAIR, filter, history);
+        collect(top, limit, this.readLockRegistry, READ, filter, history);
+        collect(top, limit, this.writeLockRegistry, WRITE, filter, history);
+        collect(top, limit, this.multiLockRegistry, MULTI, filter, history);
+        if (history != null) {
+            // 已驱逐且没有重新创建的锁
+            for (ReactiveLockInfo info : history.values()) {
+                offer(top, limit, info);
+            }
+        }
+        List<ReactiveLockInfo> locks = new ArrayList<>(top);
+        locks.sort(order);
+        return locks;
+    }
+
+    private static void collect(PriorityQueue<ReactiveLockInfo> top, int limit,
+                                ConcurrentMap<?, StatefulReactiveLock> registry, String type,
+                                Predicate<AbstractReactiveLock> filter,
+                                @Nullable Map<String, ReactiveLockInfo> history) {
+        for (Map.Entry<?, StatefulReactiveLock> entry : registry.entrySet()) {
+            if (!(entry.getValue() instanceof AbstractReactiveLock)) {
+                continue;
+            }
+            AbstractReactiveLock lock = (AbstractReactiveLock) entry.getValue();
+            String lockKey = String.valueOf(entry.getKey());
+            ReactiveLockInfo past = history == null ? null :
+                    history.remove(LockContentionHistory.key(type, lockKey));
+            if (past != null) {
+                offer(top, limit, LockContentionHistory.merge(lock.info(lockKey, type), past));
+            } else if (filter.test(lock)) {
+                offer(top, limit, lock.info(lockKey, type));
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<ReactiveLockInfo> top, int limit, ReactiveLockInfo info) {
+        top.offer(info);
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    /**
+     * 批量检查锁在 redis 上是否仍被本实例持有,结果与传入顺序一致
+     * @param locks 锁对象
+     * @return 是否持有
+     */
+    protected Mono<List<Boolean>> processing(List<StatefulReactiveLock> locks) {
+        return Flux.fromIterable(locks)
+                .concatMap(lock -> lock.processing().defaultIfEmpty(false))
+                .collectList();
     }
 
     @Override
@@ -61,32 +374,151 @@ public abstract class AbstractAutoCleanupReactiveLockRegistry implements Reactiv
             logger.debug("initialize auto remove unused lock execution");
         }
         Flux.interval(expireEvictIdle, scheduler)
-                .flatMap(value -> {
-                    long now = System.currentTimeMillis();
+                .onBackpressureDrop()
+                .concatMap(value -> {
                     if (logger.isTraceEnabled()) {
                         logger.trace("Auto remove unused lock ,evict triggered");
                     }
-                    return Flux.fromIterable(this.lockRegistry.entrySet())
-                            .filter(entry -> now - entry.getValue().latestLockTime() > maxLockLifeTime.toMillis())
-                            .flatMap(entry -> entry.getValue()
-                                    .processing()
-                                    .filter(processing -> !processing)
-                                    .doOnNext(processing -> {
-                                        this.lockRegistry.remove(entry.getKey());
-                                        if (logger.isDebugEnabled()) {
-                                            logger.debug("auto remove unused lock,lock info:{}", entry);
-                                        }
-                                    })
-                                    .onErrorResume(throwable -> {
-                                        logger.error("auto remove unused locks occur exception,lock info: " + entry,
-                                                throwable);
-                                        return Mono.empty();
-                                    })
-                            );
-                })
+                    return evict(System.currentTimeMillis());
+                }, 1)
                 .subscribe();
     }
 
+    private Mono<Void> evict(long now) {
+        List<LockExpiryIndex.Candidate> locks = new ArrayList<>();
+        for (LockExpiryIndex.Candidate candidate : this.expiryIndex.pollDue(now)) {
+            if (!candidate.isRegistered()) {
+                continue;
+            }
+            long dueAt = Math.max(lastActivity(candidate), candidate.createdAt()) + this.maxLockLifeTime.toMillis();
+            if (dueAt > now) {
+                this.expiryIndex.schedule(candidate, Math.max(dueAt, now + this.expiryIndex.bucketMillis()));
+            } else if (isHeldLocally(candidate)) {
+                // 本地仍有持有者或排队等待者时不能驱逐,否则新实例会绕过本地 FIFO 队列
+                this.expiryIndex.schedule(candidate, now + this.maxLockLifeTime.toMillis());
+            } else if (candidate.value() instanceof StatefulReactiveLock) {
+                locks.add(candidate);
+            } else {
+                // 信号量租约只在本地有持有者时存在,无需再访问 redis
+                remove(candidate);
+            }
+        }
+        if (locks.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(locks)
+                .buffer(EVICT_BATCH_SIZE)
+                .flatMap(batch -> evict(batch, now), MAX_IN_FLIGHT_EVICT_BATCHES)
+                .then();
+    }
+
+    private Mono<Void> evict(List<LockExpiryIndex.Candidate> batch, long now) {
+        List<StatefulReactiveLock> locks = new ArrayList<>(batch.size());
+        for (LockExpiryIndex.Candidate candidate : batch) {
+            locks.add((StatefulReactiveLock) candidate.value());
+        }
+        return processing(locks)
+                .doOnNext(processing -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (Boolean.TRUE.equals(processing.get(i))) {
+                            this.expiryIndex.schedule(batch.get(i), now + this.maxLockLifeTime.toMillis());
+                        } else {
+                            remove(batch.get(i));
+                        }
+                    }
+                })
+                .onErrorResume(throwable -> {
+                    logger.error("auto remove unused locks occur exception,lock count: " + batch.size(),
+                            throwable);
+                    for (LockExpiryIndex.Candidate candidate : batch) {
+                        this.expiryIndex.schedule(candidate, now + this.expiryIndex.bucketMillis());
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 在注册表的桶锁内再次检查本地持有者后移除,与 obtain 互斥;锁对象先取得本地持有权,
+     * 之前已拿到旧实例的调用方之后的获取转到新实例,同一个KEY在本进程内不会同时有两个持有者
+     * @param candidate 驱逐候选
+     */
+    private void remove(LockExpiryIndex.Candidate candidate) {
+        Object value = candidate.value();
+        boolean retiring = value instanceof AbstractReactiveLock && candidate.factory() != null;
+        boolean removed = candidate.remove(retiring ? lock -> ((AbstractReactiveLock) lock).tryRetire() :
+                lock -> !isHeldLocally(candidate));
+        if (!removed) {
+            if (candidate.isRegistered()) {
+                this.expiryIndex.schedule(candidate, System.currentTimeMillis() + this.maxLockLifeTime.toMillis());
+            }
+            return;
+        }
+        if (retiring) {
+            AbstractReactiveLock lock = (AbstractReactiveLock) value;
+            String type = type(candidate.registry());
+            if (type != null) {
+                this.contentionHistory.record(String.valueOf(candidate.key()), type, lock.acquisitions(),
+                        lock.contentions(), System.currentTimeMillis());
+            }
+            lock.retired(() -> successor(candidate));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("auto remove unused lock,lock info:{}", candidate);
+        }
+    }
+
+    /**
+     * 被驱逐的锁在注册表中的新实例,不存在时按原工厂创建
+     * @param candidate 驱逐候选
+     * @return lock
+     */
+    @SuppressWarnings("unchecked")
+    private AbstractReactiveLock successor(LockExpiryIndex.Candidate candidate) {
+        ConcurrentMap<Object, Object> registry = (ConcurrentMap<Object, Object>) candidate.registry();
+        Function<Object, Object> factory = (Function<Object, Object>) candidate.factory();
+        Object current = registry.get(candidate.key());
+        if (current == null) {
+            current = registry.computeIfAbsent(candidate.key(),
+                    key -> indexed(registry, key, factory.apply(key), factory));
+        }
+        return (AbstractReactiveLock) current;
+    }
+
+    @Nullable
+    private String type(Object registry) {
+        if (registry == this.lockRegistry) {
+            return LOCK;
+        } else if (registry == this.reentrantLockRegistry) {
+            return REENTRANT;
+        } else if (registry == this.fairLockRegistry) {
+            return FAIR;
+        } else if (registry == this.readLockRegistry) {
+            return READ;
+        } else if (registry == this.writeLockRegistry) {
+            return WRITE;
+        } else if (registry == this.multiLockRegistry) {
+            return MULTI;
+        }
+        return null;
+    }
+
+    private static long lastActivity(LockExpiryIndex.Candidate candidate) {
+        Object value = candidate.value();
+        if (value instanceof StatefulReactiveLock) {
+            return ((StatefulReactiveLock) value).latestLockTime();
+        }
+        return ((StatefulReactiveSemaphore) value).latestAcquireTime();
+    }
+
+    private static boolean isHeldLocally(LockExpiryIndex.Candidate candidate) {
+        Object value = candidate.value();
+        if (value instanceof StatefulReactiveLock) {
+            return ((StatefulReactiveLock) value).isHeldLocally();
+        }
+        return ((StatefulReactiveSemaphore) value).isHeldLocally();
+    }
+
     @Override
     public void destroy() throws Exception {
         if (!this.scheduler.isDisposed()) {
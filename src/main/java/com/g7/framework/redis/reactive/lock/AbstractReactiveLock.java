@@ -4,13 +4,25 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.retry.Repeat;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
 
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 抽象 reactive lock.
@@ -20,6 +32,80 @@ import java.util.function.Function;
 public abstract class AbstractReactiveLock implements StatefulReactiveLock {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractReactiveLock.class);
+    private static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofMillis(100);
+    private static final Mono<Boolean> TRUE = Mono.just(true);
+    private static final Mono<Boolean> FALSE = Mono.just(false);
+    private static final AtomicReferenceFieldUpdater<AbstractReactiveLock, Linger> LINGERING =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractReactiveLock.class, Linger.class, "lingering");
+    private static final String BACKOFF_CONTEXT_KEY = AbstractReactiveLock.class.getName() + ".backoff";
+    /**
+     * 通过 fencing API 获取锁时写入 Reactor {@link Context},执行器只在此时生成 fencing token
+     */
+    static final String FENCED_CONTEXT_KEY = AbstractReactiveLock.class.getName() + ".fenced";
+    private static final Context FENCED_CONTEXT = Context.of(FENCED_CONTEXT_KEY, true);
+    /**
+     * 被驱逐的锁在取得本地持有权后发出,由 execute 转到注册表中的新实例上重新执行
+     */
+    private static final RetiredLockException RETIRED = new RetiredLockException();
+    private static final Mono<Boolean> RETIRED_ERROR = Mono.error(RETIRED);
+    private static final AtomicLongFieldUpdater<AbstractReactiveLock> ACQUISITIONS =
+            AtomicLongFieldUpdater.newUpdater(AbstractReactiveLock.class, "acquisitions");
+    private static final AtomicLongFieldUpdater<AbstractReactiveLock> CONTENTIONS =
+            AtomicLongFieldUpdater.newUpdater(AbstractReactiveLock.class, "contentions");
+    private static final AtomicIntegerFieldUpdater<AbstractReactiveLock> PINS =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractReactiveLock.class, "pins");
+    /**
+     * 驱逐时的使用者数量,之后不能再登记使用者
+     */
+    private static final int RETIRED_PINS = -1;
+    /**
+     * 当前实例名(pid@hostname),用于标识锁的持有者
+     */
+    static final String INSTANCE = ManagementFactory.getRuntimeMXBean().getName();
+    private final LocalLockQueue localLockQueue = new LocalLockQueue();
+    private volatile Linger lingering;
+    /**
+     * 被注册表驱逐后用于取得注册表中的新实例,未被驱逐时为空
+     */
+    private volatile Supplier<AbstractReactiveLock> successor;
+    /**
+     * 正在使用本实例的操作数,驱逐时从 0 置为 {@link #RETIRED_PINS},有使用者时不会被驱逐
+     */
+    private volatile int pins;
+    private volatile Duration linger;
+    private volatile ReactiveLockBackoff backoff;
+    private volatile long averageHoldTime = ReactiveLockBackoff.UNKNOWN;
+    /**
+     * 本地持有者获取成功的时间(毫秒),未被持有时为 0
+     */
+    private volatile long heldSince;
+    private volatile long acquisitions;
+    private volatile long contentions;
+    private ReactiveLockMetrics metrics = ReactiveLockMetrics.NONE;
+    private String metricsGroup = "";
+
+    protected AbstractReactiveLock() {
+        this(DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * 实例化一个新的抽象 reactive lock
+     * @param retryInterval 获取锁失败后的重试间隔,支持释放通知时仅作为兜底轮询
+     */
+    protected AbstractReactiveLock(Duration retryInterval) {
+        this.backoff = new FixedReactiveLockBackoff(
+                retryInterval == null || retryInterval.isNegative() || retryInterval.isZero() ?
+                        DEFAULT_RETRY_INTERVAL : retryInterval);
+    }
+
+    /**
+     * 设置获取锁失败后的退避策略,默认按重试间隔固定退避
+     * @param backoff 退避策略
+     */
+    public void setBackoff(ReactiveLockBackoff backoff) {
+        Assert.notNull(backoff, "'backoff' cannot be null");
+        this.backoff = backoff;
+    }
 
     @Override
     public <T> Mono<T> tryLock(@NotNull Function<Boolean, Mono<T>> function) {
@@ -43,8 +129,458 @@ public abstract class AbstractReactiveLock implements StatefulReactiveLock {
         return executeFlux(duration, function);
     }
 
+    @Override
+    public <T> Mono<T> lock(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                            @NotNull Function<Boolean, Mono<T>> function) {
+        return executeMono(duration, function)
+                .contextWrite(Context.of(BACKOFF_CONTEXT_KEY, backoff));
+    }
+
+    @Override
+    public <T> Flux<T> lockMany(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                                @NotNull Function<Boolean, Flux<T>> function) {
+        return executeFlux(duration, function)
+                .contextWrite(Context.of(BACKOFF_CONTEXT_KEY, backoff));
+    }
+
+    @Override
+    public <T> Mono<T> tryLockFenced(@NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return executeMono(null, lockResult -> fencingToken(lockResult)
+                .flatMap(token -> function.apply(lockResult, token.orElse(null))))
+                .contextWrite(FENCED_CONTEXT);
+    }
+
+    @Override
+    public <T> Flux<T> tryLockManyFenced(@NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return executeFlux(null, lockResult -> fencingToken(lockResult)
+                .flatMapMany(token -> function.apply(lockResult, token.orElse(null))))
+                .contextWrite(FENCED_CONTEXT);
+    }
+
+    @Override
+    public <T> Mono<T> lockFenced(@NotNull Duration duration,
+                                  @NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return executeMono(duration, lockResult -> fencingToken(lockResult)
+                .flatMap(token -> function.apply(lockResult, token.orElse(null))))
+                .contextWrite(FENCED_CONTEXT);
+    }
+
+    @Override
+    public <T> Flux<T> lockManyFenced(@NotNull Duration duration,
+                                      @NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return executeFlux(duration, lockResult -> fencingToken(lockResult)
+                .flatMapMany(token -> function.apply(lockResult, token.orElse(null))))
+                .contextWrite(FENCED_CONTEXT);
+    }
+
     protected abstract ReactiveLockExecutor getReactiveLockExecutor();
 
+    /**
+     * 本次获取得到的 fencing token,本地互斥的锁在临界区内只有一个持有者,因此读取执行器最近一次的 token 即可;
+     * 复用的保留租约来自不带 fencing 的获取时 token 为 0,锁值不变,重新获取一次只刷新过期时间并生成 token
+     * @param lockResult 获取锁的结果
+     * @return fencing token,未获取到锁或不支持时为空
+     */
+    private Mono<Optional<Long>> fencingToken(boolean lockResult) {
+        if (!lockResult) {
+            return Mono.just(Optional.empty());
+        }
+        // 被驱逐的锁转到新实例上执行,token 由实际持有锁的实例生成
+        ReactiveLockExecutor reactiveLockExecutor = current().getReactiveLockExecutor();
+        Long token = reactiveLockExecutor.fencingToken();
+        if (token == null || token > 0) {
+            return Mono.just(Optional.ofNullable(token));
+        }
+        return reactiveLockExecutor.obtain()
+                .map(obtained -> Optional.ofNullable(obtained ? reactiveLockExecutor.fencingToken() : null));
+    }
+
+    /**
+     * 设置租约保留时间,本地释放后在该时间内保留 redis 上的锁,期间本地再次获取直接复用,不访问 redis;
+     * 保留时间结束或其他节点获取失败时释放。为空时不保留,只对支持的锁生效,见 {@link #canLinger()}
+     * @param linger 保留时间
+     */
+    public void setLinger(@Nullable Duration linger) {
+        this.linger = linger == null || linger.isNegative() || linger.isZero() ? null : linger;
+    }
+
+    @Nullable
+    protected Duration getLinger() {
+        return this.linger;
+    }
+
+    /**
+     * 当前持有的租约是否可以保留给本地后续的获取者复用
+     * @return boolean
+     */
+    protected boolean canLinger() {
+        return false;
+    }
+
+    /**
+     * 绑定指标回调,由注册表在创建锁时调用
+     * @param metrics      指标回调
+     * @param metricsGroup 指标分组
+     */
+    void bindMetrics(ReactiveLockMetrics metrics, String metricsGroup) {
+        this.metrics = metrics;
+        this.metricsGroup = metricsGroup;
+    }
+
+    @Override
+    public boolean isHeldLocally() {
+        return this.localLockQueue.isHeld();
+    }
+
+    /**
+     * 同一进程内是否互斥,互斥时获取锁先在本地 FIFO 队列中排队;共享锁(例如读锁)返回 false 直接访问 redis
+     * @return boolean
+     */
+    protected boolean isLocalExclusive() {
+        return true;
+    }
+
+    /**
+     * 获取锁,先在本地 FIFO 队列中排队,成为队首后才访问 redis
+     * @param lockExpireTime 等待时间,为空或负数时只尝试一次
+     * @return 是否获取到锁
+     */
+    protected Mono<Boolean> acquire(@Nullable Duration lockExpireTime) {
+        ReactiveLockExecutor reactiveLockExecutor = getReactiveLockExecutor();
+        boolean once = Objects.isNull(lockExpireTime) || lockExpireTime.isNegative();
+        if (once) {
+            if (!isLocalExclusive()) {
+                return Mono.defer(() -> guard(reactiveLockExecutor, obtain -> obtain, true, () -> {
+                }));
+            }
+            return Mono.defer(() -> {
+                if (!this.localLockQueue.tryAcquire()) {
+                    contended();
+                    return FALSE;
+                }
+                if (this.successor != null) {
+                    this.localLockQueue.release();
+                    return RETIRED_ERROR;
+                }
+                return reuseLease() ? TRUE :
+                        guard(reactiveLockExecutor, obtain -> obtain, true, this.localLockQueue::release);
+            });
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            long deadline = start + lockExpireTime.toNanos();
+            // [0] 最后一次访问 redis 的开始时间,获取成功时与开始时间之差即为等待时间;[1] 非 0 时表示遇到了竞争
+            long[] lastAttempt = {start, isLocalExclusive() && this.localLockQueue.isHeld() ? 1 : 0};
+            Mono<Boolean> acquired = isLocalExclusive() ?
+                    this.localLockQueue.acquire(lockExpireTime)
+                            .flatMap(localResult -> {
+                                if (!localResult) {
+                                    return FALSE;
+                                }
+                                if (this.successor != null) {
+                                    this.localLockQueue.release();
+                                    return RETIRED_ERROR;
+                                }
+                                if (reuseLease()) {
+                                    lastAttempt[0] = System.nanoTime();
+                                    return TRUE;
+                                }
+                                return guard(reactiveLockExecutor, obtain -> obtainUntil(reactiveLockExecutor,
+                                        obtain, deadline, lastAttempt), false, this.localLockQueue::release);
+                            }) :
+                    guard(reactiveLockExecutor, obtain -> obtainUntil(reactiveLockExecutor, obtain, deadline,
+                            lastAttempt), false, () -> {
+                    });
+            return acquired.doOnNext(result -> {
+                if (result) {
+                    this.metrics.waited(this.metricsGroup, lastAttempt[0] - start);
+                }
+                if (!result || lastAttempt[1] != 0) {
+                    contended();
+                }
+            });
+        });
+    }
+
+    /**
+     * 释放锁,只有获取到锁的订阅者才会访问 redis,完成后把本地持有权交给下一个等待者
+     * @param lockResult 获取锁的结果
+     * @return 释放结果
+     */
+    protected Mono<Boolean> release(boolean lockResult) {
+        if (!lockResult) {
+            return FALSE;
+        }
+        if (!isLocalExclusive()) {
+            return getReactiveLockExecutor().release();
+        }
+        if (this.linger != null && canLinger()) {
+            linger(getReactiveLockExecutor(), this.linger);
+            this.localLockQueue.release();
+            return TRUE;
+        }
+        return getReactiveLockExecutor().release()
+                .doFinally(signal -> this.localLockQueue.release());
+    }
+
+    /**
+     * 复用保留中的租约,调用方已持有本地持有权;租约不再适合复用时由调用方重新获取,
+     * 锁值不变因此重新获取会直接刷新 redis 上的过期时间
+     * @return 是否复用
+     */
+    private boolean reuseLease() {
+        Linger current = LINGERING.getAndSet(this, null);
+        if (current == null) {
+            return false;
+        }
+        Disposable timer = current.timer;
+        if (timer != null) {
+            timer.dispose();
+        }
+        return canLinger();
+    }
+
+    /**
+     * 批量获取时尝试取得本地持有权,成功后由调用方访问 redis 或复用保留的租约
+     * @return 是否取得本地持有权
+     */
+    boolean tryAcquireLocally() {
+        if (!this.localLockQueue.tryAcquire()) {
+            contended();
+            return false;
+        }
+        if (this.successor != null) {
+            // 已被驱逐,按获取失败处理,调用方之后通过注册表取得新实例
+            this.localLockQueue.release();
+            return false;
+        }
+        this.heldSince = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * 批量获取时复用保留的租约,调用方已取得本地持有权;复用成功即获取成功
+     * @return 是否复用
+     */
+    boolean reuseLingeringLease() {
+        if (!reuseLease()) {
+            return false;
+        }
+        held();
+        return true;
+    }
+
+    /**
+     * 批量获取失败或批量释放后交还本地持有权
+     */
+    void releaseLocally() {
+        this.heldSince = 0;
+        this.localLockQueue.release();
+    }
+
+    /**
+     * 注册表驱逐前在注册表的桶锁内调用,有使用者时不驱逐,成功后不能再登记使用者;本地互斥的锁先取得本地持有权,
+     * 保证驱逐与本地获取互斥;保留中的租约与新实例的锁值相同,先等租约释放再驱逐。成功后必须调用 {@link #retired(Supplier)}
+     * @return 是否可以驱逐
+     */
+    boolean tryRetire() {
+        if (!PINS.compareAndSet(this, 0, RETIRED_PINS)) {
+            return false;
+        }
+        boolean retirable;
+        if (!isLocalExclusive()) {
+            retirable = !isHeldLocally();
+        } else if (!this.localLockQueue.tryAcquire()) {
+            retirable = false;
+        } else if (this.lingering != null) {
+            this.localLockQueue.release();
+            retirable = false;
+        } else {
+            retirable = true;
+        }
+        if (!retirable) {
+            this.pins = 0;
+        }
+        return retirable;
+    }
+
+    /**
+     * 登记一个使用者,不需要注册表的桶锁;与驱逐互斥,已被驱逐时登记失败
+     * @return 是否登记成功
+     */
+    boolean pin() {
+        for (; ; ) {
+            int current = this.pins;
+            if (current == RETIRED_PINS) {
+                return false;
+            }
+            if (PINS.compareAndSet(this, current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 注销一个使用者
+     */
+    void unpin() {
+        PINS.decrementAndGet(this);
+    }
+
+    /**
+     * 已从注册表移除,记录新实例后交还本地持有权,之后在本实例上的获取转到新实例上执行;
+     * 共享锁在 redis 上按每次获取区分持有者,旧实例继续使用不影响互斥
+     * @param successor 取得注册表中的新实例
+     */
+    void retired(Supplier<AbstractReactiveLock> successor) {
+        if (!isLocalExclusive()) {
+            return;
+        }
+        this.successor = successor;
+        this.localLockQueue.release();
+    }
+
+    /**
+     * 实际执行获取的实例,被驱逐时为注册表中的新实例
+     * @return lock
+     */
+    private AbstractReactiveLock current() {
+        Supplier<AbstractReactiveLock> next = this.successor;
+        return next == null ? this : next.get().current();
+    }
+
+    /**
+     * 保留租约,保留时间结束或收到其他节点的 wanted 通知后释放
+     * @param reactiveLockExecutor 锁执行器
+     * @param linger               保留时间
+     */
+    private void linger(ReactiveLockExecutor reactiveLockExecutor, Duration linger) {
+        Linger current = new Linger();
+        this.lingering = current;
+        current.timer = Mono.firstWithSignal(Mono.delay(linger).then(), reactiveLockExecutor.awaitWanted())
+                .onErrorResume(throwable -> Mono.empty())
+                .doOnTerminate(() -> dropLease(reactiveLockExecutor, current))
+                .subscribe();
+    }
+
+    /**
+     * 释放保留的租约,先取得本地持有权,避免与本地获取者复用租约并发;
+     * 本地已有持有者时租约已被(或即将被)复用,由持有者释放
+     * @param reactiveLockExecutor 锁执行器
+     * @param current              保留的租约
+     */
+    private void dropLease(ReactiveLockExecutor reactiveLockExecutor, Linger current) {
+        if (this.lingering != current || !this.localLockQueue.tryAcquire()) {
+            return;
+        }
+        if (!LINGERING.compareAndSet(this, current, null)) {
+            this.localLockQueue.release();
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("drop lingering lease,executor:{}", reactiveLockExecutor);
+        }
+        reactiveLockExecutor.release()
+                .onErrorResume(throwable -> Mono.just(false))
+                .doFinally(signal -> this.localLockQueue.release())
+                .subscribe();
+    }
+
+    /**
+     * 访问 redis 获取锁,获取失败或异常时执行放弃操作(例如交还本地持有权);
+     * 取消时若最近一次获取已发往 redis 且没有返回失败,redis 上可能已经获取成功,先按锁值释放 redis 上的锁再执行放弃操作,
+     * 其他情况(例如在退避等待中取消)直接执行放弃操作
+     * @param reactiveLockExecutor 锁执行器
+     * @param remote               以单次获取操作构造 redis 获取锁操作
+     * @param countFailure         获取失败时是否计入竞争次数
+     * @param giveUp               放弃操作
+     * @return 是否获取到锁
+     */
+    private Mono<Boolean> guard(ReactiveLockExecutor reactiveLockExecutor,
+                                Function<Mono<Boolean>, Mono<Boolean>> remote, boolean countFailure, Runnable giveUp) {
+        return Mono.deferContextual(contextView -> {
+            AtomicBoolean reached = new AtomicBoolean();
+            Mono<Boolean> obtain = Mono.defer(reactiveLockExecutor::obtain)
+                    .doOnSubscribe(subscription -> reached.set(true))
+                    .doOnSuccess(result -> {
+                        if (!Boolean.TRUE.equals(result)) {
+                            reached.set(false);
+                        }
+                    });
+            return remote.apply(obtain)
+                    .filter(result -> result)
+                    .defaultIfEmpty(false)
+                    .doOnNext(result -> {
+                        if (!result) {
+                            if (countFailure) {
+                                contended();
+                            }
+                            giveUp.run();
+                        }
+                    })
+                    .doOnError(throwable -> giveUp.run())
+                    .doOnCancel(() -> {
+                        if (!reached.get()) {
+                            giveUp.run();
+                            return;
+                        }
+                        reactiveLockExecutor.release()
+                                .contextWrite(contextView)
+                                .onErrorResume(throwable -> Mono.just(false))
+                                .doFinally(signal -> giveUp.run())
+                                .subscribe();
+                    });
+        });
+    }
+
+    /**
+     * 在截止时间前重复获取锁,获取失败后等待锁释放通知或退避时间(先到者为准)再次尝试;
+     * 每次访问 redis 之前先登记释放通知,获取失败到开始等待之间发出的通知不会丢失
+     * @param reactiveLockExecutor 锁执行器
+     * @param obtain               单次获取操作
+     * @param deadline             截止时间 {@link System#nanoTime()}
+     * @param lastAttempt          记录最后一次访问 redis 的开始时间
+     * @return 是否获取到锁
+     */
+    private Mono<Boolean> obtainUntil(ReactiveLockExecutor reactiveLockExecutor, Mono<Boolean> obtain, long deadline,
+                                      long[] lastAttempt) {
+        return Mono.deferContextual(contextView -> {
+            ReactiveLockBackoff lockBackoff = contextView.getOrDefault(BACKOFF_CONTEXT_KEY, this.backoff);
+            ReleaseRegistration[] registration = new ReleaseRegistration[1];
+            return Mono.defer(() -> {
+                        if (registration[0] != null) {
+                            registration[0].dispose();
+                        }
+                        registration[0] = new ReleaseRegistration(reactiveLockExecutor.awaitRelease());
+                        lastAttempt[0] = System.nanoTime();
+                        return obtain;
+                    })
+                    .filter(result -> result)
+                    .repeatWhenEmpty(repeats -> repeats
+                            .takeWhile(repeat -> deadline - System.nanoTime() > 0)
+                            .concatMap(repeat -> {
+                                lastAttempt[1] = 1;
+                                this.metrics.retried(this.metricsGroup);
+                                long backoffNanos = Math.min(lockBackoff.backoff(repeat,
+                                                reactiveLockExecutor.remainingTtl(), this.averageHoldTime).toNanos(),
+                                        deadline - System.nanoTime());
+                                if (logger.isTraceEnabled()) {
+                                    logger.trace("repeat acquire lock,repeat times:{},backoff:{}ns", repeat,
+                                            backoffNanos);
+                                }
+                                return Mono.firstWithSignal(registration[0].released(),
+                                                Mono.delay(Duration.ofNanos(Math.max(0, backoffNanos))).then())
+                                        .thenReturn(repeat);
+                            }))
+                    .defaultIfEmpty(false)
+                    .doFinally(signal -> {
+                        if (registration[0] != null) {
+                            registration[0].dispose();
+                        }
+                    });
+        });
+    }
+
     /**
      * execute with flux
      * @param <T>            类型
@@ -52,61 +588,22 @@ public abstract class AbstractReactiveLock implements StatefulReactiveLock {
      * @param function       执行操作
      * @return flux
      */
-    private  <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime,
-                                     Function<Boolean, Flux<T>> function) {
-
-        if (Objects.isNull(lockExpireTime) || lockExpireTime.isNegative()) {
-            return Flux.usingWhen(
-                    Mono.just(getReactiveLockExecutor()),
-                    reactiveLockExecutor -> reactiveLockExecutor.obtain()
-                            .filter(result -> result)
-                            .defaultIfEmpty(false)
-                            .doOnNext(lockResult ->
-                                    logger.info("flux execution try lock once,lock result:{}", lockResult))
-                            .flatMapMany(function),
-                    reactiveLockExecutor -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("flux execution(normal release) release result:{}", releaseResult)),
-                    (reactiveLockExecutor, err) -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("flux execution(when error release) release result:{}",
-                                            releaseResult)),
-                    reactiveLockExecutor -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("flux execution(when async cancel release),release result:{}",
-                                            releaseResult))
-            );
+    protected <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime,
+                                    Function<Boolean, Flux<T>> function) {
+        if (this.successor != null) {
+            return current().executeFlux(lockExpireTime, function);
         }
-
         return Flux.usingWhen(
-                Mono.just(getReactiveLockExecutor()),
-                reactiveLockExecutor -> reactiveLockExecutor.obtain()
-                        .filter(result -> result)
-                        .repeatWhenEmpty(Repeat.<T>onlyIf(repeatContext -> true)
-                                .timeout(lockExpireTime)
-                                .fixedBackoff(Duration.ofMillis(100))
-                                .doOnRepeat(objectRepeatContext -> {
-                                    if (logger.isTraceEnabled()) {
-                                        logger.trace("flux execution repeat acquire lock repeat content:{}",
-                                                objectRepeatContext);
-                                    }
-                                })
-                        )
-                        .defaultIfEmpty(false)
-                        .doOnNext(lockResult -> logger.info("[flux execution] try lock,lock result:{}",
-                                lockResult))
-                        .flatMapMany(function),
-                reactiveLockExecutor -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("flux execution(normal release) release result:{}", releaseResult)),
-                (reactiveLockExecutor, err) -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("flux execution(when error release) release result:{}", releaseResult)),
-                reactiveLockExecutor -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("flux execution(when async cancel release),release result:{}",
-                                        releaseResult))
-        );
+                logged(measuredAcquire(lockExpireTime), "flux execution try lock,lock result:{}"),
+                acquisition -> function.apply(acquisition.acquired),
+                acquisition -> logged(measuredRelease(acquisition),
+                        "flux execution(normal release) release result:{}"),
+                (acquisition, err) -> logged(measuredRelease(acquisition),
+                        "flux execution(when error release) release result:{}"),
+                acquisition -> logged(measuredRelease(acquisition),
+                        "flux execution(when async cancel release),release result:{}")
+        ).onErrorResume(throwable -> throwable == RETIRED,
+                throwable -> current().executeFlux(lockExpireTime, function));
     }
 
     /**
@@ -116,60 +613,218 @@ public abstract class AbstractReactiveLock implements StatefulReactiveLock {
      * @param function       执行操作
      * @return mono
      */
-    private  <T> Mono<T> executeMono(@Nullable Duration lockExpireTime,
-                                     Function<Boolean, Mono<T>> function) {
-
-        if (Objects.isNull(lockExpireTime) || lockExpireTime.isNegative()) {
-            return Mono.usingWhen(
-                    Mono.just(getReactiveLockExecutor()),
-                    reactiveLockExecutor -> reactiveLockExecutor.obtain()
-                            .filter(result -> result)
-                            .defaultIfEmpty(false)
-                            .doOnNext(lockResult ->
-                                    logger.info("mono execution try lock once,lock result:{}", lockResult))
-                            .flatMap(function),
-                    reactiveLockExecutor -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("mono execution(normal release) release result:{}", releaseResult)),
-                    (reactiveLockExecutor, err) -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("mono execution(when error release)release result:{}",
-                                            releaseResult)),
-                    reactiveLockExecutor -> reactiveLockExecutor.release()
-                            .doOnNext(releaseResult ->
-                                    logger.info("mono execution(when async cancel release),release result:{}",
-                                            releaseResult))
-            );
+    protected <T> Mono<T> executeMono(@Nullable Duration lockExpireTime,
+                                    Function<Boolean, Mono<T>> function) {
+        if (this.successor != null) {
+            return current().executeMono(lockExpireTime, function);
         }
-
         return Mono.usingWhen(
-                Mono.just(getReactiveLockExecutor()),
-                reactiveLockExecutor -> reactiveLockExecutor.obtain()
-                        .filter(result -> result)
-                        .repeatWhenEmpty(Repeat.<T>onlyIf(repeatContext -> true)
-                                .timeout(lockExpireTime)
-                                .fixedBackoff(Duration.ofMillis(100))
-                                .doOnRepeat(objectRepeatContext -> {
-                                    if (logger.isTraceEnabled()) {
-                                        logger.trace("mono execution repeat acquire lock repeat content:{}",
-                                                objectRepeatContext);
-                                    }
-                                })
-                        )
-                        .defaultIfEmpty(false)
-                        .doOnNext(lockResult -> logger.info("[mono execution try lock,lock result:{}",
-                                lockResult))
-                        .flatMap(function),
-                reactiveLockExecutor -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("mono execution(normal release) release result:{}", releaseResult)),
-                (reactiveLockExecutor, err) -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("mono execution(when error release)release result:{}", releaseResult)),
-                reactiveLockExecutor -> reactiveLockExecutor.release()
-                        .doOnNext(releaseResult ->
-                                logger.info("mono execution(when async cancel release),release result:{}",
-                                        releaseResult))
-        );
+                logged(measuredAcquire(lockExpireTime), "mono execution try lock,lock result:{}"),
+                acquisition -> function.apply(acquisition.acquired),
+                acquisition -> logged(measuredRelease(acquisition),
+                        "mono execution(normal release) release result:{}"),
+                (acquisition, err) -> logged(measuredRelease(acquisition),
+                        "mono execution(when error release)release result:{}"),
+                acquisition -> logged(measuredRelease(acquisition),
+                        "mono execution(when async cancel release),release result:{}")
+        ).onErrorResume(throwable -> throwable == RETIRED,
+                throwable -> current().executeMono(lockExpireTime, function));
+    }
+
+    /**
+     * 开启 debug 日志时才在结果上挂日志操作符,关闭时不产生额外的操作符和 lambda
+     * @param mono    结果
+     * @param message 日志模板
+     * @return mono
+     */
+    private static <T> Mono<T> logged(Mono<T> mono, String message) {
+        if (!logger.isDebugEnabled()) {
+            return mono;
+        }
+        return mono.doOnNext(value -> logger.debug(message, value));
+    }
+
+    private Mono<Acquisition> measuredAcquire(@Nullable Duration lockExpireTime) {
+        boolean timed = !(Objects.isNull(lockExpireTime) || lockExpireTime.isNegative());
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return acquire(lockExpireTime)
+                    .map(lockResult -> {
+                        long acquiredAt = System.nanoTime();
+                        this.metrics.acquired(this.metricsGroup, lockResult, timed, acquiredAt - start);
+                        if (lockResult) {
+                            held();
+                        }
+                        return lockResult ? new Acquisition(true, acquiredAt) : Acquisition.NOT_ACQUIRED;
+                    });
+        });
+    }
+
+    private Mono<Boolean> measuredRelease(Acquisition acquisition) {
+        if (!acquisition.acquired) {
+            return release(false);
+        }
+        long holdNanos = System.nanoTime() - acquisition.acquiredAt;
+        if (isLocalExclusive()) {
+            this.heldSince = 0;
+        }
+        this.metrics.held(this.metricsGroup, holdNanos);
+        observeHoldTime(TimeUnit.NANOSECONDS.toMillis(holdNanos));
+        if (this.metrics == ReactiveLockMetrics.NONE) {
+            return release(true);
+        }
+        return release(true)
+                .doOnNext(released -> {
+                    if (!released) {
+                        this.metrics.expiredBeforeRelease(this.metricsGroup);
+                    }
+                });
+    }
+
+    /**
+     * 获取成功,包括复用保留的租约与批量获取
+     */
+    void held() {
+        ACQUISITIONS.incrementAndGet(this);
+        // 共享锁同时有多个持有者,不记录持有时间
+        if (isLocalExclusive()) {
+            this.heldSince = System.currentTimeMillis();
+        }
+    }
+
+    private void contended() {
+        CONTENTIONS.incrementAndGet(this);
+    }
+
+    /**
+     * 本地持有者获取成功的时间(毫秒);没有本地持有者但租约保留中时为开始保留的时间,
+     * 保留中的租约仍占有 redis 上的锁;都没有或共享锁时为 0
+     * @return long
+     */
+    long heldSince() {
+        long since = this.heldSince;
+        if (since > 0) {
+            return since;
+        }
+        Linger current = this.lingering;
+        return current == null ? 0 : current.since;
+    }
+
+    /**
+     * 获取成功的次数
+     * @return long
+     */
+    long acquisitions() {
+        return this.acquisitions;
+    }
+
+    /**
+     * 获取时遇到竞争的次数,本地排队、在 redis 上重试或获取失败的一次获取计一次
+     * @return long
+     */
+    long contentions() {
+        return this.contentions;
+    }
+
+    /**
+     * 本地排队的等待者数量
+     * @return int
+     */
+    int waiterCount() {
+        return this.localLockQueue.waiterCount();
+    }
+
+    /**
+     * 当前状态的快照,只读取进程内的状态,不访问 redis
+     * @param lockKey 锁KEY
+     * @param type    锁类型
+     * @return 锁状态
+     */
+    ReactiveLockInfo info(String lockKey, String type) {
+        return new ReactiveLockInfo(lockKey, type, INSTANCE, heldSince(), getReactiveLockExecutor().leaseTime(),
+                waiterCount(), this.acquisitions, this.contentions, this.heldSince == 0 && this.lingering != null);
+    }
+
+    /**
+     * 按 1/8 的权重更新平均持有时间,供自适应退避使用;并发更新可能丢失个别样本,不影响估计
+     * @param holdTime 本次持有时间(毫秒)
+     */
+    private void observeHoldTime(long holdTime) {
+        long average = this.averageHoldTime;
+        this.averageHoldTime = average < 0 ? holdTime : average + (holdTime - average) / 8;
+    }
+
+    /**
+     * 保留中的租约
+     */
+    private static final class Linger {
+
+        private final long since = System.currentTimeMillis();
+        private volatile Disposable timer;
+    }
+
+    /**
+     * 一次获取前登记的释放通知,登记时立即订阅,之后发出的通知由 {@link #released()} 回放
+     */
+    private static final class ReleaseRegistration implements Disposable {
+
+        private final Sinks.Empty<Void> released = Sinks.empty();
+        private final Disposable subscription;
+
+        private ReleaseRegistration(Mono<Void> awaitRelease) {
+            this.subscription = awaitRelease.subscribe(null, this.released::tryEmitError,
+                    this.released::tryEmitEmpty);
+        }
+
+        private Mono<Void> released() {
+            return this.released.asMono();
+        }
+
+        @Override
+        public void dispose() {
+            this.subscription.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return this.subscription.isDisposed();
+        }
+    }
+
+    /**
+     * 锁已被注册表驱逐,只在内部使用,不记录堆栈
+     */
+    private static final class RetiredLockException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        private RetiredLockException() {
+            super("lock was evicted from the registry");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * 一次获取锁的结果与获取成功的时间 {@link System#nanoTime()}
+     */
+    private static final class Acquisition {
+
+        private static final Acquisition NOT_ACQUIRED = new Acquisition(false, 0);
+        private final boolean acquired;
+        private final long acquiredAt;
+
+        private Acquisition(boolean acquired, long acquiredAt) {
+            this.acquired = acquired;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.acquired);
+        }
     }
 }
@@ -0,0 +1,50 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * 按观察到的持有时间自适应退避
+ * 持有者已持有的时间未知,按平均持有时间的一半估计剩余持有时间,且不超过持有者剩余过期时间;
+ * 还没有观察到持有时间时按最小间隔指数增长。短临界区快速重试,长临界区减少对 redis 的访问。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class AdaptiveReactiveLockBackoff implements ReactiveLockBackoff {
+
+    private static final int MAX_SHIFT = 30;
+    private final long minInterval;
+    private final long maxInterval;
+
+    /**
+     * 实例化自适应退避
+     * @param minInterval 最小等待时间
+     * @param maxInterval 最大等待时间
+     */
+    public AdaptiveReactiveLockBackoff(Duration minInterval, Duration maxInterval) {
+        Assert.isTrue(minInterval != null && !minInterval.isNegative() && !minInterval.isZero(),
+                "'minInterval' must be positive");
+        Assert.isTrue(maxInterval != null && maxInterval.compareTo(minInterval) >= 0,
+                "'maxInterval' must not be less than 'minInterval'");
+        this.minInterval = minInterval.toMillis();
+        this.maxInterval = maxInterval.toMillis();
+    }
+
+    @Override
+    public Duration backoff(long attempt, long remainingTtl, long averageHoldTime) {
+        long interval;
+        if (averageHoldTime > 0) {
+            interval = averageHoldTime / 2;
+        } else {
+            interval = this.minInterval << Math.min(attempt, MAX_SHIFT);
+            if (interval <= 0) {
+                interval = this.maxInterval;
+            }
+        }
+        if (remainingTtl > 0) {
+            interval = Math.min(interval, remainingTtl);
+        }
+        return Duration.ofMillis(Math.max(this.minInterval, Math.min(this.maxInterval, interval)));
+    }
+}
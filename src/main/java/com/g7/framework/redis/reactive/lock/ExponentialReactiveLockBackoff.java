@@ -0,0 +1,54 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带随机抖动的指数退避
+ * 第 n 次重试等待 min(最大间隔, 初始间隔 * 2^n),再随机减少至多 jitter 比例,避免多个等待者同时重试;
+ * 已知持有者剩余过期时间时不超过剩余时间。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class ExponentialReactiveLockBackoff implements ReactiveLockBackoff {
+
+    private static final int MAX_SHIFT = 30;
+    private final long initialInterval;
+    private final long maxInterval;
+    private final double jitter;
+
+    /**
+     * 实例化指数退避
+     * @param initialInterval 初始等待时间
+     * @param maxInterval     最大等待时间
+     * @param jitter          随机抖动比例 [0, 1]
+     */
+    public ExponentialReactiveLockBackoff(Duration initialInterval, Duration maxInterval, double jitter) {
+        Assert.isTrue(initialInterval != null && !initialInterval.isNegative() && !initialInterval.isZero(),
+                "'initialInterval' must be positive");
+        Assert.isTrue(maxInterval != null && maxInterval.compareTo(initialInterval) >= 0,
+                "'maxInterval' must not be less than 'initialInterval'");
+        Assert.isTrue(jitter >= 0 && jitter <= 1, "'jitter' must be between 0 and 1");
+        this.initialInterval = initialInterval.toMillis();
+        this.maxInterval = maxInterval.toMillis();
+        this.jitter = jitter;
+    }
+
+    @Override
+    public Duration backoff(long attempt, long remainingTtl, long averageHoldTime) {
+        long shift = Math.min(attempt, MAX_SHIFT);
+        long interval = this.initialInterval << shift;
+        if (interval <= 0 || interval > this.maxInterval) {
+            interval = this.maxInterval;
+        }
+        if (remainingTtl > 0) {
+            interval = Math.min(interval, remainingTtl);
+        }
+        if (this.jitter > 0) {
+            interval -= (long) (interval * this.jitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return Duration.ofMillis(Math.max(1, interval));
+    }
+}
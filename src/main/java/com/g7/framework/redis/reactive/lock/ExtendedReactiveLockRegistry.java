@@ -0,0 +1,53 @@
+package com.g7.framework.redis.reactive.lock;
+
+import java.util.Collection;
+
+/**
+ * 支持可重入锁、多KEY锁、公平锁、读写锁与信号量的 Reactive lock 注册表
+ * 这些锁依赖 redis 上的数据结构,只有 {@link RedisReactiveLockRegistry} 实现;
+ * quorum 与进程内注册表只实现 {@link ReactiveLockRegistry}。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface ExtendedReactiveLockRegistry extends ReactiveLockRegistry {
+
+    /**
+     * 获取可重入锁对象,持有者通过 Reactor Context 传递,同一个持有者在临界区内可以再次获取
+     * @param lockKey 锁KEY
+     * @return reactive lock
+     */
+    ReactiveLock obtainReentrant(String lockKey);
+
+    /**
+     * 获取多KEY锁对象,一次往返原子地获取或释放全部锁KEY,与锁KEY的顺序无关,不存在加锁顺序导致的死锁;
+     * 集群模式下所有锁KEY需要包含相同的 hash tag,例如 "{account}:1"、"{account}:2"
+     * @param lockKeys 锁KEY列表
+     * @return reactive lock
+     */
+    ReactiveLock obtainMulti(Collection<String> lockKeys);
+
+    /**
+     * 获取公平锁对象,所有节点按请求顺序获取锁
+     * @param lockKey 锁KEY
+     * @return reactive lock
+     */
+    ReactiveLock obtainFair(String lockKey);
+
+    /**
+     * 获取读写锁对象,多个读者可以同时持有读锁,写锁与读锁、写锁之间互斥
+     * @param lockKey 锁KEY
+     * @return reactive read write lock
+     */
+    ReactiveReadWriteLock obtainReadWriteLock(String lockKey);
+
+    /**
+     * 获取信号量对象,全局最多 permits 个许可同时被持有;同一个KEY的许可总数必须一致,
+     * 与本注册表中已创建的同KEY信号量不一致时抛出 {@link IllegalArgumentException};
+     * 与 redis 中仍有有效租约的许可总数不一致时(例如信号量对象被驱逐后或在其他节点上以不同总数创建),
+     * 获取许可以 {@link IllegalArgumentException} 失败
+     * @param semaphoreKey 信号量KEY
+     * @param permits      许可总数
+     * @return reactive semaphore
+     */
+    ReactiveSemaphore obtainSemaphore(String semaphoreKey, int permits);
+}
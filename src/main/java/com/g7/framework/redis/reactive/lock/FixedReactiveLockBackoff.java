@@ -0,0 +1,30 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * 固定间隔退避
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class FixedReactiveLockBackoff implements ReactiveLockBackoff {
+
+    private final Duration interval;
+
+    /**
+     * 实例化固定间隔退避
+     * @param interval 重试间隔
+     */
+    public FixedReactiveLockBackoff(Duration interval) {
+        Assert.isTrue(interval != null && !interval.isNegative() && !interval.isZero(),
+                "'interval' must be positive");
+        this.interval = interval;
+    }
+
+    @Override
+    public Duration backoff(long attempt, long remainingTtl, long averageHoldTime) {
+        return this.interval;
+    }
+}
@@ -0,0 +1,146 @@
+package com.g7.framework.redis.reactive.lock;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 进程内的 FIFO 等待队列
+ * 同一个锁KEY在本进程内同一时刻只有一个持有者(队首),只有队首会访问 redis,
+ * 释放时按顺序把持有权交给下一个等待者。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+final class LocalLockQueue extends AtomicBoolean {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LocalLockQueue, Queue> WAITERS =
+            AtomicReferenceFieldUpdater.newUpdater(LocalLockQueue.class, Queue.class, "waiters");
+    /**
+     * 持有状态即自身的值;等待队列在第一次出现竞争时才创建,注册表中大量从未竞争的锁不必各自持有一个队列
+     */
+    private volatile Queue<Waiter> waiters;
+
+    /**
+     * 尝试获取一次本地持有权,存在排队的等待者时不插队
+     * @return 是否获取成功
+     */
+    boolean tryAcquire() {
+        return noWaiters() && compareAndSet(false, true);
+    }
+
+    /**
+     * 在给定的持续时间内排队获取本地持有权
+     * @param timeout 超时时间
+     * @return 是否获取成功
+     */
+    Mono<Boolean> acquire(Duration timeout) {
+        return Mono.<Boolean>create(sink -> {
+                    if (tryAcquire()) {
+                        sink.success(true);
+                        return;
+                    }
+                    Waiter waiter = new Waiter(sink);
+                    Queue<Waiter> queue = waiters();
+                    sink.onCancel(() -> {
+                        if (waiter.cancel()) {
+                            queue.remove(waiter);
+                            drain();
+                        } else {
+                            // 已被授予持有权但下游已取消,交给下一个等待者
+                            release();
+                        }
+                    });
+                    queue.offer(waiter);
+                    drain();
+                })
+                .timeout(timeout, Mono.just(false));
+    }
+
+    /**
+     * 释放本地持有权并交给下一个等待者
+     */
+    void release() {
+        set(false);
+        drain();
+    }
+
+    /**
+     * 本地是否被持有或存在等待者
+     * @return boolean
+     */
+    boolean isHeld() {
+        return get() || !noWaiters();
+    }
+
+    /**
+     * 等待者数量
+     * @return int
+     */
+    int waiterCount() {
+        Queue<Waiter> queue = this.waiters;
+        return queue == null ? 0 : queue.size();
+    }
+
+    private boolean noWaiters() {
+        Queue<Waiter> queue = this.waiters;
+        return queue == null || queue.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Queue<Waiter> waiters() {
+        Queue<Waiter> queue = this.waiters;
+        if (queue == null) {
+            WAITERS.compareAndSet(this, null, new ConcurrentLinkedQueue<Waiter>());
+            queue = this.waiters;
+        }
+        return queue;
+    }
+
+    private void drain() {
+        Queue<Waiter> queue = this.waiters;
+        if (queue == null) {
+            return;
+        }
+        while (!queue.isEmpty() && compareAndSet(false, true)) {
+            Waiter waiter;
+            while ((waiter = queue.poll()) != null) {
+                if (waiter.grant()) {
+                    return;
+                }
+            }
+            set(false);
+        }
+    }
+
+    private static final class Waiter extends AtomicInteger {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+        private final MonoSink<Boolean> sink;
+
+        private Waiter(MonoSink<Boolean> sink) {
+            super(WAITING);
+            this.sink = sink;
+        }
+
+        private boolean grant() {
+            if (compareAndSet(WAITING, GRANTED)) {
+                this.sink.success(true);
+                return true;
+            }
+            return false;
+        }
+
+        private boolean cancel() {
+            return compareAndSet(WAITING, CANCELLED);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 进程内的锁
+ * 互斥完全由 {@link AbstractReactiveLock} 的本地 FIFO 队列保证,获取与释放不访问任何外部存储,
+ * 等待者在持有者释放时立即被唤醒,适合单实例部署。
+ * 与 redis 锁的过期时间一致,持有超过 expireAfter 时交还本地持有权给下一个等待者,持有者之后的释放返回 false。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class LocalReactiveLock extends AbstractReactiveLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalReactiveLock.class);
+
+    private static final String LEASE_CONTEXT_KEY = LocalReactiveLock.class.getName() + ".lease";
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final Mono<Boolean> OBTAINED = Mono.just(true);
+    private static final Mono<Boolean> NOT_RELEASED = Mono.just(false);
+    private final LocalReactiveLockExecutor reactiveLockExecutor;
+    private final Duration expireAfter;
+
+    /**
+     * Instantiates a new local reactive lock.
+     * @param lockKey 锁KEY
+     */
+    public LocalReactiveLock(String lockKey) {
+        this(lockKey, null);
+    }
+
+    /**
+     * Instantiates a new local reactive lock.
+     * @param lockKey     锁KEY
+     * @param expireAfter 锁过期时间,为空时使用默认值
+     */
+    public LocalReactiveLock(String lockKey, @Nullable Duration expireAfter) {
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        this.reactiveLockExecutor = new LocalReactiveLockExecutor(lockKey);
+        this.expireAfter = expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter;
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    @Override
+    protected <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime, Function<Boolean, Flux<T>> function) {
+        return super.executeFlux(lockExpireTime, function)
+                .contextWrite(context -> context.put(LEASE_CONTEXT_KEY, new Lease()));
+    }
+
+    @Override
+    protected <T> Mono<T> executeMono(@Nullable Duration lockExpireTime, Function<Boolean, Mono<T>> function) {
+        return super.executeMono(lockExpireTime, function)
+                .contextWrite(context -> context.put(LEASE_CONTEXT_KEY, new Lease()));
+    }
+
+    @Override
+    protected Mono<Boolean> acquire(@Nullable Duration lockExpireTime) {
+        return Mono.deferContextual(contextView -> super.acquire(lockExpireTime)
+                .doOnNext(result -> {
+                    if (result) {
+                        contextView.<Lease>get(LEASE_CONTEXT_KEY).start();
+                    }
+                }));
+    }
+
+    @Override
+    protected Mono<Boolean> release(boolean lockResult) {
+        if (!lockResult) {
+            return super.release(false);
+        }
+        return Mono.deferContextual(contextView -> {
+            if (contextView.<Lease>get(LEASE_CONTEXT_KEY).finish()) {
+                return super.release(true);
+            }
+            // 本地持有权已在过期时交给下一个等待者
+            logger.warn("Lock({}) was released due to expiration. The integrity of data protected by this lock " +
+                    "may have been compromised.", this.reactiveLockExecutor.lockKey);
+            return NOT_RELEASED;
+        });
+    }
+
+    /**
+     * 一次获取的租约,持有超过过期时间时交还本地持有权;过期与释放只有先到者生效
+     */
+    private final class Lease {
+
+        private static final int HELD = 1;
+        private static final int RELEASED = 2;
+        private static final int EXPIRED = 3;
+        private final AtomicInteger state = new AtomicInteger();
+        private volatile Disposable timer;
+
+        private void start() {
+            this.state.set(HELD);
+            this.timer = Mono.delay(LocalReactiveLock.this.expireAfter)
+                    .subscribe(tick -> expire());
+        }
+
+        private void expire() {
+            if (!this.state.compareAndSet(HELD, EXPIRED)) {
+                return;
+            }
+            logger.warn("Lock({}) was held longer than {}ms, hand it over to the next waiter",
+                    LocalReactiveLock.this.reactiveLockExecutor.lockKey,
+                    LocalReactiveLock.this.expireAfter.toMillis());
+            releaseLocally();
+        }
+
+        private boolean finish() {
+            if (!this.state.compareAndSet(HELD, RELEASED)) {
+                return false;
+            }
+            Disposable current = this.timer;
+            if (current != null) {
+                current.dispose();
+            }
+            return true;
+        }
+    }
+
+    private class LocalReactiveLockExecutor implements ReactiveLockExecutor {
+
+        private final String lockKey;
+        private volatile long lockedAt;
+
+        private LocalReactiveLockExecutor(String lockKey) {
+            this.lockKey = lockKey;
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            return Mono.just(LocalReactiveLock.this.isHeldLocally());
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            // 调用方已持有本地持有权
+            this.lockedAt = System.currentTimeMillis();
+            return OBTAINED;
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            return OBTAINED;
+        }
+
+        @Override
+        public String toString() {
+            return "LocalReactiveLockExecutor [lockKey=" + this.lockKey
+                    + ",lockedAt=" + Instant.ofEpochMilli(this.lockedAt)
+                    + "]";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.g7.framework.redis.reactive.lock;
+
+import java.time.Duration;
+
+/**
+ * 进程内的锁注册表
+ * 锁只在本进程内互斥,获取与释放在微秒级完成;与 {@link RedisReactiveLockRegistry} 实现相同的
+ * {@link ReactiveLockRegistry} 接口,扩容为多实例时切换注册表即可,业务代码不变。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class LocalReactiveLockRegistry extends AbstractAutoCleanupReactiveLockRegistry {
+
+    private final Duration expireAfter;
+
+    public LocalReactiveLockRegistry() {
+        this(DEFAULT_EXPIRE_EVICT_IDLE, DEFAULT_MAX_LOCK_LIFETIME);
+    }
+
+    /**
+     * Instantiates a new local reactive lock registry.
+     * @param expireEvictIdle 过期驱逐空闲时间
+     * @param maxLockLifeTime 锁空闲多久后可以被清理,同时作为锁的过期时间
+     */
+    public LocalReactiveLockRegistry(Duration expireEvictIdle, Duration maxLockLifeTime) {
+        super(expireEvictIdle, maxLockLifeTime);
+        this.expireAfter = maxLockLifeTime;
+    }
+
+    @Override
+    protected StatefulReactiveLock newReactiveLock(String lockKey) {
+        return new LocalReactiveLock(lockKey, this.expireAfter);
+    }
+}
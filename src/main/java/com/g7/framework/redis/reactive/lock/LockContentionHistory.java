@@ -0,0 +1,129 @@
+package com.g7.framework.redis.reactive.lock;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 已驱逐锁的竞争统计
+ * 锁对象从注册表移除后,它的获取与竞争次数按锁类型与KEY累加到这里,之后重新创建的锁对象从 0 开始计数,
+ * 查询时与历史合并。容量有限,每个KEY按竞争次数计算指数衰减的热度,满时淘汰热度最低的KEY,
+ * 热度衰减到 1 以下的KEY在查询时清理,长期不再竞争的KEY会逐渐被遗忘。
+ * 只在驱逐与查询时访问,频率很低,直接使用对象锁。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+final class LockContentionHistory {
+
+    private static final double MIN_SCORE = 1.0d;
+    private final Map<String, Entry> entries = new HashMap<>(16);
+    private final int capacity;
+    private final double halfLifeMillis;
+
+    LockContentionHistory(int capacity, Duration halfLife) {
+        this.capacity = Math.max(1, capacity);
+        this.halfLifeMillis = Math.max(1L, halfLife.toMillis());
+    }
+
+    /**
+     * 记录被驱逐的锁对象的计数,没有发生过竞争的锁不记录
+     * @param lockKey      锁KEY
+     * @param type         锁类型
+     * @param acquisitions 获取次数
+     * @param contentions  竞争次数
+     * @param now          当前时间(毫秒)
+     */
+    synchronized void record(String lockKey, String type, long acquisitions, long contentions, long now) {
+        if (contentions <= 0) {
+            return;
+        }
+        String key = key(type, lockKey);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            if (this.entries.size() >= this.capacity && !evictWeakest(contentions, now)) {
+                return;
+            }
+            entry = new Entry(lockKey, type);
+            this.entries.put(key, entry);
+        }
+        entry.score = entry.score(now, this.halfLifeMillis) + contentions;
+        entry.updatedAt = now;
+        entry.acquisitions += acquisitions;
+        entry.contentions += contentions;
+    }
+
+    private boolean evictWeakest(long contentions, long now) {
+        String weakest = null;
+        double min = Double.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            double score = entry.getValue().score(now, this.halfLifeMillis);
+            if (score < min) {
+                min = score;
+                weakest = entry.getKey();
+            }
+        }
+        // 新KEY比已记录的所有KEY都冷时不记录
+        if (weakest == null || min > contentions) {
+            return false;
+        }
+        this.entries.remove(weakest);
+        return true;
+    }
+
+    /**
+     * 历史统计快照,同时清理热度已衰减的KEY
+     * @param now 当前时间(毫秒)
+     * @return {@link #key(String, String)} 到统计的映射,可以修改
+     */
+    synchronized Map<String, ReactiveLockInfo> snapshot(long now) {
+        Map<String, ReactiveLockInfo> snapshot = new HashMap<>(this.entries.size() * 2);
+        for (Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            Entry value = entry.getValue();
+            if (value.score(now, this.halfLifeMillis) < MIN_SCORE) {
+                iterator.remove();
+                continue;
+            }
+            snapshot.put(entry.getKey(), new ReactiveLockInfo(value.lockKey, value.type, AbstractReactiveLock.INSTANCE,
+                    0, -1, 0, value.acquisitions, value.contentions, false));
+        }
+        return snapshot;
+    }
+
+    static String key(String type, String lockKey) {
+        return type + ':' + lockKey;
+    }
+
+    /**
+     * 当前锁对象的状态累加历史计数
+     * @param current 当前锁对象的状态
+     * @param past    历史统计
+     * @return 合并后的状态
+     */
+    static ReactiveLockInfo merge(ReactiveLockInfo current, ReactiveLockInfo past) {
+        return new ReactiveLockInfo(current.getLockKey(), current.getType(), current.getInstance(),
+                current.getHeldSince(), current.getLeaseTime(), current.getWaiters(),
+                current.getAcquisitions() + past.getAcquisitions(), current.getContentions() + past.getContentions(),
+                current.isLingering());
+    }
+
+    private static final class Entry {
+
+        private final String lockKey;
+        private final String type;
+        private long acquisitions;
+        private long contentions;
+        private double score;
+        private long updatedAt;
+
+        private Entry(String lockKey, String type) {
+            this.lockKey = lockKey;
+            this.type = type;
+        }
+
+        private double score(long now, double halfLifeMillis) {
+            return this.score * Math.pow(0.5d, Math.max(0L, now - this.updatedAt) / halfLifeMillis);
+        }
+    }
+}
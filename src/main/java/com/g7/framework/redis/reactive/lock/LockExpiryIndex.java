@@ -0,0 +1,140 @@
+package com.g7.framework.redis.reactive.lock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 按到期时间排序的分桶索引
+ * 注册表中的锁对象按预计可驱逐的时间放入对应的时间桶,每次驱逐只取出已到期的桶,
+ * 不需要扫描整个注册表;到期时仍在使用的锁重新放入之后的桶。
+ * 放入的时间总是晚于当前时间所在的桶,因此不会与正在取出的桶并发修改。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+final class LockExpiryIndex {
+
+    private final ConcurrentSkipListMap<Long, Queue<Candidate>> buckets = new ConcurrentSkipListMap<>();
+    private final long bucketMillis;
+
+    LockExpiryIndex(Duration bucketWidth) {
+        this.bucketMillis = Math.max(1L, bucketWidth.toMillis());
+    }
+
+    /**
+     * 放入索引
+     * @param candidate 驱逐候选
+     * @param dueAt     预计可驱逐的时间(毫秒)
+     */
+    void schedule(Candidate candidate, long dueAt) {
+        this.buckets.computeIfAbsent(dueAt / this.bucketMillis, bucket -> new ConcurrentLinkedQueue<>())
+                .offer(candidate);
+    }
+
+    /**
+     * 取出所有已到期的候选
+     * @param now 当前时间(毫秒)
+     * @return 到期的候选
+     */
+    List<Candidate> pollDue(long now) {
+        List<Candidate> due = new ArrayList<>();
+        long current = now / this.bucketMillis;
+        Map.Entry<Long, Queue<Candidate>> bucket;
+        while ((bucket = this.buckets.firstEntry()) != null && bucket.getKey() <= current) {
+            if (this.buckets.remove(bucket.getKey(), bucket.getValue())) {
+                due.addAll(bucket.getValue());
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 桶宽度(毫秒)
+     * @return long
+     */
+    long bucketMillis() {
+        return this.bucketMillis;
+    }
+
+    /**
+     * 驱逐候选,记录所在的注册表以便按KEY和对象移除,以及创建对象的工厂以便驱逐后重新创建
+     */
+    static final class Candidate {
+
+        private final ConcurrentMap<?, ?> registry;
+        private final Object key;
+        private final Object value;
+        private final Function<?, ?> factory;
+        private final long createdAt;
+
+        Candidate(ConcurrentMap<?, ?> registry, Object key, Object value, Function<?, ?> factory) {
+            this.registry = registry;
+            this.key = key;
+            this.value = value;
+            this.factory = factory;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        ConcurrentMap<?, ?> registry() {
+            return this.registry;
+        }
+
+        Object key() {
+            return this.key;
+        }
+
+        Object value() {
+            return this.value;
+        }
+
+        /**
+         * 创建对象的工厂,为空时驱逐后不转到新实例
+         * @return function
+         */
+        Function<?, ?> factory() {
+            return this.factory;
+        }
+
+        long createdAt() {
+            return this.createdAt;
+        }
+
+        /**
+         * 是否仍是注册表中的当前对象
+         * @return boolean
+         */
+        boolean isRegistered() {
+            return this.registry.get(this.key) == this.value;
+        }
+
+        /**
+         * 在注册表中该KEY的桶锁内检查并移除,与注册表的 computeIfAbsent 互斥
+         * @param removable 是否可以移除,只在仍是注册表中的当前对象时调用
+         * @return 是否移除成功
+         */
+        @SuppressWarnings("unchecked")
+        boolean remove(Predicate<Object> removable) {
+            boolean[] removed = new boolean[1];
+            ((ConcurrentMap<Object, Object>) this.registry).computeIfPresent(this.key, (key, current) -> {
+                if (current != this.value || !removable.test(current)) {
+                    return current;
+                }
+                removed[0] = true;
+                return null;
+            });
+            return removed[0];
+        }
+
+        @Override
+        public String toString() {
+            return "Candidate [key=" + this.key + ", value=" + this.value + "]";
+        }
+    }
+}
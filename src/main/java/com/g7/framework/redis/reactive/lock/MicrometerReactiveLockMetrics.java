@@ -0,0 +1,129 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Micrometer 的锁指标
+ * 指标以锁KEY的前若干段(按分隔符切分)作为 group 标签,例如 depth 为 1 时 order:123 与 order:456 都归入 order,
+ * 段数不足的KEY归入 other,保证标签数量有限。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class MicrometerReactiveLockMetrics implements ReactiveLockMetrics {
+
+    private static final String OTHER_GROUP = "other";
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>(16);
+    private final MeterRegistry meterRegistry;
+    private final int keyGroupDepth;
+    private final String keyGroupDelimiter;
+
+    /**
+     * 实例化 Micrometer 锁指标
+     * @param meterRegistry     meter registry
+     * @param keyGroupDepth     作为分组的锁KEY段数
+     * @param keyGroupDelimiter 锁KEY分隔符
+     */
+    public MicrometerReactiveLockMetrics(MeterRegistry meterRegistry, int keyGroupDepth, String keyGroupDelimiter) {
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        Assert.isTrue(keyGroupDepth > 0, "'keyGroupDepth' must be positive");
+        Assert.hasLength(keyGroupDelimiter, "'keyGroupDelimiter' must not be empty");
+        this.meterRegistry = meterRegistry;
+        this.keyGroupDepth = keyGroupDepth;
+        this.keyGroupDelimiter = keyGroupDelimiter;
+    }
+
+    @Override
+    public String group(String lockKey) {
+        int end = -1;
+        for (int i = 0; i < this.keyGroupDepth; i++) {
+            end = lockKey.indexOf(this.keyGroupDelimiter, end + 1);
+            if (end < 0) {
+                return OTHER_GROUP;
+            }
+        }
+        return lockKey.substring(0, end).intern();
+    }
+
+    @Override
+    public void acquired(String group, boolean acquired, boolean timed, long latencyNanos) {
+        Meters groupMeters = meters(group);
+        Timer timer = acquired ? groupMeters.acquired : timed ? groupMeters.timeout : groupMeters.failed;
+        timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void waited(String group, long waitNanos) {
+        meters(group).wait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void retried(String group) {
+        meters(group).retries.increment();
+    }
+
+    @Override
+    public void held(String group, long holdNanos) {
+        meters(group).hold.record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void expiredBeforeRelease(String group) {
+        meters(group).expired.increment();
+    }
+
+    private Meters meters(String group) {
+        Meters groupMeters = this.meters.get(group);
+        if (groupMeters != null) {
+            return groupMeters;
+        }
+        return this.meters.computeIfAbsent(group, key -> new Meters(this.meterRegistry, key));
+    }
+
+    private static final class Meters {
+
+        private final Timer acquired;
+        private final Timer failed;
+        private final Timer timeout;
+        private final Timer wait;
+        private final Timer hold;
+        private final Counter retries;
+        private final Counter expired;
+
+        private Meters(MeterRegistry meterRegistry, String group) {
+            this.acquired = acquireTimer(meterRegistry, group, "acquired");
+            this.failed = acquireTimer(meterRegistry, group, "failed");
+            this.timeout = acquireTimer(meterRegistry, group, "timeout");
+            this.wait = Timer.builder("reactive.lock.wait")
+                    .description("time spent queueing and backing off before the lock was acquired")
+                    .tag("group", group)
+                    .register(meterRegistry);
+            this.hold = Timer.builder("reactive.lock.hold")
+                    .description("time the lock was held")
+                    .tag("group", group)
+                    .register(meterRegistry);
+            this.retries = Counter.builder("reactive.lock.retries")
+                    .description("acquire attempts repeated after the lock was busy")
+                    .tag("group", group)
+                    .register(meterRegistry);
+            this.expired = Counter.builder("reactive.lock.expired")
+                    .description("locks that expired in the store before they were released")
+                    .tag("group", group)
+                    .register(meterRegistry);
+        }
+
+        private static Timer acquireTimer(MeterRegistry meterRegistry, String group, String result) {
+            return Timer.builder("reactive.lock.acquire")
+                    .description("lock acquire latency")
+                    .tag("group", group)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+}
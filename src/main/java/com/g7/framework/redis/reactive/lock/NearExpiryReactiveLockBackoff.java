@@ -0,0 +1,40 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * 按持有者剩余过期时间退避
+ * 等待到锁即将过期时再重试,持有者提前释放时由释放通知唤醒;剩余时间未知时使用最小间隔。
+ * 适合临界区较长、开启了释放通知的场景。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class NearExpiryReactiveLockBackoff implements ReactiveLockBackoff {
+
+    private final long minInterval;
+    private final long maxInterval;
+
+    /**
+     * 实例化按剩余过期时间退避
+     * @param minInterval 最小等待时间
+     * @param maxInterval 最大等待时间
+     */
+    public NearExpiryReactiveLockBackoff(Duration minInterval, Duration maxInterval) {
+        Assert.isTrue(minInterval != null && !minInterval.isNegative() && !minInterval.isZero(),
+                "'minInterval' must be positive");
+        Assert.isTrue(maxInterval != null && maxInterval.compareTo(minInterval) >= 0,
+                "'maxInterval' must not be less than 'minInterval'");
+        this.minInterval = minInterval.toMillis();
+        this.maxInterval = maxInterval.toMillis();
+    }
+
+    @Override
+    public Duration backoff(long attempt, long remainingTtl, long averageHoldTime) {
+        if (remainingTtl <= 0) {
+            return Duration.ofMillis(this.minInterval);
+        }
+        return Duration.ofMillis(Math.max(this.minInterval, Math.min(this.maxInterval, remainingTtl)));
+    }
+}
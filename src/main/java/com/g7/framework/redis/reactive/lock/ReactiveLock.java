@@ -5,6 +5,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -48,4 +49,75 @@ public interface ReactiveLock {
      */
     <T> Flux<T> lockMany(@NotNull Duration duration, @NotNull Function<Boolean, Flux<T>> function);
 
+    /**
+     * 尝试在给定的持续时间内获取锁,本次调用使用指定的退避策略代替注册表配置的策略;
+     * 不支持退避策略的锁忽略该参数
+     * @param <T>      类型
+     * @param duration 超时时间
+     * @param backoff  退避策略
+     * @param function 执行的操作
+     * @return executable Mono
+     */
+    default <T> Mono<T> lock(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                             @NotNull Function<Boolean, Mono<T>> function) {
+        return lock(duration, function);
+    }
+
+    /**
+     * 尝试在给定的持续时间内获取锁,本次调用使用指定的退避策略代替注册表配置的策略
+     * @param <T>      类型
+     * @param duration 超时时间
+     * @param backoff  退避策略
+     * @param function 执行的操作
+     * @return executable Flux
+     */
+    default <T> Flux<T> lockMany(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                                 @NotNull Function<Boolean, Flux<T>> function) {
+        return lockMany(duration, function);
+    }
+
+    /**
+     * 尝试获取锁一次,获取成功时同时得到单调递增的 fencing token,下游存储可以据此拒绝过期持有者的写入;
+     * 获取失败或锁不支持 fencing token 时 token 为 null
+     * @param <T>      类型
+     * @param function 执行的操作,参数为获取结果与 fencing token
+     * @return executable Mono
+     */
+    default <T> Mono<T> tryLockFenced(@NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return tryLock(lockResult -> function.apply(lockResult, null));
+    }
+
+    /**
+     * 尝试获取锁一次,获取成功时同时得到单调递增的 fencing token
+     * @param <T>      类型
+     * @param function 执行的操作,参数为获取结果与 fencing token
+     * @return executable Flux
+     */
+    default <T> Flux<T> tryLockManyFenced(@NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return tryLockMany(lockResult -> function.apply(lockResult, null));
+    }
+
+    /**
+     * 尝试在给定的持续时间内获取锁,获取成功时同时得到单调递增的 fencing token
+     * @param <T>      类型
+     * @param duration 超时时间
+     * @param function 执行的操作,参数为获取结果与 fencing token
+     * @return executable Mono
+     */
+    default <T> Mono<T> lockFenced(@NotNull Duration duration,
+                                   @NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return lock(duration, lockResult -> function.apply(lockResult, null));
+    }
+
+    /**
+     * 尝试在给定的持续时间内获取锁,获取成功时同时得到单调递增的 fencing token
+     * @param <T>      类型
+     * @param duration 超时时间
+     * @param function 执行的操作,参数为获取结果与 fencing token
+     * @return executable Flux
+     */
+    default <T> Flux<T> lockManyFenced(@NotNull Duration duration,
+                                       @NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return lockMany(duration, lockResult -> function.apply(lockResult, null));
+    }
 }
@@ -0,0 +1,27 @@
+package com.g7.framework.redis.reactive.lock;
+
+import java.time.Duration;
+
+/**
+ * 获取锁失败后的退避策略
+ * 每次重试前根据重试次数、持有者剩余过期时间和本地观察到的平均持有时间计算等待时间,
+ * 支持释放通知时等待会被通知提前唤醒。实现需要线程安全,同一个实例会被多个锁共享。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface ReactiveLockBackoff {
+
+    /**
+     * 未知的剩余过期时间或平均持有时间
+     */
+    long UNKNOWN = -1;
+
+    /**
+     * 计算下一次重试前的等待时间
+     * @param attempt         重试次数,从 0 开始
+     * @param remainingTtl    最近一次获取失败时持有者的剩余过期时间(毫秒),未知时为 {@link #UNKNOWN}
+     * @param averageHoldTime 本地观察到的平均持有时间(毫秒),未知时为 {@link #UNKNOWN}
+     * @return 等待时间
+     */
+    Duration backoff(long attempt, long remainingTtl, long averageHoldTime);
+}
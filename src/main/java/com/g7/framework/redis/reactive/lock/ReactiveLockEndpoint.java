@@ -0,0 +1,51 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 锁注册表 actuator endpoint,列出本实例持有时间最长和竞争最多的锁
+ * 数据只来自进程内的注册表与计数器,不扫描 redis,可以在生产环境中随时查询。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+@Endpoint(id = "reactivelocks")
+public class ReactiveLockEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private final ReactiveLockRegistry reactiveLockRegistry;
+
+    public ReactiveLockEndpoint(ReactiveLockRegistry reactiveLockRegistry) {
+        Assert.notNull(reactiveLockRegistry, "ReactiveLockRegistry cannot be null");
+        this.reactiveLockRegistry = reactiveLockRegistry;
+    }
+
+    /**
+     * 锁注册表状态,注册表不是 {@link AbstractAutoCleanupReactiveLockRegistry} 时持有与竞争列表为空
+     * @param limit 持有与竞争列表各自最多返回的数量,默认 20
+     * @return 状态
+     */
+    @ReadOperation
+    public Map<String, Object> locks(@Nullable Integer limit) {
+        int top = limit == null || limit <= 0 ? DEFAULT_LIMIT : limit;
+        Map<String, Object> locks = new LinkedHashMap<>(8);
+        locks.put("instance", AbstractReactiveLock.INSTANCE);
+        if (!(this.reactiveLockRegistry instanceof AbstractAutoCleanupReactiveLockRegistry)) {
+            locks.put("held", Collections.emptyList());
+            locks.put("contended", Collections.emptyList());
+            return locks;
+        }
+        AbstractAutoCleanupReactiveLockRegistry registry =
+                (AbstractAutoCleanupReactiveLockRegistry) this.reactiveLockRegistry;
+        locks.put("registered", registry.registeredLocks());
+        locks.put("held", registry.heldLocks(top));
+        locks.put("contended", registry.contendedLocks(top));
+        return locks;
+    }
+}
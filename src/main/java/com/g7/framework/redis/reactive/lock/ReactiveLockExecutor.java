@@ -1,5 +1,6 @@
 package com.g7.framework.redis.reactive.lock;
 
+import org.jetbrains.annotations.Nullable;
 import reactor.core.publisher.Mono;
 
 /**
@@ -32,4 +33,45 @@ public interface ReactiveLockExecutor {
      * @return mono
      */
     Mono<Boolean> release();
+
+    /**
+     * 等待锁释放通知,不支持通知时永不完成,由轮询兜底
+     * @return mono
+     */
+    default Mono<Void> awaitRelease() {
+        return Mono.never();
+    }
+
+    /**
+     * 等待其他节点获取锁失败的通知,用于提前释放保留的租约,不支持通知时永不完成
+     * @return mono
+     */
+    default Mono<Void> awaitWanted() {
+        return Mono.never();
+    }
+
+    /**
+     * 最近一次获取锁得到的 fencing token,不支持时返回 null,最近一次获取不是通过 fencing API 时返回 0
+     * @return fencing token
+     */
+    @Nullable
+    default Long fencingToken() {
+        return null;
+    }
+
+    /**
+     * 最近一次获取锁失败时持有者的剩余过期时间(毫秒),用于计算退避时间,不支持时返回 {@link ReactiveLockBackoff#UNKNOWN}
+     * @return 剩余过期时间
+     */
+    default long remainingTtl() {
+        return ReactiveLockBackoff.UNKNOWN;
+    }
+
+    /**
+     * 锁的租约时间(毫秒),即获取成功后 redis 上的过期时间,开启看门狗时会被续期;不支持时返回 {@link ReactiveLockBackoff#UNKNOWN}
+     * @return 租约时间
+     */
+    default long leaseTime() {
+        return ReactiveLockBackoff.UNKNOWN;
+    }
 }
@@ -0,0 +1,113 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 注册表返回的锁句柄
+ * 只记录注册表与锁KEY,不持有锁状态;每次操作订阅时从注册表取得并登记锁对象,结束时注销,
+ * 登记期间锁对象不会被驱逐。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+final class ReactiveLockHandle implements ReactiveLock {
+
+    private final AbstractAutoCleanupReactiveLockRegistry registry;
+    private final String lockKey;
+
+    ReactiveLockHandle(AbstractAutoCleanupReactiveLockRegistry registry, String lockKey) {
+        this.registry = registry;
+        this.lockKey = lockKey;
+    }
+
+    @Override
+    public <T> Mono<T> tryLock(@NotNull Function<Boolean, Mono<T>> function) {
+        return pinned(lock -> lock.tryLock(function));
+    }
+
+    @Override
+    public <T> Flux<T> tryLockMany(@NotNull Function<Boolean, Flux<T>> function) {
+        return pinnedMany(lock -> lock.tryLockMany(function));
+    }
+
+    @Override
+    public <T> Mono<T> lock(@NotNull Duration duration, @NotNull Function<Boolean, Mono<T>> function) {
+        return pinned(lock -> lock.lock(duration, function));
+    }
+
+    @Override
+    public <T> Flux<T> lockMany(@NotNull Duration duration, @NotNull Function<Boolean, Flux<T>> function) {
+        return pinnedMany(lock -> lock.lockMany(duration, function));
+    }
+
+    @Override
+    public <T> Mono<T> lock(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                            @NotNull Function<Boolean, Mono<T>> function) {
+        return pinned(lock -> lock.lock(duration, backoff, function));
+    }
+
+    @Override
+    public <T> Flux<T> lockMany(@NotNull Duration duration, @NotNull ReactiveLockBackoff backoff,
+                                @NotNull Function<Boolean, Flux<T>> function) {
+        return pinnedMany(lock -> lock.lockMany(duration, backoff, function));
+    }
+
+    @Override
+    public <T> Mono<T> tryLockFenced(@NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return pinned(lock -> lock.tryLockFenced(function));
+    }
+
+    @Override
+    public <T> Flux<T> tryLockManyFenced(@NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return pinnedMany(lock -> lock.tryLockManyFenced(function));
+    }
+
+    @Override
+    public <T> Mono<T> lockFenced(@NotNull Duration duration,
+                                  @NotNull BiFunction<Boolean, Long, Mono<T>> function) {
+        return pinned(lock -> lock.lockFenced(duration, function));
+    }
+
+    @Override
+    public <T> Flux<T> lockManyFenced(@NotNull Duration duration,
+                                      @NotNull BiFunction<Boolean, Long, Flux<T>> function) {
+        return pinnedMany(lock -> lock.lockManyFenced(duration, function));
+    }
+
+    private <T> Mono<T> pinned(Function<StatefulReactiveLock, Mono<T>> operation) {
+        return Mono.using(() -> this.registry.pin(this.lockKey), operation,
+                lock -> this.registry.unpin(this.lockKey, lock));
+    }
+
+    private <T> Flux<T> pinnedMany(Function<StatefulReactiveLock, Flux<T>> operation) {
+        return Flux.using(() -> this.registry.pin(this.lockKey), operation,
+                lock -> this.registry.unpin(this.lockKey, lock));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReactiveLockHandle)) {
+            return false;
+        }
+        ReactiveLockHandle that = (ReactiveLockHandle) o;
+        return this.registry == that.registry && this.lockKey.equals(that.lockKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(this.registry) + this.lockKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ReactiveLockHandle [lockKey=" + this.lockKey + "]";
+    }
+}
@@ -0,0 +1,127 @@
+package com.g7.framework.redis.reactive.lock;
+
+/**
+ * 锁在本实例内的状态快照,只来自进程内的状态,不访问 redis
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class ReactiveLockInfo {
+
+    private final String lockKey;
+    private final String type;
+    private final String instance;
+    private final long heldSince;
+    private final long leaseTime;
+    private final int waiters;
+    private final long acquisitions;
+    private final long contentions;
+    private final boolean lingering;
+
+    ReactiveLockInfo(String lockKey, String type, String instance, long heldSince, long leaseTime, int waiters,
+                     long acquisitions, long contentions, boolean lingering) {
+        this.lockKey = lockKey;
+        this.type = type;
+        this.instance = instance;
+        this.heldSince = heldSince;
+        this.leaseTime = leaseTime;
+        this.waiters = waiters;
+        this.acquisitions = acquisitions;
+        this.contentions = contentions;
+        this.lingering = lingering;
+    }
+
+    /**
+     * 锁KEY,多键锁为KEY列表
+     * @return 锁KEY
+     */
+    public String getLockKey() {
+        return lockKey;
+    }
+
+    /**
+     * 锁类型,例如 lock、reentrant、fair、read、write、multi
+     * @return 锁类型
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * 持有者实例名(pid@hostname)
+     * @return 实例名
+     */
+    public String getInstance() {
+        return instance;
+    }
+
+    /**
+     * 本地持有者获取成功的时间(毫秒),租约保留中时为开始保留的时间,未被持有时为 0
+     * @return long
+     */
+    public long getHeldSince() {
+        return heldSince;
+    }
+
+    /**
+     * 已持有时间(毫秒),未被持有时为 0
+     * @return long
+     */
+    public long getHeldTime() {
+        return heldSince == 0 ? 0 : Math.max(0, System.currentTimeMillis() - heldSince);
+    }
+
+    /**
+     * 租约时间(毫秒),不支持时为 -1
+     * @return long
+     */
+    public long getLeaseTime() {
+        return leaseTime;
+    }
+
+    /**
+     * 本地排队的等待者数量
+     * @return int
+     */
+    public int getWaiters() {
+        return waiters;
+    }
+
+    /**
+     * 获取成功次数
+     * @return long
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * 获取时遇到竞争的次数
+     * @return long
+     */
+    public long getContentions() {
+        return contentions;
+    }
+
+    /**
+     * 没有本地持有者,租约保留中并仍占有 redis 上的锁
+     * @return boolean
+     */
+    public boolean isLingering() {
+        return lingering;
+    }
+
+    @Override
+    public String toString() {
+        return "ReactiveLockInfo{" +
+                "lockKey='" + lockKey + '\'' +
+                ", type='" + type + '\'' +
+                ", instance='" + instance + '\'' +
+                ", heldSince=" + heldSince +
+                ", leaseTime=" + leaseTime +
+                ", waiters=" + waiters +
+                ", acquisitions=" + acquisitions +
+                ", contentions=" + contentions +
+                ", lingering=" + lingering +
+                '}';
+    }
+}
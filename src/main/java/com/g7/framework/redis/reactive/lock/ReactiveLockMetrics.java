@@ -0,0 +1,66 @@
+package com.g7.framework.redis.reactive.lock;
+
+/**
+ * 锁指标回调
+ * 锁在获取、等待、重试、持有、释放时回调,分组由 {@link #group(String)} 在创建锁时计算一次,
+ * 实现类应保证分组数量有限。默认实现不记录任何指标。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface ReactiveLockMetrics {
+
+    /**
+     * 不记录指标
+     */
+    ReactiveLockMetrics NONE = new ReactiveLockMetrics() {
+    };
+
+    /**
+     * 锁KEY对应的指标分组
+     * @param lockKey 锁KEY(不含注册表前缀)
+     * @return 分组
+     */
+    default String group(String lockKey) {
+        return "";
+    }
+
+    /**
+     * 获取锁结束
+     * @param group        分组
+     * @param acquired     是否获取到锁
+     * @param timed        是否为在给定持续时间内等待的获取,等待后仍未获取到即为超时
+     * @param latencyNanos 获取耗时(纳秒)
+     */
+    default void acquired(String group, boolean acquired, boolean timed, long latencyNanos) {
+    }
+
+    /**
+     * 获取到锁之前的等待时间(本地排队与重试间隔)
+     * @param group     分组
+     * @param waitNanos 等待时间(纳秒)
+     */
+    default void waited(String group, long waitNanos) {
+    }
+
+    /**
+     * 获取锁失败后重试一次
+     * @param group 分组
+     */
+    default void retried(String group) {
+    }
+
+    /**
+     * 释放锁
+     * @param group     分组
+     * @param holdNanos 持有时间(纳秒)
+     */
+    default void held(String group, long holdNanos) {
+    }
+
+    /**
+     * 释放时锁已在 redis 上过期(被保护数据的完整性可能已被破坏)
+     * @param group 分组
+     */
+    default void expiredBeforeRelease(String group) {
+    }
+}
@@ -1,5 +1,9 @@
 package com.g7.framework.redis.reactive.lock;
 
+import reactor.core.publisher.Flux;
+
+import java.util.function.BiFunction;
+
 /**
  * Reactive lock 注册表
  * @author dreamyao
@@ -26,4 +30,17 @@ public interface ReactiveLockRegistry {
      * @return reactive lock
      */
     ReactiveLock obtain(String lockKey);
+
+    /**
+     * 批量尝试获取多个相互独立的锁,每个锁只尝试一次,与逐个调用 {@code obtain(lockKey).tryLockMany(...)} 语义相同;
+     * 支持批量的注册表按批次一次往返获取并一起释放;集群模式下只有同一 slot 的KEY能合并,批量的KEY应使用相同的 hash tag
+     * @param <T>      类型
+     * @param lockKeys 锁KEY
+     * @param function 执行的操作,参数为锁KEY与获取结果
+     * @return executable Flux,各KEY的结果按完成顺序发出
+     */
+    default <T> Flux<T> tryLockEach(Flux<String> lockKeys, BiFunction<String, Boolean, Flux<T>> function) {
+        return lockKeys.flatMap(lockKey -> obtain(lockKey)
+                .tryLockMany(lockResult -> function.apply(lockKey, lockResult)));
+    }
 }
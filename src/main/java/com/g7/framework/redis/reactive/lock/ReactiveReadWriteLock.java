@@ -0,0 +1,22 @@
+package com.g7.framework.redis.reactive.lock;
+
+/**
+ * Reactive 读写锁
+ * 多个读者可以同时持有读锁,写锁与读锁、写锁之间互斥。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface ReactiveReadWriteLock {
+
+    /**
+     * 读锁
+     * @return reactive lock
+     */
+    ReactiveLock readLock();
+
+    /**
+     * 写锁
+     * @return reactive lock
+     */
+    ReactiveLock writeLock();
+}
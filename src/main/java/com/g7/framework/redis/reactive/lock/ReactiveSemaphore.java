@@ -0,0 +1,61 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Reactive 信号量
+ * 限制同一资源的并发数而不是互斥,每次获取的许可作为一个租约,到期未续期时自动归还。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface ReactiveSemaphore {
+
+    /**
+     * 许可总数
+     * @return int
+     */
+    int getPermits();
+
+    /**
+     * 尝试获取许可一次
+     * @param <T>      类型
+     * @param permits  许可数
+     * @param function 执行的操作
+     * @return executable Mono
+     */
+    <T> Mono<T> tryAcquire(int permits, @NotNull Function<Boolean, Mono<T>> function);
+
+    /**
+     * 尝试获取许可一次
+     * @param <T>      类型
+     * @param permits  许可数
+     * @param function 执行的操作
+     * @return executable Flux
+     */
+    <T> Flux<T> tryAcquireMany(int permits, @NotNull Function<Boolean, Flux<T>> function);
+
+    /**
+     * 尝试在给定的持续时间内获取许可
+     * @param <T>      类型
+     * @param permits  许可数
+     * @param duration 超时时间
+     * @param function 执行的操作
+     * @return executable Mono
+     */
+    <T> Mono<T> acquire(int permits, @NotNull Duration duration, @NotNull Function<Boolean, Mono<T>> function);
+
+    /**
+     * 尝试在给定的持续时间内获取许可
+     * @param <T>      类型
+     * @param permits  许可数
+     * @param duration 超时时间
+     * @param function 执行的操作
+     * @return executable Flux
+     */
+    <T> Flux<T> acquireMany(int permits, @NotNull Duration duration, @NotNull Function<Boolean, Flux<T>> function);
+}
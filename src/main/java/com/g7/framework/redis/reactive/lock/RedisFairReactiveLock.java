@@ -0,0 +1,273 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * redis 公平锁
+ * 等待者在 redis 上按请求顺序排队(list 记录顺序,zset 记录等待截止时间),只有队首的等待者才能获取锁,
+ * 各个节点的获取顺序与请求顺序一致。等待者每次重试都会刷新自己的截止时间,超时未刷新的等待者(例如进程宕机)
+ * 在下一次获取时从队首清理掉;放弃等待时主动移出队列。
+ * 同一进程内的等待者不经过本地 FIFO 队列,否则排在本地队列中的等待者进不了 redis 队列,会被其他实例后来的请求插队。
+ * 每次获取使用独立的锁值,通过 Reactor {@link Context} 传递。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisFairReactiveLock extends AbstractReactiveLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisFairReactiveLock.class);
+
+    private static final String WAITER_CONTEXT_KEY = RedisFairReactiveLock.class.getName() + ".waiter";
+    private static final String QUEUE_CONTEXT_KEY = RedisFairReactiveLock.class.getName() + ".queue";
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final Duration DEFAULT_WAITER_TIMEOUT = Duration.ofSeconds(5);
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong WAITER_SEQUENCE = new AtomicLong();
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisFairReactiveLockExecutor reactiveLockExecutor;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final RedisLockWatchdog watchdog;
+    private volatile String holder;
+
+    /**
+     * Instantiates a new Redis fair reactive lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY,集群模式下等待队列KEY与锁KEY通过 hash tag 落在同一个 slot
+     * @param expireAfter                 锁过期时间
+     * @param waiterTimeout               等待者超时时间,超过该时间未重试的等待者会被移出队列,应大于重试间隔
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisFairReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                 String lockKey,
+                                 Duration expireAfter,
+                                 Duration waiterTimeout,
+                                 RedisLockReleaseNotifier releaseNotifier,
+                                 Duration retryInterval,
+                                 RedisLockWatchdog watchdog) {
+        super(retryInterval);
+        Assert.notNull(reactiveStringRedisTemplate,
+                "ReactiveStringRedisTemplate cannot be null");
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.reactiveLockExecutor = new RedisFairReactiveLockExecutor(lockKey,
+                expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter,
+                waiterTimeout == null ? DEFAULT_WAITER_TIMEOUT : waiterTimeout);
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    @Override
+    public boolean isHeldLocally() {
+        return this.holder != null;
+    }
+
+    @Override
+    protected boolean isLocalExclusive() {
+        return false;
+    }
+
+    @Override
+    protected <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime, Function<Boolean, Flux<T>> function) {
+        return super.executeFlux(lockExpireTime, function)
+                .contextWrite(context -> withWaiter(context, lockExpireTime));
+    }
+
+    @Override
+    protected <T> Mono<T> executeMono(@Nullable Duration lockExpireTime, Function<Boolean, Mono<T>> function) {
+        return super.executeMono(lockExpireTime, function)
+                .contextWrite(context -> withWaiter(context, lockExpireTime));
+    }
+
+    @Override
+    protected Mono<Boolean> acquire(@Nullable Duration lockExpireTime) {
+        return Mono.deferContextual(contextView -> {
+            String waiter = contextView.get(WAITER_CONTEXT_KEY);
+            return super.acquire(lockExpireTime)
+                    .flatMap(result -> {
+                        if (result) {
+                            this.holder = waiter;
+                            if (this.watchdog != null) {
+                                this.watchdog.watch(this.reactiveLockExecutor.lockKey, waiter,
+                                        this.reactiveLockExecutor.expireAfter);
+                            }
+                            return Mono.just(true);
+                        }
+                        if (!contextView.<Boolean>get(QUEUE_CONTEXT_KEY)) {
+                            return Mono.just(false);
+                        }
+                        // 等待超时,主动移出 redis 等待队列,避免后面的等待者等到超时清理
+                        return this.reactiveLockExecutor.leave(waiter)
+                                .onErrorResume(throwable -> Mono.just(false))
+                                .thenReturn(false);
+                    });
+        });
+    }
+
+    @Override
+    protected Mono<Boolean> release(boolean lockResult) {
+        if (!lockResult) {
+            return Mono.just(false);
+        }
+        return Mono.deferContextual(contextView -> {
+            String waiter = contextView.get(WAITER_CONTEXT_KEY);
+            if (this.watchdog != null) {
+                this.watchdog.unwatch(this.reactiveLockExecutor.lockKey, waiter);
+            }
+            if (waiter.equals(this.holder)) {
+                this.holder = null;
+            }
+            return super.release(true);
+        });
+    }
+
+    @Override
+    public String ownershipKey() {
+        return this.reactiveLockExecutor.lockKey;
+    }
+
+    @Override
+    public String ownershipValue() {
+        return this.holder;
+    }
+
+    private static Context withWaiter(Context context, @Nullable Duration lockExpireTime) {
+        return context.put(WAITER_CONTEXT_KEY, NODE_ID + ':' + WAITER_SEQUENCE.incrementAndGet())
+                .put(QUEUE_CONTEXT_KEY, lockExpireTime != null && !lockExpireTime.isNegative());
+    }
+
+    private class RedisFairReactiveLockExecutor implements ReactiveLockExecutor {
+
+        private final String lockKey;
+        private final List<String> keys;
+        private final long expireAfter;
+        private final String expireAfterArgument;
+        private final String waiterTimeoutArgument;
+        private volatile long lockedAt;
+
+        public RedisFairReactiveLockExecutor(String lockKey, Duration expireAfter, Duration waiterTimeout) {
+            Assert.notNull(lockKey, "'lockKey' cannot be null");
+            this.lockKey = lockKey;
+            this.keys = LettuceLists.newList(lockKey, lockKey + ":queue", lockKey + ":timeout");
+            this.expireAfter = expireAfter.toMillis();
+            this.expireAfterArgument = String.valueOf(this.expireAfter);
+            this.waiterTimeoutArgument = String.valueOf(waiterTimeout.toMillis());
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            String current = RedisFairReactiveLock.this.holder;
+            if (current == null) {
+                return Mono.just(false);
+            }
+            return RedisFairReactiveLock.this.reactiveStringRedisTemplate.opsForValue()
+                    .get(this.lockKey)
+                    .map(current::equals)
+                    .defaultIfEmpty(false);
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            return Mono.deferContextual(contextView -> Mono
+                            .from(RedisFairReactiveLock.this.reactiveStringRedisTemplate.execute(
+                                    RedisReactiveLockScripts.OBTAIN_FAIR_LOCK,
+                                    this.keys,
+                                    LettuceLists.newList(contextView.<String>get(WAITER_CONTEXT_KEY),
+                                            this.expireAfterArgument, this.waiterTimeoutArgument,
+                                            contextView.<Boolean>get(QUEUE_CONTEXT_KEY) ? "1" : "0"))
+                            ))
+                    .map(success -> {
+                        boolean result = Boolean.TRUE.equals(success);
+                        if (result) {
+                            this.lockedAt = System.currentTimeMillis();
+                        }
+                        return result;
+                    })
+                    .switchIfEmpty(Mono.just(false));
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            return Mono.deferContextual(contextView -> execute(contextView.get(WAITER_CONTEXT_KEY)))
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKey);
+                        }
+                    });
+        }
+
+        /**
+         * 放弃等待,移出等待队列
+         * @param waiter 等待者锁值
+         * @return 是否持有锁(正常情况下为 false)
+         */
+        private Mono<Boolean> leave(String waiter) {
+            return execute(waiter);
+        }
+
+        private Mono<Boolean> execute(String waiter) {
+            String channel = RedisFairReactiveLock.this.releaseNotifier == null ? "" :
+                    RedisFairReactiveLock.this.releaseNotifier.channel(this.lockKey);
+            return Mono
+                    .from(RedisFairReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLockScripts.RELEASE_FAIR_LOCK,
+                            this.keys,
+                            LettuceLists.newList(waiter, channel))
+                    )
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false);
+        }
+
+        @Override
+        public Mono<Void> awaitRelease() {
+            if (RedisFairReactiveLock.this.releaseNotifier == null) {
+                return Mono.never();
+            }
+            return RedisFairReactiveLock.this.releaseNotifier.awaitRelease(this.lockKey);
+        }
+
+        @Override
+        public String toString() {
+            return "RedisFairReactiveLockExecutor [lockKey=" + this.lockKey
+                    + ",lockedAt=" + this.lockedAt
+                    + ", holder=" + RedisFairReactiveLock.this.holder
+                    + "]";
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.g7.framework.redis.reactive.lock;
+
+/**
+ * 锁相关 redis KEY 与 channel 模式工具
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class RedisLockKeys {
+
+    private RedisLockKeys() {
+    }
+
+    /**
+     * 生成与给定KEY落在同一个集群 slot 的关联KEY
+     * redis 取第一个 '{' 与其后第一个 '}' 之间的内容作为 hash tag,内容为空或不存在时对整个KEY计算 slot。
+     * KEY 已包含有效 hash tag 时直接追加后缀(后缀不影响 tag);否则把整个KEY作为关联KEY的 hash tag,
+     * 此时KEY不能包含 '}'(例如 a{}b),否则 tag 会在KEY内部截断,无法构造与原KEY同 slot 的关联KEY
+     * @param key    原KEY
+     * @param suffix 后缀
+     * @return 关联KEY
+     * @throws IllegalArgumentException KEY 没有有效 hash tag 且包含 '}'
+     */
+    public static String sameSlot(String key, String suffix) {
+        int open = key.indexOf('{');
+        if (open >= 0) {
+            int close = key.indexOf('}', open + 1);
+            if (close > open + 1) {
+                return key + suffix;
+            }
+        }
+        if (key.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("key '" + key + "' has no valid hash tag and contains '}'," +
+                    " its companion keys can not hash to the same cluster slot");
+        }
+        return "{" + key + "}" + suffix;
+    }
+
+    /**
+     * 转义 glob 模式中的特殊字符(* ? [ ] \),用于以固定前缀构造 PSUBSCRIBE 的模式
+     * @param prefix 前缀
+     * @return 转义后的前缀
+     */
+    public static String escapePattern(String prefix) {
+        StringBuilder builder = new StringBuilder(prefix.length() + 4);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 锁释放通知
+ * 锁释放时向 per-key channel 发布消息,等待者收到消息后立即重试获取锁,
+ * 整个注册表只使用一个 pattern 订阅连接。等待者每次获取失败都向 wanted channel 发布消息(与等待者自己是否
+ * 开启租约保留无关),保留租约的节点收到后立即释放租约。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisLockReleaseNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisLockReleaseNotifier.class);
+
+    private static final String CHANNEL_PREFIX = "__reactive_lock_release__:";
+    private static final String WANTED_CHANNEL_PREFIX = "__reactive_lock_wanted__:";
+    private final ConcurrentMap<String, Sinks.Empty<Void>> waiters = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, Sinks.Empty<Void>> lingerers = new ConcurrentHashMap<>(16);
+    private final ReactiveRedisMessageListenerContainer listenerContainer;
+    private final String channelPattern;
+    private final String wantedChannelPattern;
+    private volatile Disposable subscription;
+
+    /**
+     * 实例化一个新的锁释放通知
+     * @param reactiveRedisConnectionFactory redis connection factory
+     * @param keyPrefix                      the key prefix
+     */
+    public RedisLockReleaseNotifier(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                    String keyPrefix) {
+        Assert.notNull(reactiveRedisConnectionFactory, "ReactiveRedisConnectionFactory cannot be null");
+        Assert.hasText(keyPrefix, "'keyPrefix' must not be empty");
+        this.listenerContainer = new ReactiveRedisMessageListenerContainer(reactiveRedisConnectionFactory);
+        // 前缀中的 glob 字符按字面匹配,避免订阅到其他注册表的 channel
+        String escapedPrefix = RedisLockKeys.escapePattern(keyPrefix);
+        this.channelPattern = CHANNEL_PREFIX + escapedPrefix + ":*";
+        this.wantedChannelPattern = WANTED_CHANNEL_PREFIX + escapedPrefix + ":*";
+    }
+
+    /**
+     * 锁对应的释放通知 channel
+     * @param lockKey 锁KEY
+     * @return channel
+     */
+    public String channel(String lockKey) {
+        return CHANNEL_PREFIX + lockKey;
+    }
+
+    /**
+     * 等待者获取锁失败时发布的 channel
+     * @param lockKey 锁KEY
+     * @return channel
+     */
+    public String wantedChannel(String lockKey) {
+        return WANTED_CHANNEL_PREFIX + lockKey;
+    }
+
+    /**
+     * 等待锁释放通知,收到通知后完成
+     * @param lockKey 锁KEY
+     * @return mono
+     */
+    public Mono<Void> awaitRelease(String lockKey) {
+        return await(this.waiters, lockKey);
+    }
+
+    /**
+     * 等待其他节点获取锁失败的通知,收到通知后完成
+     * @param lockKey 锁KEY
+     * @return mono
+     */
+    public Mono<Void> awaitWanted(String lockKey) {
+        return await(this.lingerers, lockKey);
+    }
+
+    private static Mono<Void> await(ConcurrentMap<String, Sinks.Empty<Void>> sinks, String lockKey) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> sink = sinks.computeIfAbsent(lockKey, key -> Sinks.empty());
+            return sink.asMono()
+                    .doFinally(signal -> {
+                        if (sink.currentSubscriberCount() == 0) {
+                            sinks.remove(lockKey, sink);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 开始订阅锁释放通知
+     */
+    public void start() {
+        if (this.subscription != null) {
+            return;
+        }
+        this.subscription = this.listenerContainer.receive(new PatternTopic(this.channelPattern),
+                        new PatternTopic(this.wantedChannelPattern))
+                .doOnSubscribe(s -> {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("subscribe lock release notification,channel pattern:{}", this.channelPattern);
+                    }
+                })
+                .doOnError(throwable -> logger.warn("lock release notification subscription failed,waiters " +
+                        "fall back to polling until resubscribed: " + throwable.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(message -> this.signal(message.getChannel().startsWith(WANTED_CHANNEL_PREFIX) ?
+                        this.lingerers : this.waiters, message.getMessage()));
+    }
+
+    /**
+     * 停止订阅锁释放通知
+     */
+    public void stop() {
+        Disposable current = this.subscription;
+        if (current != null) {
+            current.dispose();
+            this.subscription = null;
+        }
+        this.listenerContainer.destroy();
+    }
+
+    private void signal(ConcurrentMap<String, Sinks.Empty<Void>> sinks, String lockKey) {
+        Sinks.Empty<Void> sink = sinks.remove(lockKey);
+        if (sink != null) {
+            sink.tryEmitEmpty();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 锁续期看门狗
+ * 临界区订阅存活期间持续续期锁的过期时间,整个注册表只有一个定时任务,而不是每个锁一个定时器。
+ * 每次触发时用 {@link RedisReactiveLockScripts#RENEW_EACH} 批量续期,每批一次往返(集群模式下按 slot 分组),
+ * 不支持批量续期的脚本逐个续期。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisLockWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisLockWatchdog.class);
+
+    private static final int MAX_IN_FLIGHT_RENEWALS = 256;
+    private static final int RENEW_BATCH_SIZE = 256;
+    private final Scheduler scheduler = Schedulers.newSingle("redis-lock-watchdog", true);
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>(16);
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final Duration renewInterval;
+    private final boolean cluster;
+    private volatile Disposable subscription;
+
+    /**
+     * 实例化一个新的锁续期看门狗
+     * @param reactiveStringRedisTemplate redis Template
+     * @param renewInterval               续期间隔,应小于锁过期时间
+     */
+    public RedisLockWatchdog(ReactiveStringRedisTemplate reactiveStringRedisTemplate, Duration renewInterval) {
+        Assert.notNull(reactiveStringRedisTemplate, "ReactiveStringRedisTemplate cannot be null");
+        Assert.isTrue(renewInterval != null && !renewInterval.isNegative() && !renewInterval.isZero(),
+                "'renewInterval' must be positive");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.renewInterval = renewInterval;
+        ReactiveRedisConnectionFactory connectionFactory = reactiveStringRedisTemplate.getConnectionFactory();
+        this.cluster = connectionFactory instanceof LettuceConnectionFactory &&
+                ((LettuceConnectionFactory) connectionFactory).isClusterAware();
+    }
+
+    /**
+     * 开始续期锁
+     * @param lockKey     锁KEY
+     * @param lockId      锁值
+     * @param expireAfter 每次续期的过期时间(毫秒)
+     */
+    public void watch(String lockKey, String lockId, long expireAfter) {
+        watch(lockKey, lockId, expireAfter, RedisReactiveLockScripts.RENEW_LOCK);
+    }
+
+    /**
+     * 开始续期锁
+     * @param lockKey     锁KEY
+     * @param lockId      锁值
+     * @param expireAfter 每次续期的过期时间(毫秒)
+     * @param renewScript 续期脚本 KEYS[1] 锁KEY, ARGV[1] 锁值, ARGV[2] 过期时间(毫秒);
+     *                    读锁续期脚本的 KEYS[2] 为读者过期时间 zset
+     */
+    public void watch(String lockKey, String lockId, long expireAfter, RedisScript<Boolean> renewScript) {
+        this.leases.put(leaseKey(lockKey, lockId),
+                new Lease(lockKey, lockId, String.valueOf(expireAfter), renewScript));
+    }
+
+    /**
+     * 停止续期锁
+     * @param lockKey 锁KEY
+     * @param lockId  锁值
+     */
+    public void unwatch(String lockKey, String lockId) {
+        this.leases.remove(leaseKey(lockKey, lockId));
+    }
+
+    /**
+     * 是否仍在续期锁,续期时发现锁已丢失的租约不再续期
+     * @param lockKey 锁KEY
+     * @param lockId  锁值
+     * @return boolean
+     */
+    boolean isWatching(String lockKey, String lockId) {
+        return this.leases.containsKey(leaseKey(lockKey, lockId));
+    }
+
+    /**
+     * 开始续期任务
+     */
+    public void start() {
+        if (this.subscription != null) {
+            return;
+        }
+        this.subscription = Flux.interval(this.renewInterval, this.scheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> renewAll(), 1)
+                .subscribe();
+    }
+
+    /**
+     * 停止续期任务
+     */
+    public void stop() {
+        Disposable current = this.subscription;
+        if (current != null) {
+            current.dispose();
+            this.subscription = null;
+        }
+        if (!this.scheduler.isDisposed()) {
+            this.scheduler.dispose();
+        }
+    }
+
+    private Mono<Void> renewAll() {
+        if (this.leases.isEmpty()) {
+            return Mono.empty();
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("renew held locks,lock count:{}", this.leases.size());
+        }
+        Map<Integer, List<Map.Entry<String, Lease>>> batches = new LinkedHashMap<>(16);
+        List<Map.Entry<String, Lease>> singles = new ArrayList<>();
+        for (Map.Entry<String, Lease> entry : this.leases.entrySet()) {
+            if (entry.getValue().kind == null) {
+                singles.add(entry);
+            } else {
+                int slot = this.cluster ? ClusterSlotHashUtil.calculateSlot(entry.getValue().lockKey) : 0;
+                batches.computeIfAbsent(slot, key -> new ArrayList<>()).add(entry);
+            }
+        }
+        List<List<Map.Entry<String, Lease>>> chunks = new ArrayList<>();
+        for (List<Map.Entry<String, Lease>> batch : batches.values()) {
+            for (int i = 0; i < batch.size(); i += RENEW_BATCH_SIZE) {
+                chunks.add(batch.subList(i, Math.min(batch.size(), i + RENEW_BATCH_SIZE)));
+            }
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(this::renewEach, MAX_IN_FLIGHT_RENEWALS)
+                .thenMany(Flux.fromIterable(singles).flatMap(this::renew, MAX_IN_FLIGHT_RENEWALS))
+                .then();
+    }
+
+    private static String leaseKey(String lockKey, String lockId) {
+        return lockKey + '#' + lockId;
+    }
+
+    private Mono<Void> renewEach(List<Map.Entry<String, Lease>> batch) {
+        List<String> keys = new ArrayList<>(batch.size());
+        List<String> arguments = new ArrayList<>(batch.size() * 3);
+        for (Map.Entry<String, Lease> entry : batch) {
+            Lease lease = entry.getValue();
+            keys.addAll(lease.keys);
+            arguments.add(lease.kind);
+            arguments.add(lease.lockId);
+            arguments.add(lease.expireAfter);
+        }
+        return Flux.<Object>from(this.reactiveStringRedisTemplate.execute(RedisReactiveLockScripts.RENEW_EACH, keys,
+                        arguments))
+                .<Object>flatMapIterable(result -> result instanceof List ? (List<?>) result :
+                        Collections.singletonList(result))
+                .collectList()
+                .doOnNext(results -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        boolean renewed = i < results.size() && results.get(i) instanceof Number &&
+                                ((Number) results.get(i)).longValue() == 1;
+                        if (!renewed) {
+                            lost(batch.get(i));
+                        }
+                    }
+                })
+                .onErrorResume(throwable -> {
+                    logger.warn("renew {} locks failed,retry on next tick: {}", batch.size(), throwable.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Boolean> renew(Map.Entry<String, Lease> entry) {
+        Lease lease = entry.getValue();
+        String lockKey = lease.lockKey;
+        return Mono
+                .from(this.reactiveStringRedisTemplate.execute(
+                        lease.renewScript,
+                        lease.keys,
+                        LettuceLists.newList(lease.lockId, lease.expireAfter))
+                )
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .doOnNext(renewed -> {
+                    if (!renewed) {
+                        lost(entry);
+                    }
+                })
+                .onErrorResume(throwable -> {
+                    logger.warn("renew lock({}) failed,retry on next tick: {}", lockKey, throwable.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private void lost(Map.Entry<String, Lease> entry) {
+        if (this.leases.remove(entry.getKey(), entry.getValue())) {
+            logger.warn("Lock({}) was lost before renewal,stop renewing it.", entry.getValue().lockKey);
+        }
+    }
+
+    private static final class Lease {
+
+        private final String lockKey;
+        private final List<String> keys;
+        private final String lockId;
+        private final String expireAfter;
+        private final RedisScript<Boolean> renewScript;
+        @Nullable
+        private final String kind;
+
+        private Lease(String lockKey, String lockId, String expireAfter, RedisScript<Boolean> renewScript) {
+            this.lockKey = lockKey;
+            this.lockId = lockId;
+            this.expireAfter = expireAfter;
+            this.renewScript = renewScript;
+            this.kind = RedisReactiveLockScripts.renewKind(renewScript);
+            this.keys = renewScript == RedisReactiveLockScripts.RENEW_READ_LOCK ?
+                    Arrays.asList(lockKey, RedisLockKeys.sameSlot(lockKey, RedisReactiveLockScripts.READERS_SUFFIX)) :
+                    Collections.singletonList(lockKey);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * redis 多KEY锁
+ * 一次脚本调用原子地获取或释放全部锁KEY,要么全部获取要么一个都不获取,不存在加锁顺序导致的死锁;
+ * 每个锁KEY与 {@link RedisReactiveLock} 使用相同的KEY和值格式,因此与单KEY锁之间同样互斥。
+ * 集群模式下所有锁KEY需要通过 hash tag 落在同一个 slot。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisMultiReactiveLock extends AbstractReactiveLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMultiReactiveLock.class);
+
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisMultiReactiveLockExecutor reactiveLockExecutor;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final RedisLockWatchdog watchdog;
+
+    /**
+     * Instantiates a new Redis multi reactive lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKeys                    锁KEY列表,按固定顺序排列且不重复
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisMultiReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                  List<String> lockKeys,
+                                  Duration expireAfter,
+                                  RedisLockReleaseNotifier releaseNotifier,
+                                  Duration retryInterval,
+                                  RedisLockWatchdog watchdog) {
+        super(retryInterval);
+        Assert.notNull(reactiveStringRedisTemplate,
+                "ReactiveStringRedisTemplate cannot be null");
+        Assert.notEmpty(lockKeys, "'lockKeys' cannot be empty");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.reactiveLockExecutor = new RedisMultiReactiveLockExecutor(lockKeys,
+                expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter);
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    @Override
+    public String ownershipKey() {
+        return this.reactiveLockExecutor.lockKeys.get(0);
+    }
+
+    @Override
+    public String ownershipValue() {
+        return this.reactiveLockExecutor.lockId;
+    }
+
+    private class RedisMultiReactiveLockExecutor implements ReactiveLockExecutor {
+
+        /**
+         * 与排他锁使用相同的锁值格式;每个多KEY锁对象独占一个锁值,重叠的两个多KEY锁不会把对方的锁当作自己的
+         */
+        private final String lockId = RedisReactiveLock.newLockId();
+        private final List<String> lockKeys;
+        private final List<String> processingKeys;
+        private final long expireAfter;
+        private final List<String> lockIdArguments;
+        private final List<String> obtainArguments;
+        private final List<String> releaseArguments;
+        private volatile long lockedAt;
+
+        public RedisMultiReactiveLockExecutor(List<String> lockKeys, Duration expireAfter) {
+            this.lockKeys = Collections.unmodifiableList(new ArrayList<>(lockKeys));
+            this.processingKeys = Collections.singletonList(this.lockKeys.get(0));
+            this.expireAfter = expireAfter.toMillis();
+            // 脚本参数在锁的生命周期内不变,只构造一次
+            this.lockIdArguments = Collections.singletonList(this.lockId);
+            this.obtainArguments = Arrays.asList(this.lockId, String.valueOf(this.expireAfter));
+            this.releaseArguments = Arrays.asList(this.lockId, RedisMultiReactiveLock.this.releaseNotifier == null ?
+                    "" : RedisMultiReactiveLock.this.releaseNotifier.channel(""));
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            return Mono
+                    .from(RedisMultiReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLockScripts.PROCESSING_LOCK,
+                            this.processingKeys,
+                            this.lockIdArguments)
+                    )
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false);
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            return Mono
+                    .from(RedisMultiReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLockScripts.OBTAIN_MULTI_LOCK,
+                            this.lockKeys,
+                            this.obtainArguments)
+                    )
+                    .map(success -> {
+                        boolean result = Boolean.TRUE.equals(success);
+                        if (result) {
+                            this.lockedAt = System.currentTimeMillis();
+                            if (RedisMultiReactiveLock.this.watchdog != null) {
+                                for (String lockKey : this.lockKeys) {
+                                    RedisMultiReactiveLock.this.watchdog.watch(lockKey, this.lockId,
+                                            this.expireAfter);
+                                }
+                            }
+                        }
+                        return result;
+                    })
+                    .switchIfEmpty(Mono.just(false));
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            if (RedisMultiReactiveLock.this.watchdog != null) {
+                for (String lockKey : this.lockKeys) {
+                    RedisMultiReactiveLock.this.watchdog.unwatch(lockKey, this.lockId);
+                }
+            }
+            return Mono
+                    .from(RedisMultiReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLockScripts.RELEASE_MULTI_LOCK,
+                            this.lockKeys,
+                            this.releaseArguments)
+                    )
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false)
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKeys);
+                        }
+                    });
+        }
+
+        @Override
+        public Mono<Void> awaitRelease() {
+            RedisLockReleaseNotifier notifier = RedisMultiReactiveLock.this.releaseNotifier;
+            if (notifier == null) {
+                return Mono.never();
+            }
+            List<Mono<Void>> releases = new ArrayList<>(this.lockKeys.size());
+            for (String lockKey : this.lockKeys) {
+                releases.add(notifier.awaitRelease(lockKey));
+            }
+            return Mono.firstWithSignal(releases);
+        }
+
+        @Override
+        public String toString() {
+            return "RedisMultiReactiveLockExecutor [lockKeys=" + this.lockKeys
+                    + ",lockedAt=" + this.lockedAt
+                    + ", lockId=" + this.lockId
+                    + "]";
+        }
+    }
+}
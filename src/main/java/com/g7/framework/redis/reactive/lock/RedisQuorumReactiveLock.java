@@ -0,0 +1,210 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * redis 多数派锁(Redlock)
+ * 在多个相互独立的 redis 节点上并行获取同一个锁值,在时钟漂移预算内获得多数节点后即视为成功,
+ * 不等待最慢的节点,获取耗时由第 quorum 快(多数节点中最慢)的节点决定;获取失败或超出有效期时在所有节点上释放。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisQuorumReactiveLock extends AbstractReactiveLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisQuorumReactiveLock.class);
+
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final long CLOCK_DRIFT_MILLIS = 2L;
+    private final List<ReactiveStringRedisTemplate> reactiveStringRedisTemplates;
+    private final int quorum;
+    private final Duration nodeTimeout;
+    private final double clockDriftFactor;
+    private final ReactiveLockExecutor reactiveLockExecutor;
+
+    /**
+     * Instantiates a new Redis quorum reactive lock.
+     * @param reactiveStringRedisTemplates 各个独立 redis 节点的 Template
+     * @param lockKey                      锁KEY
+     * @param expireAfter                  锁过期时间
+     * @param nodeTimeout                  单个节点的超时时间,应远小于锁过期时间
+     * @param clockDriftFactor             时钟漂移系数,有效期扣除 expireAfter * clockDriftFactor
+     * @param retryInterval                获取锁失败后的重试间隔
+     */
+    public RedisQuorumReactiveLock(List<ReactiveStringRedisTemplate> reactiveStringRedisTemplates,
+                                   String lockKey,
+                                   Duration expireAfter,
+                                   Duration nodeTimeout,
+                                   double clockDriftFactor,
+                                   Duration retryInterval) {
+        super(retryInterval);
+        Assert.notEmpty(reactiveStringRedisTemplates, "'reactiveStringRedisTemplates' cannot be empty");
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        Assert.notNull(nodeTimeout, "'nodeTimeout' cannot be null");
+        this.reactiveStringRedisTemplates = reactiveStringRedisTemplates;
+        this.quorum = reactiveStringRedisTemplates.size() / 2 + 1;
+        this.nodeTimeout = nodeTimeout;
+        this.clockDriftFactor = clockDriftFactor;
+        this.reactiveLockExecutor = new RedisQuorumReactiveLockExecutor(lockKey,
+                expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter);
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    private class RedisQuorumReactiveLockExecutor implements ReactiveLockExecutor {
+
+        private final String lockId = UUID.randomUUID().toString();
+        private final String lockKey;
+        private final List<String> keys;
+        private final long expireAfter;
+        private final String expireAfterArgument;
+        private volatile long lockedAt;
+
+        public RedisQuorumReactiveLockExecutor(String lockKey, Duration expireAfter) {
+            this.lockKey = lockKey;
+            this.keys = Collections.singletonList(lockKey);
+            this.expireAfter = expireAfter.toMillis();
+            this.expireAfterArgument = String.valueOf(this.expireAfter);
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            return Flux.fromIterable(RedisQuorumReactiveLock.this.reactiveStringRedisTemplates)
+                    .flatMap(template -> template.opsForValue()
+                            .get(this.lockKey)
+                            .map(this.lockId::equals)
+                            .timeout(RedisQuorumReactiveLock.this.nodeTimeout)
+                            .onErrorResume(throwable -> Mono.just(false)))
+                    .filter(held -> held)
+                    .count()
+                    .map(held -> held >= RedisQuorumReactiveLock.this.quorum);
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            return Mono.defer(() -> {
+                long start = System.currentTimeMillis();
+                int nodes = RedisQuorumReactiveLock.this.reactiveStringRedisTemplates.size();
+                int quorum = RedisQuorumReactiveLock.this.quorum;
+                AtomicInteger successes = new AtomicInteger();
+                AtomicInteger failures = new AtomicInteger();
+                List<Mono<Boolean>> obtains = new ArrayList<>(nodes);
+                for (ReactiveStringRedisTemplate template : RedisQuorumReactiveLock.this.reactiveStringRedisTemplates) {
+                    obtains.add(obtainOn(template));
+                }
+                // 多数节点成功或多数已不可能达成时立即结束,不等待最慢的节点
+                return Flux.merge(obtains)
+                        .takeUntil(success -> success ? successes.incrementAndGet() >= quorum :
+                                failures.incrementAndGet() > nodes - quorum)
+                        .then(Mono.fromSupplier(() -> {
+                            long elapsed = System.currentTimeMillis() - start;
+                            long drift = (long) (this.expireAfter * RedisQuorumReactiveLock.this.clockDriftFactor)
+                                    + CLOCK_DRIFT_MILLIS;
+                            boolean result = successes.get() >= quorum && this.expireAfter - elapsed - drift > 0;
+                            if (result) {
+                                this.lockedAt = start;
+                            } else if (logger.isDebugEnabled()) {
+                                logger.debug("obtain quorum lock({}) failed,successes:{},quorum:{},elapsed:{}ms",
+                                        this.lockKey, successes.get(), quorum, elapsed);
+                            }
+                            return result;
+                        }))
+                        .flatMap(result -> result ? Mono.just(true) :
+                                releaseAll().thenReturn(false));
+            });
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            return releaseAll()
+                    .map(released -> released >= RedisQuorumReactiveLock.this.quorum)
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKey);
+                        }
+                    });
+        }
+
+        /**
+         * 在所有节点上释放,包括获取时被取消的慢节点(同一连接上的命令有序,释放一定在获取之后执行)
+         * @return 释放成功的节点数
+         */
+        private Mono<Long> releaseAll() {
+            return Flux.fromIterable(RedisQuorumReactiveLock.this.reactiveStringRedisTemplates)
+                    .flatMap(template -> Mono
+                            .from(template.execute(
+                                    RedisReactiveLockScripts.RELEASE_LOCK,
+                                    this.keys,
+                                    LettuceLists.newList(this.lockId, ""))
+                            )
+                            .map(Boolean.TRUE::equals)
+                            .onErrorResume(throwable -> {
+                                logger.warn("release quorum lock({}) on one node failed: {}", this.lockKey,
+                                        throwable.getMessage());
+                                return Mono.just(false);
+                            }))
+                    .filter(released -> released)
+                    .count();
+        }
+
+        private Mono<Boolean> obtainOn(ReactiveStringRedisTemplate template) {
+            return Mono
+                    .from(template.execute(
+                            RedisReactiveLockScripts.OBTAIN_LOCK,
+                            this.keys,
+                            LettuceLists.newList(this.lockId, this.expireAfterArgument))
+                    )
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false)
+                    .timeout(RedisQuorumReactiveLock.this.nodeTimeout)
+                    .onErrorResume(throwable -> {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("obtain quorum lock({}) on one node failed: {}", this.lockKey,
+                                    throwable.getMessage());
+                        }
+                        return Mono.just(false);
+                    });
+        }
+
+        @Override
+        public String toString() {
+            return "RedisQuorumReactiveLockExecutor [lockKey=" + this.lockKey
+                    + ",lockedAt=" + this.lockedAt
+                    + ", lockId=" + this.lockId
+                    + ", quorum=" + RedisQuorumReactiveLock.this.quorum
+                    + "]";
+        }
+    }
+}
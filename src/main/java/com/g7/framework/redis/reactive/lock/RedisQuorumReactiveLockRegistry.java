@@ -0,0 +1,133 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The Redis quorum reactive lock registry.
+ * 锁同时写入多个相互独立的 redis 节点(不是同一个集群的主从),单个节点宕机或主从切换丢失数据时锁仍然有效。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisQuorumReactiveLockRegistry extends AbstractAutoCleanupReactiveLockRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisQuorumReactiveLockRegistry.class);
+    private static final String DEFAULT_KEY_PREFIX = "redis_reactive_lock";
+    private static final Duration DEFAULT_NODE_TIMEOUT = Duration.ofMillis(100);
+    private static final double DEFAULT_CLOCK_DRIFT_FACTOR = 0.01;
+    private final List<ReactiveRedisConnectionFactory> connectionFactories;
+    private final List<ReactiveStringRedisTemplate> reactiveStringRedisTemplates;
+    private final Duration maxLockLifeTime;
+    private final String keyPrefix;
+    private Duration nodeTimeout = DEFAULT_NODE_TIMEOUT;
+    private double clockDriftFactor = DEFAULT_CLOCK_DRIFT_FACTOR;
+    private Duration retryInterval;
+    private boolean manageConnectionFactories;
+
+    /**
+     * Instantiates a new Redis quorum reactive lock registry.
+     * @param connectionFactories 各个独立 redis 节点的连接工厂,建议奇数个
+     * @param expireEvictIdle     过期驱逐空闲时间
+     * @param maxLockLifeTime     最大锁定寿命
+     * @param keyPrefix           the key prefix
+     */
+    public RedisQuorumReactiveLockRegistry(List<? extends ReactiveRedisConnectionFactory> connectionFactories,
+                                           Duration expireEvictIdle,
+                                           Duration maxLockLifeTime,
+                                           String keyPrefix) {
+        super(expireEvictIdle, maxLockLifeTime);
+        Assert.notEmpty(connectionFactories, "'connectionFactories' cannot be empty");
+        this.connectionFactories = Collections.unmodifiableList(new ArrayList<>(connectionFactories));
+        List<ReactiveStringRedisTemplate> templates = new ArrayList<>(connectionFactories.size());
+        for (ReactiveRedisConnectionFactory connectionFactory : connectionFactories) {
+            templates.add(new ReactiveStringRedisTemplate(connectionFactory));
+        }
+        this.reactiveStringRedisTemplates = Collections.unmodifiableList(templates);
+        this.maxLockLifeTime = maxLockLifeTime;
+        if (Objects.nonNull(keyPrefix) && keyPrefix.length() > 0) {
+            this.keyPrefix = keyPrefix;
+        } else {
+            this.keyPrefix = DEFAULT_KEY_PREFIX;
+        }
+    }
+
+    /**
+     * 单个节点的超时时间,超时的节点视为获取失败,应远小于锁过期时间
+     * @param nodeTimeout 超时时间
+     */
+    public void setNodeTimeout(Duration nodeTimeout) {
+        if (nodeTimeout != null) {
+            this.nodeTimeout = nodeTimeout;
+        }
+    }
+
+    /**
+     * 时钟漂移系数,锁的有效期扣除 过期时间 * 系数 + 2ms
+     * @param clockDriftFactor 时钟漂移系数
+     */
+    public void setClockDriftFactor(double clockDriftFactor) {
+        this.clockDriftFactor = clockDriftFactor;
+    }
+
+    /**
+     * 获取锁失败后的重试间隔
+     * @param retryInterval 重试间隔
+     */
+    public void setRetryInterval(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * 是否由注册表管理连接工厂的生命周期(初始化与销毁),连接工厂不是 Spring Bean 时开启
+     * @param manageConnectionFactories 是否管理
+     */
+    public void setManageConnectionFactories(boolean manageConnectionFactories) {
+        this.manageConnectionFactories = manageConnectionFactories;
+    }
+
+    @Override
+    protected StatefulReactiveLock newReactiveLock(String lockKey) {
+        return new RedisQuorumReactiveLock(reactiveStringRedisTemplates, keyPrefix + ':' + lockKey,
+                maxLockLifeTime, nodeTimeout, clockDriftFactor, retryInterval);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.manageConnectionFactories) {
+            for (ReactiveRedisConnectionFactory connectionFactory : this.connectionFactories) {
+                if (connectionFactory instanceof InitializingBean) {
+                    ((InitializingBean) connectionFactory).afterPropertiesSet();
+                }
+            }
+        }
+        super.afterPropertiesSet();
+        for (ReactiveStringRedisTemplate template : this.reactiveStringRedisTemplates) {
+            RedisReactiveLockScripts.load(template)
+                    .subscribe(null, throwable -> logger.warn("preload reactive lock scripts failed,scripts " +
+                            "will be loaded by EVAL on first use: " + throwable.getMessage()));
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        super.destroy();
+        if (this.manageConnectionFactories) {
+            for (ReactiveRedisConnectionFactory connectionFactory : this.connectionFactories) {
+                if (connectionFactory instanceof DisposableBean) {
+                    ((DisposableBean) connectionFactory).destroy();
+                }
+            }
+        }
+    }
+}
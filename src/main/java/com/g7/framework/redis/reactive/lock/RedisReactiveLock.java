@@ -1,20 +1,22 @@
 package com.g7.framework.redis.reactive.lock;
 
-import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
-import java.text.SimpleDateFormat;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * redis锁
@@ -26,30 +28,149 @@ public class RedisReactiveLock extends AbstractReactiveLock {
     private static final Logger logger = LoggerFactory.getLogger(RedisReactiveLock.class);
 
     private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
-    private static final String OBTAIN_LOCK_SCRIPT = "local lockSet = redis.call('SETNX', KEYS[1], ARGV[1])\n" +
-            "if lockSet == 1 then\n" +
-            "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
-            "  return true\n" +
-            "else\n" +
-            "  return false\n" +
-            "end";
-    private final RedisScript<Boolean> obtainLockScript = new DefaultRedisScript<>(OBTAIN_LOCK_SCRIPT,
-            Boolean.class);
+    /**
+     * 锁值由实例名、进程标识加自增序号组成,只在类加载时生成一次 UUID,避免每个锁都访问 SecureRandom;
+     * 锁值带上实例名,直接查看 redis 也能知道锁被哪个实例持有
+     */
+    private static final String NODE_ID = INSTANCE + ':' + UUID.randomUUID();
+    private static final AtomicLong LOCK_SEQUENCE = new AtomicLong();
+    /**
+     * 与锁KEY无关的脚本参数在相同锁值、过期时间的锁之间共享
+     */
+    private static final ConcurrentMap<List<String>, List<String>> SHARED_ARGUMENTS = new ConcurrentHashMap<>(16);
     private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
-    private final ReactiveLockExecutor reactiveLockExecutor;
-    private volatile boolean unlinkAvailable = true;
+    private final RedisReactiveLockExecutor reactiveLockExecutor;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final RedisLockWatchdog watchdog;
+    private final RedisReactiveLockScripts.ScriptSet scripts;
 
     public RedisReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
                              String lockKey,
                              Duration expireAfter) {
+        this(reactiveStringRedisTemplate, lockKey, expireAfter, null, null, null);
+    }
+
+    /**
+     * Instantiates a new Redis reactive lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                             String lockKey,
+                             Duration expireAfter,
+                             RedisLockReleaseNotifier releaseNotifier,
+                             Duration retryInterval,
+                             RedisLockWatchdog watchdog) {
+        this(reactiveStringRedisTemplate, lockKey, expireAfter, releaseNotifier, retryInterval, watchdog,
+                RedisReactiveLockScripts.EXCLUSIVE_LOCK_SCRIPTS);
+    }
+
+    /**
+     * 使用指定脚本实例化一个单一持有者的 redis 锁,例如读写锁中的写锁
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     * @param scripts                     获取、释放、续期、是否持有脚本
+     */
+    protected RedisReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                String lockKey,
+                                Duration expireAfter,
+                                RedisLockReleaseNotifier releaseNotifier,
+                                Duration retryInterval,
+                                RedisLockWatchdog watchdog,
+                                RedisReactiveLockScripts.ScriptSet scripts) {
+        this(reactiveStringRedisTemplate, lockKey, expireAfter, releaseNotifier, retryInterval, watchdog, scripts,
+                null);
+    }
+
+    /**
+     * 使用指定锁值实例化 redis 锁,同一个注册表内的锁共享一个锁值,本进程内同一个锁KEY只有一个锁实例,
+     * 互斥由本地队列保证,因此不需要每个锁单独生成锁值
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     * @param lockId                      锁值,为空时生成
+     */
+    public RedisReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                             String lockKey,
+                             Duration expireAfter,
+                             RedisLockReleaseNotifier releaseNotifier,
+                             Duration retryInterval,
+                             RedisLockWatchdog watchdog,
+                             @Nullable String lockId) {
+        this(reactiveStringRedisTemplate, lockKey, expireAfter, releaseNotifier, retryInterval, watchdog,
+                RedisReactiveLockScripts.EXCLUSIVE_LOCK_SCRIPTS, lockId);
+    }
+
+    private RedisReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                              String lockKey,
+                              Duration expireAfter,
+                              RedisLockReleaseNotifier releaseNotifier,
+                              Duration retryInterval,
+                              RedisLockWatchdog watchdog,
+                              RedisReactiveLockScripts.ScriptSet scripts,
+                              @Nullable String lockId) {
+        super(retryInterval);
         Assert.notNull(reactiveStringRedisTemplate,
                 "ReactiveStringRedisTemplate cannot be null");
         Assert.notNull(lockKey, "'lockKey' cannot be null");
         this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
-        this.reactiveLockExecutor = new RedisReactiveLockExecutor(lockKey,
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.scripts = scripts;
+        this.reactiveLockExecutor = new RedisReactiveLockExecutor(lockId == null ? newLockId() : lockId, lockKey,
                 expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter);
     }
 
+    /**
+     * 批量获取成功后记录获取时间、计入获取次数并开始续期
+     */
+    void batchObtained() {
+        this.reactiveLockExecutor.fencingToken = 0;
+        this.reactiveLockExecutor.obtained();
+        held();
+    }
+
+    /**
+     * 批量释放前停止续期
+     */
+    void batchReleased() {
+        if (this.watchdog != null) {
+            this.watchdog.unwatch(this.reactiveLockExecutor.lockKey, this.reactiveLockExecutor.lockId);
+        }
+    }
+
+    /**
+     * 锁KEY
+     * @return 锁KEY
+     */
+    String lockKey() {
+        return this.reactiveLockExecutor.lockKey;
+    }
+
+    /**
+     * 生成本进程内唯一的锁值
+     * @return 锁值
+     */
+    static String newLockId() {
+        return NODE_ID + ':' + LOCK_SEQUENCE.incrementAndGet();
+    }
+
+    private static List<String> shared(List<String> arguments) {
+        List<String> sharedArguments = SHARED_ARGUMENTS.putIfAbsent(arguments, arguments);
+        return sharedArguments == null ? arguments : sharedArguments;
+    }
+
     @Override
     protected ReactiveLockExecutor getReactiveLockExecutor() {
         return this.reactiveLockExecutor;
@@ -65,18 +186,71 @@ public class RedisReactiveLock extends AbstractReactiveLock {
         return this.reactiveLockExecutor.processing();
     }
 
+    @Override
+    protected boolean canLinger() {
+        if (this.scripts != RedisReactiveLockScripts.EXCLUSIVE_LOCK_SCRIPTS) {
+            return false;
+        }
+        // 没有看门狗续期时只复用剩余有效期过半的租约
+        long elapsed = System.currentTimeMillis() - this.reactiveLockExecutor.lockedAt;
+        return this.watchdog != null || elapsed < this.reactiveLockExecutor.expireAfter / 2;
+    }
+
+    @Override
+    public String ownershipKey() {
+        // 只有字符串结构的排他锁可以通过 MGET 批量检查
+        return this.scripts == RedisReactiveLockScripts.EXCLUSIVE_LOCK_SCRIPTS ? this.reactiveLockExecutor.lockKey :
+                null;
+    }
+
+    @Override
+    public String ownershipValue() {
+        return this.reactiveLockExecutor.lockId;
+    }
+
     private class RedisReactiveLockExecutor implements ReactiveLockExecutor {
 
-        private final String lockId = UUID.randomUUID().toString();
+        private final String lockId;
         private final String lockKey;
+        /**
+         * 锁KEY与同 slot 的关联KEY(fencing 计数器或读者过期时间 zset),只使用锁KEY的脚本忽略第二个KEY
+         */
+        private final List<String> keys;
         private final long expireAfter;
-        private final AtomicBoolean localLock = new AtomicBoolean(false);
+        private final List<String> lockIdArguments;
+        private final List<String> releaseArguments;
+        private final List<String> obtainArguments;
+        private final List<String> fencedObtainArguments;
         private volatile long lockedAt;
+        private volatile long fencingToken;
+        private volatile long remainingTtl = ReactiveLockBackoff.UNKNOWN;
 
-        public RedisReactiveLockExecutor(String lockKey, Duration expireAfter) {
+        public RedisReactiveLockExecutor(String lockId, String lockKey, Duration expireAfter) {
             Assert.notNull(lockKey, "'lockKey' cannot be null");
+            this.lockId = lockId;
             this.lockKey = lockKey;
+            this.keys = Arrays.asList(lockKey,
+                    RedisLockKeys.sameSlot(lockKey, RedisReactiveLock.this.scripts.getCompanionKeySuffix()));
             this.expireAfter = expireAfter.toMillis();
+            // 脚本参数在锁的生命周期内不变,只构造一次;与锁KEY无关时在锁之间共享
+            this.lockIdArguments = shared(Collections.singletonList(lockId));
+            this.releaseArguments = RedisReactiveLock.this.releaseNotifier == null ?
+                    shared(Arrays.asList(lockId, "")) :
+                    Arrays.asList(lockId, RedisReactiveLock.this.releaseNotifier.channel(lockKey));
+            this.obtainArguments = obtainArguments(false);
+            this.fencedObtainArguments = obtainArguments(true);
+        }
+
+        /**
+         * 开启释放通知时获取失败总是发布 wanted 通知,持有者是否保留租约由持有者自己的配置决定
+         */
+        private List<String> obtainArguments(boolean fenced) {
+            String fence = fenced ? "1" : "0";
+            if (RedisReactiveLock.this.releaseNotifier == null) {
+                return shared(Arrays.asList(this.lockId, String.valueOf(this.expireAfter), "", fence));
+            }
+            return Arrays.asList(this.lockId, String.valueOf(this.expireAfter),
+                    RedisReactiveLock.this.releaseNotifier.wantedChannel(this.lockKey), fence);
         }
 
         @Override
@@ -86,86 +260,129 @@ public class RedisReactiveLock extends AbstractReactiveLock {
 
         @Override
         public Mono<Boolean> processing() {
-            return RedisReactiveLock.this.reactiveStringRedisTemplate.opsForValue()
-                    .get(this.lockKey)
-                    .map(this.lockId::equals)
+            return Mono
+                    .from(RedisReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLock.this.scripts.getProcessing(),
+                            this.keys,
+                            this.lockIdArguments)
+                    )
+                    .map(Boolean.TRUE::equals)
                     .defaultIfEmpty(false);
         }
 
         @Override
         public Mono<Boolean> obtain() {
-            return Mono.just(this.localLock)
-                    .map(lock -> lock.compareAndSet(false, true))
-                    .filter(localLockResult -> localLockResult)
-                    .flatMap(localLockResult -> Mono
+            RedisScript<Long> fencedObtain = RedisReactiveLock.this.scripts.getFencedObtain();
+            if (fencedObtain != null) {
+                // 只有通过 fencing API 获取时才递增计数器
+                return Mono.deferContextual(contextView -> {
+                    boolean fenced = contextView.getOrDefault(FENCED_CONTEXT_KEY, false);
+                    return Mono
                             .from(RedisReactiveLock.this.reactiveStringRedisTemplate.execute(
-                                    RedisReactiveLock.this.obtainLockScript,
-                                    Collections.singletonList(this.lockKey),
-                                    LettuceLists.newList(this.lockId,
-                                            String.valueOf(this.expireAfter)))
+                                    fencedObtain,
+                                    this.keys,
+                                    fenced ? this.fencedObtainArguments : this.obtainArguments)
                             )
-                            .map(success -> {
-                                boolean result = Boolean.TRUE.equals(success);
-                                if (result) {
-                                    this.lockedAt = System.currentTimeMillis();
-                                }
-                                return result;
-                            })
-                            .doFinally(signal -> this.localLock.compareAndSet(true, false))
-
+                            .map(result -> fenced(result, fenced))
+                            .defaultIfEmpty(false);
+                });
+            }
+            // 非 fencing 脚本只使用前两个参数,多余的参数会被忽略
+            return Mono
+                    .from(RedisReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLock.this.scripts.getObtain(),
+                            this.keys,
+                            this.obtainArguments)
                     )
-                    .switchIfEmpty(Mono.just(false));
+                    .map(this::obtained)
+                    .defaultIfEmpty(false);
+        }
+
+        private boolean fenced(Long token, boolean fenced) {
+            boolean result = token != null && token > 0;
+            if (result) {
+                this.fencingToken = fenced ? token : 0;
+                obtained();
+            } else {
+                // 获取失败时脚本返回持有者剩余过期时间的相反数
+                this.remainingTtl = token == null || token == 0 ? ReactiveLockBackoff.UNKNOWN : -token;
+            }
+            return result;
+        }
+
+        private boolean obtained(Boolean success) {
+            boolean result = Boolean.TRUE.equals(success);
+            if (result) {
+                obtained();
+            }
+            return result;
+        }
+
+        private void obtained() {
+            this.lockedAt = System.currentTimeMillis();
+            if (RedisReactiveLock.this.watchdog != null) {
+                RedisReactiveLock.this.watchdog.watch(this.lockKey, this.lockId, this.expireAfter,
+                        RedisReactiveLock.this.scripts.getRenew());
+            }
+        }
+
+        @Override
+        public long leaseTime() {
+            return this.expireAfter;
+        }
+
+        @Override
+        public long remainingTtl() {
+            return this.remainingTtl;
+        }
+
+        @Override
+        public Long fencingToken() {
+            return RedisReactiveLock.this.scripts.getFencedObtain() == null ? null : this.fencingToken;
         }
 
         @Override
         public Mono<Boolean> release() {
-            return Mono.just(this.localLock)
-                    .map(lock -> lock.compareAndSet(false, true))
-                    .filter(localReleaseResult -> localReleaseResult)
-                    .flatMap(localReleaseResult -> Mono.just(RedisReactiveLock.this.unlinkAvailable)
-                            .filter(unlink -> unlink)
-                            .flatMap(unlink -> this.processing()
-                                    .filter(processing -> processing)
-                                    .flatMap(processing -> RedisReactiveLock.this.reactiveStringRedisTemplate
-                                            .unlink(this.lockKey)
-                                            .doOnError(throwable -> {
-                                                RedisReactiveLock.this.unlinkAvailable = false;
-                                                if (logger.isDebugEnabled()) {
-                                                    logger.debug("The UNLINK command has failed " +
-                                                            "(not supported on the Redis server?); " +
-                                                            "falling back to the regular DELETE command", throwable);
-                                                } else {
-                                                    logger.warn("The UNLINK command has failed (not " +
-                                                            "supported on the Redis server?); " +
-                                                            "falling back to the regular DELETE command: " +
-                                                            throwable.getMessage());
-                                                }
-                                            })
-                                            .map(unlinkResult -> unlinkResult > 0)
-                                            .onErrorResume(throwable ->
-                                                    RedisReactiveLock.this.reactiveStringRedisTemplate.delete(
-                                                                    this.lockKey)
-                                                            .map(deleteResult -> deleteResult > 0)
-                                            )
-                                    )
-                                    .switchIfEmpty(Mono.defer(() -> {
-                                        logger.warn("Lock({}) was released in the store due to expiration." +
-                                                "The integrity of data protected by this lock may have been" +
-                                                " compromised.", this.lockKey);
-                                        return Mono.just(false);
-                                    }))
-                            )
-                            .doFinally(signal -> this.localLock.compareAndSet(true, false))
-                            .switchIfEmpty(Mono.just(false))
+            if (RedisReactiveLock.this.watchdog != null) {
+                RedisReactiveLock.this.watchdog.unwatch(this.lockKey, this.lockId);
+            }
+            return Mono
+                    .from(RedisReactiveLock.this.reactiveStringRedisTemplate.execute(
+                            RedisReactiveLock.this.scripts.getRelease(),
+                            this.keys,
+                            this.releaseArguments)
                     )
-                    .switchIfEmpty(Mono.just(false));
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false)
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKey);
+                        }
+                    });
+        }
+
+        @Override
+        public Mono<Void> awaitRelease() {
+            if (RedisReactiveLock.this.releaseNotifier == null) {
+                return Mono.never();
+            }
+            return RedisReactiveLock.this.releaseNotifier.awaitRelease(this.lockKey);
+        }
+
+        @Override
+        public Mono<Void> awaitWanted() {
+            if (RedisReactiveLock.this.releaseNotifier == null) {
+                return Mono.never();
+            }
+            return RedisReactiveLock.this.releaseNotifier.awaitWanted(this.lockKey);
         }
 
         @Override
         public String toString() {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd@HH:mm:ss.SSS");
             return "RedisReactiveLockExecutor [lockKey=" + this.lockKey
-                    + ",lockedAt=" + dateFormat.format(new Date(this.lockedAt))
+                    + ",lockedAt=" + Instant.ofEpochMilli(this.lockedAt)
                     + ", lockId=" + this.lockId
                     + "]";
         }
@@ -1,21 +1,56 @@
 package com.g7.framework.redis.reactive.lock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * The Redis reactive lock registry.
  * @author dreamyao
  * @date 2022/3/1 4:09 下午
  */
-public class RedisReactiveLockRegistry extends AbstractAutoCleanupReactiveLockRegistry {
+public class RedisReactiveLockRegistry extends AbstractAutoCleanupReactiveLockRegistry
+        implements ExtendedReactiveLockRegistry {
 
+    private static final Logger logger = LoggerFactory.getLogger(RedisReactiveLockRegistry.class);
     private static final String DEFAULT_KEY_PREFIX = "redis_reactive_lock";
+    private static final int DEFAULT_BATCH_SIZE = 128;
     private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
     private final Duration maxLockLifeTime;
     private final String keyPrefix;
+    /**
+     * 本注册表创建的排他锁共享的锁值;注册表中一个KEY同一时刻只有一个锁对象,创建与移除在同一个桶锁内完成,
+     * 本地 FIFO 队列保证本进程内只有一个持有者访问 redis
+     */
+    private final String lockId = RedisReactiveLock.newLockId();
+    private RedisLockReleaseNotifier releaseNotifier;
+    private Duration retryInterval;
+    private boolean watchdogEnabled;
+    private Duration watchdogInterval;
+    private Duration fairWaiterTimeout;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile RedisLockWatchdog watchdog;
+    private volatile boolean slotSplitWarned;
 
     public RedisReactiveLockRegistry(ReactiveStringRedisTemplate reactiveStringRedisTemplate, String keyPrefix) {
         this(reactiveStringRedisTemplate, DEFAULT_EXPIRE_EVICT_IDLE,
@@ -43,9 +78,353 @@ public class RedisReactiveLockRegistry extends AbstractAutoCleanupReactiveLockRe
         }
     }
 
+    /**
+     * 是否开启锁释放通知,开启后等待者收到释放消息立即重试,轮询仅作为兜底
+     * @param releaseNotification 是否开启
+     */
+    public void setReleaseNotification(boolean releaseNotification) {
+        if (releaseNotification && this.releaseNotifier == null) {
+            this.releaseNotifier = new RedisLockReleaseNotifier(
+                    this.reactiveStringRedisTemplate.getConnectionFactory(), this.keyPrefix);
+        } else if (!releaseNotification) {
+            this.releaseNotifier = null;
+        }
+    }
+
+    /**
+     * 获取锁失败后的重试间隔
+     * @param retryInterval 重试间隔
+     */
+    public void setRetryInterval(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    /**
+     * 是否开启锁续期看门狗,开启后临界区订阅存活期间持续续期锁的过期时间
+     * @param watchdog 是否开启
+     */
+    public void setWatchdog(boolean watchdog) {
+        this.watchdogEnabled = watchdog;
+    }
+
+    /**
+     * 看门狗续期间隔,为空时使用锁过期时间的三分之一
+     * @param watchdogInterval 续期间隔
+     */
+    public void setWatchdogInterval(Duration watchdogInterval) {
+        this.watchdogInterval = watchdogInterval;
+    }
+
+    /**
+     * 公平锁等待者超时时间,超过该时间未重试的等待者会被移出 redis 等待队列,应大于重试间隔
+     * @param fairWaiterTimeout 等待者超时时间
+     */
+    public void setFairWaiterTimeout(Duration fairWaiterTimeout) {
+        this.fairWaiterTimeout = fairWaiterTimeout;
+    }
+
+    /**
+     * 批量获取锁时每批的KEY数量,每批一次往返获取;集群模式下每个 slot 一次,
+     * 同一批的KEY需要使用相同的 hash tag(例如 {order}:1 与 {order}:2)才能合并为一次往返
+     * @param batchSize 每批KEY数量
+     * @see #tryLockEach(Flux, BiFunction)
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "'batchSize' must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 按批次获取与释放,每批的KEY按 slot 分组,每个 slot 一次往返(各 slot 并发执行)。
+     * 集群模式下没有共同 hash tag 的KEY分散在不同 slot,一批 128 个KEY接近 128 次往返,批量不再减少往返次数;
+     * 需要批量获取的KEY应使用相同的 hash tag,例如 {order}:1 与 {order}:2
+     * @param <T>      类型
+     * @param lockKeys 锁KEY
+     * @param function 执行的操作,参数为锁KEY与获取结果
+     * @return executable Flux,各KEY的结果按完成顺序发出
+     */
+    @Override
+    public <T> Flux<T> tryLockEach(Flux<String> lockKeys, BiFunction<String, Boolean, Flux<T>> function) {
+        return lockKeys.buffer(this.batchSize)
+                .concatMap(batch -> Flux.usingWhen(
+                        obtainEach(batch),
+                        locks -> Flux.range(0, batch.size())
+                                .flatMap(index -> function.apply(batch.get(index), locks.get(index) != null)),
+                        locks -> releaseEach(batch, locks),
+                        (locks, throwable) -> releaseEach(batch, locks),
+                        locks -> releaseEach(batch, locks)));
+    }
+
+    /**
+     * 批量获取锁,先逐个登记锁对象并取得本地持有权(与单个获取共用本地队列),再把需要访问 redis 的锁按 slot 分组一次往返获取;
+     * 未获取到的锁立即注销,获取到的锁在批量释放后注销
+     * @param lockKeys 锁KEY
+     * @return 与传入顺序一致的锁,未获取到的位置为 null
+     */
+    private Mono<List<RedisReactiveLock>> obtainEach(List<String> lockKeys) {
+        return Mono.defer(() -> {
+            List<RedisReactiveLock> locks = new ArrayList<>(lockKeys.size());
+            Map<String, RedisReactiveLock> remoteLocks = new LinkedHashMap<>();
+            for (String lockKey : lockKeys) {
+                StatefulReactiveLock reactiveLock = pin(lockKey);
+                if (!(reactiveLock instanceof RedisReactiveLock) ||
+                        !((RedisReactiveLock) reactiveLock).tryAcquireLocally()) {
+                    unpin(lockKey, reactiveLock);
+                    locks.add(null);
+                    continue;
+                }
+                RedisReactiveLock lock = (RedisReactiveLock) reactiveLock;
+                locks.add(lock);
+                if (!lock.reuseLingeringLease()) {
+                    remoteLocks.put(lock.lockKey(), lock);
+                }
+            }
+            if (remoteLocks.isEmpty()) {
+                return Mono.just(locks);
+            }
+            return obtainRemote(new ArrayList<>(remoteLocks.keySet()))
+                    .map(acquiredKeys -> {
+                        for (int i = 0; i < locks.size(); i++) {
+                            RedisReactiveLock lock = locks.get(i);
+                            if (lock == null || !remoteLocks.containsKey(lock.lockKey())) {
+                                continue;
+                            }
+                            if (acquiredKeys.contains(lock.lockKey())) {
+                                lock.batchObtained();
+                            } else {
+                                lock.releaseLocally();
+                                unpin(lockKeys.get(i), lock);
+                                locks.set(i, null);
+                            }
+                        }
+                        return locks;
+                    })
+                    .doOnError(throwable -> releaseLocally(lockKeys, locks))
+                    .doOnCancel(() -> releaseLocally(lockKeys, locks));
+        });
+    }
+
+    private Mono<Set<String>> obtainRemote(List<String> redisKeys) {
+        List<String> arguments = Arrays.asList(this.lockId, String.valueOf(this.maxLockLifeTime.toMillis()),
+                this.releaseNotifier == null ? "" : this.releaseNotifier.wantedChannel(""));
+        return Flux.fromIterable(groupBySlot(redisKeys))
+                .flatMap(group -> Flux.<Object>from(this.reactiveStringRedisTemplate.execute(
+                                        RedisReactiveLockScripts.OBTAIN_EACH_LOCK, group, arguments))
+                        .<Object>flatMapIterable(result -> result instanceof List ? (List<?>) result :
+                                Collections.singletonList(result))
+                        .collectList()
+                        .map(results -> {
+                            Set<String> acquiredKeys = new HashSet<>();
+                            for (int i = 0; i < results.size(); i++) {
+                                if (results.get(i) instanceof Number && ((Number) results.get(i)).longValue() == 1) {
+                                    acquiredKeys.add(group.get(i));
+                                }
+                            }
+                            return acquiredKeys;
+                        }))
+                .collect(HashSet::new, Set::addAll);
+    }
+
+    /**
+     * 批量释放锁,按 slot 分组一次往返释放 redis 上的锁后交还本地持有权并注销
+     * @param lockKeys 锁KEY
+     * @param locks    批量获取的锁,与锁KEY顺序一致,未获取到的位置为 null
+     * @return mono
+     */
+    private Mono<Void> releaseEach(List<String> lockKeys, List<RedisReactiveLock> locks) {
+        List<String> redisKeys = new ArrayList<>(locks.size());
+        for (RedisReactiveLock lock : locks) {
+            if (lock != null) {
+                lock.batchReleased();
+                redisKeys.add(lock.lockKey());
+            }
+        }
+        if (redisKeys.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> arguments = Arrays.asList(this.lockId,
+                this.releaseNotifier == null ? "" : this.releaseNotifier.channel(""));
+        return Flux.fromIterable(groupBySlot(redisKeys))
+                .flatMap(group -> this.reactiveStringRedisTemplate.execute(
+                        RedisReactiveLockScripts.RELEASE_MULTI_LOCK, group, arguments))
+                .onErrorResume(throwable -> {
+                    logger.warn("batch release locks failed,locks expire after {}: {}", this.maxLockLifeTime,
+                            throwable.getMessage());
+                    return Mono.empty();
+                })
+                .then()
+                .doFinally(signal -> releaseLocally(lockKeys, locks));
+    }
+
+    private void releaseLocally(List<String> lockKeys, List<RedisReactiveLock> locks) {
+        for (int i = 0; i < locks.size(); i++) {
+            RedisReactiveLock lock = locks.get(i);
+            if (lock != null) {
+                lock.releaseLocally();
+                unpin(lockKeys.get(i), lock);
+            }
+        }
+    }
+
+    private Collection<List<String>> groupBySlot(List<String> redisKeys) {
+        if (!isCluster()) {
+            return Collections.singletonList(redisKeys);
+        }
+        Map<Integer, List<String>> groups = new LinkedHashMap<>();
+        for (String redisKey : redisKeys) {
+            groups.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(redisKey), slot -> new ArrayList<>())
+                    .add(redisKey);
+        }
+        if (groups.size() > 1 && !this.slotSplitWarned) {
+            this.slotSplitWarned = true;
+            logger.warn("batch of {} lock keys spans {} cluster slots and needs one round trip per slot," +
+                    "use the same hash tag in batched keys,for example {order}:1 and {order}:2",
+                    redisKeys.size(), groups.size());
+        }
+        return groups.values();
+    }
+
     @Override
     protected StatefulReactiveLock newReactiveLock(String lockKey) {
         return new RedisReactiveLock(reactiveStringRedisTemplate,
-                keyPrefix + ':' + lockKey, maxLockLifeTime);
+                keyPrefix + ':' + lockKey, maxLockLifeTime, releaseNotifier, retryInterval, watchdog, lockId);
+    }
+
+    @Override
+    public ReactiveLock obtainReentrant(String lockKey) {
+        return obtainReentrant(lockKey, this::newReentrantReactiveLock);
+    }
+
+    @Override
+    public ReactiveLock obtainMulti(Collection<String> lockKeys) {
+        return obtainMulti(lockKeys, this::newMultiReactiveLock);
+    }
+
+    @Override
+    public ReactiveLock obtainFair(String lockKey) {
+        return obtainFair(lockKey, this::newFairReactiveLock);
+    }
+
+    @Override
+    public ReactiveReadWriteLock obtainReadWriteLock(String lockKey) {
+        return obtainReadWriteLock(lockKey, this::newReadLock, this::newWriteLock);
+    }
+
+    @Override
+    public ReactiveSemaphore obtainSemaphore(String semaphoreKey, int permits) {
+        return obtainSemaphore(semaphoreKey, permits, this::newReactiveSemaphore);
+    }
+
+    protected StatefulReactiveLock newReentrantReactiveLock(String lockKey) {
+        return new RedisReentrantReactiveLock(reactiveStringRedisTemplate,
+                keyPrefix + ":reentrant:" + lockKey, maxLockLifeTime, releaseNotifier, retryInterval, watchdog);
+    }
+
+    protected StatefulReactiveLock newMultiReactiveLock(List<String> lockKeys) {
+        List<String> redisKeys = new ArrayList<>(lockKeys.size());
+        for (String lockKey : lockKeys) {
+            redisKeys.add(keyPrefix + ':' + lockKey);
+        }
+        if (isCluster()) {
+            int slot = ClusterSlotHashUtil.calculateSlot(redisKeys.get(0));
+            for (String redisKey : redisKeys) {
+                if (ClusterSlotHashUtil.calculateSlot(redisKey) != slot) {
+                    throw new IllegalArgumentException("multi lock keys must hash to the same cluster slot," +
+                            "use the same hash tag in every key,for example {account}:1 and {account}:2: " +
+                            lockKeys);
+                }
+            }
+        }
+        return new RedisMultiReactiveLock(reactiveStringRedisTemplate, redisKeys, maxLockLifeTime, releaseNotifier,
+                retryInterval, watchdog);
+    }
+
+    private boolean isCluster() {
+        ReactiveRedisConnectionFactory connectionFactory = this.reactiveStringRedisTemplate.getConnectionFactory();
+        return connectionFactory instanceof LettuceConnectionFactory &&
+                ((LettuceConnectionFactory) connectionFactory).isClusterAware();
+    }
+
+    protected StatefulReactiveLock newFairReactiveLock(String lockKey) {
+        // 锁KEY放在 hash tag 中,集群模式下等待队列与锁落在同一个 slot
+        return new RedisFairReactiveLock(reactiveStringRedisTemplate,
+                keyPrefix + ":fair:{" + lockKey + "}", maxLockLifeTime, fairWaiterTimeout, releaseNotifier,
+                retryInterval, watchdog);
+    }
+
+    protected StatefulReactiveSemaphore newReactiveSemaphore(String semaphoreKey, int permits) {
+        return new RedisReactiveSemaphore(reactiveStringRedisTemplate,
+                keyPrefix + ":semaphore:" + semaphoreKey, permits, maxLockLifeTime, releaseNotifier, retryInterval,
+                watchdog);
+    }
+
+    protected StatefulReactiveLock newReadLock(String lockKey) {
+        return new RedisReactiveReadLock(reactiveStringRedisTemplate,
+                keyPrefix + ":rw:" + lockKey, maxLockLifeTime, releaseNotifier, retryInterval, watchdog);
+    }
+
+    protected StatefulReactiveLock newWriteLock(String lockKey) {
+        return new RedisReactiveWriteLock(reactiveStringRedisTemplate,
+                keyPrefix + ":rw:" + lockKey, maxLockLifeTime, releaseNotifier, retryInterval, watchdog);
+    }
+
+    /**
+     * 字符串结构的锁通过一次 MGET 批量检查,其它锁单独检查
+     * @param locks 锁对象
+     * @return 是否持有
+     */
+    @Override
+    protected Mono<List<Boolean>> processing(List<StatefulReactiveLock> locks) {
+        List<String> keys = new ArrayList<>(locks.size());
+        for (StatefulReactiveLock lock : locks) {
+            if (lock.ownershipKey() != null) {
+                keys.add(lock.ownershipKey());
+            }
+        }
+        if (keys.isEmpty()) {
+            return super.processing(locks);
+        }
+        return this.reactiveStringRedisTemplate.opsForValue()
+                .multiGet(keys)
+                .flatMap(values -> {
+                    Iterator<String> iterator = values.iterator();
+                    return Flux.fromIterable(locks)
+                            .concatMap(lock -> {
+                                if (lock.ownershipKey() == null) {
+                                    return lock.processing().defaultIfEmpty(false);
+                                }
+                                String value = iterator.next();
+                                String ownershipValue = lock.ownershipValue();
+                                return Mono.just(ownershipValue != null && ownershipValue.equals(value));
+                            })
+                            .collectList();
+                });
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        RedisReactiveLockScripts.load(this.reactiveStringRedisTemplate)
+                .subscribe(null, throwable -> logger.warn("preload reactive lock scripts failed,scripts will be " +
+                        "loaded by EVAL on first use: " + throwable.getMessage()));
+        if (this.releaseNotifier != null) {
+            this.releaseNotifier.start();
+        }
+        if (this.watchdogEnabled) {
+            this.watchdog = new RedisLockWatchdog(this.reactiveStringRedisTemplate,
+                    this.watchdogInterval == null ? this.maxLockLifeTime.dividedBy(3) : this.watchdogInterval);
+            this.watchdog.start();
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (this.releaseNotifier != null) {
+            this.releaseNotifier.stop();
+        }
+        if (this.watchdog != null) {
+            this.watchdog.stop();
+        }
+        super.destroy();
     }
 }
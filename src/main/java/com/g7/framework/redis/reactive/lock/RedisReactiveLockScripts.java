@@ -0,0 +1,713 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分布式锁使用的 lua 脚本
+ * 所有锁共享同一组脚本实例(SHA1 只计算一次),启动时通过 SCRIPT LOAD 预加载,
+ * 之后使用 EVALSHA 执行,redis 返回 NOSCRIPT 时由 {@link ReactiveStringRedisTemplate#execute} 回退为 EVAL 并重新缓存。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class RedisReactiveLockScripts {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReactiveLockScripts.class);
+
+    /**
+     * 获取锁
+     * 同一进程内只有本地队首会访问 redis,锁值等于本实例 lockId 时说明是本进程被取消的获取残留,可以直接重新占有
+     * KEYS[1] 锁KEY, ARGV[1] lockId, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> OBTAIN_LOCK = RedisScript.of(
+            "local lockClientId = redis.call('GET', KEYS[1])\n" +
+                    "if lockClientId == ARGV[1] or lockClientId == false then\n" +
+                    "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * fencing 计数器的过期时间(毫秒),每次递增时刷新;只有连续 30 天没有通过 fencing API 获取的锁KEY才会清理计数器
+     */
+    public static final long FENCE_EXPIRE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * 获取排他锁,ARGV[4] 为 '1'(通过 fencing API 获取)时对锁对应的计数器 INCR 并返回单调递增的 token,
+     * 否则不访问计数器,获取成功时返回 1;失败时返回持有者剩余过期时间(毫秒)的相反数,剩余时间未知时返回 0。
+     * 计数器只由 fencing 获取创建,每次递增时刷新 {@link #FENCE_EXPIRE_MILLIS} 的过期时间,不会无限残留;
+     * 计数器不存在(首次获取或过期清理后)时以 redis 服务端时间(微秒)作为初始值,
+     * 同一个锁KEY的获取次数不会超过经过的微秒数,因此计数器过期重建后 token 仍然大于之前发出的所有 token。
+     * 不使用 fencing API 的锁KEY不会留下计数器
+     * KEYS[1] 锁KEY, KEYS[2] fencing 计数器KEY(与锁KEY同 slot), ARGV[1] lockId, ARGV[2] 过期时间(毫秒),
+     * ARGV[3] 获取失败时发布的 wanted channel(可选,为空时不发布), ARGV[4] 是否生成 token('1'/'0')
+     */
+    public static final RedisScript<Long> OBTAIN_FENCED_LOCK = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "local lockClientId = redis.call('GET', KEYS[1])\n" +
+                    "if lockClientId == ARGV[1] or lockClientId == false then\n" +
+                    "  redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+                    "  if ARGV[4] == '1' then\n" +
+                    "    local token\n" +
+                    "    if redis.call('EXISTS', KEYS[2]) == 0 then\n" +
+                    "      local time = redis.call('TIME')\n" +
+                    "      token = tonumber(time[1]) * 1000000 + tonumber(time[2])\n" +
+                    "      redis.call('SET', KEYS[2], string.format('%d', token))\n" +
+                    "    else\n" +
+                    "      token = redis.call('INCR', KEYS[2])\n" +
+                    "    end\n" +
+                    "    redis.call('PEXPIRE', KEYS[2], '" + FENCE_EXPIRE_MILLIS + "')\n" +
+                    "    return token\n" +
+                    "  end\n" +
+                    "  return 1\n" +
+                    "end\n" +
+                    "if ARGV[3] ~= nil and ARGV[3] ~= '' then\n" +
+                    "  redis.call('PUBLISH', ARGV[3], KEYS[1])\n" +
+                    "end\n" +
+                    "local ttl = redis.call('PTTL', KEYS[1])\n" +
+                    "if ttl > 0 then\n" +
+                    "  return -ttl\n" +
+                    "end\n" +
+                    "return 0", Long.class);
+
+    /**
+     * 释放锁,比较锁值后删除并发布释放通知,一次往返完成
+     * KEYS[1] 锁KEY, ARGV[1] lockId, ARGV[2] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_LOCK = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+                    "  redis.call('DEL', KEYS[1])\n" +
+                    "  if ARGV[2] ~= '' then\n" +
+                    "    redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+                    "  end\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 续期锁,锁值仍属于当前持有者时重置过期时间
+     * KEYS[1] 锁KEY, ARGV[1] lockId, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> RENEW_LOCK = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 获取可重入锁,锁不存在或已被同一个持有者持有时持有次数加一
+     * KEYS[1] 锁KEY, ARGV[1] 持有者, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> OBTAIN_REENTRANT_LOCK = RedisScript.of(
+            "if redis.call('EXISTS', KEYS[1]) == 0 or redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then\n" +
+                    "  redis.call('HINCRBY', KEYS[1], ARGV[1], 1)\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 释放可重入锁,持有次数减一,减到零时删除并发布释放通知
+     * KEYS[1] 锁KEY, ARGV[1] 持有者, ARGV[2] 过期时间(毫秒), ARGV[3] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_REENTRANT_LOCK = RedisScript.of(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then\n" +
+                    "  return false\n" +
+                    "end\n" +
+                    "local holds = redis.call('HINCRBY', KEYS[1], ARGV[1], -1)\n" +
+                    "if holds > 0 then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "end\n" +
+                    "redis.call('DEL', KEYS[1])\n" +
+                    "if ARGV[3] ~= '' then\n" +
+                    "  redis.call('PUBLISH', ARGV[3], KEYS[1])\n" +
+                    "end\n" +
+                    "return true", Boolean.class);
+
+    /**
+     * 续期可重入锁
+     * KEYS[1] 锁KEY, ARGV[1] 持有者, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> RENEW_REENTRANT_LOCK = RedisScript.of(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 锁值是否仍属于当前持有者
+     * KEYS[1] 锁KEY, ARGV[1] lockId
+     */
+    public static final RedisScript<Boolean> PROCESSING_LOCK = RedisScript.of(
+            "return redis.call('GET', KEYS[1]) == ARGV[1]", Boolean.class);
+
+    /**
+     * hash 结构的锁(可重入锁、读写锁)中是否仍存在当前持有者
+     * KEYS[1] 锁KEY, ARGV[1] 持有者
+     */
+    public static final RedisScript<Boolean> PROCESSING_HASH_LOCK = RedisScript.of(
+            "return redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1", Boolean.class);
+
+    /**
+     * 读写锁中读者过期时间 zset 的KEY后缀,与锁KEY在同一个 slot
+     */
+    public static final String READERS_SUFFIX = ":readers";
+
+    /**
+     * 清理过期读者的脚本片段:删除读者过期时间 zset 中已过期的读者及其在锁KEY中的持有次数,
+     * 读锁中不再有读者时删除锁KEY;执行后 now 为 redis 服务端时间(毫秒)
+     * KEYS[1] 锁KEY, KEYS[2] 读者过期时间 zset
+     */
+    private static final String PRUNE_EXPIRED_READERS =
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', now)\n" +
+                    "if #expired > 0 then\n" +
+                    "  for _, reader in ipairs(expired) do\n" +
+                    "    redis.call('HDEL', KEYS[1], reader)\n" +
+                    "  end\n" +
+                    "  redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now)\n" +
+                    "  if redis.call('HGET', KEYS[1], 'mode') == 'read' and redis.call('HLEN', KEYS[1]) <= 1 then\n" +
+                    "    redis.call('DEL', KEYS[1], KEYS[2])\n" +
+                    "  end\n" +
+                    "end\n";
+
+    /**
+     * 获取读锁,先清理过期的读者,没有写锁时记录读者并增加读者持有次数;
+     * 每个读者在 zset 中有各自的过期时间(redis 服务端时间),某个读者停止续期后只有它自己过期,
+     * 锁KEY只会延长而不会缩短过期时间,作为所有读者都停止续期时的兜底
+     * KEYS[1] 锁KEY, KEYS[2] 读者过期时间 zset, ARGV[1] 读者, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> OBTAIN_READ_LOCK = RedisScript.of(
+            PRUNE_EXPIRED_READERS +
+                    "local mode = redis.call('HGET', KEYS[1], 'mode')\n" +
+                    "if mode == false or mode == 'read' then\n" +
+                    "  local expireAfter = tonumber(ARGV[2])\n" +
+                    "  redis.call('HSET', KEYS[1], 'mode', 'read')\n" +
+                    "  redis.call('HINCRBY', KEYS[1], ARGV[1], 1)\n" +
+                    "  redis.call('ZADD', KEYS[2], now + expireAfter, ARGV[1])\n" +
+                    "  for _, key in ipairs(KEYS) do\n" +
+                    "    if redis.call('PTTL', key) < expireAfter then\n" +
+                    "      redis.call('PEXPIRE', key, expireAfter)\n" +
+                    "    end\n" +
+                    "  end\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 释放读锁,先清理过期的读者,最后一个读者释放时删除并发布释放通知
+     * KEYS[1] 锁KEY, KEYS[2] 读者过期时间 zset, ARGV[1] 读者, ARGV[2] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_READ_LOCK = RedisScript.of(
+            PRUNE_EXPIRED_READERS +
+                    "if redis.call('HGET', KEYS[1], 'mode') ~= 'read' or\n" +
+                    "    redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then\n" +
+                    "  return false\n" +
+                    "end\n" +
+                    "if redis.call('HINCRBY', KEYS[1], ARGV[1], -1) <= 0 then\n" +
+                    "  redis.call('HDEL', KEYS[1], ARGV[1])\n" +
+                    "  redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+                    "end\n" +
+                    "if redis.call('HLEN', KEYS[1]) <= 1 then\n" +
+                    "  redis.call('DEL', KEYS[1], KEYS[2])\n" +
+                    "  if ARGV[2] ~= '' then\n" +
+                    "    redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return true", Boolean.class);
+
+    /**
+     * 续期读锁中的一个读者,只延长该读者自己的过期时间,锁KEY只会延长而不会缩短过期时间
+     * KEYS[1] 锁KEY, KEYS[2] 读者过期时间 zset, ARGV[1] 读者, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> RENEW_READ_LOCK = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "if redis.call('ZSCORE', KEYS[2], ARGV[1]) == false then\n" +
+                    "  return false\n" +
+                    "end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "local expireAfter = tonumber(ARGV[2])\n" +
+                    "redis.call('ZADD', KEYS[2], 'XX', now + expireAfter, ARGV[1])\n" +
+                    "for _, key in ipairs(KEYS) do\n" +
+                    "  if redis.call('PTTL', key) < expireAfter then\n" +
+                    "    redis.call('PEXPIRE', key, expireAfter)\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return true", Boolean.class);
+
+    /**
+     * 获取写锁,先清理过期的读者,没有任何读者和写者时才能获取;锁已属于当前写者时说明是本进程被取消的获取残留,直接重新占有
+     * KEYS[1] 锁KEY, KEYS[2] 读者过期时间 zset, ARGV[1] 写者, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> OBTAIN_WRITE_LOCK = RedisScript.of(
+            PRUNE_EXPIRED_READERS +
+                    "local mode = redis.call('HGET', KEYS[1], 'mode')\n" +
+                    "if mode == false then\n" +
+                    "  redis.call('HSET', KEYS[1], 'mode', 'write')\n" +
+                    "  redis.call('HSET', KEYS[1], ARGV[1], 1)\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "end\n" +
+                    "if mode == 'write' and redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "end\n" +
+                    "return false", Boolean.class);
+
+    /**
+     * 释放写锁,删除并发布释放通知
+     * KEYS[1] 锁KEY, ARGV[1] 写者, ARGV[2] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_WRITE_LOCK = RedisScript.of(
+            "if redis.call('HGET', KEYS[1], 'mode') == 'write' and redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then\n" +
+                    "  redis.call('DEL', KEYS[1])\n" +
+                    "  if ARGV[2] ~= '' then\n" +
+                    "    redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+                    "  end\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 获取公平锁,先清理队首超时的等待者,锁空闲且自己位于队首(或队列为空)时获取锁;
+     * 获取失败且需要等待时在队尾排队并刷新自己的等待截止时间,时间取 redis 服务端时间
+     * KEYS[1] 锁KEY, KEYS[2] 等待队列, KEYS[3] 等待截止时间 zset,
+     * ARGV[1] 锁值, ARGV[2] 过期时间(毫秒), ARGV[3] 等待者超时时间(毫秒), ARGV[4] 是否排队('1'/'0')
+     */
+    public static final RedisScript<Boolean> OBTAIN_FAIR_LOCK = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "while true do\n" +
+                    "  local first = redis.call('LINDEX', KEYS[2], 0)\n" +
+                    "  if first == false then\n" +
+                    "    break\n" +
+                    "  end\n" +
+                    "  local deadline = redis.call('ZSCORE', KEYS[3], first)\n" +
+                    "  if deadline ~= false and tonumber(deadline) > now then\n" +
+                    "    break\n" +
+                    "  end\n" +
+                    "  redis.call('LPOP', KEYS[2])\n" +
+                    "  redis.call('ZREM', KEYS[3], first)\n" +
+                    "end\n" +
+                    "local holder = redis.call('GET', KEYS[1])\n" +
+                    "if holder == ARGV[1] then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "  return true\n" +
+                    "end\n" +
+                    "if holder == false then\n" +
+                    "  local first = redis.call('LINDEX', KEYS[2], 0)\n" +
+                    "  if first == false or first == ARGV[1] then\n" +
+                    "    if first ~= false then\n" +
+                    "      redis.call('LPOP', KEYS[2])\n" +
+                    "      redis.call('ZREM', KEYS[3], first)\n" +
+                    "    end\n" +
+                    "    redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+                    "    return true\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "if ARGV[4] == '1' then\n" +
+                    "  if redis.call('ZADD', KEYS[3], now + tonumber(ARGV[3]), ARGV[1]) == 1 then\n" +
+                    "    redis.call('RPUSH', KEYS[2], ARGV[1])\n" +
+                    "  end\n" +
+                    "  redis.call('PEXPIRE', KEYS[2], ARGV[3])\n" +
+                    "  redis.call('PEXPIRE', KEYS[3], ARGV[3])\n" +
+                    "end\n" +
+                    "return false", Boolean.class);
+
+    /**
+     * 释放公平锁,同时把自己移出等待队列(放弃等待时也使用该脚本)
+     * KEYS[1] 锁KEY, KEYS[2] 等待队列, KEYS[3] 等待截止时间 zset,
+     * ARGV[1] 锁值, ARGV[2] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_FAIR_LOCK = RedisScript.of(
+            "if redis.call('ZREM', KEYS[3], ARGV[1]) == 1 then\n" +
+                    "  redis.call('LREM', KEYS[2], 0, ARGV[1])\n" +
+                    "end\n" +
+                    "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+                    "  redis.call('DEL', KEYS[1])\n" +
+                    "  if ARGV[2] ~= '' then\n" +
+                    "    redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+                    "  end\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 批量获取信号量许可,先清理过期的租约,剩余许可足够时一次记录整个租约;
+     * 租约成员格式为 "许可数:持有者",分数为 redis 服务端时间的过期时间戳;
+     * 已用许可数保存在同 slot 的计数KEY中,获取时只需扣减过期租约的许可,不遍历所有租约;
+     * 计数KEY的过期时间跟随租约 zset,计数KEY丢失(例如先于 zset 过期)时才遍历 zset 重建;
+     * 许可总数以分数为 +inf 的成员 "0:permits:总数" 记录在 zset 中,与租约同生命周期,存在有效租约时
+     * 以不同的许可总数获取返回负的已记录总数,没有有效租约时以新的总数覆盖
+     * KEYS[1] 信号量KEY, KEYS[2] 已用许可数KEY, ARGV[1] 租约成员, ARGV[2] 许可数, ARGV[3] 许可总数,
+     * ARGV[4] 租约过期时间(毫秒)
+     * 返回 1 获取成功, 0 许可不足, 负数 许可总数与已记录的不一致
+     */
+    public static final RedisScript<Long> ACQUIRE_PERMITS = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "local function permitsOf(member)\n" +
+                    "  return tonumber(string.match(member, '^(%d+):'))\n" +
+                    "end\n" +
+                    "local function store(used)\n" +
+                    "  local ttl = redis.call('PTTL', KEYS[1])\n" +
+                    "  if used > 0 and ttl > 0 then\n" +
+                    "    redis.call('SET', KEYS[2], used, 'PX', ttl)\n" +
+                    "  else\n" +
+                    "    redis.call('DEL', KEYS[2])\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now)\n" +
+                    "if #expired > 0 then\n" +
+                    "  redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)\n" +
+                    "end\n" +
+                    "local total = '0:permits:' .. ARGV[3]\n" +
+                    "local recorded = redis.call('ZRANGEBYSCORE', KEYS[1], '+inf', '+inf', 'LIMIT', 0, 1)[1]\n" +
+                    "if recorded ~= nil and recorded ~= total then\n" +
+                    "  if redis.call('ZCARD', KEYS[1]) > 1 then\n" +
+                    "    return -tonumber(string.match(recorded, '(%d+)$'))\n" +
+                    "  end\n" +
+                    "  redis.call('ZREM', KEYS[1], recorded)\n" +
+                    "end\n" +
+                    "local used = redis.call('GET', KEYS[2])\n" +
+                    "if used == false then\n" +
+                    "  used = 0\n" +
+                    "  for _, member in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do\n" +
+                    "    used = used + permitsOf(member)\n" +
+                    "  end\n" +
+                    "else\n" +
+                    "  used = tonumber(used)\n" +
+                    "  for _, member in ipairs(expired) do\n" +
+                    "    used = used - permitsOf(member)\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "if redis.call('ZSCORE', KEYS[1], ARGV[1]) == false then\n" +
+                    "  if used + tonumber(ARGV[2]) > tonumber(ARGV[3]) then\n" +
+                    "    store(used)\n" +
+                    "    return 0\n" +
+                    "  end\n" +
+                    "  used = used + tonumber(ARGV[2])\n" +
+                    "end\n" +
+                    "redis.call('ZADD', KEYS[1], now + tonumber(ARGV[4]), ARGV[1])\n" +
+                    "redis.call('ZADD', KEYS[1], 'NX', '+inf', total)\n" +
+                    "if redis.call('PTTL', KEYS[1]) < tonumber(ARGV[4]) then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[4])\n" +
+                    "end\n" +
+                    "store(used)\n" +
+                    "return 1", Long.class);
+
+    /**
+     * 归还信号量许可并发布释放通知,同时扣减已用许可数;最后一个租约归还时连同许可总数一起删除
+     * KEYS[1] 信号量KEY, KEYS[2] 已用许可数KEY, ARGV[1] 租约成员, ARGV[2] 释放通知 channel(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_PERMITS = RedisScript.of(
+            "if redis.call('ZREM', KEYS[1], ARGV[1]) == 1 then\n" +
+                    "  if redis.call('ZCOUNT', KEYS[1], '-inf', '(+inf') == 0 then\n" +
+                    "    redis.call('DEL', KEYS[1], KEYS[2])\n" +
+                    "  elseif redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+                    "    redis.call('DECRBY', KEYS[2], tonumber(string.match(ARGV[1], '^(%d+):')))\n" +
+                    "  end\n" +
+                    "  if ARGV[2] ~= '' then\n" +
+                    "    redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+                    "  end\n" +
+                    "  return true\n" +
+                    "else\n" +
+                    "  return false\n" +
+                    "end", Boolean.class);
+
+    /**
+     * 续期信号量租约
+     * KEYS[1] 信号量KEY, ARGV[1] 租约成员, ARGV[2] 租约过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> RENEW_PERMITS = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "if redis.call('ZSCORE', KEYS[1], ARGV[1]) == false then\n" +
+                    "  return false\n" +
+                    "end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "redis.call('ZADD', KEYS[1], 'XX', now + tonumber(ARGV[2]), ARGV[1])\n" +
+                    "if redis.call('PTTL', KEYS[1]) < tonumber(ARGV[2]) then\n" +
+                    "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+                    "end\n" +
+                    "return true", Boolean.class);
+
+    /**
+     * 同时获取多个锁,全部空闲(或已属于当前锁值)时才一起获取,否则一个都不获取
+     * KEYS 锁KEY列表, ARGV[1] 锁值, ARGV[2] 过期时间(毫秒)
+     */
+    public static final RedisScript<Boolean> OBTAIN_MULTI_LOCK = RedisScript.of(
+            "for _, key in ipairs(KEYS) do\n" +
+                    "  local lockId = redis.call('GET', key)\n" +
+                    "  if lockId ~= false and lockId ~= ARGV[1] then\n" +
+                    "    return false\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "for _, key in ipairs(KEYS) do\n" +
+                    "  redis.call('SET', key, ARGV[1], 'PX', ARGV[2])\n" +
+                    "end\n" +
+                    "return true", Boolean.class);
+
+    /**
+     * 同时释放多个锁,每个锁各自发布释放通知;有任何一个锁已不属于当前锁值时返回 false
+     * KEYS 锁KEY列表, ARGV[1] 锁值, ARGV[2] 释放通知 channel 前缀(为空时不发布)
+     */
+    public static final RedisScript<Boolean> RELEASE_MULTI_LOCK = RedisScript.of(
+            "local released = true\n" +
+                    "for _, key in ipairs(KEYS) do\n" +
+                    "  if redis.call('GET', key) == ARGV[1] then\n" +
+                    "    redis.call('DEL', key)\n" +
+                    "    if ARGV[2] ~= '' then\n" +
+                    "      redis.call('PUBLISH', ARGV[2] .. key, key)\n" +
+                    "    end\n" +
+                    "  else\n" +
+                    "    released = false\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return released", Boolean.class);
+
+    /**
+     * 批量获取相互独立的锁,每个锁单独判断,返回与 KEYS 顺序一致的结果列表(1 获取成功, 0 获取失败);
+     * 获取失败的锁向 wanted channel 发布消息,让保留租约的节点释放
+     * KEYS 锁KEY列表, ARGV[1] 锁值, ARGV[2] 过期时间(毫秒), ARGV[3] wanted channel 前缀(为空时不发布)
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> OBTAIN_EACH_LOCK = RedisScript.of(
+            "local result = {}\n" +
+                    "for i, key in ipairs(KEYS) do\n" +
+                    "  local lockId = redis.call('GET', key)\n" +
+                    "  if lockId == false or lockId == ARGV[1] then\n" +
+                    "    redis.call('SET', key, ARGV[1], 'PX', ARGV[2])\n" +
+                    "    result[i] = 1\n" +
+                    "  else\n" +
+                    "    result[i] = 0\n" +
+                    "    if ARGV[3] ~= nil and ARGV[3] ~= '' then\n" +
+                    "      redis.call('PUBLISH', ARGV[3] .. key, key)\n" +
+                    "    end\n" +
+                    "  end\n" +
+                    "end\n" +
+                    "return result", List.class);
+
+    /**
+     * 批量续期,每个锁按自己的结构判断是否仍属于持有者,返回与锁顺序一致的结果列表(1 续期成功, 0 已丢失);
+     * 结构为 string(排他锁)、hash(可重入锁、写锁)、zset(信号量租约,分数为 redis 服务端时间的过期时间戳)、
+     * reader(读锁中的读者,依次占用锁KEY与读者过期时间 zset 两个KEY)
+     * KEYS 锁KEY列表, ARGV 每个锁依次三个参数:结构、持有者、过期时间(毫秒)
+     */
+    @SuppressWarnings("rawtypes")
+    public static final RedisScript<List> RENEW_EACH = RedisScript.of(
+            "if redis.replicate_commands then\n" +
+                    "  redis.replicate_commands()\n" +
+                    "end\n" +
+                    "local now\n" +
+                    "local result = {}\n" +
+                    "local k = 0\n" +
+                    "for i = 1, #ARGV / 3 do\n" +
+                    "  local kind = ARGV[i * 3 - 2]\n" +
+                    "  local holder = ARGV[i * 3 - 1]\n" +
+                    "  local expireAfter = tonumber(ARGV[i * 3])\n" +
+                    "  k = k + 1\n" +
+                    "  local key = KEYS[k]\n" +
+                    "  local held\n" +
+                    "  if kind == 'zset' or kind == 'reader' then\n" +
+                    "    local deadlines = key\n" +
+                    "    if kind == 'reader' then\n" +
+                    "      k = k + 1\n" +
+                    "      deadlines = KEYS[k]\n" +
+                    "    end\n" +
+                    "    held = redis.call('ZSCORE', deadlines, holder) ~= false\n" +
+                    "    if held then\n" +
+                    "      if now == nil then\n" +
+                    "        local time = redis.call('TIME')\n" +
+                    "        now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "      end\n" +
+                    "      redis.call('ZADD', deadlines, 'XX', now + expireAfter, holder)\n" +
+                    "      if redis.call('PTTL', key) < expireAfter then\n" +
+                    "        redis.call('PEXPIRE', key, expireAfter)\n" +
+                    "      end\n" +
+                    "      if deadlines ~= key and redis.call('PTTL', deadlines) < expireAfter then\n" +
+                    "        redis.call('PEXPIRE', deadlines, expireAfter)\n" +
+                    "      end\n" +
+                    "    end\n" +
+                    "  else\n" +
+                    "    if kind == 'hash' then\n" +
+                    "      held = redis.call('HEXISTS', key, holder) == 1\n" +
+                    "    else\n" +
+                    "      held = redis.call('GET', key) == holder\n" +
+                    "    end\n" +
+                    "    if held then\n" +
+                    "      redis.call('PEXPIRE', key, expireAfter)\n" +
+                    "    end\n" +
+                    "  end\n" +
+                    "  result[i] = held and 1 or 0\n" +
+                    "end\n" +
+                    "return result", List.class);
+
+    /**
+     * 排他锁使用的脚本
+     */
+    public static final ScriptSet EXCLUSIVE_LOCK_SCRIPTS = new ScriptSet(OBTAIN_LOCK, RELEASE_LOCK, RENEW_LOCK,
+            PROCESSING_LOCK, OBTAIN_FENCED_LOCK);
+
+    /**
+     * 写锁使用的脚本
+     */
+    public static final ScriptSet WRITE_LOCK_SCRIPTS = new ScriptSet(OBTAIN_WRITE_LOCK, RELEASE_WRITE_LOCK,
+            RENEW_REENTRANT_LOCK, PROCESSING_HASH_LOCK, null, READERS_SUFFIX);
+
+    private static final List<RedisScript<?>> SCRIPTS = Collections.unmodifiableList(Arrays.asList(
+            OBTAIN_LOCK, OBTAIN_FENCED_LOCK, RELEASE_LOCK, RENEW_LOCK, PROCESSING_LOCK, PROCESSING_HASH_LOCK,
+            OBTAIN_REENTRANT_LOCK, RELEASE_REENTRANT_LOCK, RENEW_REENTRANT_LOCK,
+            OBTAIN_READ_LOCK, RELEASE_READ_LOCK, RENEW_READ_LOCK, OBTAIN_WRITE_LOCK, RELEASE_WRITE_LOCK,
+            OBTAIN_FAIR_LOCK, RELEASE_FAIR_LOCK, ACQUIRE_PERMITS, RELEASE_PERMITS, RENEW_PERMITS,
+            OBTAIN_MULTI_LOCK, RELEASE_MULTI_LOCK, OBTAIN_EACH_LOCK, RENEW_EACH));
+
+    private RedisReactiveLockScripts() {
+    }
+
+    /**
+     * 续期脚本在 {@link #RENEW_EACH} 中对应的结构
+     * @param renewScript 单个锁的续期脚本
+     * @return 结构,不支持批量续期时返回 null
+     */
+    @Nullable
+    static String renewKind(RedisScript<Boolean> renewScript) {
+        if (renewScript == RENEW_LOCK) {
+            return "string";
+        }
+        if (renewScript == RENEW_REENTRANT_LOCK) {
+            return "hash";
+        }
+        if (renewScript == RENEW_PERMITS) {
+            return "zset";
+        }
+        if (renewScript == RENEW_READ_LOCK) {
+            return "reader";
+        }
+        return null;
+    }
+
+    /**
+     * 通过 SCRIPT LOAD 预加载所有锁脚本
+     * @param reactiveStringRedisTemplate redis Template
+     * @return mono
+     */
+    public static Mono<Void> load(ReactiveStringRedisTemplate reactiveStringRedisTemplate) {
+        return reactiveStringRedisTemplate.execute(connection -> Flux.fromIterable(SCRIPTS)
+                        .concatMap(script -> connection.scriptingCommands()
+                                .scriptLoad(ByteBuffer.wrap(script.getScriptAsString()
+                                        .getBytes(StandardCharsets.UTF_8)))))
+                .doOnNext(sha1 -> {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("load reactive lock script success,sha1:{}", sha1);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * 单一持有者锁的一组脚本,参数约定相同:
+     * 获取 KEYS[1] 锁KEY, ARGV[1] 锁值, ARGV[2] 过期时间(毫秒);
+     * 释放 KEYS[1] 锁KEY, ARGV[1] 锁值, ARGV[2] 释放通知 channel;
+     * 续期 KEYS[1] 锁KEY, ARGV[1] 锁值, ARGV[2] 过期时间(毫秒);
+     * 是否持有 KEYS[1] 锁KEY, ARGV[1] 锁值;
+     * 带 fencing token 的获取(可选,存在时替代获取脚本) KEYS[1] 锁KEY, KEYS[2] fencing 计数器KEY, ARGV[1] 锁值,
+     * ARGV[2] 过期时间(毫秒), ARGV[3] wanted channel, ARGV[4] 是否生成 token;
+     * 所有脚本的 KEYS[2] 都是与锁KEY同 slot 的关联KEY,默认为 fencing 计数器,写锁为读者过期时间 zset
+     */
+    public static final class ScriptSet {
+
+        private final RedisScript<Boolean> obtain;
+        private final RedisScript<Boolean> release;
+        private final RedisScript<Boolean> renew;
+        private final RedisScript<Boolean> processing;
+        private final RedisScript<Long> fencedObtain;
+        private final String companionKeySuffix;
+
+        public ScriptSet(RedisScript<Boolean> obtain, RedisScript<Boolean> release,
+                         RedisScript<Boolean> renew, RedisScript<Boolean> processing) {
+            this(obtain, release, renew, processing, null);
+        }
+
+        public ScriptSet(RedisScript<Boolean> obtain, RedisScript<Boolean> release,
+                         RedisScript<Boolean> renew, RedisScript<Boolean> processing,
+                         @Nullable RedisScript<Long> fencedObtain) {
+            this(obtain, release, renew, processing, fencedObtain, ":fence");
+        }
+
+        public ScriptSet(RedisScript<Boolean> obtain, RedisScript<Boolean> release,
+                         RedisScript<Boolean> renew, RedisScript<Boolean> processing,
+                         @Nullable RedisScript<Long> fencedObtain, String companionKeySuffix) {
+            this.obtain = obtain;
+            this.release = release;
+            this.renew = renew;
+            this.processing = processing;
+            this.fencedObtain = fencedObtain;
+            this.companionKeySuffix = companionKeySuffix;
+        }
+
+        public RedisScript<Boolean> getObtain() {
+            return obtain;
+        }
+
+        public RedisScript<Boolean> getRelease() {
+            return release;
+        }
+
+        public RedisScript<Boolean> getRenew() {
+            return renew;
+        }
+
+        public RedisScript<Boolean> getProcessing() {
+            return processing;
+        }
+
+        @Nullable
+        public RedisScript<Long> getFencedObtain() {
+            return fencedObtain;
+        }
+
+        public String getCompanionKeySuffix() {
+            return companionKeySuffix;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * redis 读写锁中的读锁
+ * 每次订阅是一个读者,读者标识通过 Reactor {@link Context} 传递并记录在 hash 结构的锁KEY中,
+ * 同一进程内的读者不经过本地 FIFO 队列,可以同时持有;最后一个读者释放时才删除锁KEY并发布释放通知。
+ * 每个读者在同 slot 的 zset 中有各自的过期时间,由看门狗单独续期,停止续期的读者过期后不会阻塞写锁。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisReactiveReadLock extends AbstractReactiveLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReactiveReadLock.class);
+
+    private static final String READER_CONTEXT_KEY = RedisReactiveReadLock.class.getName() + ".reader";
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong READER_SEQUENCE = new AtomicLong();
+    private final AtomicInteger readers = new AtomicInteger();
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisReactiveReadLockExecutor reactiveLockExecutor;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final RedisLockWatchdog watchdog;
+
+    /**
+     * Instantiates a new Redis reactive read lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY,与写锁相同
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisReactiveReadLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                 String lockKey,
+                                 Duration expireAfter,
+                                 RedisLockReleaseNotifier releaseNotifier,
+                                 Duration retryInterval,
+                                 RedisLockWatchdog watchdog) {
+        super(retryInterval);
+        Assert.notNull(reactiveStringRedisTemplate,
+                "ReactiveStringRedisTemplate cannot be null");
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.reactiveLockExecutor = new RedisReactiveReadLockExecutor(lockKey,
+                expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter);
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    @Override
+    public boolean isHeldLocally() {
+        return this.readers.get() > 0;
+    }
+
+    @Override
+    protected boolean isLocalExclusive() {
+        return false;
+    }
+
+    @Override
+    protected <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime, Function<Boolean, Flux<T>> function) {
+        return super.executeFlux(lockExpireTime, function)
+                .contextWrite(context -> context.put(READER_CONTEXT_KEY, nextReader()));
+    }
+
+    @Override
+    protected <T> Mono<T> executeMono(@Nullable Duration lockExpireTime, Function<Boolean, Mono<T>> function) {
+        return super.executeMono(lockExpireTime, function)
+                .contextWrite(context -> context.put(READER_CONTEXT_KEY, nextReader()));
+    }
+
+    @Override
+    protected Mono<Boolean> acquire(@Nullable Duration lockExpireTime) {
+        return Mono.deferContextual(contextView -> super.acquire(lockExpireTime)
+                .doOnNext(result -> {
+                    if (result) {
+                        this.readers.incrementAndGet();
+                        if (this.watchdog != null) {
+                            this.watchdog.watch(this.reactiveLockExecutor.lockKey,
+                                    contextView.<String>get(READER_CONTEXT_KEY),
+                                    this.reactiveLockExecutor.expireAfter,
+                                    RedisReactiveLockScripts.RENEW_READ_LOCK);
+                        }
+                    }
+                }));
+    }
+
+    @Override
+    protected Mono<Boolean> release(boolean lockResult) {
+        if (!lockResult) {
+            return Mono.just(false);
+        }
+        return Mono.deferContextual(contextView -> {
+            if (this.watchdog != null) {
+                this.watchdog.unwatch(this.reactiveLockExecutor.lockKey, contextView.<String>get(READER_CONTEXT_KEY));
+            }
+            return super.release(true)
+                    .doFinally(signal -> this.readers.decrementAndGet());
+        });
+    }
+
+    private static String nextReader() {
+        return NODE_ID + ':' + READER_SEQUENCE.incrementAndGet();
+    }
+
+    private class RedisReactiveReadLockExecutor implements ReactiveLockExecutor {
+
+        private final String lockKey;
+        /**
+         * 锁KEY与同 slot 的读者过期时间 zset
+         */
+        private final List<String> keys;
+        private final long expireAfter;
+        private final String expireAfterArgument;
+        private volatile long lockedAt;
+
+        public RedisReactiveReadLockExecutor(String lockKey, Duration expireAfter) {
+            Assert.notNull(lockKey, "'lockKey' cannot be null");
+            this.lockKey = lockKey;
+            this.keys = Arrays.asList(lockKey,
+                    RedisLockKeys.sameSlot(lockKey, RedisReactiveLockScripts.READERS_SUFFIX));
+            this.expireAfter = expireAfter.toMillis();
+            this.expireAfterArgument = String.valueOf(this.expireAfter);
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            // 读者各自持有独立的标识,本进程内没有读者时即视为未持有
+            return Mono.just(RedisReactiveReadLock.this.readers.get() > 0);
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            return Mono.deferContextual(contextView -> Mono
+                            .from(RedisReactiveReadLock.this.reactiveStringRedisTemplate.execute(
+                                    RedisReactiveLockScripts.OBTAIN_READ_LOCK,
+                                    this.keys,
+                                    LettuceLists.newList(contextView.<String>get(READER_CONTEXT_KEY),
+                                            this.expireAfterArgument))
+                            ))
+                    .map(success -> {
+                        boolean result = Boolean.TRUE.equals(success);
+                        if (result) {
+                            this.lockedAt = System.currentTimeMillis();
+                        }
+                        return result;
+                    })
+                    .switchIfEmpty(Mono.just(false));
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            String channel = RedisReactiveReadLock.this.releaseNotifier == null ? "" :
+                    RedisReactiveReadLock.this.releaseNotifier.channel(this.lockKey);
+            return Mono.deferContextual(contextView -> Mono
+                            .from(RedisReactiveReadLock.this.reactiveStringRedisTemplate.execute(
+                                    RedisReactiveLockScripts.RELEASE_READ_LOCK,
+                                    this.keys,
+                                    LettuceLists.newList(contextView.<String>get(READER_CONTEXT_KEY), channel))
+                            ))
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false)
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKey);
+                        }
+                    });
+        }
+
+        @Override
+        public Mono<Void> awaitRelease() {
+            if (RedisReactiveReadLock.this.releaseNotifier == null) {
+                return Mono.never();
+            }
+            return RedisReactiveReadLock.this.releaseNotifier.awaitRelease(this.lockKey);
+        }
+
+        @Override
+        public String toString() {
+            return "RedisReactiveReadLockExecutor [lockKey=" + this.lockKey
+                    + ",lockedAt=" + this.lockedAt
+                    + ", readers=" + RedisReactiveReadLock.this.readers.get()
+                    + "]";
+        }
+    }
+}
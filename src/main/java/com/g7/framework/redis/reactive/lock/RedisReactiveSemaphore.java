@@ -0,0 +1,255 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * redis 信号量
+ * 许可以租约的形式记录在 zset 中,成员为 "许可数:持有者",分数为租约过期时间;每次获取无论许可数多少都只有一次
+ * 脚本往返,过期的租约在下一次获取时清理。许可总数同样记录在 zset 中,存在有效租约时以不同的许可总数获取会
+ * 抛出 {@link IllegalArgumentException}。开启看门狗时临界区订阅存活期间持续续期租约。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisReactiveSemaphore implements StatefulReactiveSemaphore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReactiveSemaphore.class);
+
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofMillis(100);
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong LEASE_SEQUENCE = new AtomicLong();
+    private static final String NOT_ACQUIRED = "";
+    private final AtomicInteger holders = new AtomicInteger();
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final String semaphoreKey;
+    /**
+     * 信号量KEY与同 slot 的已用许可数KEY
+     */
+    private final List<String> keys;
+    private final int permits;
+    private final long expireAfter;
+    private final String expireAfterArgument;
+    private final String permitsArgument;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final Duration retryInterval;
+    private final RedisLockWatchdog watchdog;
+    private volatile long acquiredAt;
+
+    /**
+     * Instantiates a new Redis reactive semaphore.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param semaphoreKey                信号量KEY
+     * @param permits                     许可总数
+     * @param expireAfter                 租约过期时间
+     * @param releaseNotifier             许可归还通知,为空时等待者只轮询
+     * @param retryInterval               获取许可失败后的重试间隔
+     * @param watchdog                    租约续期看门狗,为空时租约在 expireAfter 后过期
+     */
+    public RedisReactiveSemaphore(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                  String semaphoreKey,
+                                  int permits,
+                                  Duration expireAfter,
+                                  RedisLockReleaseNotifier releaseNotifier,
+                                  Duration retryInterval,
+                                  RedisLockWatchdog watchdog) {
+        Assert.notNull(reactiveStringRedisTemplate,
+                "ReactiveStringRedisTemplate cannot be null");
+        Assert.notNull(semaphoreKey, "'semaphoreKey' cannot be null");
+        Assert.isTrue(permits > 0, "'permits' must be positive");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.semaphoreKey = semaphoreKey;
+        this.keys = Arrays.asList(semaphoreKey, RedisLockKeys.sameSlot(semaphoreKey, ":used"));
+        this.permits = permits;
+        this.permitsArgument = String.valueOf(permits);
+        this.expireAfter = (expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter).toMillis();
+        this.expireAfterArgument = String.valueOf(this.expireAfter);
+        this.releaseNotifier = releaseNotifier;
+        this.retryInterval = retryInterval == null || retryInterval.isNegative() || retryInterval.isZero() ?
+                DEFAULT_RETRY_INTERVAL : retryInterval;
+        this.watchdog = watchdog;
+    }
+
+    @Override
+    public int getPermits() {
+        return this.permits;
+    }
+
+    @Override
+    public long latestAcquireTime() {
+        return this.acquiredAt;
+    }
+
+    @Override
+    public boolean isHeldLocally() {
+        return this.holders.get() > 0;
+    }
+
+    @Override
+    public <T> Mono<T> tryAcquire(int permits, @NotNull Function<Boolean, Mono<T>> function) {
+        return executeMono(permits, null, function);
+    }
+
+    @Override
+    public <T> Flux<T> tryAcquireMany(int permits, @NotNull Function<Boolean, Flux<T>> function) {
+        return executeFlux(permits, null, function);
+    }
+
+    @Override
+    public <T> Mono<T> acquire(int permits, @NotNull Duration duration,
+                               @NotNull Function<Boolean, Mono<T>> function) {
+        return executeMono(permits, duration, function);
+    }
+
+    @Override
+    public <T> Flux<T> acquireMany(int permits, @NotNull Duration duration,
+                                   @NotNull Function<Boolean, Flux<T>> function) {
+        return executeFlux(permits, duration, function);
+    }
+
+    private <T> Mono<T> executeMono(int permits, @Nullable Duration duration, Function<Boolean, Mono<T>> function) {
+        return Mono.usingWhen(
+                acquireLease(permits, duration),
+                lease -> function.apply(!lease.isEmpty()),
+                this::releaseLease,
+                (lease, err) -> releaseLease(lease),
+                this::releaseLease
+        );
+    }
+
+    private <T> Flux<T> executeFlux(int permits, @Nullable Duration duration, Function<Boolean, Flux<T>> function) {
+        return Flux.usingWhen(
+                acquireLease(permits, duration),
+                lease -> function.apply(!lease.isEmpty()),
+                this::releaseLease,
+                (lease, err) -> releaseLease(lease),
+                this::releaseLease
+        );
+    }
+
+    /**
+     * 获取租约,获取失败时返回空字符串
+     * @param permits  许可数
+     * @param duration 等待时间,为空或负数时只尝试一次
+     * @return 租约成员
+     */
+    private Mono<String> acquireLease(int permits, @Nullable Duration duration) {
+        if (permits <= 0 || permits > this.permits) {
+            return Mono.error(new IllegalArgumentException("'permits' must be between 1 and " + this.permits));
+        }
+        return Mono.defer(() -> {
+            String lease = permits + ":" + NODE_ID + ':' + LEASE_SEQUENCE.incrementAndGet();
+            Mono<Boolean> obtain = Objects.isNull(duration) || duration.isNegative() ? obtain(lease, permits) :
+                    obtainUntil(lease, permits, System.nanoTime() + duration.toNanos());
+            return obtain
+                    .map(result -> {
+                        if (!result) {
+                            return NOT_ACQUIRED;
+                        }
+                        this.holders.incrementAndGet();
+                        this.acquiredAt = System.currentTimeMillis();
+                        if (this.watchdog != null) {
+                            this.watchdog.watch(this.semaphoreKey, lease, this.expireAfter,
+                                    RedisReactiveLockScripts.RENEW_PERMITS);
+                        }
+                        return lease;
+                    })
+                    .doOnCancel(() -> release(lease)
+                            .onErrorResume(throwable -> Mono.just(false))
+                            .subscribe());
+        });
+    }
+
+    private Mono<Boolean> releaseLease(String lease) {
+        if (lease.isEmpty()) {
+            return Mono.just(false);
+        }
+        if (this.watchdog != null) {
+            this.watchdog.unwatch(this.semaphoreKey, lease);
+        }
+        return release(lease)
+                .doOnNext(released -> {
+                    if (!released) {
+                        logger.warn("Semaphore({}) lease was released in the store due to expiration." +
+                                "The concurrency limit protected by this semaphore may have been" +
+                                " exceeded.", this.semaphoreKey);
+                    }
+                })
+                .doFinally(signal -> this.holders.decrementAndGet());
+    }
+
+    private Mono<Boolean> obtain(String lease, int permits) {
+        return Mono
+                .from(this.reactiveStringRedisTemplate.execute(
+                        RedisReactiveLockScripts.ACQUIRE_PERMITS,
+                        this.keys,
+                        LettuceLists.newList(lease, String.valueOf(permits), this.permitsArgument,
+                                this.expireAfterArgument))
+                )
+                .flatMap(result -> result < 0 ? Mono.error(new IllegalArgumentException("Semaphore(" +
+                        this.semaphoreKey + ") is held with " + -result + " permits in redis, cannot acquire it " +
+                        "with " + this.permits + " permits")) : Mono.just(result == 1))
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Boolean> obtainUntil(String lease, int permits, long deadline) {
+        return obtain(lease, permits)
+                .filter(result -> result)
+                .repeatWhenEmpty(repeats -> repeats
+                        .takeWhile(repeat -> deadline - System.nanoTime() > 0)
+                        .concatMap(repeat -> {
+                            if (logger.isTraceEnabled()) {
+                                logger.trace("repeat acquire permits,repeat times:{}", repeat);
+                            }
+                            Duration backoff = Duration.ofNanos(
+                                    Math.min(this.retryInterval.toNanos(), deadline - System.nanoTime()));
+                            return Mono.firstWithSignal(awaitRelease(), Mono.delay(backoff).then())
+                                    .thenReturn(repeat);
+                        }))
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Boolean> release(String lease) {
+        String channel = this.releaseNotifier == null ? "" : this.releaseNotifier.channel(this.semaphoreKey);
+        return Mono
+                .from(this.reactiveStringRedisTemplate.execute(
+                        RedisReactiveLockScripts.RELEASE_PERMITS,
+                        this.keys,
+                        LettuceLists.newList(lease, channel))
+                )
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Void> awaitRelease() {
+        if (this.releaseNotifier == null) {
+            return Mono.never();
+        }
+        return this.releaseNotifier.awaitRelease(this.semaphoreKey);
+    }
+
+    @Override
+    public String toString() {
+        return "RedisReactiveSemaphore [semaphoreKey=" + this.semaphoreKey
+                + ",permits=" + this.permits
+                + ",acquiredAt=" + this.acquiredAt
+                + ", holders=" + this.holders.get()
+                + "]";
+    }
+}
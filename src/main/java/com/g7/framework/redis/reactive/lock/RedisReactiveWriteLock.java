@@ -0,0 +1,33 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * redis 读写锁中的写锁
+ * 与 {@link RedisReactiveReadLock} 共用同一个 hash 结构的锁KEY,没有任何读者和写者时才能获取。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisReactiveWriteLock extends RedisReactiveLock {
+
+    /**
+     * Instantiates a new Redis reactive write lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisReactiveWriteLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                  String lockKey,
+                                  Duration expireAfter,
+                                  RedisLockReleaseNotifier releaseNotifier,
+                                  Duration retryInterval,
+                                  RedisLockWatchdog watchdog) {
+        super(reactiveStringRedisTemplate, lockKey, expireAfter, releaseNotifier, retryInterval, watchdog,
+                RedisReactiveLockScripts.WRITE_LOCK_SCRIPTS);
+    }
+}
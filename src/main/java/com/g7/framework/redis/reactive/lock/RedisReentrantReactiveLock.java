@@ -0,0 +1,237 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.lettuce.core.internal.LettuceLists;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * redis 可重入锁
+ * 持有者标识通过 Reactor {@link Context} 传递,同一个持有者在临界区内再次获取同一把锁时只在 redis hash 上
+ * 增加持有次数,一次往返完成且不会阻塞;持有次数减到零时才真正释放。
+ * 上下文中没有持有者时在最外层获取锁时生成,也可以由调用方通过 {@link #OWNER_CONTEXT_KEY} 自行指定(例如请求ID)。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisReentrantReactiveLock extends AbstractReactiveLock {
+
+    /**
+     * 持有者在 Reactor Context 中的KEY
+     */
+    public static final String OWNER_CONTEXT_KEY = RedisReentrantReactiveLock.class.getName() + ".owner";
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReentrantReactiveLock.class);
+
+    private static final Duration DEFAULT_EXPIRE_AFTER = Duration.ofSeconds(60);
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final AtomicLong OWNER_SEQUENCE = new AtomicLong();
+    private final AtomicInteger holdCount = new AtomicInteger();
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisReentrantReactiveLockExecutor reactiveLockExecutor;
+    private final RedisLockReleaseNotifier releaseNotifier;
+    private final RedisLockWatchdog watchdog;
+    private volatile String localOwner;
+
+    /**
+     * Instantiates a new Redis reentrant reactive lock.
+     * @param reactiveStringRedisTemplate redis Template
+     * @param lockKey                     锁KEY
+     * @param expireAfter                 锁过期时间
+     * @param releaseNotifier             锁释放通知,为空时等待者只轮询
+     * @param retryInterval               获取锁失败后的重试间隔
+     * @param watchdog                    锁续期看门狗,为空时锁在 expireAfter 后过期
+     */
+    public RedisReentrantReactiveLock(ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                      String lockKey,
+                                      Duration expireAfter,
+                                      RedisLockReleaseNotifier releaseNotifier,
+                                      Duration retryInterval,
+                                      RedisLockWatchdog watchdog) {
+        super(retryInterval);
+        Assert.notNull(reactiveStringRedisTemplate,
+                "ReactiveStringRedisTemplate cannot be null");
+        Assert.notNull(lockKey, "'lockKey' cannot be null");
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.reactiveLockExecutor = new RedisReentrantReactiveLockExecutor(lockKey,
+                expireAfter == null ? DEFAULT_EXPIRE_AFTER : expireAfter);
+    }
+
+    @Override
+    protected ReactiveLockExecutor getReactiveLockExecutor() {
+        return this.reactiveLockExecutor;
+    }
+
+    @Override
+    public long latestLockTime() {
+        return this.reactiveLockExecutor.lockAt();
+    }
+
+    @Override
+    public Mono<Boolean> processing() {
+        return this.reactiveLockExecutor.processing();
+    }
+
+    @Override
+    protected <T> Flux<T> executeFlux(@Nullable Duration lockExpireTime, Function<Boolean, Flux<T>> function) {
+        return super.executeFlux(lockExpireTime, function)
+                .contextWrite(RedisReentrantReactiveLock::withOwner);
+    }
+
+    @Override
+    protected <T> Mono<T> executeMono(@Nullable Duration lockExpireTime, Function<Boolean, Mono<T>> function) {
+        return super.executeMono(lockExpireTime, function)
+                .contextWrite(RedisReentrantReactiveLock::withOwner);
+    }
+
+    @Override
+    protected Mono<Boolean> acquire(@Nullable Duration lockExpireTime) {
+        return Mono.deferContextual(contextView -> {
+            String owner = contextView.get(OWNER_CONTEXT_KEY);
+            if (owner.equals(this.localOwner)) {
+                // 重入: 本进程内已由同一个持有者持有,不排队也不重试
+                return this.reactiveLockExecutor.obtain()
+                        .doOnNext(result -> {
+                            if (result) {
+                                this.holdCount.incrementAndGet();
+                            }
+                        });
+            }
+            return super.acquire(lockExpireTime)
+                    .doOnNext(result -> {
+                        if (result) {
+                            this.localOwner = owner;
+                            this.holdCount.set(1);
+                            if (this.watchdog != null) {
+                                this.watchdog.watch(this.reactiveLockExecutor.lockKey, owner,
+                                        this.reactiveLockExecutor.expireAfter,
+                                        RedisReactiveLockScripts.RENEW_REENTRANT_LOCK);
+                            }
+                        }
+                    });
+        });
+    }
+
+    @Override
+    protected Mono<Boolean> release(boolean lockResult) {
+        if (!lockResult) {
+            return Mono.just(false);
+        }
+        if (this.holdCount.decrementAndGet() > 0) {
+            return this.reactiveLockExecutor.release();
+        }
+        if (this.watchdog != null) {
+            this.watchdog.unwatch(this.reactiveLockExecutor.lockKey, this.localOwner);
+        }
+        this.localOwner = null;
+        return super.release(true);
+    }
+
+    private static Context withOwner(Context context) {
+        if (context.hasKey(OWNER_CONTEXT_KEY)) {
+            return context;
+        }
+        return context.put(OWNER_CONTEXT_KEY, NODE_ID + ':' + OWNER_SEQUENCE.incrementAndGet());
+    }
+
+    private class RedisReentrantReactiveLockExecutor implements ReactiveLockExecutor {
+
+        private final String lockKey;
+        private final long expireAfter;
+        private final String expireAfterArgument;
+        private volatile long lockedAt;
+
+        public RedisReentrantReactiveLockExecutor(String lockKey, Duration expireAfter) {
+            Assert.notNull(lockKey, "'lockKey' cannot be null");
+            this.lockKey = lockKey;
+            this.expireAfter = expireAfter.toMillis();
+            this.expireAfterArgument = String.valueOf(this.expireAfter);
+        }
+
+        @Override
+        public long lockAt() {
+            return this.lockedAt;
+        }
+
+        @Override
+        public Mono<Boolean> processing() {
+            String owner = RedisReentrantReactiveLock.this.localOwner;
+            if (owner == null) {
+                return Mono.just(false);
+            }
+            return RedisReentrantReactiveLock.this.reactiveStringRedisTemplate.opsForHash()
+                    .hasKey(this.lockKey, owner)
+                    .defaultIfEmpty(false);
+        }
+
+        @Override
+        public Mono<Boolean> obtain() {
+            return Mono.deferContextual(contextView -> Mono
+                            .from(RedisReentrantReactiveLock.this.reactiveStringRedisTemplate.execute(
+                                    RedisReactiveLockScripts.OBTAIN_REENTRANT_LOCK,
+                                    Collections.singletonList(this.lockKey),
+                                    LettuceLists.newList(contextView.<String>get(OWNER_CONTEXT_KEY),
+                                            this.expireAfterArgument))
+                            ))
+                    .map(success -> {
+                        boolean result = Boolean.TRUE.equals(success);
+                        if (result) {
+                            this.lockedAt = System.currentTimeMillis();
+                        }
+                        return result;
+                    })
+                    .switchIfEmpty(Mono.just(false));
+        }
+
+        @Override
+        public Mono<Boolean> release() {
+            String channel = RedisReentrantReactiveLock.this.releaseNotifier == null ? "" :
+                    RedisReentrantReactiveLock.this.releaseNotifier.channel(this.lockKey);
+            return Mono.deferContextual(contextView -> Mono
+                            .from(RedisReentrantReactiveLock.this.reactiveStringRedisTemplate.execute(
+                                    RedisReactiveLockScripts.RELEASE_REENTRANT_LOCK,
+                                    Collections.singletonList(this.lockKey),
+                                    LettuceLists.newList(contextView.<String>get(OWNER_CONTEXT_KEY),
+                                            this.expireAfterArgument, channel))
+                            ))
+                    .map(Boolean.TRUE::equals)
+                    .defaultIfEmpty(false)
+                    .doOnNext(released -> {
+                        if (!released) {
+                            logger.warn("Lock({}) was released in the store due to expiration." +
+                                    "The integrity of data protected by this lock may have been" +
+                                    " compromised.", this.lockKey);
+                        }
+                    });
+        }
+
+        @Override
+        public Mono<Void> awaitRelease() {
+            if (RedisReentrantReactiveLock.this.releaseNotifier == null) {
+                return Mono.never();
+            }
+            return RedisReentrantReactiveLock.this.releaseNotifier.awaitRelease(this.lockKey);
+        }
+
+        @Override
+        public String toString() {
+            return "RedisReentrantReactiveLockExecutor [lockKey=" + this.lockKey
+                    + ",lockedAt=" + this.lockedAt
+                    + ", owner=" + RedisReentrantReactiveLock.this.localOwner
+                    + "]";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.g7.framework.redis.reactive.lock;
 
+import org.jetbrains.annotations.Nullable;
 import reactor.core.publisher.Mono;
 
 /**
@@ -20,4 +21,29 @@ public interface StatefulReactiveLock extends ReactiveLock {
      * @return mono
      */
     Mono<Boolean> processing();
+
+    /**
+     * 本地是否持有锁或存在排队等待的订阅者
+     * @return boolean
+     */
+    boolean isHeldLocally();
+
+    /**
+     * 批量检查是否仍持有锁时使用的 redis KEY,KEY 的值等于 {@link #ownershipValue()} 时视为持有;
+     * 锁不是字符串结构时返回 null,由 {@link #processing()} 单独检查
+     * @return redis KEY
+     */
+    @Nullable
+    default String ownershipKey() {
+        return null;
+    }
+
+    /**
+     * 持有锁时 {@link #ownershipKey()} 的值,本地没有持有者时返回 null
+     * @return 锁值
+     */
+    @Nullable
+    default String ownershipValue() {
+        return null;
+    }
 }
@@ -0,0 +1,21 @@
+package com.g7.framework.redis.reactive.lock;
+
+/**
+ * 有状态的 reactive 信号量
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface StatefulReactiveSemaphore extends ReactiveSemaphore {
+
+    /**
+     * 最新获取许可的时间
+     * @return long
+     */
+    long latestAcquireTime();
+
+    /**
+     * 本地是否持有许可或存在等待的订阅者
+     * @return boolean
+     */
+    boolean isHeldLocally();
+}
@@ -0,0 +1,29 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 以 INFO 级别输出被采样的操作及结果,载荷按 {@link RedisOperationInterceptors} 的长度上限截断
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class LoggingRedisOperationInterceptor implements RedisOperationInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingRedisOperationInterceptor.class);
+
+    @Override
+    public void onSuccess(RedisOperation operation, @Nullable Object result) {
+        if (logger.isInfoEnabled()) {
+            logger.info("{} success result is {}", operation, operation.payload(result));
+        }
+    }
+
+    @Override
+    public void onError(RedisOperation operation, Throwable throwable) {
+        if (logger.isInfoEnabled()) {
+            logger.info("{} failed: {}", operation, throwable.getMessage());
+        }
+    }
+}
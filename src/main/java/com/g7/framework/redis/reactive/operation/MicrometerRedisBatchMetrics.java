@@ -0,0 +1,51 @@
+package com.g7.framework.redis.reactive.operation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基于 Micrometer 的批量读取指标,以命令名作为 command 标签
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class MicrometerRedisBatchMetrics implements RedisBatchMetrics {
+
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>(16);
+    private final MeterRegistry meterRegistry;
+
+    public MicrometerRedisBatchMetrics(MeterRegistry meterRegistry) {
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void batched(String command, int requests, int keys) {
+        Meters commandMeters = this.meters.get(command);
+        if (commandMeters == null) {
+            commandMeters = this.meters.computeIfAbsent(command, key -> new Meters(this.meterRegistry, key));
+        }
+        commandMeters.requests.record(requests);
+        commandMeters.keys.record(keys);
+    }
+
+    private static final class Meters {
+
+        private final DistributionSummary requests;
+        private final DistributionSummary keys;
+
+        private Meters(MeterRegistry meterRegistry, String command) {
+            this.requests = DistributionSummary.builder("reactive.redis.batch.requests")
+                    .description("point reads merged into one batch")
+                    .tag("command", command)
+                    .register(meterRegistry);
+            this.keys = DistributionSummary.builder("reactive.redis.batch.keys")
+                    .description("distinct keys or fields read by one batch")
+                    .tag("command", command)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * 近端缓存按KEY前缀划分的区域配置
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class NearCacheRegion {
+
+    private final String prefix;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Duration ttl;
+
+    /**
+     * 实例化近端缓存区域
+     * @param prefix     KEY前缀
+     * @param maxEntries 最多缓存的KEY数量
+     * @param maxWeight  最大总权重,见 {@link ReactiveRedisNearCache#setWeigher}
+     * @param ttl        缓存的最长存活时间
+     */
+    public NearCacheRegion(String prefix, int maxEntries, long maxWeight, Duration ttl) {
+        Assert.hasText(prefix, "'prefix' must not be empty");
+        Assert.isTrue(maxEntries > 0, "'maxEntries' must be positive");
+        Assert.isTrue(maxWeight > 0, "'maxWeight' must be positive");
+        Assert.isTrue(ttl != null && !ttl.isNegative() && !ttl.isZero(), "'ttl' must be positive");
+        this.prefix = prefix;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    @Override
+    public String toString() {
+        return "NearCacheRegion{" +
+                "prefix='" + prefix + '\'' +
+                ", maxEntries=" + maxEntries +
+                ", maxWeight=" + maxWeight +
+                ", ttl=" + ttl +
+                '}';
+    }
+}
@@ -1,7 +1,5 @@
 package com.g7.framework.redis.reactive.operation
 
-import org.slf4j.Logger
-import org.slf4j.LoggerFactory
 import org.springframework.data.redis.core.ReactiveHashOperations
 import org.springframework.data.redis.core.ReactiveRedisTemplate
 import org.springframework.data.redis.core.ScanOptions
@@ -14,13 +12,20 @@ import reactor.core.publisher.Mono
  * @date 2022/3/1 4:09 下午
  * @since 1.0.0
  */
-class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>) :
+class ReactiveRedisHash @JvmOverloads constructor(
+    private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>,
+    private val interceptors: RedisOperationInterceptors = RedisOperationInterceptors.NONE,
+    private val nearCache: ReactiveRedisNearCache? = null,
+    private val coalescer: RedisOperationCoalescer? = null,
+    private val batcher: RedisReadBatcher? = null
+) :
     ReactiveHashOperations<String, String, Any> {
 
-    private val logger: Logger = LoggerFactory.getLogger(ReactiveRedisHash::class.java)
-
     override fun remove(key: String, vararg hashKeys: Any?): Mono<Long> {
-        return reactiveRedisTemplate.opsForHash<String, String>().remove(key, hashKeys)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, String>().remove(key, hashKeys)),
+            "hash.remove", key, hashKeys
+        )
     }
 
     override fun hasKey(key: String, hashKey: Any): Mono<Boolean> {
@@ -33,7 +38,8 @@ class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun get(key: String, hashKey: Any): Mono<Any> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().get(key, hashKey)
+        val get = batcher?.get(key, hashKey) ?: reactiveRedisTemplate.opsForHash<String, Any>().get(key, hashKey)
+        return interceptors.intercept(nearCache?.get(key, hashKey, get) ?: get, "hash.get", key, hashKey)
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -42,15 +48,23 @@ class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun multiGet(key: String, hashKeys: MutableCollection<String>): Mono<MutableList<Any>> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().multiGet(key, hashKeys)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForHash<String, Any>().multiGet(key, hashKeys), "hash.multiGet", key, hashKeys
+        )
     }
 
     override fun increment(key: String, hashKey: String, delta: Long): Mono<Long> {
-        return reactiveRedisTemplate.opsForHash<String, String>().increment(key, hashKey, delta)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, String>().increment(key, hashKey, delta)),
+            "hash.increment", key, hashKey, delta
+        )
     }
 
     override fun increment(key: String, hashKey: String, delta: Double): Mono<Double> {
-        return reactiveRedisTemplate.opsForHash<String, String>().increment(key, hashKey, delta)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, String>().increment(key, hashKey, delta)),
+            "hash.increment", key, hashKey, delta
+        )
     }
 
     override fun randomKey(key: String): Mono<String> {
@@ -88,15 +102,24 @@ class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun putAll(key: String, map: MutableMap<out String, out Any>): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().putAll(key, map)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, Any>().putAll(key, map)),
+            "hash.putAll", key, map
+        )
     }
 
     override fun put(key: String, hashKey: String, value: Any): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().put(key, hashKey, value)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, Any>().put(key, hashKey, value)),
+            "hash.put", key, hashKey, value
+        )
     }
 
     override fun putIfAbsent(key: String, hashKey: String, value: Any): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().putIfAbsent(key, hashKey, value)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, Any>().putIfAbsent(key, hashKey, value)),
+            "hash.putIfAbsent", key, hashKey, value
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -114,7 +137,8 @@ class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun entries(key: String): Flux<MutableMap.MutableEntry<String, Any>> {
-        return reactiveRedisTemplate.opsForHash<String, Any>().entries(key)
+        val entries = reactiveRedisTemplate.opsForHash<String, Any>().entries(key)
+        return coalescer?.coalesceMany("hash.entries", key, entries) ?: entries
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -127,6 +151,16 @@ class ReactiveRedisHash(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun delete(key: String): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForHash<String, String>().delete(key)
+        return interceptors.intercept(
+            invalidating(key, reactiveRedisTemplate.opsForHash<String, String>().delete(key)), "hash.delete", key
+        )
+    }
+
+    private fun <T> invalidating(key: String, write: Mono<T>): Mono<T> {
+        val coalescer = coalescer
+        val forgetting = if (coalescer == null) write else write
+            .doOnSubscribe { coalescer.forget("hash.entries", key) }
+            .doFinally { coalescer.forget("hash.entries", key) }
+        return nearCache?.invalidating(key, forgetting) ?: forgetting
     }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package com.g7.framework.redis.reactive.operation
 
-import org.slf4j.Logger
-import org.slf4j.LoggerFactory
 import org.springframework.data.redis.connection.ReactiveListCommands
 import org.springframework.data.redis.core.ReactiveListOperations
 import org.springframework.data.redis.core.ReactiveRedisTemplate
@@ -15,11 +13,12 @@ import java.time.Duration
  * @date 2022/3/1 4:09 下午
  * @since 1.0.0
  */
-class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>) :
+class ReactiveRedisList @JvmOverloads constructor(
+    private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>,
+    private val interceptors: RedisOperationInterceptors = RedisOperationInterceptors.NONE
+) :
     ReactiveListOperations<String, Any> {
 
-    private val logger: Logger = LoggerFactory.getLogger(ReactiveRedisList::class.java)
-
     @Suppress("UNCHECKED_CAST")
     fun <T> rangeAs(key: String, start: Long, end: Long): Flux<T> {
         return range(key, start, end).map { it as T }
@@ -30,7 +29,9 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun trim(key: String, start: Long, end: Long): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForList().trim(key, start, end)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().trim(key, start, end), "list.trim", key, start, end
+        )
     }
 
     override fun size(key: String): Mono<Long> {
@@ -38,15 +39,21 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun leftPush(key: String, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().leftPush(key, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().leftPush(key, value), "list.leftPush", key, value
+        )
     }
 
     override fun leftPush(key: String, pivot: Any, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().leftPush(key, pivot, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().leftPush(key, pivot, value), "list.leftPush", key, pivot, value
+        )
     }
 
     override fun leftPushAll(key: String, vararg values: Any?): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().leftPushAll(key, *values)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().leftPushAll(key, *values), "list.leftPushAll", key, values
+        )
     }
 
     override fun leftPushAll(key: String, values: MutableCollection<Any>): Mono<Long> {
@@ -55,19 +62,27 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun leftPushIfPresent(key: String, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().leftPushIfPresent(key, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().leftPushIfPresent(key, value), "list.leftPushIfPresent", key, value
+        )
     }
 
     override fun rightPush(key: String, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().rightPush(key, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPush(key, value), "list.rightPush", key, value
+        )
     }
 
     override fun rightPush(key: String, pivot: Any, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().rightPush(key, pivot, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPush(key, pivot, value), "list.rightPush", key, pivot, value
+        )
     }
 
     override fun rightPushAll(key: String, vararg values: Any?): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().rightPushAll(key, *values)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPushAll(key, *values), "list.rightPushAll", key, values
+        )
     }
 
     override fun rightPushAll(key: String, values: MutableCollection<Any>): Mono<Long> {
@@ -76,7 +91,9 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun rightPushIfPresent(key: String, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().rightPushIfPresent(key, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPushIfPresent(key, value), "list.rightPushIfPresent", key, value
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -120,11 +137,15 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun set(key: String, index: Long, value: Any): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForList().set(key, index, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().set(key, index, value), "list.set", key, index, value
+        )
     }
 
     override fun remove(key: String, count: Long, value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForList().remove(key, count, value)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().remove(key, count, value), "list.remove", key, count, value
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -150,7 +171,7 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun leftPop(key: String): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().leftPop(key)
+        return interceptors.intercept(reactiveRedisTemplate.opsForList().leftPop(key), "list.leftPop", key)
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -159,7 +180,9 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun leftPop(key: String, timeout: Duration): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().leftPop(key, timeout)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().leftPop(key, timeout), "list.leftPop", key, timeout
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -168,7 +191,7 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun rightPop(key: String): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().rightPop(key)
+        return interceptors.intercept(reactiveRedisTemplate.opsForList().rightPop(key), "list.rightPop", key)
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -177,7 +200,9 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun rightPop(key: String, timeout: Duration): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().rightPop(key, timeout)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPop(key, timeout), "list.rightPop", key, timeout
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -186,7 +211,10 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun rightPopAndLeftPush(sourceKey: String, destinationKey: String): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().rightPopAndLeftPush(sourceKey, destinationKey)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPopAndLeftPush(sourceKey, destinationKey),
+            "list.rightPopAndLeftPush", sourceKey, destinationKey
+        )
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -195,10 +223,13 @@ class ReactiveRedisList(private val reactiveRedisTemplate: ReactiveRedisTemplate
     }
 
     override fun rightPopAndLeftPush(sourceKey: String, destinationKey: String, timeout: Duration): Mono<Any> {
-        return reactiveRedisTemplate.opsForList().rightPopAndLeftPush(sourceKey, destinationKey, timeout)
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForList().rightPopAndLeftPush(sourceKey, destinationKey, timeout),
+            "list.rightPopAndLeftPush", sourceKey, destinationKey, timeout
+        )
     }
 
     override fun delete(key: String): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForList().delete(key)
+        return interceptors.intercept(reactiveRedisTemplate.opsForList().delete(key), "list.delete", key)
     }
 }
\ No newline at end of file
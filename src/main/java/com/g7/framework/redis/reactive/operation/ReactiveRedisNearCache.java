@@ -0,0 +1,405 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * Value.get 与 Hash.get 的进程内近端缓存
+ * 只缓存匹配已配置前缀的KEY(最长前缀优先),每个区域按数量、权重与存活时间限定,满时按二次机会(clock)淘汰。
+ * 本地写操作立即失效;其他实例的写操作依赖 {@link RedisNearCacheInvalidator} 推送的失效消息。
+ * 读取与失效并发时,以KEY所在分段的失效戳判断回填是否仍然有效,避免把失效前读到的旧值写回缓存;
+ * 失效只影响同一分段的回填,其他KEY的回填不受影响。空结果不缓存。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class ReactiveRedisNearCache implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveRedisNearCache.class);
+    private final Region[] regions;
+    private ToIntFunction<Object> weigher = ReactiveRedisNearCache::estimateWeight;
+    @Nullable
+    private RedisNearCacheInvalidator invalidator;
+
+    public ReactiveRedisNearCache(List<NearCacheRegion> regions) {
+        Assert.notEmpty(regions, "'regions' must not be empty");
+        List<NearCacheRegion> sorted = new ArrayList<>(regions);
+        // 最长前缀优先匹配
+        sorted.sort(Comparator.comparingInt((NearCacheRegion region) -> region.getPrefix().length()).reversed());
+        this.regions = sorted.stream().map(Region::new).toArray(Region[]::new);
+    }
+
+    /**
+     * 设置缓存值的权重计算函数,默认按字符串/字节长度、集合大小估算
+     * @param weigher 权重计算函数
+     */
+    public void setWeigher(ToIntFunction<Object> weigher) {
+        Assert.notNull(weigher, "'weigher' cannot be null");
+        this.weigher = weigher;
+    }
+
+    /**
+     * 设置失效消息来源,随缓存一起启动和停止
+     * @param invalidator 失效消息来源
+     */
+    public void setInvalidator(@Nullable RedisNearCacheInvalidator invalidator) {
+        this.invalidator = invalidator;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (this.invalidator != null) {
+            this.invalidator.start(this);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (this.invalidator != null) {
+            this.invalidator.stop();
+        }
+        invalidateAll();
+    }
+
+    /**
+     * 读取字符串KEY,未命中时执行 loader 并回填
+     * @param key    KEY
+     * @param loader 读取 redis 的操作
+     * @return mono
+     */
+    public <V> Mono<V> get(String key, Mono<V> loader) {
+        return get(key, null, loader);
+    }
+
+    /**
+     * 读取哈希字段,未命中时执行 loader 并回填;在订阅时查找缓存,保存或重复订阅的 mono 每次读取最新的缓存
+     * @param key    KEY
+     * @param field  哈希字段,为空时表示字符串KEY
+     * @param loader 读取 redis 的操作
+     * @return mono
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Mono<V> get(String key, @Nullable Object field, Mono<V> loader) {
+        Region region = region(key);
+        if (region == null) {
+            return loader;
+        }
+        return Mono.defer(() -> {
+            Object cached = region.get(key, field);
+            if (cached != null) {
+                return Mono.just((V) cached);
+            }
+            long stamp = region.stamp(key);
+            return loader.doOnNext(value -> region.put(key, field, value, stamp, this.weigher));
+        });
+    }
+
+    /**
+     * 在写操作订阅时与结束时失效本地缓存,结束时再次失效是为了覆盖写操作执行期间的并发回填
+     * @param key KEY
+     * @param write 写操作
+     * @return mono
+     */
+    public <T> Mono<T> invalidating(String key, Mono<T> write) {
+        Region region = region(key);
+        if (region == null) {
+            return write;
+        }
+        return write.doOnSubscribe(subscription -> region.invalidate(key))
+                .doFinally(signalType -> region.invalidate(key));
+    }
+
+    /**
+     * 在写操作订阅时与结束时失效多个KEY
+     * @param keys  KEY
+     * @param write 写操作
+     * @return mono
+     */
+    public <T> Mono<T> invalidating(Collection<? extends String> keys, Mono<T> write) {
+        return write.doOnSubscribe(subscription -> keys.forEach(this::invalidate))
+                .doFinally(signalType -> keys.forEach(this::invalidate));
+    }
+
+    /**
+     * 失效一个KEY
+     * @param key KEY
+     */
+    public void invalidate(String key) {
+        Region region = region(key);
+        if (region != null) {
+            region.invalidate(key);
+        }
+    }
+
+    /**
+     * 失效全部缓存,用于失效消息可能丢失的情况(例如连接断开)
+     */
+    public void invalidateAll() {
+        for (Region region : this.regions) {
+            region.invalidateAll();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("near cache invalidated");
+        }
+    }
+
+    /**
+     * 已配置的KEY前缀
+     * @return 前缀
+     */
+    public List<String> prefixes() {
+        List<String> prefixes = new ArrayList<>(this.regions.length);
+        for (Region region : this.regions) {
+            prefixes.add(region.prefix);
+        }
+        return prefixes;
+    }
+
+    /**
+     * 当前缓存的KEY数量
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Region region : this.regions) {
+            size += region.entries.size();
+        }
+        return size;
+    }
+
+    @Nullable
+    private Region region(String key) {
+        for (Region region : this.regions) {
+            if (key.startsWith(region.prefix)) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 默认权重:字符序列与字节数组取长度,集合取大小,其他为 1
+     * @param value 缓存值
+     * @return 权重
+     */
+    static int estimateWeight(Object value) {
+        if (value instanceof CharSequence) {
+            return Math.max(1, ((CharSequence) value).length());
+        }
+        if (value instanceof byte[]) {
+            return Math.max(1, ((byte[]) value).length);
+        }
+        if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size());
+        }
+        if (value instanceof Map) {
+            return Math.max(1, ((Map<?, ?>) value).size());
+        }
+        return 1;
+    }
+
+    private static final class Region {
+
+        /**
+         * 失效戳分段数,必须是 2 的幂;不同KEY落在同一分段时只会多放弃一次回填
+         */
+        private static final int STAMP_STRIPES = 1024;
+        private final String prefix;
+        private final int maxEntries;
+        private final long maxWeight;
+        private final long ttl;
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>(16);
+        private final ConcurrentLinkedQueue<String> clock = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong weight = new AtomicLong();
+        private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+        private Region(NearCacheRegion region) {
+            this.prefix = region.getPrefix();
+            this.maxEntries = region.getMaxEntries();
+            this.maxWeight = region.getMaxWeight();
+            this.ttl = region.getTtl().toNanos();
+        }
+
+        @Nullable
+        private Object get(String key, @Nullable Object field) {
+            Entry entry = this.entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt >= 0) {
+                remove(key, entry);
+                return null;
+            }
+            Object value = field == null ? entry.value : entry.fields == null ? null : entry.fields.get(field);
+            if (value != null && !entry.referenced) {
+                entry.referenced = true;
+            }
+            return value;
+        }
+
+        /**
+         * KEY所在分段的失效戳,分段在KEY失效后仍然保留,不随缓存条目一起移除
+         * @param key KEY
+         * @return long
+         */
+        private long stamp(String key) {
+            return this.stamps.get(stripe(key));
+        }
+
+        private static int stripe(String key) {
+            int hash = key.hashCode();
+            return (hash ^ (hash >>> 16)) & (STAMP_STRIPES - 1);
+        }
+
+        private void put(String key, @Nullable Object field, Object value, long stamp, ToIntFunction<Object> weigher) {
+            if (stamp(key) != stamp) {
+                // 读取期间发生了失效,读到的值可能已经过期
+                return;
+            }
+            int valueWeight = weigher.applyAsInt(value);
+            if (valueWeight > this.maxWeight) {
+                return;
+            }
+            long expiresAt = System.nanoTime() + this.ttl;
+            if (field == null) {
+                Entry entry = new Entry(value, null, expiresAt);
+                Entry previous = this.entries.put(key, entry);
+                if (previous != null) {
+                    discharge(previous);
+                } else {
+                    enqueue(key);
+                }
+                charge(entry, valueWeight);
+            } else {
+                Entry entry = this.entries.get(key);
+                if (entry == null) {
+                    Entry created = new Entry(null, new ConcurrentHashMap<>(16), expiresAt);
+                    entry = this.entries.putIfAbsent(key, created);
+                    if (entry == null) {
+                        entry = created;
+                        enqueue(key);
+                    }
+                }
+                if (entry.fields == null) {
+                    // KEY 已按字符串缓存,类型不符时不回填
+                    return;
+                }
+                Object previous = entry.fields.put(field, value);
+                charge(entry, valueWeight - (previous == null ? 0 : weigher.applyAsInt(previous)));
+            }
+            if (stamp(key) != stamp) {
+                // 回填与失效交错,以失效为准
+                invalidate(key);
+                return;
+            }
+            evict();
+        }
+
+        private void enqueue(String key) {
+            this.clock.offer(key);
+            this.queued.incrementAndGet();
+        }
+
+        private void evict() {
+            while (this.entries.size() > this.maxEntries || this.weight.get() > this.maxWeight
+                    || this.queued.get() > this.maxEntries * 2) {
+                String key = this.clock.poll();
+                if (key == null) {
+                    return;
+                }
+                this.queued.decrementAndGet();
+                Entry entry = this.entries.get(key);
+                if (entry == null) {
+                    // 已被失效或淘汰的残留KEY
+                    continue;
+                }
+                if (entry.referenced) {
+                    // 二次机会
+                    entry.referenced = false;
+                    enqueue(key);
+                    continue;
+                }
+                remove(key, entry);
+            }
+        }
+
+        private void charge(Entry entry, long delta) {
+            synchronized (entry) {
+                if (!entry.removed) {
+                    entry.weight += delta;
+                    this.weight.addAndGet(delta);
+                }
+            }
+        }
+
+        private void discharge(Entry entry) {
+            synchronized (entry) {
+                if (!entry.removed) {
+                    entry.removed = true;
+                    this.weight.addAndGet(-entry.weight);
+                }
+            }
+        }
+
+        private void remove(String key, Entry entry) {
+            if (this.entries.remove(key, entry)) {
+                discharge(entry);
+            }
+        }
+
+        private void invalidate(String key) {
+            this.stamps.incrementAndGet(stripe(key));
+            Entry entry = this.entries.remove(key);
+            if (entry != null) {
+                discharge(entry);
+            }
+        }
+
+        private void invalidateAll() {
+            for (int i = 0; i < STAMP_STRIPES; i++) {
+                this.stamps.incrementAndGet(i);
+            }
+            for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        @Nullable
+        private final Object value;
+        @Nullable
+        private final ConcurrentHashMap<Object, Object> fields;
+        private final long expiresAt;
+        private volatile boolean referenced;
+        /**
+         * 由 synchronized(entry) 保护
+         */
+        private long weight;
+        private boolean removed;
+
+        private Entry(@Nullable Object value, @Nullable ConcurrentHashMap<Object, Object> fields, long expiresAt) {
+            this.value = value;
+            this.fields = fields;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
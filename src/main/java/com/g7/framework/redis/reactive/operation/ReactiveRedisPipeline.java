@@ -0,0 +1,564 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 跨结构的命令管道
+ * 按顺序收集 value、hash、list、set、zset 命令,每个命令返回一个 {@link Response},执行后从中取得类型化的结果。
+ * {@link #execute()} 不等待前一个命令的回复,通过 template 连续发出全部命令。它依赖连接工厂共享同一个原生连接
+ * (Lettuce 默认 shareNativeConnection=true),此时全部命令在同一个连接上连续写出,只需一次往返;
+ * 关闭共享改用连接池时每个命令各自借用连接,结果与顺序不变,但不再保证在同一个连接上流水线发送,
+ * 需要一次往返的保证时使用 {@link #executeAtomically()}。
+ * {@link #executeAtomically()} 用一个固定的 Lua 脚本依次执行全部命令,执行期间不会穿插其他客户端的命令。
+ * 原子执行与 MULTI/EXEC 一样不回滚:某个命令出错时之前的命令已生效、之后的命令不再执行;集群模式下全部KEY必须位于同一个 slot。
+ * 每个命令与五个操作对象一样经过 {@link RedisOperationInterceptors},使用相同的命令名(例如 value.set)与采样比例。
+ * 一个管道只能执行一次。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class ReactiveRedisPipeline {
+
+    private static final RedisElementWriter<ByteBuffer> RAW_WRITER = ByteBuffer::duplicate;
+    private static final RedisElementReader<Object> RAW_READER = buffer -> buffer;
+    private static final Object[] NO_VALUES = new Object[0];
+    /**
+     * 依次执行 KEYS 中每个KEY对应的命令,脚本文本固定,redis 只缓存一份,执行时走 EVALSHA
+     * KEYS[i] 第 i 个命令的KEY, ARGV 依次为每个命令的 命令名、参数个数、参数...
+     * 每个回复包一层数组,空回复在结果中占位而不是截断数组
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> EXECUTE_COMMANDS = RedisScript.of(
+            "local r = {}\n" +
+                    "local a = 1\n" +
+                    "for i = 1, #KEYS do\n" +
+                    "  local argc = tonumber(ARGV[a + 1])\n" +
+                    "  local args = {KEYS[i]}\n" +
+                    "  for j = 1, argc do\n" +
+                    "    args[j + 1] = ARGV[a + 1 + j]\n" +
+                    "  end\n" +
+                    "  r[i] = {redis.call(ARGV[a], unpack(args))}\n" +
+                    "  a = a + 2 + argc\n" +
+                    "end\n" +
+                    "return r", List.class);
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final RedisOperationInterceptors interceptors;
+    private final RedisSerializationContext<String, Object> serializationContext;
+    @Nullable
+    private final ReactiveRedisNearCache nearCache;
+    private final List<Command<?>> commands = new ArrayList<>();
+    private final AtomicBoolean executed = new AtomicBoolean();
+    private final ValueCommands value = new ValueCommands();
+    private final HashCommands hash = new HashCommands();
+    private final ListCommands list = new ListCommands();
+    private final SetCommands set = new SetCommands();
+    private final ZSetCommands zSet = new ZSetCommands();
+
+    public ReactiveRedisPipeline(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this(reactiveRedisTemplate, RedisOperationInterceptors.NONE, null);
+    }
+
+    public ReactiveRedisPipeline(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                                 @Nullable ReactiveRedisNearCache nearCache) {
+        this(reactiveRedisTemplate, RedisOperationInterceptors.NONE, nearCache);
+    }
+
+    /**
+     * 实例化命令管道
+     * @param reactiveRedisTemplate redis template
+     * @param interceptors          拦截器链,通常与五个操作对象共用
+     * @param nearCache             近端缓存,执行时失效写命令涉及的KEY
+     */
+    public ReactiveRedisPipeline(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                                 RedisOperationInterceptors interceptors,
+                                 @Nullable ReactiveRedisNearCache nearCache) {
+        Assert.notNull(reactiveRedisTemplate, "ReactiveRedisTemplate cannot be null");
+        Assert.notNull(interceptors, "RedisOperationInterceptors cannot be null");
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.interceptors = interceptors;
+        this.serializationContext = reactiveRedisTemplate.getSerializationContext();
+        this.nearCache = nearCache;
+    }
+
+    public ValueCommands value() {
+        return value;
+    }
+
+    public HashCommands hash() {
+        return hash;
+    }
+
+    public ListCommands list() {
+        return list;
+    }
+
+    public SetCommands set() {
+        return set;
+    }
+
+    public ZSetCommands zSet() {
+        return zSet;
+    }
+
+    /**
+     * 已收集的命令数量
+     * @return int
+     */
+    public int size() {
+        return this.commands.size();
+    }
+
+    /**
+     * 不等待前一个命令的回复连续发出全部命令,共享原生连接时只需一次往返,见类注释
+     * @return 按命令顺序排列的结果,没有结果的命令为 null
+     */
+    public Mono<List<Object>> execute() {
+        return run(() -> Flux.fromIterable(this.commands)
+                .flatMapSequential(command -> this.interceptors.intercept(command.operation.get(),
+                                command.operationName, command.key, command.values)
+                        .<Optional<Object>>map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()), Math.max(1, this.commands.size()))
+                .collectList()
+                .map(results -> {
+                    List<Object> values = new ArrayList<>(results.size());
+                    for (int i = 0; i < results.size(); i++) {
+                        values.add(this.commands.get(i).complete(results.get(i).orElse(null)));
+                    }
+                    return values;
+                }));
+    }
+
+    /**
+     * 以一个 Lua 脚本原子地执行全部命令,所有管道共用同一个固定脚本,命令名与参数个数随 ARGV 传入
+     * @return 按命令顺序排列的结果,没有结果的命令为 null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Mono<List<Object>> executeAtomically() {
+        return run(() -> {
+            List<String> keys = new ArrayList<>(this.commands.size());
+            List<ByteBuffer> arguments = new ArrayList<>();
+            for (Command<?> command : this.commands) {
+                keys.add(command.key);
+                arguments.add(text(command.name));
+                arguments.add(number(command.arguments.size()));
+                arguments.addAll(command.arguments);
+            }
+            // 命令在一个脚本中执行,采样在发出前决定,回复解码后逐个回调拦截器
+            RedisOperation[] operations = sample();
+            return this.reactiveRedisTemplate.execute(EXECUTE_COMMANDS, keys, arguments, RAW_WRITER,
+                            (RedisElementReader) RAW_READER)
+                    .collectList()
+                    .map(replies -> {
+                        List<Object> values = new ArrayList<>(replies.size());
+                        for (int i = 0; i < replies.size(); i++) {
+                            List<?> reply = (List<?>) replies.get(i);
+                            Command<?> command = this.commands.get(i);
+                            Object raw = reply == null || reply.isEmpty() ? null : reply.get(0);
+                            Object value = command.complete(command.decoder.apply(raw));
+                            if (operations != null && operations[i] != null) {
+                                this.interceptors.onSuccess(operations[i], value);
+                            }
+                            values.add(value);
+                        }
+                        return values;
+                    })
+                    .doOnError(throwable -> {
+                        if (operations != null) {
+                            for (RedisOperation operation : operations) {
+                                if (operation != null) {
+                                    this.interceptors.onError(operation, throwable);
+                                }
+                            }
+                        }
+                    });
+        });
+    }
+
+    @Nullable
+    private RedisOperation[] sample() {
+        if (!this.interceptors.isEnabled()) {
+            return null;
+        }
+        RedisOperation[] operations = new RedisOperation[this.commands.size()];
+        for (int i = 0; i < operations.length; i++) {
+            Command<?> command = this.commands.get(i);
+            operations[i] = this.interceptors.sample(command.operationName, command.key, command.values);
+        }
+        return operations;
+    }
+
+    private Mono<List<Object>> run(Supplier<Mono<List<Object>>> execution) {
+        return Mono.defer(() -> {
+            Assert.state(this.executed.compareAndSet(false, true), "pipeline has already been executed");
+            if (this.commands.isEmpty()) {
+                return Mono.just(new ArrayList<>(0));
+            }
+            Mono<List<Object>> mono = execution.get();
+            if (this.nearCache == null) {
+                return mono;
+            }
+            Set<String> writtenKeys = new LinkedHashSet<>();
+            for (Command<?> command : this.commands) {
+                if (command.write) {
+                    writtenKeys.add(command.key);
+                }
+            }
+            return writtenKeys.isEmpty() ? mono : this.nearCache.invalidating(writtenKeys, mono);
+        });
+    }
+
+    private <T> Response<T> enqueue(String operationName, String key, Object[] values, String name, boolean write,
+                                    Supplier<Mono<T>> operation, Function<Object, T> decoder,
+                                    ByteBuffer... arguments) {
+        Assert.state(!this.executed.get(), "pipeline has already been executed");
+        Assert.notNull(key, "'key' cannot be null");
+        Command<T> command = new Command<>(operationName, key, values, name, write, operation, decoder,
+                Arrays.asList(arguments));
+        this.commands.add(command);
+        return command.response;
+    }
+
+    private ByteBuffer writeValue(Object value) {
+        return this.serializationContext.getValueSerializationPair().write(value);
+    }
+
+    private ByteBuffer writeHashKey(Object hashKey) {
+        return this.serializationContext.getHashKeySerializationPair().write(hashKey);
+    }
+
+    private ByteBuffer writeHashValue(Object value) {
+        return this.serializationContext.getHashValueSerializationPair().write(value);
+    }
+
+    private ByteBuffer[] writeValues(Object[] values) {
+        ByteBuffer[] buffers = new ByteBuffer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            buffers[i] = writeValue(values[i]);
+        }
+        return buffers;
+    }
+
+    @Nullable
+    private Object readValue(@Nullable Object raw) {
+        return raw == null ? null : this.serializationContext.getValueSerializationPair().read(buffer(raw));
+    }
+
+    @Nullable
+    private Object readHashValue(@Nullable Object raw) {
+        return raw == null ? null : this.serializationContext.getHashValueSerializationPair().read(buffer(raw));
+    }
+
+    private static ByteBuffer buffer(Object raw) {
+        return raw instanceof byte[] ? ByteBuffer.wrap((byte[]) raw) : ((ByteBuffer) raw).duplicate();
+    }
+
+    private static ByteBuffer text(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer number(long number) {
+        return text(Long.toString(number));
+    }
+
+    private static ByteBuffer number(double number) {
+        if (Double.isInfinite(number)) {
+            return text(number > 0 ? "+inf" : "-inf");
+        }
+        return text(Double.toString(number));
+    }
+
+    private static Boolean ok(@Nullable Object raw) {
+        return raw != null;
+    }
+
+    private static Boolean one(@Nullable Object raw) {
+        return raw != null && (Long) raw == 1L;
+    }
+
+    @Nullable
+    private static Long integer(@Nullable Object raw) {
+        return (Long) raw;
+    }
+
+    @Nullable
+    private static Double decimal(@Nullable Object raw) {
+        if (raw == null) {
+            return null;
+        }
+        ByteBuffer buffer = buffer(raw);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return Double.valueOf(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 字符串命令
+     */
+    public final class ValueCommands {
+
+        private ValueCommands() {
+        }
+
+        public Response<Boolean> set(String key, Object value) {
+            return enqueue("value.set", key, new Object[]{value}, "SET", true,
+                    () -> reactiveRedisTemplate.opsForValue().set(key, value),
+                    ReactiveRedisPipeline::ok, writeValue(value));
+        }
+
+        public Response<Boolean> set(String key, Object value, Duration timeout) {
+            return enqueue("value.set", key, new Object[]{value, timeout}, "SET", true,
+                    () -> reactiveRedisTemplate.opsForValue().set(key, value, timeout),
+                    ReactiveRedisPipeline::ok, writeValue(value), text("PX"), number(timeout.toMillis()));
+        }
+
+        public Response<Boolean> setIfAbsent(String key, Object value) {
+            return enqueue("value.setIfAbsent", key, new Object[]{value}, "SET", true,
+                    () -> reactiveRedisTemplate.opsForValue().setIfAbsent(key, value),
+                    ReactiveRedisPipeline::ok, writeValue(value), text("NX"));
+        }
+
+        public Response<Object> get(String key) {
+            return enqueue("value.get", key, NO_VALUES, "GET", false,
+                    () -> reactiveRedisTemplate.opsForValue().get(key),
+                    ReactiveRedisPipeline.this::readValue);
+        }
+
+        public Response<Long> increment(String key, long delta) {
+            return enqueue("value.increment", key, new Object[]{delta}, "INCRBY", true,
+                    () -> reactiveRedisTemplate.opsForValue().increment(key, delta),
+                    ReactiveRedisPipeline::integer, number(delta));
+        }
+
+        public Response<Boolean> delete(String key) {
+            return enqueue("value.delete", key, NO_VALUES, "DEL", true,
+                    () -> reactiveRedisTemplate.opsForValue().delete(key),
+                    raw -> raw != null && (Long) raw > 0);
+        }
+    }
+
+    /**
+     * 哈希命令
+     */
+    public final class HashCommands {
+
+        private HashCommands() {
+        }
+
+        public Response<Boolean> put(String key, String hashKey, Object value) {
+            return enqueue("hash.put", key, new Object[]{hashKey, value}, "HSET", true,
+                    () -> reactiveRedisTemplate.<String, Object>opsForHash().put(key, hashKey, value),
+                    ReactiveRedisPipeline::one, writeHashKey(hashKey), writeHashValue(value));
+        }
+
+        public Response<Object> get(String key, String hashKey) {
+            return enqueue("hash.get", key, new Object[]{hashKey}, "HGET", false,
+                    () -> reactiveRedisTemplate.<String, Object>opsForHash().get(key, hashKey),
+                    ReactiveRedisPipeline.this::readHashValue, writeHashKey(hashKey));
+        }
+
+        public Response<Long> remove(String key, String... hashKeys) {
+            ByteBuffer[] arguments = new ByteBuffer[hashKeys.length];
+            for (int i = 0; i < hashKeys.length; i++) {
+                arguments[i] = writeHashKey(hashKeys[i]);
+            }
+            return enqueue("hash.remove", key, hashKeys, "HDEL", true,
+                    () -> reactiveRedisTemplate.<String, Object>opsForHash().remove(key, (Object[]) hashKeys),
+                    ReactiveRedisPipeline::integer, arguments);
+        }
+
+        public Response<Long> increment(String key, String hashKey, long delta) {
+            return enqueue("hash.increment", key, new Object[]{hashKey, delta}, "HINCRBY", true,
+                    () -> reactiveRedisTemplate.<String, Object>opsForHash().increment(key, hashKey, delta),
+                    ReactiveRedisPipeline::integer, writeHashKey(hashKey), number(delta));
+        }
+    }
+
+    /**
+     * 列表命令
+     */
+    public final class ListCommands {
+
+        private ListCommands() {
+        }
+
+        public Response<Long> leftPush(String key, Object value) {
+            return enqueue("list.leftPush", key, new Object[]{value}, "LPUSH", true,
+                    () -> reactiveRedisTemplate.opsForList().leftPush(key, value),
+                    ReactiveRedisPipeline::integer, writeValue(value));
+        }
+
+        public Response<Long> rightPush(String key, Object value) {
+            return enqueue("list.rightPush", key, new Object[]{value}, "RPUSH", true,
+                    () -> reactiveRedisTemplate.opsForList().rightPush(key, value),
+                    ReactiveRedisPipeline::integer, writeValue(value));
+        }
+
+        public Response<Object> leftPop(String key) {
+            return enqueue("list.leftPop", key, NO_VALUES, "LPOP", true,
+                    () -> reactiveRedisTemplate.opsForList().leftPop(key),
+                    ReactiveRedisPipeline.this::readValue);
+        }
+
+        public Response<Object> rightPop(String key) {
+            return enqueue("list.rightPop", key, NO_VALUES, "RPOP", true,
+                    () -> reactiveRedisTemplate.opsForList().rightPop(key),
+                    ReactiveRedisPipeline.this::readValue);
+        }
+
+        public Response<Long> size(String key) {
+            return enqueue("list.size", key, NO_VALUES, "LLEN", false,
+                    () -> reactiveRedisTemplate.opsForList().size(key),
+                    ReactiveRedisPipeline::integer);
+        }
+    }
+
+    /**
+     * 集合命令
+     */
+    public final class SetCommands {
+
+        private SetCommands() {
+        }
+
+        public Response<Long> add(String key, Object... values) {
+            return enqueue("set.add", key, values, "SADD", true,
+                    () -> reactiveRedisTemplate.opsForSet().add(key, values),
+                    ReactiveRedisPipeline::integer, writeValues(values));
+        }
+
+        public Response<Long> remove(String key, Object... values) {
+            return enqueue("set.remove", key, values, "SREM", true,
+                    () -> reactiveRedisTemplate.opsForSet().remove(key, values),
+                    ReactiveRedisPipeline::integer, writeValues(values));
+        }
+
+        public Response<Boolean> isMember(String key, Object value) {
+            return enqueue("set.isMember", key, new Object[]{value}, "SISMEMBER", false,
+                    () -> reactiveRedisTemplate.opsForSet().isMember(key, value),
+                    ReactiveRedisPipeline::one, writeValue(value));
+        }
+    }
+
+    /**
+     * 有序集合命令
+     */
+    public final class ZSetCommands {
+
+        private ZSetCommands() {
+        }
+
+        public Response<Boolean> add(String key, Object value, double score) {
+            return enqueue("zset.add", key, new Object[]{value, score}, "ZADD", true,
+                    () -> reactiveRedisTemplate.opsForZSet().add(key, value, score),
+                    ReactiveRedisPipeline::one, number(score), writeValue(value));
+        }
+
+        public Response<Long> remove(String key, Object... values) {
+            return enqueue("zset.remove", key, values, "ZREM", true,
+                    () -> reactiveRedisTemplate.opsForZSet().remove(key, values),
+                    ReactiveRedisPipeline::integer, writeValues(values));
+        }
+
+        public Response<Double> score(String key, Object value) {
+            return enqueue("zset.score", key, new Object[]{value}, "ZSCORE", false,
+                    () -> reactiveRedisTemplate.opsForZSet().score(key, value),
+                    ReactiveRedisPipeline::decimal, writeValue(value));
+        }
+
+        public Response<Double> incrementScore(String key, Object value, double delta) {
+            return enqueue("zset.incrementScore", key, new Object[]{value, delta}, "ZINCRBY", true,
+                    () -> reactiveRedisTemplate.opsForZSet().incrementScore(key, value, delta),
+                    ReactiveRedisPipeline::decimal, number(delta), writeValue(value));
+        }
+    }
+
+    /**
+     * 管道中一个命令的结果,管道执行成功后可用
+     * @param <T> 结果类型
+     */
+    public static final class Response<T> {
+
+        private volatile boolean done;
+        @Nullable
+        private volatile T value;
+
+        private Response() {
+        }
+
+        /**
+         * 命令结果
+         * @return 结果,没有结果时为 null
+         */
+        @Nullable
+        public T get() {
+            Assert.state(this.done, "pipeline has not been executed");
+            return this.value;
+        }
+
+        /**
+         * 管道是否已执行成功
+         * @return boolean
+         */
+        public boolean isDone() {
+            return this.done;
+        }
+    }
+
+    private static final class Command<T> {
+
+        private final Response<T> response = new Response<>();
+        /**
+         * 拦截器中的命令名,与五个操作对象一致
+         */
+        private final String operationName;
+        private final String key;
+        /**
+         * 序列化前的参数,只在被采样时渲染
+         */
+        private final Object[] values;
+        private final String name;
+        private final boolean write;
+        private final Supplier<Mono<T>> operation;
+        private final Function<Object, T> decoder;
+        private final List<ByteBuffer> arguments;
+
+        private Command(String operationName, String key, Object[] values, String name, boolean write,
+                        Supplier<Mono<T>> operation, Function<Object, T> decoder, List<ByteBuffer> arguments) {
+            this.operationName = operationName;
+            this.key = key;
+            this.values = values;
+            this.name = name;
+            this.write = write;
+            this.operation = operation;
+            this.decoder = decoder;
+            this.arguments = arguments;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object complete(@Nullable Object result) {
+            this.response.value = (T) result;
+            this.response.done = true;
+            return result;
+        }
+    }
+}
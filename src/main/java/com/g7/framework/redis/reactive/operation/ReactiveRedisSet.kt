@@ -1,7 +1,5 @@
 package com.g7.framework.redis.reactive.operation
 
-import org.slf4j.Logger
-import org.slf4j.LoggerFactory
 import org.springframework.data.redis.core.ReactiveRedisTemplate
 import org.springframework.data.redis.core.ReactiveSetOperations
 import org.springframework.data.redis.core.ScanOptions
@@ -14,21 +12,18 @@ import reactor.core.publisher.Mono
  * @date 2022/3/1 4:08 下午
  * @since 1.0.0
  */
-class ReactiveRedisSet(private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>) :
+class ReactiveRedisSet @JvmOverloads constructor(
+    private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>,
+    private val interceptors: RedisOperationInterceptors = RedisOperationInterceptors.NONE
+) :
     ReactiveSetOperations<String, Any> {
 
-    private val logger: Logger = LoggerFactory.getLogger(ReactiveRedisSet::class.java)
-
     override fun add(key: String, vararg value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForSet().add(key, value).doOnSuccess {
-            logger.info("set cache success key is [{}] value is [{}]", key, value)
-        }
+        return interceptors.intercept(reactiveRedisTemplate.opsForSet().add(key, value), "set.add", key, value)
     }
 
     override fun remove(key: String, vararg value: Any): Mono<Long> {
-        return reactiveRedisTemplate.opsForSet().remove(key, value).doOnSuccess {
-            logger.info("remove cache success key is [{}] value is [{}]", key, value)
-        }
+        return interceptors.intercept(reactiveRedisTemplate.opsForSet().remove(key, value), "set.remove", key, value)
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -37,9 +32,7 @@ class ReactiveRedisSet(private val reactiveRedisTemplate: ReactiveRedisTemplate<
     }
 
     override fun pop(key: String): Mono<Any> {
-        return reactiveRedisTemplate.opsForSet().pop(key).doOnSuccess {
-            logger.info("pop cache success key is [{}] value is [{}]", key, it)
-        }
+        return interceptors.intercept(reactiveRedisTemplate.opsForSet().pop(key), "set.pop", key)
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -48,23 +41,17 @@ class ReactiveRedisSet(private val reactiveRedisTemplate: ReactiveRedisTemplate<
     }
 
     override fun pop(key: String, count: Long): Flux<Any> {
-        return reactiveRedisTemplate.opsForSet().pop(key, count).doOnNext {
-            logger.info("pop cache success key is [{}] value is [{}]", key, it)
-        }
+        return interceptors.interceptEach(reactiveRedisTemplate.opsForSet().pop(key, count), "set.pop", key)
     }
 
     override fun move(sourceKey: String, value: Any, destKey: String): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForSet().move(sourceKey, value, destKey).doOnSuccess {
-            logger.info(
-                "move cache success source key is [{}] , dest key is [{}] value is [{}]", sourceKey, destKey, it
-            )
-        }
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForSet().move(sourceKey, value, destKey), "set.move", sourceKey, value, destKey
+        )
     }
 
     override fun size(key: String): Mono<Long> {
-        return reactiveRedisTemplate.opsForSet().size(key).doOnSuccess {
-            logger.info("cache key is [{}] size is [{}]", key, it)
-        }
+        return interceptors.intercept(reactiveRedisTemplate.opsForSet().size(key), "set.size", key)
     }
 
     override fun isMember(key: String, o: Any): Mono<Boolean> {
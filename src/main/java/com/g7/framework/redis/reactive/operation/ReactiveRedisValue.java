@@ -1,11 +1,10 @@
 package com.g7.framework.redis.reactive.operation;
 
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.BitFieldSubCommands;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.lang.Nullable;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
@@ -19,261 +18,288 @@ import java.util.stream.Collectors;
  */
 public class ReactiveRedisValue implements ReactiveValueOperations<String, Object> {
 
-    private static final Logger logger = LoggerFactory.getLogger(ReactiveRedisValue.class);
-
     private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final RedisOperationInterceptors interceptors;
+    @Nullable
+    private final ReactiveRedisNearCache nearCache;
+    @Nullable
+    private final RedisOperationCoalescer coalescer;
+    @Nullable
+    private final RedisReadBatcher batcher;
 
     public ReactiveRedisValue(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate) {
+        this(reactiveRedisTemplate, RedisOperationInterceptors.NONE);
+    }
+
+    public ReactiveRedisValue(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                              RedisOperationInterceptors interceptors) {
+        this(reactiveRedisTemplate, interceptors, null);
+    }
+
+    public ReactiveRedisValue(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                              RedisOperationInterceptors interceptors, @Nullable ReactiveRedisNearCache nearCache) {
+        this(reactiveRedisTemplate, interceptors, nearCache, null);
+    }
+
+    public ReactiveRedisValue(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                              RedisOperationInterceptors interceptors, @Nullable ReactiveRedisNearCache nearCache,
+                              @Nullable RedisOperationCoalescer coalescer) {
+        this(reactiveRedisTemplate, interceptors, nearCache, coalescer, null);
+    }
+
+    public ReactiveRedisValue(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+                              RedisOperationInterceptors interceptors, @Nullable ReactiveRedisNearCache nearCache,
+                              @Nullable RedisOperationCoalescer coalescer, @Nullable RedisReadBatcher batcher) {
         this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.interceptors = interceptors;
+        this.nearCache = nearCache;
+        this.coalescer = coalescer;
+        this.batcher = batcher;
     }
 
     @NotNull
     @Override
     public Mono<Boolean> set(@NotNull String key, @NotNull Object value) {
-        return reactiveRedisTemplate.opsForValue().set(key, value)
-                .doOnSuccess(res -> logger.info("set success key is {} value is {}", key, value));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().set(key, value)),
+                "value.set", key, value);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> set(@NotNull String key, @NotNull Object value, @NotNull Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().set(key, value, timeout)
-                .doOnSuccess(res -> logger.info("set success key is {} value is {} " +
-                        "expiration time is {} ms", key, value, timeout.toMillis()));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().set(key, value, timeout)),
+                "value.set", key, value, timeout);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> setIfAbsent(@NotNull String key, @NotNull Object value) {
-        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value)
-                .doOnSuccess(res -> logger.info("set if absent success key is {} value is {}",
-                        key, value));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().setIfAbsent(key, value)),
+                "value.setIfAbsent", key, value);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> setIfAbsent(@NotNull String key, @NotNull Object value, @NotNull Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().setIfAbsent(key, value, timeout)
-                .doOnSuccess(res -> logger.info("set if absent success key is {} value is {} " +
-                        "expiration time is {} ms", key, value, timeout.toMillis()));
+        return interceptors.intercept(invalidating(key,
+                        reactiveRedisTemplate.opsForValue().setIfAbsent(key, value, timeout)),
+                "value.setIfAbsent", key, value, timeout);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> setIfPresent(@NotNull String key, @NotNull Object value) {
-        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value)
-                .doOnSuccess(res -> logger.info("set if present success key is {} value is {}",
-                        key, value));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().setIfPresent(key, value)),
+                "value.setIfPresent", key, value);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> setIfPresent(@NotNull String key, @NotNull Object value, @NotNull Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().setIfPresent(key, value, timeout)
-                .doOnSuccess(res -> logger.info("set if present success key is {} value is {} " +
-                        "expiration time is {} ms", key, value, timeout.toMillis()));
+        return interceptors.intercept(invalidating(key,
+                        reactiveRedisTemplate.opsForValue().setIfPresent(key, value, timeout)),
+                "value.setIfPresent", key, value, timeout);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> multiSet(@NotNull Map<? extends String, ?> map) {
-        return reactiveRedisTemplate.opsForValue().multiSet(map);
+        return interceptors.intercept(invalidating(map.keySet(), reactiveRedisTemplate.opsForValue().multiSet(map)),
+                "value.multiSet", map);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> multiSetIfAbsent(@NotNull Map<? extends String, ?> map) {
-        return reactiveRedisTemplate.opsForValue().multiSetIfAbsent(map);
+        return interceptors.intercept(invalidating(map.keySet(),
+                        reactiveRedisTemplate.opsForValue().multiSetIfAbsent(map)),
+                "value.multiSetIfAbsent", map);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<T> getAs(Object key) {
-        return get(key).map(obj -> (T) obj)
-                .doOnSuccess(value -> logger.info("get success key is {} value is {}", key, value));
+        return get(key).map(obj -> (T) obj);
     }
 
     @NotNull
     @Override
     public Mono<Object> get(@NotNull Object key) {
-        return reactiveRedisTemplate.opsForValue().get(key)
-                .doOnSuccess(value -> logger.info("get success key is {} value is {}", key, value));
+        Mono<Object> get = batcher != null && key instanceof String ? batcher.get((String) key) :
+                reactiveRedisTemplate.opsForValue().get(key);
+        if (coalescer != null) {
+            get = coalescer.coalesce("value.get", key, get);
+        }
+        if (nearCache != null && key instanceof String) {
+            get = nearCache.get((String) key, get);
+        }
+        return interceptors.intercept(get, "value.get", key);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<T> getAndDeleteAs(@NotNull String key) {
-        return getAndDelete(key).map(obj -> (T) obj)
-                .doOnSuccess(value -> logger.info("get and delete success key is {} value is {}",
-                        key, value));
+        return getAndDelete(key).map(obj -> (T) obj);
     }
 
     @NotNull
     @Override
     public Mono<Object> getAndDelete(@NotNull String key) {
-        return reactiveRedisTemplate.opsForValue().getAndDelete(key)
-                .doOnSuccess(value -> logger.info("get and delete success key is {} value is {}",
-                        key, value));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().getAndDelete(key)),
+                "value.getAndDelete", key);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<T> getAndExpireAs(@NotNull String key, @NotNull Duration timeout) {
-        return getAndExpire(key, timeout).map(obj -> (T) obj)
-                .doOnSuccess(value -> logger.info("get and expire success key is {} value is {} " +
-                        "expiration time is {} ms", key, value, timeout.toMillis()));
+        return getAndExpire(key, timeout).map(obj -> (T) obj);
     }
 
     @NotNull
     @Override
     public Mono<Object> getAndExpire(@NotNull String key, @NotNull Duration timeout) {
-        return reactiveRedisTemplate.opsForValue().getAndExpire(key, timeout)
-                .doOnSuccess(value -> logger.info("get and expire success key is {} value is {} " +
-                        "expiration time is {} ms", key, value, timeout.toMillis()));
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().getAndExpire(key, timeout),
+                "value.getAndExpire", key, timeout);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<T> getAndPersistAs(@NotNull String key) {
-        return getAndPersist(key).map(obj -> (T) obj)
-                .doOnSuccess(value -> logger.info("get and persist success key is {} value is {}",
-                        key, value));
+        return getAndPersist(key).map(obj -> (T) obj);
     }
 
     @NotNull
     @Override
     public Mono<Object> getAndPersist(@NotNull String key) {
-        return reactiveRedisTemplate.opsForValue().getAndPersist(key)
-                .doOnSuccess(value -> logger.info("get and persist success key is {} value is {}",
-                        key, value))
-                ;
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().getAndPersist(key),
+                "value.getAndPersist", key);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<T> getAndSetAs(@NotNull String key, @NotNull Object value) {
-        return getAndSet(key, value).map(obj -> (T) obj)
-                .doOnSuccess(cache -> logger.info("get and set success key is {} value is {}",
-                        key, cache));
+        return getAndSet(key, value).map(obj -> (T) obj);
     }
 
     @NotNull
     @Override
     public Mono<Object> getAndSet(@NotNull String key, @NotNull Object value) {
-        return reactiveRedisTemplate.opsForValue().getAndSet(key, value)
-                .doOnSuccess(cache -> logger.info("get and set success key is {} value is {}",
-                        key, cache));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().getAndSet(key, value)),
+                "value.getAndSet", key, value);
     }
 
     @SuppressWarnings("unchecked")
     public <T> Mono<List<T>> multiGetAs(@NotNull Collection<String> keys) {
         return multiGet(keys)
                 .map(list -> list.stream().map(obj -> (T) obj)
-                        .collect(Collectors.toList()))
-                .doOnSuccess(cache -> logger.info("multi get success key is {} value is {}",
-                        keys, cache));
+                        .collect(Collectors.toList()));
     }
 
     @NotNull
     @Override
     public Mono<List<Object>> multiGet(@NotNull Collection<String> keys) {
-        return reactiveRedisTemplate.opsForValue().multiGet(keys)
-                .doOnSuccess(cache -> logger.info("multi get success key is {} value is {}",
-                        keys, cache));
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().multiGet(keys),
+                "value.multiGet", keys);
     }
 
     @NotNull
     @Override
     public Mono<Long> increment(@NotNull String key) {
-        return reactiveRedisTemplate.opsForValue().increment(key)
-                .doOnSuccess(cache -> logger.info("increment success key is {} value is {}",
-                        key, cache));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().increment(key)),
+                "value.increment", key);
     }
 
     @NotNull
     @Override
     public Mono<Long> increment(@NotNull String key, long delta) {
-        return reactiveRedisTemplate.opsForValue().increment(key, delta)
-                .doOnSuccess(cache -> logger.info("increment success key is {} value is {} delta is {}",
-                        key, cache, delta));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().increment(key, delta)),
+                "value.increment", key, delta);
     }
 
     @NotNull
     @Override
     public Mono<Double> increment(@NotNull String key, double delta) {
-        return reactiveRedisTemplate.opsForValue().increment(key, delta)
-                .doOnSuccess(cache -> logger.info("increment success key is {} value is {} delta is {}",
-                        key, cache, delta));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().increment(key, delta)),
+                "value.increment", key, delta);
     }
 
     @NotNull
     @Override
     public Mono<Long> decrement(@NotNull String key) {
-        return reactiveRedisTemplate.opsForValue().decrement(key)
-                .doOnSuccess(cache -> logger.info("decrement success key is {} value is {}",
-                        key, cache));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().decrement(key)),
+                "value.decrement", key);
     }
 
     @NotNull
     @Override
     public Mono<Long> decrement(@NotNull String key, long delta) {
-        return reactiveRedisTemplate.opsForValue().decrement(key, delta)
-                .doOnSuccess(cache -> logger.info("decrement success key is {} value is {} delta is {}",
-                        key, cache, delta));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().decrement(key, delta)),
+                "value.decrement", key, delta);
     }
 
     @NotNull
     @Override
     public Mono<Long> append(@NotNull String key, @NotNull String value) {
-        return reactiveRedisTemplate.opsForValue().append(key, value)
-                .doOnSuccess(cache -> logger.info("append success key is {} value is {}",
-                        key, value));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().append(key, value)),
+                "value.append", key, value);
     }
 
     @NotNull
     @Override
     public Mono<String> get(@NotNull String key, long start, long end) {
-        return reactiveRedisTemplate.opsForValue().get(key, start, end)
-                .doOnSuccess(cache -> logger.info("get success key is {} start is {} end is {} value is {}",
-                        key, start, end, cache));
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().get(key, start, end),
+                "value.getRange", key, start, end);
     }
 
     @NotNull
     @Override
     public Mono<Long> set(@NotNull String key, @NotNull Object value, long offset) {
-        return reactiveRedisTemplate.opsForValue().set(key, value, offset)
-                .doOnSuccess(cache -> logger.info("set success key is {} value is {} offset is {}",
-                        key, value, offset));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().set(key, value, offset)),
+                "value.setRange", key, value, offset);
     }
 
     @NotNull
     @Override
     public Mono<Long> size(@NotNull String key) {
-        return reactiveRedisTemplate.opsForValue().size(key)
-                .doOnSuccess(cache -> logger.info("size success key is {} value is {}",
-                        key, cache));
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().size(key),
+                "value.size", key);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> setBit(@NotNull String key, long offset, boolean value) {
-        return reactiveRedisTemplate.opsForValue().setBit(key, offset, value)
-                .doOnSuccess(cache -> logger.info("set bit success key is {} value is {} offset is {}",
-                        key, value, offset));
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().setBit(key, offset, value)),
+                "value.setBit", key, offset, value);
     }
 
     @NotNull
     @Override
     public Mono<Boolean> getBit(@NotNull String key, long offset) {
-        return reactiveRedisTemplate.opsForValue().getBit(key, offset)
-                .doOnSuccess(cache -> logger.info("get bit success key is {} value is {} offset is {}",
-                        key, cache, offset));
+        return interceptors.intercept(reactiveRedisTemplate.opsForValue().getBit(key, offset),
+                "value.getBit", key, offset);
     }
 
     @NotNull
     @Override
     public Mono<List<Long>> bitField(@NotNull String key, @NotNull BitFieldSubCommands command) {
-        return reactiveRedisTemplate.opsForValue().bitField(key, command);
+        return interceptors.intercept(invalidating(key, reactiveRedisTemplate.opsForValue().bitField(key, command)),
+                "value.bitField", key, command);
     }
 
     @NotNull
     public Mono<Boolean> delete(@NotNull String name) {
-        return reactiveRedisTemplate.opsForValue().delete(name)
-                .doOnSuccess(res -> logger.info("delete success key is {}", name));
+        return interceptors.intercept(invalidating(name, reactiveRedisTemplate.opsForValue().delete(name)),
+                "value.delete", name);
+    }
+
+    private <T> Mono<T> invalidating(String key, Mono<T> write) {
+        if (coalescer != null) {
+            write = write.doOnSubscribe(subscription -> coalescer.forget("value.get", key))
+                    .doFinally(signalType -> coalescer.forget("value.get", key));
+        }
+        return nearCache == null ? write : nearCache.invalidating(key, write);
+    }
+
+    private <T> Mono<T> invalidating(Collection<? extends String> keys, Mono<T> write) {
+        if (coalescer != null) {
+            write = write.doOnSubscribe(subscription -> keys.forEach(key -> coalescer.forget("value.get", key)))
+                    .doFinally(signalType -> keys.forEach(key -> coalescer.forget("value.get", key)));
+        }
+        return nearCache == null ? write : nearCache.invalidating(keys, write);
     }
-}
+}
\ No newline at end of file
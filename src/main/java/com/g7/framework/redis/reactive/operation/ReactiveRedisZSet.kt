@@ -1,7 +1,5 @@
 package com.g7.framework.redis.reactive.operation
 
-import org.slf4j.Logger
-import org.slf4j.LoggerFactory
 import org.springframework.data.domain.Range
 import org.springframework.data.redis.connection.RedisZSetCommands
 import org.springframework.data.redis.core.ReactiveRedisTemplate
@@ -18,15 +16,16 @@ import java.time.Duration
  * @date 2022/3/1 4:08 下午
  * @since 1.0.0
  */
-class ReactiveRedisZSet(private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>) :
+class ReactiveRedisZSet @JvmOverloads constructor(
+    private val reactiveRedisTemplate: ReactiveRedisTemplate<String, Any>,
+    private val interceptors: RedisOperationInterceptors = RedisOperationInterceptors.NONE
+) :
     ReactiveZSetOperations<String, Any> {
 
-    private val logger: Logger = LoggerFactory.getLogger(ReactiveRedisZSet::class.java)
-
     override fun add(key: String, value: Any, score: Double): Mono<Boolean> {
-        return reactiveRedisTemplate.opsForZSet().add(key, value, score).doOnSuccess {
-            logger.info("add cache key is [{}] value is [{}] score is [{}]", key, value, score)
-        }
+        return interceptors.intercept(
+            reactiveRedisTemplate.opsForZSet().add(key, value, score), "zset.add", key, value, score
+        )
     }
 
     override fun addAll(key: String, tuples: MutableCollection<out ZSetOperations.TypedTuple<Any>>): Mono<Long> {
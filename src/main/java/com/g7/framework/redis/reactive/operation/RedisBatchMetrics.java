@@ -0,0 +1,25 @@
+package com.g7.framework.redis.reactive.operation;
+
+/**
+ * 批量读取指标回调
+ * 每个批次发送前回调一次,默认实现不记录任何指标。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface RedisBatchMetrics {
+
+    /**
+     * 不记录指标
+     */
+    RedisBatchMetrics NONE = new RedisBatchMetrics() {
+    };
+
+    /**
+     * 发送一个批次
+     * @param command  命令名,例如 value.get、hash.get
+     * @param requests 批次内合并的读取请求数
+     * @param keys     去重后实际读取的KEY(或哈希字段)数
+     */
+    default void batched(String command, int requests, int keys) {
+    }
+}
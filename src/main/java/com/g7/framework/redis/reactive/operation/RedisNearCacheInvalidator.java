@@ -0,0 +1,201 @@
+package com.g7.framework.redis.reactive.operation;
+
+import com.g7.framework.redis.reactive.lock.RedisLockKeys;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 近端缓存的失效消息来源
+ * TRACKING 模式使用 redis 6 客户端缓存(CLIENT TRACKING BCAST PREFIX),通过一条独立的 RESP3 连接接收 invalidate 推送,
+ * 只支持单机 lettuce 连接;KEYSPACE 模式订阅 keyspace 通知,需要服务端开启 notify-keyspace-events(例如 KA)。
+ * 失效消息可能丢失时(连接断开、重新订阅)清空整个近端缓存。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisNearCacheInvalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisNearCacheInvalidator.class);
+    private static final String INVALIDATE = "invalidate";
+    private static final String KEYSPACE_PREFIX = "__keyspace@*__:";
+    private static final String KEYSPACE_SEPARATOR = "__:";
+    private final ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+    private final Mode mode;
+    private volatile Disposable subscription;
+    private volatile StatefulRedisConnection<String, String> trackingConnection;
+    private volatile ReactiveRedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 实例化失效消息来源
+     * @param reactiveRedisConnectionFactory redis connection factory
+     * @param mode                           失效模式
+     */
+    public RedisNearCacheInvalidator(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory, Mode mode) {
+        Assert.notNull(reactiveRedisConnectionFactory, "ReactiveRedisConnectionFactory cannot be null");
+        Assert.notNull(mode, "'mode' cannot be null");
+        this.reactiveRedisConnectionFactory = reactiveRedisConnectionFactory;
+        this.mode = mode;
+    }
+
+    /**
+     * 开始接收失效消息,TRACKING 模式不可用时退回 KEYSPACE 模式
+     * @param nearCache 近端缓存
+     */
+    public synchronized void start(ReactiveRedisNearCache nearCache) {
+        if (this.subscription != null) {
+            return;
+        }
+        if (this.mode == Mode.TRACKING) {
+            RedisClient redisClient = redisClient();
+            if (redisClient != null && startTracking(redisClient, nearCache)) {
+                return;
+            }
+            logger.warn("near cache client tracking is unavailable,fall back to keyspace notifications");
+        }
+        startKeyspace(nearCache);
+    }
+
+    /**
+     * 停止接收失效消息
+     */
+    public synchronized void stop() {
+        Disposable current = this.subscription;
+        if (current != null) {
+            current.dispose();
+            this.subscription = null;
+        }
+        StatefulRedisConnection<String, String> connection = this.trackingConnection;
+        if (connection != null) {
+            connection.close();
+            this.trackingConnection = null;
+        }
+        ReactiveRedisMessageListenerContainer container = this.listenerContainer;
+        if (container != null) {
+            container.destroy();
+            this.listenerContainer = null;
+        }
+    }
+
+    @Nullable
+    private RedisClient redisClient() {
+        if (this.reactiveRedisConnectionFactory instanceof LettuceConnectionFactory) {
+            AbstractRedisClient client = ((LettuceConnectionFactory) this.reactiveRedisConnectionFactory)
+                    .getNativeClient();
+            if (client instanceof RedisClient) {
+                return (RedisClient) client;
+            }
+        }
+        return null;
+    }
+
+    private boolean startTracking(RedisClient redisClient, ReactiveRedisNearCache nearCache) {
+        TrackingArgs trackingArgs = TrackingArgs.Builder.enabled().bcast()
+                .prefixes(nearCache.prefixes().toArray(new String[0]));
+        StatefulRedisConnection<String, String> connection = null;
+        try {
+            connection = redisClient.connect(StringCodec.UTF8);
+            connection.addListener(message -> onPushMessage(message, nearCache));
+            connection.sync().clientTracking(trackingArgs);
+        } catch (RuntimeException e) {
+            logger.warn("enable near cache client tracking failed: " + e.getMessage());
+            if (connection != null) {
+                connection.close();
+            }
+            return false;
+        }
+        StatefulRedisConnection<String, String> tracking = connection;
+        this.trackingConnection = tracking;
+        // 连接断开期间的失效推送会丢失:断开时清空缓存,重连后重新开启 tracking 并再次清空
+        this.subscription = redisClient.getResources().eventBus().get()
+                .subscribe(event -> {
+                    if (event instanceof ConnectionDeactivatedEvent) {
+                        nearCache.invalidateAll();
+                    } else if (event instanceof ConnectionActivatedEvent && tracking.isOpen()) {
+                        tracking.reactive().clientTracking(TrackingArgs.Builder.enabled(false))
+                                .then(tracking.reactive().clientTracking(trackingArgs))
+                                .subscribe(ok -> nearCache.invalidateAll(), throwable ->
+                                        logger.warn("re-enable near cache client tracking failed: " +
+                                                throwable.getMessage()));
+                    }
+                });
+        if (logger.isDebugEnabled()) {
+            logger.debug("near cache client tracking enabled,prefixes:{}", nearCache.prefixes());
+        }
+        return true;
+    }
+
+    private static void onPushMessage(PushMessage message, ReactiveRedisNearCache nearCache) {
+        if (!INVALIDATE.equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (!(keys instanceof List)) {
+            // FLUSHALL/FLUSHDB 或服务端淘汰时推送空列表
+            nearCache.invalidateAll();
+            return;
+        }
+        for (Object key : (List<?>) keys) {
+            nearCache.invalidate(key instanceof ByteBuffer ? StringCodec.UTF8.decodeKey((ByteBuffer) key) :
+                    String.valueOf(key));
+        }
+    }
+
+    private void startKeyspace(ReactiveRedisNearCache nearCache) {
+        ReactiveRedisMessageListenerContainer container =
+                new ReactiveRedisMessageListenerContainer(this.reactiveRedisConnectionFactory);
+        PatternTopic[] topics = nearCache.prefixes().stream()
+                .map(prefix -> new PatternTopic(KEYSPACE_PREFIX + RedisLockKeys.escapePattern(prefix) + "*"))
+                .toArray(PatternTopic[]::new);
+        this.listenerContainer = container;
+        this.subscription = container.receive(topics)
+                // 首次订阅与重新订阅前的通知都可能丢失
+                .doOnSubscribe(s -> nearCache.invalidateAll())
+                .doOnError(throwable -> logger.warn("near cache keyspace subscription failed,entries are " +
+                        "invalidated until resubscribed: " + throwable.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(message -> {
+                    String channel = message.getChannel();
+                    int index = channel.indexOf(KEYSPACE_SEPARATOR);
+                    if (index > 0) {
+                        nearCache.invalidate(channel.substring(index + KEYSPACE_SEPARATOR.length()));
+                    }
+                });
+        if (logger.isDebugEnabled()) {
+            logger.debug("near cache keyspace notification subscribed,prefixes:{}", nearCache.prefixes());
+        }
+    }
+
+    /**
+     * 失效模式
+     */
+    public enum Mode {
+        /**
+         * redis 6 客户端缓存广播模式
+         */
+        TRACKING,
+        /**
+         * keyspace 通知
+         */
+        KEYSPACE
+    }
+}
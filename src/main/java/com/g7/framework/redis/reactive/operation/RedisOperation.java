@@ -0,0 +1,156 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 一次 redis 操作,只在被采样时创建
+ * 参数保留原始引用,渲染推迟到 {@link #toString()} 且按长度截断,拦截器不输出时不会调用参数的 toString。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class RedisOperation {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private final String command;
+    private final Object key;
+    private final Object[] arguments;
+    private final int payloadLimit;
+    private final long startedAt = System.nanoTime();
+
+    RedisOperation(String command, Object key, @Nullable Object[] arguments, int payloadLimit) {
+        this.command = command;
+        this.key = key;
+        this.arguments = arguments == null ? NO_ARGUMENTS : arguments;
+        this.payloadLimit = payloadLimit;
+    }
+
+    /**
+     * 命令名,例如 value.set、hash.put
+     * @return 命令名
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * 操作的KEY,批量操作时为KEY集合
+     * @return KEY
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * 除KEY外的参数
+     * @return 参数
+     */
+    public Object[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * 组装操作到现在的耗时
+     * @return 纳秒
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startedAt;
+    }
+
+    /**
+     * 延迟渲染的载荷,toString 时按长度上限渲染
+     * @param value 载荷,例如操作结果
+     * @return 载荷
+     */
+    public Object payload(@Nullable Object value) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return render(value, payloadLimit);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        // KEY 与参数各自按长度上限渲染
+        StringBuilder builder = new StringBuilder(command).append(" key is ");
+        append(builder, key, payloadLimit);
+        if (arguments.length > 0) {
+            builder.append(" arguments are ");
+            append(builder, arguments, payloadLimit);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按长度上限渲染,集合、Map 与数组逐个元素渲染,超出上限后不再访问剩余元素
+     * @param value 值
+     * @param limit 长度上限
+     * @return 渲染结果
+     */
+    static String render(@Nullable Object value, int limit) {
+        StringBuilder builder = new StringBuilder(Math.min(limit, 64));
+        append(builder, value, limit);
+        return builder.toString();
+    }
+
+    /**
+     * 追加渲染结果,超出上限时以 ... 结尾
+     * @return 是否完整渲染
+     */
+    private static boolean append(StringBuilder builder, @Nullable Object value, int limit) {
+        int end = builder.length() + Math.max(limit, 0);
+        if (value instanceof Collection) {
+            return appendAll(builder, ((Collection<?>) value).iterator(), end);
+        }
+        if (value instanceof Map) {
+            return appendAll(builder, ((Map<?, ?>) value).entrySet().iterator(), end);
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            builder.append('[');
+            for (int i = 0; i < length; i++) {
+                if (!appendElement(builder, Array.get(value, i), i, end)) {
+                    return false;
+                }
+            }
+            builder.append(']');
+            return true;
+        }
+        String text = String.valueOf(value);
+        int remaining = end - builder.length();
+        if (text.length() > remaining) {
+            builder.append(text, 0, Math.max(remaining, 0)).append("...");
+            return false;
+        }
+        builder.append(text);
+        return true;
+    }
+
+    private static boolean appendAll(StringBuilder builder, Iterator<?> iterator, int end) {
+        builder.append('[');
+        for (int i = 0; iterator.hasNext(); i++) {
+            if (!appendElement(builder, iterator.next(), i, end)) {
+                return false;
+            }
+        }
+        builder.append(']');
+        return true;
+    }
+
+    private static boolean appendElement(StringBuilder builder, @Nullable Object element, int index, int end) {
+        if (builder.length() >= end) {
+            builder.append("...");
+            return false;
+        }
+        if (index > 0) {
+            builder.append(", ");
+        }
+        return append(builder, element, end - builder.length());
+    }
+}
@@ -0,0 +1,101 @@
+package com.g7.framework.redis.reactive.operation;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 并发相同读取的合并(single-flight)
+ * 同一 (命令, KEY) 同时只有一个在途的 redis 命令,并发订阅者共享其结果,命令结束后移除,之后的读取重新发送命令。
+ * 在途命令不可取消,所有订阅者取消后仍会执行完毕;共享结果不携带各订阅者自己的 Context。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisOperationCoalescer {
+
+    private final ConcurrentHashMap<Flight, Mono<?>> inFlight = new ConcurrentHashMap<>(16);
+
+    /**
+     * 合并单值读取
+     * @param command 命令名
+     * @param key     KEY
+     * @param source  读取操作
+     * @return mono
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String command, Object key, Mono<T> source) {
+        return Mono.defer(() -> {
+            Flight flight = new Flight(command, key);
+            Mono<?> current = this.inFlight.get(flight);
+            if (current != null) {
+                return (Mono<T>) current;
+            }
+            Mono<?>[] shared = new Mono<?>[1];
+            // 在结果发给订阅者之前移除,且只移除自己,不影响 forget 之后新发出的读取
+            shared[0] = source.doOnTerminate(() -> this.inFlight.remove(flight, shared[0])).share();
+            Mono<?> existing = this.inFlight.putIfAbsent(flight, shared[0]);
+            return (Mono<T>) (existing == null ? shared[0] : existing);
+        });
+    }
+
+    /**
+     * 合并多值读取,结果整体共享后逐个发出,适用于 HGETALL 这类一次返回全部结果的命令
+     * @param command 命令名
+     * @param key     KEY
+     * @param source  读取操作
+     * @return flux
+     */
+    public <T> Flux<T> coalesceMany(String command, Object key, Flux<T> source) {
+        Mono<List<T>> collected = coalesce(command, key, source.collectList());
+        return collected.flatMapIterable(list -> list);
+    }
+
+    /**
+     * 移除在途读取,写操作订阅时调用,使之后的读取不再加入写操作之前发出的命令
+     * @param command 命令名
+     * @param key     KEY
+     */
+    public void forget(String command, Object key) {
+        this.inFlight.remove(new Flight(command, key));
+    }
+
+    /**
+     * 在途读取的数量
+     * @return int
+     */
+    public int inFlight() {
+        return this.inFlight.size();
+    }
+
+    private static final class Flight {
+
+        private final String command;
+        private final Object key;
+        private final int hash;
+
+        private Flight(String command, Object key) {
+            this.command = command;
+            this.key = key;
+            this.hash = 31 * command.hashCode() + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Flight)) {
+                return false;
+            }
+            Flight flight = (Flight) o;
+            return command.equals(flight.command) && key.equals(flight.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
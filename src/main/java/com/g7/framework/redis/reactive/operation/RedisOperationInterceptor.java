@@ -0,0 +1,27 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * redis 操作拦截器,由 {@link RedisOperationInterceptors} 在被采样的操作完成后调用
+ * 回调运行在 redis 客户端的事件循环线程上,不能阻塞;载荷请通过 {@link RedisOperation#payload(Object)} 延迟渲染。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public interface RedisOperationInterceptor {
+
+    /**
+     * 操作成功,多值操作每个元素调用一次
+     * @param operation 操作
+     * @param result    结果,没有结果时为 null
+     */
+    void onSuccess(RedisOperation operation, @Nullable Object result);
+
+    /**
+     * 操作失败
+     * @param operation 操作
+     * @param throwable 异常
+     */
+    default void onError(RedisOperation operation, Throwable throwable) {
+    }
+}
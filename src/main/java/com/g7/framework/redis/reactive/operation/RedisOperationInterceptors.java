@@ -0,0 +1,168 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 五个操作对象共享的拦截器链
+ * 是否采样在组装时决定,没有拦截器或未被采样的操作原样返回,不增加操作符、不捕获 lambda、不创建 {@link RedisOperation}。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public final class RedisOperationInterceptors {
+
+    /**
+     * 不拦截任何操作
+     */
+    public static final RedisOperationInterceptors NONE = new RedisOperationInterceptors(Collections.emptyList(),
+            0, 0);
+    private static final Logger logger = LoggerFactory.getLogger(RedisOperationInterceptors.class);
+    private final RedisOperationInterceptor[] interceptors;
+    private final double sampleRate;
+    private final int payloadLimit;
+
+    /**
+     * 实例化拦截器链
+     * @param interceptors 拦截器,按顺序调用
+     * @param sampleRate   采样比例 [0, 1]
+     * @param payloadLimit 载荷渲染的长度上限
+     */
+    public RedisOperationInterceptors(List<? extends RedisOperationInterceptor> interceptors, double sampleRate,
+                                      int payloadLimit) {
+        Assert.notNull(interceptors, "'interceptors' cannot be null");
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "'sampleRate' must be between 0 and 1");
+        Assert.isTrue(payloadLimit >= 0, "'payloadLimit' cannot be negative");
+        this.interceptors = interceptors.toArray(new RedisOperationInterceptor[0]);
+        this.sampleRate = sampleRate;
+        this.payloadLimit = payloadLimit;
+    }
+
+    /**
+     * 拦截单值操作
+     * @param mono    操作
+     * @param command 命令名
+     * @param key     KEY
+     * @return mono
+     */
+    public <T> Mono<T> intercept(Mono<T> mono, String command, Object key) {
+        return sampled() ? intercept(mono, new RedisOperation(command, key, null, this.payloadLimit)) : mono;
+    }
+
+    /**
+     * 拦截带一个参数的单值操作
+     * @param mono     操作
+     * @param command  命令名
+     * @param key      KEY
+     * @param argument 参数
+     * @return mono
+     */
+    public <T> Mono<T> intercept(Mono<T> mono, String command, Object key, @Nullable Object argument) {
+        return sampled() ? intercept(mono, new RedisOperation(command, key, new Object[]{argument},
+                this.payloadLimit)) : mono;
+    }
+
+    /**
+     * 拦截带两个参数的单值操作,参数单独传入,未采样时不创建参数数组
+     * @param mono          操作
+     * @param command       命令名
+     * @param key           KEY
+     * @param argument      参数
+     * @param otherArgument 参数
+     * @return mono
+     */
+    public <T> Mono<T> intercept(Mono<T> mono, String command, Object key, @Nullable Object argument,
+                                 @Nullable Object otherArgument) {
+        return sampled() ? intercept(mono, new RedisOperation(command, key, new Object[]{argument, otherArgument},
+                this.payloadLimit)) : mono;
+    }
+
+    /**
+     * 拦截带任意个参数的单值操作,供命令管道使用,参数数组在收集命令时已经创建
+     * @param mono      操作
+     * @param command   命令名
+     * @param key       KEY
+     * @param arguments 参数
+     * @return mono
+     */
+    <T> Mono<T> intercept(Mono<T> mono, String command, Object key, Object[] arguments) {
+        return sampled() ? intercept(mono, new RedisOperation(command, key, arguments, this.payloadLimit)) : mono;
+    }
+
+    /**
+     * 采样一次结果不由单个 Mono 返回的操作(例如原子执行的命令管道),之后调用
+     * {@link #onSuccess(RedisOperation, Object)} 或 {@link #onError(RedisOperation, Throwable)}
+     * @param command   命令名
+     * @param key       KEY
+     * @param arguments 参数
+     * @return 操作,未被采样时为 null
+     */
+    @Nullable
+    RedisOperation sample(String command, Object key, Object[] arguments) {
+        return sampled() ? new RedisOperation(command, key, arguments, this.payloadLimit) : null;
+    }
+
+    /**
+     * 拦截多值操作,每个元素调用一次 {@link RedisOperationInterceptor#onSuccess(RedisOperation, Object)}
+     * @param flux    操作
+     * @param command 命令名
+     * @param key     KEY
+     * @return flux
+     */
+    public <T> Flux<T> interceptEach(Flux<T> flux, String command, Object key) {
+        if (!sampled()) {
+            return flux;
+        }
+        RedisOperation operation = new RedisOperation(command, key, null, this.payloadLimit);
+        return flux.doOnNext(result -> onSuccess(operation, result))
+                .doOnError(throwable -> onError(operation, throwable));
+    }
+
+    /**
+     * 是否存在拦截器
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return this.interceptors.length > 0 && this.sampleRate > 0;
+    }
+
+    private boolean sampled() {
+        if (!isEnabled()) {
+            return false;
+        }
+        return this.sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < this.sampleRate;
+    }
+
+    private <T> Mono<T> intercept(Mono<T> mono, RedisOperation operation) {
+        return mono.doOnSuccess(result -> onSuccess(operation, result))
+                .doOnError(throwable -> onError(operation, throwable));
+    }
+
+    void onSuccess(RedisOperation operation, @Nullable Object result) {
+        for (RedisOperationInterceptor interceptor : this.interceptors) {
+            try {
+                interceptor.onSuccess(operation, result);
+            } catch (RuntimeException e) {
+                // 拦截器异常不影响操作结果
+                logger.warn("redis operation interceptor {} failed: {}", interceptor, e.getMessage());
+            }
+        }
+    }
+
+    void onError(RedisOperation operation, Throwable throwable) {
+        for (RedisOperationInterceptor interceptor : this.interceptors) {
+            try {
+                interceptor.onError(operation, throwable);
+            } catch (RuntimeException e) {
+                logger.warn("redis operation interceptor {} failed: {}", interceptor, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单点读取的批量合并(DataLoader 风格)
+ * 在一个时间窗口内收集 Value.get 与 Hash.get,窗口达到最大数量或最长等待时间后发送:字符串KEY合并为一条 MGET,
+ * 哈希字段按KEY合并为 HMGET,结果按KEY分发给各调用方。同一窗口内重复的KEY只读取一次,被取消的读取不再发送。
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+public class RedisReadBatcher implements DisposableBean {
+
+    private final Object lock = new Object();
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final Scheduler scheduler;
+    private RedisBatchMetrics metrics = RedisBatchMetrics.NONE;
+    private List<Request> pending;
+    @Nullable
+    private Disposable timer;
+
+    /**
+     * 实例化批量读取
+     * @param reactiveRedisTemplate redis template
+     * @param maxBatchSize          一个批次最多合并的读取数量
+     * @param maxDelay              第一个读取进入窗口后最长等待时间
+     */
+    public RedisReadBatcher(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate, int maxBatchSize,
+                            Duration maxDelay) {
+        this(reactiveRedisTemplate, maxBatchSize, maxDelay, Schedulers.parallel());
+    }
+
+    RedisReadBatcher(ReactiveRedisTemplate<String, Object> reactiveRedisTemplate, int maxBatchSize,
+                     Duration maxDelay, Scheduler scheduler) {
+        Assert.notNull(reactiveRedisTemplate, "ReactiveRedisTemplate cannot be null");
+        Assert.isTrue(maxBatchSize > 0, "'maxBatchSize' must be positive");
+        Assert.isTrue(maxDelay != null && !maxDelay.isNegative(), "'maxDelay' cannot be negative");
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay.toNanos();
+        this.scheduler = scheduler;
+        this.pending = new ArrayList<>(maxBatchSize);
+    }
+
+    public void setMetrics(RedisBatchMetrics metrics) {
+        Assert.notNull(metrics, "'metrics' cannot be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * 读取字符串KEY
+     * @param key KEY
+     * @return mono
+     */
+    public Mono<Object> get(String key) {
+        return get(key, null);
+    }
+
+    /**
+     * 读取哈希字段
+     * @param key   KEY
+     * @param field 哈希字段,为空时表示字符串KEY
+     * @return mono
+     */
+    public Mono<Object> get(String key, @Nullable Object field) {
+        return Mono.create(sink -> {
+            Request request = new Request(key, field, sink);
+            sink.onCancel(() -> request.cancelled = true);
+            List<Request> full = null;
+            synchronized (this.lock) {
+                this.pending.add(request);
+                if (this.pending.size() >= this.maxBatchSize) {
+                    full = take();
+                } else if (this.pending.size() == 1) {
+                    this.timer = this.scheduler.schedule(this::flush, this.maxDelay, TimeUnit.NANOSECONDS);
+                }
+            }
+            if (full != null) {
+                dispatch(full);
+            }
+        });
+    }
+
+    /**
+     * 立即发送当前窗口
+     */
+    public void flush() {
+        List<Request> batch;
+        synchronized (this.lock) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            batch = take();
+        }
+        dispatch(batch);
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private List<Request> take() {
+        List<Request> batch = this.pending;
+        this.pending = new ArrayList<>(this.maxBatchSize);
+        if (this.timer != null) {
+            this.timer.dispose();
+            this.timer = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Request> batch) {
+        Map<String, List<Request>> values = new LinkedHashMap<>(16);
+        Map<String, Map<Object, List<Request>>> hashes = new LinkedHashMap<>(16);
+        int valueRequests = 0;
+        int hashRequests = 0;
+        int hashFields = 0;
+        for (Request request : batch) {
+            if (request.cancelled) {
+                continue;
+            }
+            if (request.field == null) {
+                values.computeIfAbsent(request.key, key -> new ArrayList<>(1)).add(request);
+                valueRequests++;
+            } else {
+                Map<Object, List<Request>> fields = hashes.computeIfAbsent(request.key,
+                        key -> new LinkedHashMap<>(16));
+                List<Request> requests = fields.get(request.field);
+                if (requests == null) {
+                    requests = new ArrayList<>(1);
+                    fields.put(request.field, requests);
+                    hashFields++;
+                }
+                requests.add(request);
+                hashRequests++;
+            }
+        }
+        if (!values.isEmpty()) {
+            this.metrics.batched("value.get", valueRequests, values.size());
+            subscribe(this.reactiveRedisTemplate.opsForValue().multiGet(new ArrayList<>(values.keySet())),
+                    values.values());
+        }
+        if (!hashes.isEmpty()) {
+            this.metrics.batched("hash.get", hashRequests, hashFields);
+            for (Map.Entry<String, Map<Object, List<Request>>> hash : hashes.entrySet()) {
+                subscribe(this.reactiveRedisTemplate.opsForHash().multiGet(hash.getKey(),
+                        hash.getValue().keySet()), hash.getValue().values());
+            }
+        }
+    }
+
+    private static void subscribe(Mono<List<Object>> command, Collection<List<Request>> requests) {
+        command.subscribe(results -> {
+            int index = 0;
+            for (List<Request> sameKey : requests) {
+                Object result = index < results.size() ? results.get(index) : null;
+                index++;
+                for (Request request : sameKey) {
+                    request.sink.success(result);
+                }
+            }
+        }, throwable -> {
+            for (List<Request> sameKey : requests) {
+                for (Request request : sameKey) {
+                    request.sink.error(throwable);
+                }
+            }
+        }, () -> {
+            // 没有结果时以空完成,已完成的 sink 忽略重复信号
+            for (List<Request> sameKey : requests) {
+                for (Request request : sameKey) {
+                    request.sink.success();
+                }
+            }
+        });
+    }
+
+    private static final class Request {
+
+        private final String key;
+        @Nullable
+        private final Object field;
+        private final MonoSink<Object> sink;
+        private volatile boolean cancelled;
+
+        private Request(String key, @Nullable Object field, MonoSink<Object> sink) {
+            this.key = key;
+            this.field = field;
+            this.sink = sink;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.g7.framework.redis.reactive.properties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Redis Reactive Lock Properties Configuration
@@ -12,6 +14,11 @@ import java.time.Duration;
 @ConfigurationProperties(prefix = "spring.reactive.redis.lock")
 public class RedisReactiveLockProperties {
 
+    /**
+     * 锁注册表模式
+     */
+    private Mode mode = Mode.REDIS;
+
     /**
      * global registry key prefix
      */
@@ -27,6 +34,100 @@ public class RedisReactiveLockProperties {
      */
     private Duration expireEvictIdle = Duration.ofSeconds(3);
 
+    /**
+     * 获取锁失败后的重试间隔
+     */
+    private Duration retryInterval = Duration.ofMillis(100);
+
+    /**
+     * 获取锁失败后的退避策略,fixed 时按重试间隔固定退避
+     */
+    private Backoff backoff = Backoff.FIXED;
+
+    /**
+     * 退避策略的最小(初始)等待时间
+     */
+    private Duration backoffMinInterval = Duration.ofMillis(5);
+
+    /**
+     * 退避策略的最大等待时间
+     */
+    private Duration backoffMaxInterval = Duration.ofSeconds(1);
+
+    /**
+     * 指数退避的随机抖动比例 [0, 1]
+     */
+    private double backoffJitter = 0.5;
+
+    /**
+     * 是否开启锁释放通知(pub/sub),开启后等待者收到释放消息立即重试
+     */
+    private boolean releaseNotification = false;
+
+    /**
+     * 开启锁释放通知时的兜底重试间隔
+     */
+    private Duration releaseNotificationRetryInterval = Duration.ofSeconds(1);
+
+    /**
+     * 是否开启锁续期看门狗,临界区订阅存活期间持续续期锁的过期时间
+     */
+    private boolean watchdog = false;
+
+    /**
+     * 看门狗续期间隔,为空时使用最大过期时间的三分之一
+     */
+    private Duration watchdogInterval;
+
+    /**
+     * 租约保留时间,本地释放锁后在该时间内保留 redis 上的锁供本地后续获取者直接复用;
+     * 为空时不保留,开启释放通知时其他节点获取失败会让保留的租约提前释放
+     */
+    private Duration leaseLinger;
+
+    /**
+     * 公平锁等待者超时时间,超过该时间未重试的等待者会被移出等待队列,应大于重试间隔
+     */
+    private Duration fairWaiterTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 多数派锁的独立 redis 节点,例如 redis://password@host:6379/0,mode 为 quorum 时生效,建议奇数个
+     */
+    private List<String> quorumNodes = new ArrayList<>();
+
+    /**
+     * 多数派锁单个节点的超时时间,应远小于锁过期时间
+     */
+    private Duration quorumNodeTimeout = Duration.ofMillis(100);
+
+    /**
+     * 多数派锁的时钟漂移系数,锁的有效期扣除 过期时间 * 系数 + 2ms
+     */
+    private double quorumClockDriftFactor = 0.01;
+
+    /**
+     * 存在 MeterRegistry 时是否记录锁指标
+     */
+    private boolean metricsEnabled = true;
+
+    /**
+     * 作为指标 group 标签的锁KEY段数,段数不足的KEY归入 other
+     */
+    private int metricsKeyGroupDepth = 1;
+
+    /**
+     * 锁KEY的分段分隔符
+     */
+    private String metricsKeyGroupDelimiter = ":";
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
     public String getRegistryKeyPrefix() {
         return registryKeyPrefix;
     }
@@ -51,12 +152,213 @@ public class RedisReactiveLockProperties {
         this.expireEvictIdle = expireEvictIdle;
     }
 
+    public Duration getRetryInterval() {
+        return retryInterval;
+    }
+
+    public void setRetryInterval(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    public Backoff getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(Backoff backoff) {
+        this.backoff = backoff;
+    }
+
+    public Duration getBackoffMinInterval() {
+        return backoffMinInterval;
+    }
+
+    public void setBackoffMinInterval(Duration backoffMinInterval) {
+        this.backoffMinInterval = backoffMinInterval;
+    }
+
+    public Duration getBackoffMaxInterval() {
+        return backoffMaxInterval;
+    }
+
+    public void setBackoffMaxInterval(Duration backoffMaxInterval) {
+        this.backoffMaxInterval = backoffMaxInterval;
+    }
+
+    public double getBackoffJitter() {
+        return backoffJitter;
+    }
+
+    public void setBackoffJitter(double backoffJitter) {
+        this.backoffJitter = backoffJitter;
+    }
+
+    public boolean isReleaseNotification() {
+        return releaseNotification;
+    }
+
+    public void setReleaseNotification(boolean releaseNotification) {
+        this.releaseNotification = releaseNotification;
+    }
+
+    public Duration getReleaseNotificationRetryInterval() {
+        return releaseNotificationRetryInterval;
+    }
+
+    public void setReleaseNotificationRetryInterval(Duration releaseNotificationRetryInterval) {
+        this.releaseNotificationRetryInterval = releaseNotificationRetryInterval;
+    }
+
+    public boolean isWatchdog() {
+        return watchdog;
+    }
+
+    public void setWatchdog(boolean watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    public Duration getWatchdogInterval() {
+        return watchdogInterval;
+    }
+
+    public void setWatchdogInterval(Duration watchdogInterval) {
+        this.watchdogInterval = watchdogInterval;
+    }
+
+    public Duration getLeaseLinger() {
+        return leaseLinger;
+    }
+
+    public void setLeaseLinger(Duration leaseLinger) {
+        this.leaseLinger = leaseLinger;
+    }
+
+    public Duration getFairWaiterTimeout() {
+        return fairWaiterTimeout;
+    }
+
+    public void setFairWaiterTimeout(Duration fairWaiterTimeout) {
+        this.fairWaiterTimeout = fairWaiterTimeout;
+    }
+
+    public List<String> getQuorumNodes() {
+        return quorumNodes;
+    }
+
+    public void setQuorumNodes(List<String> quorumNodes) {
+        this.quorumNodes = quorumNodes;
+    }
+
+    public Duration getQuorumNodeTimeout() {
+        return quorumNodeTimeout;
+    }
+
+    public void setQuorumNodeTimeout(Duration quorumNodeTimeout) {
+        this.quorumNodeTimeout = quorumNodeTimeout;
+    }
+
+    public double getQuorumClockDriftFactor() {
+        return quorumClockDriftFactor;
+    }
+
+    public void setQuorumClockDriftFactor(double quorumClockDriftFactor) {
+        this.quorumClockDriftFactor = quorumClockDriftFactor;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public int getMetricsKeyGroupDepth() {
+        return metricsKeyGroupDepth;
+    }
+
+    public void setMetricsKeyGroupDepth(int metricsKeyGroupDepth) {
+        this.metricsKeyGroupDepth = metricsKeyGroupDepth;
+    }
+
+    public String getMetricsKeyGroupDelimiter() {
+        return metricsKeyGroupDelimiter;
+    }
+
+    public void setMetricsKeyGroupDelimiter(String metricsKeyGroupDelimiter) {
+        this.metricsKeyGroupDelimiter = metricsKeyGroupDelimiter;
+    }
+
     @Override
     public String toString() {
         return "RedisReactiveLockProperties{" +
-                "registryKeyPrefix='" + registryKeyPrefix + '\'' +
+                "mode=" + mode +
+                ", registryKeyPrefix='" + registryKeyPrefix + '\'' +
                 ", expireAfter=" + expireAfter +
                 ", expireEvictIdle=" + expireEvictIdle +
+                ", retryInterval=" + retryInterval +
+                ", backoff=" + backoff +
+                ", backoffMinInterval=" + backoffMinInterval +
+                ", backoffMaxInterval=" + backoffMaxInterval +
+                ", backoffJitter=" + backoffJitter +
+                ", releaseNotification=" + releaseNotification +
+                ", releaseNotificationRetryInterval=" + releaseNotificationRetryInterval +
+                ", watchdog=" + watchdog +
+                ", watchdogInterval=" + watchdogInterval +
+                ", leaseLinger=" + leaseLinger +
+                ", fairWaiterTimeout=" + fairWaiterTimeout +
+                ", quorumNodes=" + quorumNodes +
+                ", quorumNodeTimeout=" + quorumNodeTimeout +
+                ", quorumClockDriftFactor=" + quorumClockDriftFactor +
+                ", metricsEnabled=" + metricsEnabled +
+                ", metricsKeyGroupDepth=" + metricsKeyGroupDepth +
+                ", metricsKeyGroupDelimiter='" + metricsKeyGroupDelimiter + '\'' +
                 '}';
     }
+
+    /**
+     * 锁注册表模式
+     */
+    public enum Mode {
+
+        /**
+         * 单个 redis(单机、哨兵或集群)
+         */
+        REDIS,
+
+        /**
+         * 多个独立 redis 节点的多数派锁(Redlock)
+         */
+        QUORUM,
+
+        /**
+         * 进程内的锁,只适用于单实例部署
+         */
+        LOCAL
+    }
+
+    /**
+     * 获取锁失败后的退避策略
+     */
+    public enum Backoff {
+
+        /**
+         * 按重试间隔固定退避
+         */
+        FIXED,
+
+        /**
+         * 等待到持有者的锁即将过期
+         */
+        NEAR_EXPIRY,
+
+        /**
+         * 带随机抖动的指数退避
+         */
+        EXPONENTIAL,
+
+        /**
+         * 按观察到的平均持有时间自适应退避
+         */
+        ADAPTIVE
+    }
 }
@@ -0,0 +1,274 @@
+package com.g7.framework.redis.reactive.properties;
+
+import com.g7.framework.redis.reactive.operation.RedisNearCacheInvalidator;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis Reactive Operation Properties Configuration
+ * @author dreamyao
+ * @date 2022/3/1 4:09 下午
+ */
+@ConfigurationProperties(prefix = "spring.reactive.redis.operation")
+public class RedisReactiveOperationProperties {
+
+    /**
+     * 是否以 INFO 级别输出操作日志,默认关闭
+     */
+    private boolean logEnabled = false;
+
+    /**
+     * 操作拦截器的采样比例 [0, 1]
+     */
+    private double sampleRate = 1.0;
+
+    /**
+     * 拦截器渲染KEY、参数与结果时的长度上限
+     */
+    private int maxPayloadLength = 256;
+
+    /**
+     * 是否合并并发的相同读取(Value.get、Hash.entries),默认关闭
+     */
+    private boolean coalescingEnabled = false;
+
+    /**
+     * Value.get 与 Hash.get 的近端缓存
+     */
+    private NearCache nearCache = new NearCache();
+
+    /**
+     * Value.get 与 Hash.get 的批量合并
+     */
+    private Batch batch = new Batch();
+
+    public boolean isLogEnabled() {
+        return logEnabled;
+    }
+
+    public void setLogEnabled(boolean logEnabled) {
+        this.logEnabled = logEnabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxPayloadLength() {
+        return maxPayloadLength;
+    }
+
+    public void setMaxPayloadLength(int maxPayloadLength) {
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
+    public boolean isCoalescingEnabled() {
+        return coalescingEnabled;
+    }
+
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        this.coalescingEnabled = coalescingEnabled;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisReactiveOperationProperties{" +
+                "logEnabled=" + logEnabled +
+                ", sampleRate=" + sampleRate +
+                ", maxPayloadLength=" + maxPayloadLength +
+                ", coalescingEnabled=" + coalescingEnabled +
+                ", nearCache=" + nearCache +
+                ", batch=" + batch +
+                '}';
+    }
+
+    public static class NearCache {
+
+        /**
+         * 是否开启近端缓存,默认关闭
+         */
+        private boolean enabled = false;
+
+        /**
+         * 失效模式,TRACKING 需要 redis 6 与单机连接,不可用时退回 KEYSPACE
+         */
+        private RedisNearCacheInvalidator.Mode invalidation = RedisNearCacheInvalidator.Mode.TRACKING;
+
+        /**
+         * 按KEY前缀划分的缓存区域,未匹配任何前缀的KEY不缓存
+         */
+        private List<Region> regions = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public RedisNearCacheInvalidator.Mode getInvalidation() {
+            return invalidation;
+        }
+
+        public void setInvalidation(RedisNearCacheInvalidator.Mode invalidation) {
+            this.invalidation = invalidation;
+        }
+
+        public List<Region> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(List<Region> regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        public String toString() {
+            return "NearCache{" +
+                    "enabled=" + enabled +
+                    ", invalidation=" + invalidation +
+                    ", regions=" + regions +
+                    '}';
+        }
+    }
+
+    public static class Batch {
+
+        /**
+         * 是否把窗口内的单点读取合并为 MGET/HMGET,默认关闭
+         */
+        private boolean enabled = false;
+
+        /**
+         * 一个批次最多合并的读取数量
+         */
+        private int maxSize = 128;
+
+        /**
+         * 第一个读取进入窗口后最长等待时间
+         */
+        private Duration maxDelay = Duration.ofMillis(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        @Override
+        public String toString() {
+            return "Batch{" +
+                    "enabled=" + enabled +
+                    ", maxSize=" + maxSize +
+                    ", maxDelay=" + maxDelay +
+                    '}';
+        }
+    }
+
+    public static class Region {
+
+        /**
+         * KEY前缀
+         */
+        private String prefix;
+
+        /**
+         * 最多缓存的KEY数量
+         */
+        private int maxEntries = 10000;
+
+        /**
+         * 最大总权重,默认按字符串长度、集合大小估算
+         */
+        private long maxWeight = 10 * 1024 * 1024;
+
+        /**
+         * 缓存的最长存活时间
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        @Override
+        public String toString() {
+            return "Region{" +
+                    "prefix='" + prefix + '\'' +
+                    ", maxEntries=" + maxEntries +
+                    ", maxWeight=" + maxWeight +
+                    ", ttl=" + ttl +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.g7.framework.redis.reactive.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行基准测试并输出 ops/s 与每次操作分配的字节数(gc.alloc.rate.norm)
+ * mvn -Pbenchmark test-compile exec:exec,只运行部分基准测试时指定 -Dbenchmark.include=正则
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : System.getProperty("benchmark.include",
+                        "com.g7.framework.redis.reactive.benchmark.*"))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
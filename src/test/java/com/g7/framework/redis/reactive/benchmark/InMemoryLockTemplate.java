@@ -0,0 +1,52 @@
+package com.g7.framework.redis.reactive.benchmark;
+
+import com.g7.framework.redis.reactive.lock.RedisReactiveLockScripts;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试使用的内存版 redis,只实现排他锁的获取与释放脚本,不访问网络、不处理过期时间;
+ * 基准测试结果只包含锁本身的开销,不包含网络往返与序列化
+ */
+public class InMemoryLockTemplate extends ReactiveStringRedisTemplate {
+
+    private static final Long UNKNOWN_TTL = 0L;
+    private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>(16);
+    private final ConcurrentMap<String, AtomicLong> fences = new ConcurrentHashMap<>(16);
+
+    public InMemoryLockTemplate() {
+        // 连接工厂不会被初始化,只用于满足 template 的构造参数
+        super(new LettuceConnectionFactory());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+        if (script == RedisReactiveLockScripts.OBTAIN_FENCED_LOCK) {
+            return (Flux<T>) Flux.just(obtain(keys, args));
+        }
+        if (script == RedisReactiveLockScripts.RELEASE_LOCK) {
+            return (Flux<T>) Flux.just(this.values.remove(keys.get(0), String.valueOf(args.get(0))));
+        }
+        return Flux.error(new UnsupportedOperationException("script is not supported in memory"));
+    }
+
+    private Long obtain(List<String> keys, List<?> args) {
+        String lockId = String.valueOf(args.get(0));
+        String holder = this.values.putIfAbsent(keys.get(0), lockId);
+        if (holder != null && !holder.equals(lockId)) {
+            return UNKNOWN_TTL;
+        }
+        if (!"1".equals(args.get(3))) {
+            return 1L;
+        }
+        return this.fences.computeIfAbsent(keys.get(1), key -> new AtomicLong()).incrementAndGet();
+    }
+}
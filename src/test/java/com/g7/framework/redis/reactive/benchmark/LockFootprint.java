@@ -0,0 +1,65 @@
+package com.g7.framework.redis.reactive.benchmark;
+
+import com.g7.framework.redis.reactive.lock.ReactiveLock;
+import com.g7.framework.redis.reactive.lock.RedisReactiveLockRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 测量注册表中每个锁KEY占用的堆内存,使用 {@link InMemoryLockTemplate} 代替 redis;
+ * idle 为加锁释放过一次、缓存在注册表中等待驱逐的KEY,held 为同时持有的KEY(在 idle 之上增加的临界区订阅)
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.g7.framework.redis.reactive.benchmark.LockFootprint
+ */
+public class LockFootprint {
+
+    private static final int KEY_COUNT = 1_000_000;
+
+    public static void main(String[] args) {
+        int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : KEY_COUNT;
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "order:" + i;
+        }
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(new InMemoryLockTemplate(),
+                Duration.ofMinutes(1), Duration.ofSeconds(10), "footprint");
+        ReactiveLock[] locks = new ReactiveLock[1];
+        long before = usedHeap();
+        for (String key : keys) {
+            locks[0] = registry.obtain(key);
+            locks[0].tryLock(Mono::just).block();
+        }
+        print("idle", keyCount, before, usedHeap(), registry.registeredLocks());
+        Disposable[] holders = new Disposable[keyCount];
+        before = usedHeap();
+        for (int i = 0; i < keyCount; i++) {
+            holders[i] = registry.obtain(keys[i]).tryLock(lockResult -> Mono.never()).subscribe();
+        }
+        print("held", keyCount, before, usedHeap(), registry.registeredLocks());
+        for (Disposable holder : holders) {
+            holder.dispose();
+        }
+        System.out.println("registered after release(evicted after max lock lifetime): " + registry.registeredLocks());
+    }
+
+    private static void print(String state, int keyCount, long before, long after, int registered) {
+        double bytesPerKey = (after - before) / (double) keyCount;
+        System.out.printf("%s keys: %d, registered: %d, heap: %.1f MB, per key: %.1f bytes, per 1M keys: %.1f MB%n",
+                state, keyCount, registered, (after - before) / 1024.0 / 1024.0, bytesPerKey,
+                bytesPerKey * 1_000_000 / 1024.0 / 1024.0);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
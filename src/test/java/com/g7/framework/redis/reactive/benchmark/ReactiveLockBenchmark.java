@@ -0,0 +1,82 @@
+package com.g7.framework.redis.reactive.benchmark;
+
+import com.g7.framework.redis.reactive.lock.ReactiveLock;
+import com.g7.framework.redis.reactive.lock.RedisReactiveLockRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 锁获取/释放热路径基准测试,使用本地 redis(localhost:6379)
+ * 配合 GC profiler 运行时 gc.alloc.rate.norm 即每次操作分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReactiveLockBenchmark {
+
+    private static final Function<Boolean, Mono<Boolean>> CRITICAL_SECTION = Mono::just;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisReactiveLockRegistry registry;
+    private RedisReactiveLockRegistry lingerRegistry;
+    private ReactiveLock lock;
+    private ReactiveLock lingerLock;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        this.registry = new RedisReactiveLockRegistry(template, Duration.ofMinutes(1), Duration.ofSeconds(10),
+                "benchmark");
+        this.registry.afterPropertiesSet();
+        this.lingerRegistry = new RedisReactiveLockRegistry(template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "benchmark_linger");
+        this.lingerRegistry.setLinger(Duration.ofMillis(100));
+        this.lingerRegistry.afterPropertiesSet();
+        this.lock = this.registry.obtain("LOCK_BENCHMARK");
+        this.lingerLock = this.lingerRegistry.obtain("LOCK_BENCHMARK");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.registry.destroy();
+        this.lingerRegistry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    /**
+     * 获取并释放锁,每次两次 redis 往返
+     */
+    @Benchmark
+    public Boolean tryLock() {
+        return this.lock.tryLock(CRITICAL_SECTION).block();
+    }
+
+    /**
+     * 开启租约保留,稳定状态下不访问 redis
+     */
+    @Benchmark
+    public Boolean tryLockLinger() {
+        return this.lingerLock.tryLock(CRITICAL_SECTION).block();
+    }
+}
@@ -0,0 +1,90 @@
+package com.g7.framework.redis.reactive.benchmark;
+
+import com.g7.framework.redis.reactive.lock.RedisReactiveLock;
+import com.g7.framework.redis.reactive.lock.RedisReactiveLockRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 锁获取/释放热路径基准测试,使用 {@link InMemoryLockTemplate} 代替 redis,不需要本地 redis;
+ * 配合 GC profiler 运行时 gc.alloc.rate.norm 即锁本身每次操作分配的字节数
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=ReactiveLockExecutorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReactiveLockExecutorBenchmark {
+
+    private static final Function<Boolean, Mono<Boolean>> CRITICAL_SECTION = Mono::just;
+    private static final BiFunction<Boolean, Long, Mono<Boolean>> FENCED_CRITICAL_SECTION =
+            (lockResult, token) -> Mono.just(lockResult);
+    private RedisReactiveLock lock;
+    private RedisReactiveLock lingerLock;
+    private RedisReactiveLockRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        InMemoryLockTemplate template = new InMemoryLockTemplate();
+        this.lock = new RedisReactiveLock(template, "benchmark:LOCK_EXECUTOR", Duration.ofSeconds(10));
+        this.lingerLock = new RedisReactiveLock(template, "benchmark:LOCK_EXECUTOR_LINGER", Duration.ofSeconds(10));
+        this.lingerLock.setLinger(Duration.ofMillis(100));
+        this.registry = new RedisReactiveLockRegistry(template, Duration.ofMinutes(1), Duration.ofSeconds(10),
+                "benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        this.registry.destroy();
+    }
+
+    /**
+     * 获取并释放锁,每次执行获取与释放两个脚本
+     */
+    @Benchmark
+    public Boolean tryLock() {
+        return this.lock.tryLock(CRITICAL_SECTION).block();
+    }
+
+    /**
+     * 通过 fencing API 获取并释放锁,额外递增 fencing 计数器
+     */
+    @Benchmark
+    public Boolean tryLockFenced() {
+        return this.lock.tryLockFenced(FENCED_CRITICAL_SECTION).block();
+    }
+
+    /**
+     * 开启租约保留,稳定状态下不执行脚本
+     */
+    @Benchmark
+    public Boolean tryLockLinger() {
+        return this.lingerLock.tryLock(CRITICAL_SECTION).block();
+    }
+
+    /**
+     * 经注册表取得句柄后获取并释放锁,额外包括句柄、注册表查找与登记使用者
+     */
+    @Benchmark
+    public Boolean registryTryLock() {
+        return this.registry.obtain("LOCK_REGISTRY").tryLock(CRITICAL_SECTION).block();
+    }
+}
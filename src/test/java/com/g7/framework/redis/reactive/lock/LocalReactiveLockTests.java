@@ -0,0 +1,125 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "spring.reactive.redis.lock.mode=local")
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class LocalReactiveLockTests {
+
+    @Autowired
+    private ReactiveLockRegistry reactiveLockRegistry;
+
+    @Test
+    public void testLoadConfiguration() {
+        assertTrue(reactiveLockRegistry instanceof LocalReactiveLockRegistry);
+    }
+
+    @Test
+    public void testAcquireOnce() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> reactiveLockRegistry.obtain("LOCAL_LOCK_ONCE")
+                        .tryLock(lockResult -> lockResult ?
+                                processFunctions.processDelayFunction(Duration.ofMillis(200)) :
+                                Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testAcquireWithTimeout() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 3)
+                .flatMap(value -> reactiveLockRegistry.obtain("LOCAL_LOCK_TIMEOUT")
+                        .lock(Duration.ofMillis(300), lockResult -> lockResult ?
+                                processFunctions.processDelayFunction(Duration.ofMillis(200)) :
+                                Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testWaitersAcquireInSubscriptionOrder() {
+        // 持有者释放后,排队的等待者按订阅顺序依次获取
+        LocalReactiveLockRegistry registry = new LocalReactiveLockRegistry();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        Mono<Boolean> holder = registry.obtain("LOCAL_LOCK_FIFO")
+                .tryLock(lockResult -> Mono.delay(Duration.ofMillis(300)).thenReturn(lockResult));
+        Flux<Boolean> waiters = Flux.range(0, 5)
+                .flatMap(index -> Mono.delay(Duration.ofMillis(20L * (index + 1)))
+                        .then(registry.obtain("LOCAL_LOCK_FIFO")
+                                .lock(Duration.ofSeconds(5), lockResult -> {
+                                    order.add(index);
+                                    return Mono.delay(Duration.ofMillis(10)).thenReturn(lockResult);
+                                })));
+        StepVerifier.create(Flux.merge(holder, waiters).all(lockResult -> lockResult))
+                .expectNext(true)
+                .verifyComplete();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    public void testExpiredHolderHandsOver() {
+        // 持有者超过过期时间后,等待者无需等待持有者结束即可获取
+        LocalReactiveLockRegistry registry = new LocalReactiveLockRegistry(Duration.ofMinutes(3),
+                Duration.ofMillis(200));
+        Mono<String> holder = registry.obtain("LOCAL_LOCK_EXPIRE")
+                .tryLock(lockResult -> lockResult ? Mono.delay(Duration.ofMillis(800)).thenReturn("holder") :
+                        Mono.just(ProcessFunctions.FAILED));
+        Mono<String> waiter = Mono.delay(Duration.ofMillis(50))
+                .then(registry.obtain("LOCAL_LOCK_EXPIRE")
+                        .lock(Duration.ofMillis(500), lockResult -> Mono.just(lockResult ? "waiter" :
+                                ProcessFunctions.FAILED)));
+        StepVerifier.create(Flux.merge(holder, waiter))
+                .expectNext("waiter")
+                .expectNext("holder")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testIdleLockReusedUntilEvicted() throws Exception {
+        // 锁对象在第一次操作时创建,之后的操作复用同一个对象,空闲超过最大锁定寿命后被驱逐
+        LocalReactiveLockRegistry registry = new LocalReactiveLockRegistry(Duration.ofMillis(100),
+                Duration.ofMillis(200));
+        registry.afterPropertiesSet();
+        try {
+            ReactiveLock lock = registry.obtain("LOCAL_LOCK_CACHED");
+            assertEquals(0, registry.registeredLocks());
+            StepVerifier.create(lock.tryLock(Mono::just))
+                    .expectNext(true)
+                    .verifyComplete();
+            assertEquals(1, registry.registeredLocks());
+            StatefulReactiveLock first = registry.pin("LOCAL_LOCK_CACHED");
+            StatefulReactiveLock second = registry.pin("LOCAL_LOCK_CACHED");
+            assertSame(first, second);
+            registry.unpin("LOCAL_LOCK_CACHED", first);
+            registry.unpin("LOCAL_LOCK_CACHED", second);
+            StepVerifier.create(Mono.delay(Duration.ofMillis(800)).map(tick -> registry.registeredLocks()))
+                    .expectNext(0)
+                    .verifyComplete();
+        } finally {
+            registry.destroy();
+        }
+    }
+}
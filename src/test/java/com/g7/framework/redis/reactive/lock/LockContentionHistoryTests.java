@@ -0,0 +1,54 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LockContentionHistoryTests {
+
+    @Test
+    public void testAccumulateAcrossEvictions() {
+        LockContentionHistory history = new LockContentionHistory(4, Duration.ofMinutes(1));
+        history.record("order", "lock", 10, 3, 1_000);
+        history.record("order", "lock", 5, 2, 2_000);
+        // 没有竞争过的锁不记录
+        history.record("idle", "lock", 7, 0, 2_000);
+        Map<String, ReactiveLockInfo> snapshot = history.snapshot(2_000);
+        assertEquals(1, snapshot.size());
+        ReactiveLockInfo info = snapshot.get(LockContentionHistory.key("lock", "order"));
+        assertEquals("order", info.getLockKey());
+        assertEquals(15, info.getAcquisitions());
+        assertEquals(5, info.getContentions());
+        assertEquals(0, info.getHeldSince());
+    }
+
+    @Test
+    public void testEvictColdestWhenFull() {
+        LockContentionHistory history = new LockContentionHistory(2, Duration.ofMinutes(1));
+        history.record("hot", "lock", 100, 100, 0);
+        history.record("cold", "lock", 2, 2, 0);
+        // 比所有已记录KEY都冷的新KEY不记录
+        history.record("colder", "lock", 1, 1, 0);
+        assertFalse(history.snapshot(0).containsKey(LockContentionHistory.key("lock", "colder")));
+        // 热度衰减后,新KEY淘汰最冷的KEY
+        history.record("new", "lock", 50, 50, 60_000);
+        Map<String, ReactiveLockInfo> snapshot = history.snapshot(60_000);
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.containsKey(LockContentionHistory.key("lock", "hot")));
+        assertTrue(snapshot.containsKey(LockContentionHistory.key("lock", "new")));
+    }
+
+    @Test
+    public void testForgetDecayedKeys() {
+        LockContentionHistory history = new LockContentionHistory(4, Duration.ofMinutes(1));
+        history.record("order", "lock", 4, 4, 0);
+        assertEquals(1, history.snapshot(60_000).size());
+        // 热度每分钟减半,4 次竞争在 2 分钟后衰减到 1 以下
+        assertTrue(history.snapshot(2 * 60_000 + 1).isEmpty());
+    }
+}
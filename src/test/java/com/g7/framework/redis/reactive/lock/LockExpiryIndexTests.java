@@ -0,0 +1,51 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LockExpiryIndexTests {
+
+    @Test
+    public void testPollOnlyDueBuckets() {
+        LockExpiryIndex index = new LockExpiryIndex(Duration.ofMillis(100));
+        ConcurrentMap<String, Object> registry = new ConcurrentHashMap<>(16);
+        LockExpiryIndex.Candidate first = new LockExpiryIndex.Candidate(registry, "first", "first", null);
+        LockExpiryIndex.Candidate sameBucket = new LockExpiryIndex.Candidate(registry, "same", "same", null);
+        LockExpiryIndex.Candidate nextBucket = new LockExpiryIndex.Candidate(registry, "next", "next", null);
+        index.schedule(nextBucket, 1_100);
+        index.schedule(first, 1_000);
+        index.schedule(sameBucket, 1_099);
+        // 只取出当前时间所在及之前的桶,同一个桶内的候选一起取出
+        assertTrue(index.pollDue(999).isEmpty());
+        List<LockExpiryIndex.Candidate> due = index.pollDue(1_050);
+        assertEquals(2, due.size());
+        assertTrue(due.contains(first));
+        assertTrue(due.contains(sameBucket));
+        assertTrue(index.pollDue(1_050).isEmpty());
+        due = index.pollDue(5_000);
+        assertEquals(1, due.size());
+        assertSame(nextBucket, due.get(0));
+    }
+
+    @Test
+    public void testRemoveOnlyRegisteredValue() {
+        ConcurrentMap<String, Object> registry = new ConcurrentHashMap<>(16);
+        registry.put("key", "current");
+        LockExpiryIndex.Candidate stale = new LockExpiryIndex.Candidate(registry, "key", "stale", null);
+        LockExpiryIndex.Candidate current = new LockExpiryIndex.Candidate(registry, "key", "current", null);
+        // 已被替换的旧对象不会移除注册表中的新对象
+        assertFalse(stale.remove(value -> true));
+        assertFalse(current.remove(value -> false));
+        assertTrue(current.remove(value -> true));
+        assertTrue(registry.isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+public class ReactiveLockBackoffTests {
+
+    private LettuceConnectionFactory connectionFactory;
+
+    @AfterEach
+    public void destroy() {
+        if (this.connectionFactory != null) {
+            this.connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void testNearExpiryBackoff() {
+        ReactiveLockBackoff backoff = new NearExpiryReactiveLockBackoff(Duration.ofMillis(5), Duration.ofSeconds(1));
+        Assertions.assertEquals(Duration.ofMillis(5), backoff.backoff(0, ReactiveLockBackoff.UNKNOWN,
+                ReactiveLockBackoff.UNKNOWN));
+        Assertions.assertEquals(Duration.ofMillis(300), backoff.backoff(0, 300, ReactiveLockBackoff.UNKNOWN));
+        Assertions.assertEquals(Duration.ofSeconds(1), backoff.backoff(0, 60000, ReactiveLockBackoff.UNKNOWN));
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        ReactiveLockBackoff backoff = new ExponentialReactiveLockBackoff(Duration.ofMillis(10),
+                Duration.ofMillis(200), 0.5);
+        for (long attempt = 0; attempt < 64; attempt++) {
+            long expected = Math.min(200, 10L << Math.min(attempt, 30));
+            long actual = backoff.backoff(attempt, ReactiveLockBackoff.UNKNOWN, ReactiveLockBackoff.UNKNOWN)
+                    .toMillis();
+            Assertions.assertTrue(actual <= expected && actual >= expected / 2, "attempt " + attempt);
+        }
+        Assertions.assertTrue(backoff.backoff(10, 20, ReactiveLockBackoff.UNKNOWN).toMillis() <= 20);
+    }
+
+    @Test
+    public void testAdaptiveBackoff() {
+        ReactiveLockBackoff backoff = new AdaptiveReactiveLockBackoff(Duration.ofMillis(5), Duration.ofSeconds(1));
+        Assertions.assertEquals(Duration.ofMillis(50), backoff.backoff(0, ReactiveLockBackoff.UNKNOWN, 100));
+        Assertions.assertEquals(Duration.ofMillis(20), backoff.backoff(0, 20, 100));
+        Assertions.assertEquals(Duration.ofMillis(10), backoff.backoff(1, ReactiveLockBackoff.UNKNOWN,
+                ReactiveLockBackoff.UNKNOWN));
+    }
+
+    @Test
+    public void testPerCallBackoffAcrossNodes() throws Exception {
+        // 两个注册表模拟两个节点,等待者不经过本地队列,只能通过重试获取锁
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        RedisReactiveLockRegistry holderRegistry = new RedisReactiveLockRegistry(template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "backoff_test");
+        RedisReactiveLockRegistry waiterRegistry = new RedisReactiveLockRegistry(template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "backoff_test");
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> holder = holderRegistry.obtain("LOCK_BACKOFF")
+                .tryLock(lockResult -> lockResult ? processFunctions.processDelayFunction(Duration.ofMillis(300)) :
+                        Mono.just(ProcessFunctions.FAILED));
+        Mono<String> waiter = Mono.delay(Duration.ofMillis(50))
+                .then(waiterRegistry.obtain("LOCK_BACKOFF")
+                        .lock(Duration.ofSeconds(3),
+                                new ExponentialReactiveLockBackoff(Duration.ofMillis(5), Duration.ofMillis(50), 0.5),
+                                lockResult -> lockResult ? processFunctions.processFunction() :
+                                        Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(Flux.merge(holder, waiter))
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+}
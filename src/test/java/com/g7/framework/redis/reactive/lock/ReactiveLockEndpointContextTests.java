@@ -0,0 +1,26 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = "management.endpoints.web.exposure.include=reactivelocks")
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class ReactiveLockEndpointContextTests {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    public void testEndpointRegisteredAfterRegistry() {
+        // endpoint 依赖的锁注册表由 ReactiveRedisAutoConfiguration 注册,endpoint 必须在其之后处理才能注册
+        ReactiveLockEndpoint endpoint = this.applicationContext.getBean(ReactiveLockEndpoint.class);
+        Assertions.assertEquals(AbstractReactiveLock.INSTANCE, endpoint.locks(10).get("instance"));
+        Assertions.assertTrue(this.applicationContext.containsBean("reactiveLockEndpoint"));
+    }
+}
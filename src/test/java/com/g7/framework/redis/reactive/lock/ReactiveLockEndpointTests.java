@@ -0,0 +1,89 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+public class ReactiveLockEndpointTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisReactiveLockRegistry registry;
+    private ReactiveLockEndpoint endpoint;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        this.registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1), Duration.ofSeconds(10),
+                "endpoint_test");
+        this.registry.afterPropertiesSet();
+        this.endpoint = new ReactiveLockEndpoint(this.registry);
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.registry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHeldAndContendedLocks() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 3)
+                .flatMap(value -> this.registry.obtain("LOCK_ENDPOINT")
+                        .lock(Duration.ofSeconds(2), lockResult -> lockResult ?
+                                processFunctions.processDelayFunction(Duration.ofMillis(200)) :
+                                Mono.just(ProcessFunctions.FAILED)));
+        Mono<Map<String, Object>> snapshot = Mono.delay(Duration.ofMillis(100))
+                .map(value -> this.endpoint.locks(10));
+        // 第三个获取者持有期间,锁对象仍在注册表中
+        Mono<Map<String, Object>> lastHolder = Mono.delay(Duration.ofMillis(500))
+                .map(value -> this.endpoint.locks(10));
+        StepVerifier.create(Flux.merge(flux.then(Mono.<Map<String, Object>>empty()), snapshot, lastHolder))
+                .assertNext(locks -> {
+                    Assertions.assertEquals(AbstractReactiveLock.INSTANCE, locks.get("instance"));
+                    List<ReactiveLockInfo> held = (List<ReactiveLockInfo>) locks.get("held");
+                    Assertions.assertEquals(1, held.size());
+                    Assertions.assertEquals("LOCK_ENDPOINT", held.get(0).getLockKey());
+                    Assertions.assertEquals(10000, held.get(0).getLeaseTime());
+                    Assertions.assertTrue(held.get(0).getHeldSince() > 0);
+                    List<ReactiveLockInfo> contended = (List<ReactiveLockInfo>) locks.get("contended");
+                    Assertions.assertEquals(1, contended.size());
+                    Assertions.assertEquals(2, contended.get(0).getWaiters());
+                })
+                .assertNext(locks -> {
+                    ReactiveLockInfo info = ((List<ReactiveLockInfo>) locks.get("contended")).get(0);
+                    Assertions.assertEquals(3, info.getAcquisitions());
+                    Assertions.assertEquals(2, info.getContentions());
+                    Assertions.assertEquals(0, info.getWaiters());
+                })
+                .verifyComplete();
+
+        // 锁对象留在注册表中供之后的操作复用,但不再被持有
+        Assertions.assertTrue(this.registry.heldLocks(10).isEmpty());
+        Assertions.assertEquals(1, this.registry.registeredLocks());
+    }
+
+    @Test
+    public void testLockValueCarriesInstance() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> holder = this.registry.obtain("LOCK_ENDPOINT_VALUE")
+                .tryLock(lockResult -> this.template.opsForValue().get("endpoint_test:LOCK_ENDPOINT_VALUE"));
+        StepVerifier.create(holder)
+                .assertNext(lockId -> Assertions.assertTrue(lockId.startsWith(AbstractReactiveLock.INSTANCE + ':')))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,83 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisFairReactiveLockTests {
+
+    @Autowired
+    private ExtendedReactiveLockRegistry redisReactiveLockRegistry;
+
+    @Test
+    public void testAcquireInRequestOrder() throws Exception {
+        String lockKey = "LOCK_FAIR_ORDER";
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        // 两个注册表模拟两个实例,先请求的等待者即使与持有者在同一个实例也应先获取
+        RedisReactiveLockRegistry first = new RedisReactiveLockRegistry(template, "fair_test");
+        RedisReactiveLockRegistry second = new RedisReactiveLockRegistry(template, "fair_test");
+        first.afterPropertiesSet();
+        second.afterPropertiesSet();
+        try {
+            Mono<Integer> holder = lockInOrder(first, lockKey, 0, Duration.ZERO);
+            Mono<Integer> sameInstance = lockInOrder(first, lockKey, 1, Duration.ofMillis(100));
+            Mono<Integer> otherInstance = lockInOrder(second, lockKey, 2, Duration.ofMillis(200));
+            StepVerifier.create(Flux.merge(holder, sameInstance, otherInstance))
+                    .expectNext(0, 1, 2)
+                    .verifyComplete();
+        } finally {
+            first.destroy();
+            second.destroy();
+            connectionFactory.destroy();
+        }
+    }
+
+    private static Mono<Integer> lockInOrder(ExtendedReactiveLockRegistry registry, String lockKey, int value,
+                                             Duration requestDelay) {
+        return Mono.delay(requestDelay)
+                .then(registry.obtainFair(lockKey)
+                        .lock(Duration.ofSeconds(10), lockResult -> {
+                            if (!lockResult) {
+                                return Mono.just(-1);
+                            }
+                            return Mono.just(value).delayElement(Duration.ofMillis(500));
+                        }));
+    }
+
+    @Test
+    public void testTimeoutLeavesQueue() throws Exception {
+        String lockKey = "LOCK_FAIR_TIMEOUT";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> this.redisReactiveLockRegistry.obtainFair(lockKey)
+                        .lock(Duration.ofMillis(500), lockResult -> {
+                            if (!lockResult) {
+                                return Mono.just(ProcessFunctions.FAILED);
+                            }
+                            return processFunctions.processDelayFunction(Duration.ofSeconds(1));
+                        })
+                );
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+        StepVerifier.create(this.redisReactiveLockRegistry.obtainFair(lockKey)
+                        .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                Mono.just(ProcessFunctions.FAILED)))
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,107 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisFencedReactiveLockTests {
+
+    @Autowired
+    private ReactiveLockRegistry redisReactiveLockRegistry;
+
+    @Test
+    public void testFencingTokenIncreases() throws Exception {
+        String lockKey = "LOCK_FENCED";
+        Mono<Long> first = this.redisReactiveLockRegistry.obtain(lockKey)
+                .tryLockFenced((lockResult, token) -> Mono.justOrEmpty(token));
+        Mono<Long> second = this.redisReactiveLockRegistry.obtain(lockKey)
+                .tryLockFenced((lockResult, token) -> Mono.justOrEmpty(token));
+        StepVerifier.create(first.zipWith(second))
+                .assertNext(tokens -> {
+                    assertNotNull(tokens.getT1());
+                    assertTrue(tokens.getT2() > tokens.getT1());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void testNoTokenWhenLockFailed() throws Exception {
+        String lockKey = "LOCK_FENCED_FAILED";
+        Mono<Boolean> mono = this.redisReactiveLockRegistry.obtain(lockKey)
+                .tryLock(outerResult -> this.redisReactiveLockRegistry.obtain(lockKey)
+                        .tryLockFenced((innerResult, token) -> {
+                            assertNull(token);
+                            return Mono.just(innerResult);
+                        }));
+        StepVerifier.create(mono)
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testPlainLockLeavesNoCounter() throws Exception {
+        String lockKey = "LOCK_FENCED_PLAIN";
+        String counterKey = RedisLockKeys.sameSlot("fenced_test:" + lockKey, ":fence");
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(template, "fenced_test");
+        registry.afterPropertiesSet();
+        try {
+            template.delete(counterKey).block();
+            // 不通过 fencing API 获取时不创建计数器,之后的 fencing 获取仍然得到 token
+            StepVerifier.create(registry.obtain(lockKey).tryLock(Mono::just)
+                            .then(template.hasKey(counterKey)))
+                    .expectNext(false)
+                    .verifyComplete();
+            StepVerifier.create(registry.obtain(lockKey)
+                            .tryLockFenced((lockResult, token) -> Mono.justOrEmpty(token)))
+                    .assertNext(token -> assertTrue(token > 0))
+                    .verifyComplete();
+        } finally {
+            registry.destroy();
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void testCounterExpiresAndTokenStillIncreases() throws Exception {
+        String lockKey = "LOCK_FENCED_EXPIRE";
+        String counterKey = RedisLockKeys.sameSlot("fenced_test:" + lockKey, ":fence");
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(template, "fenced_test");
+        registry.afterPropertiesSet();
+        try {
+            Mono<Long> fenced = registry.obtain(lockKey)
+                    .tryLockFenced((lockResult, token) -> Mono.justOrEmpty(token));
+            Long first = fenced.block();
+            assertNotNull(first);
+            // 计数器带有过期时间,不会无限残留
+            StepVerifier.create(template.getExpire(counterKey))
+                    .assertNext(ttl -> assertTrue(ttl.getSeconds() > 0))
+                    .verifyComplete();
+            // 模拟计数器过期清理,重建后的 token 仍然大于之前发出的 token
+            StepVerifier.create(template.delete(counterKey).then(fenced))
+                    .assertNext(token -> assertTrue(token > first, token + " <= " + first))
+                    .verifyComplete();
+        } finally {
+            template.delete(counterKey).block();
+            registry.destroy();
+            connectionFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RedisLockKeysTests {
+
+    @Test
+    public void testSameSlot() {
+        String[] keys = {"lock:order", "{order}:1", "lock:{order}:1", "a{b", "a{b}c{d}", "a{{b}c", "}{a}", "a{", "{"};
+        for (String key : keys) {
+            String companion = RedisLockKeys.sameSlot(key, ":fence");
+            assertEquals(ClusterSlotHashUtil.calculateSlot(key), ClusterSlotHashUtil.calculateSlot(companion),
+                    key + " -> " + companion);
+        }
+    }
+
+    @Test
+    public void testRejectKeyWithoutValidTagContainingBrace() {
+        // 空 hash tag 时 redis 对整个KEY计算 slot,包含 '}' 的KEY无法构造同 slot 的关联KEY
+        String[] keys = {"a{}b", "a{}b{c}", "{}", "a}b"};
+        for (String key : keys) {
+            assertThrows(IllegalArgumentException.class, () -> RedisLockKeys.sameSlot(key, ":fence"), key);
+        }
+    }
+}
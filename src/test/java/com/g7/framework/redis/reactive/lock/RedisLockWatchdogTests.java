@@ -0,0 +1,96 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedisLockWatchdogTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisLockWatchdog watchdog;
+
+    @BeforeEach
+    public void init() {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        this.watchdog = new RedisLockWatchdog(this.template, Duration.ofMillis(100));
+        this.watchdog.start();
+    }
+
+    @AfterEach
+    public void destroy() {
+        this.watchdog.stop();
+        this.template.delete("watchdog_test:LOCK_RENEW", "watchdog_test:LOCK_LOST").block();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testLeaseRenewedPastExpireAfter() {
+        String lockKey = "watchdog_test:LOCK_RENEW";
+        this.template.opsForValue().set(lockKey, "holder", Duration.ofMillis(300)).block();
+        this.watchdog.watch(lockKey, "holder", 300);
+        // 持有时间超过过期时间的数倍,续期后锁仍属于持有者,释放成功
+        StepVerifier.create(Mono.delay(Duration.ofMillis(1000))
+                        .then(this.template.opsForValue().get(lockKey)))
+                .expectNext("holder")
+                .verifyComplete();
+        this.watchdog.unwatch(lockKey, "holder");
+        StepVerifier.create(this.template.execute(RedisReactiveLockScripts.RELEASE_LOCK,
+                        Collections.singletonList(lockKey), Arrays.asList("holder", "")))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLostLeaseDropped() {
+        String lockKey = "watchdog_test:LOCK_LOST";
+        this.template.opsForValue().set(lockKey, "holder", Duration.ofMillis(300)).block();
+        this.watchdog.watch(lockKey, "holder", 300);
+        assertTrue(this.watchdog.isWatching(lockKey, "holder"));
+        // 锁被其他节点占有后,下一次续期发现锁已丢失,停止续期且不延长其他节点的锁
+        StepVerifier.create(this.template.opsForValue().set(lockKey, "other", Duration.ofMillis(500))
+                        .then(Mono.delay(Duration.ofMillis(300))))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertFalse(this.watchdog.isWatching(lockKey, "holder"));
+        StepVerifier.create(Mono.delay(Duration.ofMillis(400)).then(this.template.hasKey(lockKey)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testRegistryRenewsHeldLock() throws Exception {
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1),
+                Duration.ofMillis(300), "watchdog_test");
+        registry.setWatchdog(true);
+        registry.afterPropertiesSet();
+        try {
+            Mono<Boolean> critical = registry.obtain("LOCK_RENEW")
+                    .tryLock(lockResult -> Mono.delay(Duration.ofMillis(1000))
+                            .then(this.template.hasKey("watchdog_test:LOCK_RENEW"))
+                            .map(held -> lockResult && held));
+            StepVerifier.create(critical)
+                    .expectNext(true)
+                    .verifyComplete();
+            // 释放后锁被删除,没有等到过期
+            StepVerifier.create(this.template.hasKey("watchdog_test:LOCK_RENEW"))
+                    .expectNext(false)
+                    .verifyComplete();
+        } finally {
+            registry.destroy();
+        }
+    }
+}
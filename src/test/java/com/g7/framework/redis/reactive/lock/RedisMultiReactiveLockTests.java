@@ -0,0 +1,59 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisMultiReactiveLockTests {
+
+    @Autowired
+    private ExtendedReactiveLockRegistry redisReactiveLockRegistry;
+
+    @Test
+    public void testAllOrNothing() throws Exception {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> mono = this.redisReactiveLockRegistry.obtain("{account}:2")
+                .tryLock(singleResult -> {
+                    if (!singleResult) {
+                        return Mono.just(ProcessFunctions.FAILED);
+                    }
+                    return this.redisReactiveLockRegistry.obtainMulti(Arrays.asList("{account}:1", "{account}:2"))
+                            .tryLock(multiResult -> multiResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED));
+                });
+        StepVerifier.create(mono)
+                .expectNext(ProcessFunctions.FAILED)
+                .verifyComplete();
+        Mono<String> free = this.redisReactiveLockRegistry.obtain("{account}:1")
+                .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                        Mono.just(ProcessFunctions.FAILED));
+        StepVerifier.create(free)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testKeyOrderDoesNotMatter() throws Exception {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> mono = this.redisReactiveLockRegistry.obtainMulti(Arrays.asList("{transfer}:a", "{transfer}:b"))
+                .tryLock(outerResult -> {
+                    if (!outerResult) {
+                        return Mono.just(ProcessFunctions.FAILED);
+                    }
+                    return this.redisReactiveLockRegistry.obtainMulti(Arrays.asList("{transfer}:b", "{transfer}:a"))
+                            .tryLock(innerResult -> innerResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED));
+                });
+        StepVerifier.create(mono)
+                .expectNext(ProcessFunctions.FAILED)
+                .verifyComplete();
+    }
+}
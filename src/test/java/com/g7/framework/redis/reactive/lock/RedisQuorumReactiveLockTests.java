@@ -0,0 +1,141 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用本地 redis 的不同 database 模拟相互独立的节点,多个注册表模拟多个实例
+ */
+public class RedisQuorumReactiveLockTests {
+
+    private static final String KEY_PREFIX = "quorum_test";
+    private final List<RedisQuorumReactiveLockRegistry> registries = new ArrayList<>();
+    private final List<LettuceConnectionFactory> nodeConnectionFactories = new ArrayList<>();
+
+    private RedisQuorumReactiveLockRegistry newRegistry(int... ports) throws Exception {
+        List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+        for (int i = 0; i < ports.length; i++) {
+            connectionFactories.add(new LettuceConnectionFactory(configuration(ports[i], i + 1)));
+        }
+        RedisQuorumReactiveLockRegistry registry = new RedisQuorumReactiveLockRegistry(connectionFactories,
+                Duration.ofMinutes(1), Duration.ofSeconds(10), KEY_PREFIX);
+        registry.setManageConnectionFactories(true);
+        registry.afterPropertiesSet();
+        this.registries.add(registry);
+        return registry;
+    }
+
+    /**
+     * 直接访问某个节点,用于模拟其他实例只在部分节点上持有锁
+     */
+    private ReactiveStringRedisTemplate node(int database) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration(6379, database));
+        connectionFactory.afterPropertiesSet();
+        this.nodeConnectionFactories.add(connectionFactory);
+        return new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    private static RedisStandaloneConfiguration configuration(int port, int database) {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration("localhost", port);
+        configuration.setDatabase(database);
+        return configuration;
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        for (RedisQuorumReactiveLockRegistry registry : this.registries) {
+            registry.destroy();
+        }
+        for (LettuceConnectionFactory connectionFactory : this.nodeConnectionFactories) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void testQuorumExcludesEachOther() throws Exception {
+        ReactiveLockRegistry first = newRegistry(6379, 6379, 6379);
+        ReactiveLockRegistry second = newRegistry(6379, 6379, 6379);
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> holder = first.obtain("LOCK_QUORUM")
+                .tryLock(lockResult -> lockResult ? processFunctions.processDelayFunction(Duration.ofMillis(500)) :
+                        Mono.just(ProcessFunctions.FAILED));
+        Mono<String> contender = Mono.delay(Duration.ofMillis(100))
+                .then(second.obtain("LOCK_QUORUM")
+                        .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(Flux.merge(holder, contender))
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testMinorityHeldElsewhere() throws Exception {
+        // 其他实例只在一个节点上持有锁,多数节点仍然可以获取
+        String lockKey = "LOCK_QUORUM_MINORITY_HELD";
+        String redisKey = KEY_PREFIX + ':' + lockKey;
+        ReactiveStringRedisTemplate held = node(1);
+        held.opsForValue().set(redisKey, "other", Duration.ofSeconds(10)).block();
+        try {
+            ReactiveLockRegistry quorumRegistry = newRegistry(6379, 6379, 6379);
+            ProcessFunctions processFunctions = new ProcessFunctions();
+            StepVerifier.create(quorumRegistry.obtain(lockKey)
+                            .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED)))
+                    .expectNext(ProcessFunctions.OK)
+                    .verifyComplete();
+        } finally {
+            held.delete(redisKey).block();
+        }
+    }
+
+    @Test
+    public void testMajorityHeldElsewhere() throws Exception {
+        // 其他实例在两个节点上持有锁,获取失败并释放在剩余节点上的占有
+        String lockKey = "LOCK_QUORUM_MAJORITY_HELD";
+        String redisKey = KEY_PREFIX + ':' + lockKey;
+        ReactiveStringRedisTemplate firstNode = node(1);
+        ReactiveStringRedisTemplate secondNode = node(2);
+        ReactiveStringRedisTemplate freeNode = node(3);
+        firstNode.opsForValue().set(redisKey, "other", Duration.ofSeconds(10)).block();
+        secondNode.opsForValue().set(redisKey, "other", Duration.ofSeconds(10)).block();
+        try {
+            ReactiveLockRegistry quorumRegistry = newRegistry(6379, 6379, 6379);
+            ProcessFunctions processFunctions = new ProcessFunctions();
+            StepVerifier.create(quorumRegistry.obtain(lockKey)
+                            .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED)))
+                    .expectNext(ProcessFunctions.FAILED)
+                    .verifyComplete();
+            StepVerifier.create(freeNode.hasKey(redisKey))
+                    .expectNext(false)
+                    .verifyComplete();
+        } finally {
+            firstNode.delete(redisKey).block();
+            secondNode.delete(redisKey).block();
+        }
+    }
+
+    @Test
+    public void testMinorityNodeDown() throws Exception {
+        // 第三个节点不可达,多数节点仍然可以获取锁
+        ReactiveLockRegistry quorumRegistry = newRegistry(6379, 6379, 1);
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> mono = quorumRegistry.obtain("LOCK_QUORUM_MINORITY_DOWN")
+                .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                        Mono.just(ProcessFunctions.FAILED));
+        StepVerifier.create(mono)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+}
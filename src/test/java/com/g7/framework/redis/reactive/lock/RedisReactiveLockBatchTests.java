@@ -0,0 +1,72 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+public class RedisReactiveLockBatchTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisReactiveLockRegistry registry;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        this.registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1), Duration.ofSeconds(10),
+                "batch_test");
+        this.registry.setBatchSize(2);
+        this.registry.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.registry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testTryLockEach() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> holder = this.registry.obtain("LOCK_BATCH_2")
+                .tryLock(lockResult -> lockResult ? processFunctions.processDelayFunction(Duration.ofMillis(300)) :
+                        Mono.just(ProcessFunctions.FAILED));
+        // 批量获取时 LOCK_BATCH_2 已被本进程持有
+        Flux<String> batch = Mono.delay(Duration.ofMillis(50))
+                .thenMany(this.registry.tryLockEach(Flux.just("LOCK_BATCH_1", "LOCK_BATCH_2", "LOCK_BATCH_3"),
+                        (lockKey, lockResult) -> Flux.just(lockKey + ":" + lockResult)));
+        StepVerifier.create(Flux.merge(batch, holder))
+                .expectNext("LOCK_BATCH_1:true", "LOCK_BATCH_2:false", "LOCK_BATCH_3:true")
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+        StepVerifier.create(this.template.countExistingKeys(
+                        Arrays.asList("batch_test:LOCK_BATCH_1", "batch_test:LOCK_BATCH_3")))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testTryLockEachAgainstRemoteHolder() {
+        StepVerifier.create(this.template.opsForValue().set("batch_test:LOCK_BATCH_REMOTE", "other",
+                        Duration.ofSeconds(5))
+                        .thenMany(this.registry.tryLockEach(Flux.just("LOCK_BATCH_REMOTE", "LOCK_BATCH_FREE"),
+                                (lockKey, lockResult) -> Flux.just(lockResult))))
+                .expectNext(false, true)
+                .verifyComplete();
+        StepVerifier.create(this.template.opsForValue().get("batch_test:LOCK_BATCH_REMOTE")
+                        .concatWith(this.template.hasKey("batch_test:LOCK_BATCH_FREE").map(String::valueOf))
+                        .concatWith(this.template.delete("batch_test:LOCK_BATCH_REMOTE").then(Mono.empty())))
+                .expectNext("other", "false")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,107 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RedisReactiveLockEvictionTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisReactiveLockRegistry registry;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        // 每 100ms 驱逐一次,空闲 300ms 后到期
+        this.registry = new RedisReactiveLockRegistry(this.template, Duration.ofMillis(100), Duration.ofMillis(300),
+                "evict_test");
+        this.registry.setWatchdog(true);
+        this.registry.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.registry.destroy();
+        this.template.delete("evict_test:IDLE", "evict_test:OWNED", "evict_test:OTHER", "evict_test:HELD",
+                "evict_test:CONTENDED").block();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testEvictOnlyExpiredIdleLocks() {
+        StatefulReactiveLock idle = used("IDLE");
+        StatefulReactiveLock owned = used("OWNED");
+        StatefulReactiveLock other = used("OTHER");
+        // 本地已空闲但 redis 上的锁值仍属于本实例(例如异步释放未完成),批量 MGET 检查后保留
+        this.template.opsForValue().set("evict_test:OWNED", owned.ownershipValue(), Duration.ofSeconds(10)).block();
+        // redis 上的锁已属于其他实例,本地空闲即可驱逐
+        this.template.opsForValue().set("evict_test:OTHER", "other", Duration.ofSeconds(10)).block();
+        StatefulReactiveLock[] held = new StatefulReactiveLock[1];
+        Mono<Boolean> holder = this.registry.obtain("HELD")
+                .tryLock(lockResult -> {
+                    held[0] = registered("HELD");
+                    return Mono.delay(Duration.ofMillis(1500)).thenReturn(lockResult);
+                });
+        Mono<Boolean> check = Mono.delay(Duration.ofMillis(1000))
+                .map(tick -> {
+                    assertNotSame(idle, registered("IDLE"));
+                    assertNotSame(other, registered("OTHER"));
+                    assertSame(owned, registered("OWNED"));
+                    assertSame(held[0], registered("HELD"));
+                    return true;
+                });
+        StepVerifier.create(Mono.zip(holder, check))
+                .expectNextMatches(results -> results.getT1() && results.getT2())
+                .verifyComplete();
+    }
+
+    @Test
+    public void testContentionKeptAfterEviction() throws Exception {
+        Mono<Boolean> contended = this.registry.obtain("CONTENDED")
+                .lock(Duration.ofSeconds(2), lockResult -> Mono.delay(Duration.ofMillis(200)).thenReturn(lockResult));
+        StepVerifier.create(Mono.zip(contended, contended))
+                .expectNextMatches(results -> results.getT1() && results.getT2())
+                .verifyComplete();
+        Thread.sleep(1000);
+        // 锁对象已被驱逐,竞争统计仍然保留
+        assertEquals(0, this.registry.registeredLocks());
+        List<ReactiveLockInfo> locks = this.registry.contendedLocks(10);
+        assertEquals(1, locks.size());
+        assertEquals("CONTENDED", locks.get(0).getLockKey());
+        assertEquals(2, locks.get(0).getAcquisitions());
+        assertEquals(1, locks.get(0).getContentions());
+        // 重新创建的锁对象从 0 开始计数,查询时与历史合并
+        used("CONTENDED");
+        locks = this.registry.contendedLocks(10);
+        assertEquals(1, locks.size());
+        assertEquals(3, locks.get(0).getAcquisitions());
+        assertEquals(1, locks.get(0).getContentions());
+    }
+
+    private StatefulReactiveLock used(String lockKey) {
+        StepVerifier.create(this.registry.obtain(lockKey).tryLock(Mono::just))
+                .expectNext(true)
+                .verifyComplete();
+        return registered(lockKey);
+    }
+
+    private StatefulReactiveLock registered(String lockKey) {
+        StatefulReactiveLock lock = this.registry.pin(lockKey);
+        this.registry.unpin(lockKey, lock);
+        return lock;
+    }
+}
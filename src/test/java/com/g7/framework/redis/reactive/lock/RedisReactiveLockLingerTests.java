@@ -0,0 +1,106 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedisReactiveLockLingerTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisReactiveLockRegistry holderRegistry;
+    private RedisReactiveLockRegistry waiterRegistry;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        this.holderRegistry = newRegistry(Duration.ofMillis(300));
+        this.waiterRegistry = newRegistry(null);
+    }
+
+    private RedisReactiveLockRegistry newRegistry(Duration linger) throws Exception {
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "linger_test");
+        registry.setReleaseNotification(true);
+        registry.setLinger(linger);
+        registry.afterPropertiesSet();
+        return registry;
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.holderRegistry.destroy();
+        this.waiterRegistry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testLeaseKeptUntilLingerEnds() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        ReactiveLock lock = this.holderRegistry.obtain("LOCK_LINGER");
+        Mono<String> critical = lock.tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                Mono.just(ProcessFunctions.FAILED));
+        StepVerifier.create(critical.then(this.template.hasKey("linger_test:LOCK_LINGER")))
+                .expectNext(true)
+                .verifyComplete();
+        // 保留期内本地再次获取直接复用
+        StepVerifier.create(critical)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+        StepVerifier.create(Mono.delay(Duration.ofMillis(600))
+                        .then(this.template.hasKey("linger_test:LOCK_LINGER")))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testRemoteWaiterEndsLinger() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        this.holderRegistry.setLinger(Duration.ofSeconds(5));
+        Mono<String> holder = this.holderRegistry.obtain("LOCK_LINGER_WANTED")
+                .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                        Mono.just(ProcessFunctions.FAILED));
+        // 等待者本身不保留租约,获取失败时同样发布 wanted 通知
+        Mono<String> waiter = this.waiterRegistry.obtain("LOCK_LINGER_WANTED")
+                .lock(Duration.ofSeconds(2), lockResult -> lockResult ? processFunctions.processFunction() :
+                        Mono.just(ProcessFunctions.FAILED));
+        StepVerifier.create(holder.then(waiter))
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+        StepVerifier.create(Mono.delay(Duration.ofMillis(300))
+                        .then(this.template.hasKey("linger_test:LOCK_LINGER_WANTED")))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLingeringLeaseReportedAsHeld() {
+        ReactiveLock lock = this.holderRegistry.obtain("LOCK_LINGER_HELD");
+        StepVerifier.create(lock.tryLock(Mono::just))
+                .expectNext(true)
+                .verifyComplete();
+        // 本地已释放,保留中的租约仍占有 redis 上的锁
+        List<ReactiveLockInfo> held = this.holderRegistry.heldLocks(10);
+        assertEquals(1, held.size());
+        assertTrue(held.get(0).isLingering());
+        assertTrue(held.get(0).getHeldSince() > 0);
+        // 复用租约同样计入获取次数
+        StepVerifier.create(lock.tryLock(Mono::just))
+                .expectNext(true)
+                .verifyComplete();
+        ReactiveLockInfo info = this.holderRegistry.heldLocks(10).get(0);
+        assertEquals(2, info.getAcquisitions());
+    }
+}
@@ -0,0 +1,82 @@
+package com.g7.framework.redis.reactive.lock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+public class RedisReactiveLockMetricsTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LettuceConnectionFactory connectionFactory;
+    private RedisReactiveLockRegistry registry;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.registry = new RedisReactiveLockRegistry(new ReactiveStringRedisTemplate(this.connectionFactory),
+                Duration.ofMinutes(1), Duration.ofSeconds(10), "metrics_test");
+        this.registry.setMetrics(new MicrometerReactiveLockMetrics(this.meterRegistry, 1, ":"));
+        this.registry.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.registry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testGroupByKeyPrefix() {
+        MicrometerReactiveLockMetrics metrics = new MicrometerReactiveLockMetrics(this.meterRegistry, 2, ":");
+        Assertions.assertEquals("order:pay", metrics.group("order:pay:123"));
+        Assertions.assertEquals("other", metrics.group("order"));
+    }
+
+    @Test
+    public void testAcquireAndHoldRecorded() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> this.registry.obtain("order:METRICS")
+                        .tryLock(lockResult -> lockResult ?
+                                processFunctions.processDelayFunction(Duration.ofMillis(200)) :
+                                Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, this.meterRegistry.get("reactive.lock.acquire")
+                .tag("group", "order").tag("result", "acquired").timer().count());
+        Assertions.assertEquals(1, this.meterRegistry.get("reactive.lock.acquire")
+                .tag("group", "order").tag("result", "failed").timer().count());
+        Assertions.assertEquals(1, this.meterRegistry.get("reactive.lock.hold")
+                .tag("group", "order").timer().count());
+    }
+
+    @Test
+    public void testWaitRecorded() {
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> this.registry.obtain("order:METRICS_WAIT")
+                        .lock(Duration.ofSeconds(2), lockResult -> lockResult ?
+                                processFunctions.processDelayFunction(Duration.ofMillis(200)) :
+                                Mono.just(ProcessFunctions.FAILED)));
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+
+        Assertions.assertEquals(2, this.meterRegistry.get("reactive.lock.wait")
+                .tag("group", "order").timer().count());
+    }
+}
@@ -0,0 +1,71 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedisReactiveLockNotificationTests {
+
+    private static final Duration RETRY_INTERVAL = Duration.ofSeconds(5);
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+    private RedisReactiveLockRegistry holderRegistry;
+    private RedisReactiveLockRegistry waiterRegistry;
+
+    @BeforeEach
+    public void init() throws Exception {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+        // 两个注册表模拟两个节点,等待者不经过本地队列,只能靠释放通知或重试获取
+        this.holderRegistry = newRegistry();
+        this.waiterRegistry = newRegistry();
+    }
+
+    private RedisReactiveLockRegistry newRegistry() throws Exception {
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "notification_test");
+        registry.setReleaseNotification(true);
+        registry.setRetryInterval(RETRY_INTERVAL);
+        registry.afterPropertiesSet();
+        return registry;
+    }
+
+    @AfterEach
+    public void destroy() throws Exception {
+        this.holderRegistry.destroy();
+        this.waiterRegistry.destroy();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testWaiterWokenByRelease() {
+        AtomicLong releasedAt = new AtomicLong();
+        Mono<Boolean> holder = this.holderRegistry.obtain("LOCK_NOTIFY")
+                .tryLock(lockResult -> Mono.delay(Duration.ofMillis(500))
+                        .doOnNext(tick -> releasedAt.set(System.nanoTime()))
+                        .thenReturn(lockResult));
+        // 重试间隔远大于持有时间,等待者只有收到释放通知才能及时获取
+        Mono<Long> waiter = Mono.delay(Duration.ofMillis(100))
+                .then(this.waiterRegistry.obtain("LOCK_NOTIFY")
+                        .lock(Duration.ofSeconds(10), new FixedReactiveLockBackoff(RETRY_INTERVAL),
+                                lockResult -> Mono.just(lockResult ? System.nanoTime() : -1L)));
+        StepVerifier.create(Mono.zip(holder, waiter))
+                .assertNext(results -> {
+                    assertTrue(results.getT1());
+                    assertTrue(results.getT2() > 0);
+                    long handoff = Duration.ofNanos(results.getT2() - releasedAt.get()).toMillis();
+                    assertTrue(handoff < RETRY_INTERVAL.toMillis() / 5, "handoff took " + handoff + "ms");
+                })
+                .verifyComplete();
+    }
+}
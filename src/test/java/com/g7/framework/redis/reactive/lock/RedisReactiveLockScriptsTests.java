@@ -0,0 +1,89 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RedisReactiveLockScriptsTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveStringRedisTemplate template;
+
+    @BeforeEach
+    public void init() {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveStringRedisTemplate(this.connectionFactory);
+    }
+
+    @AfterEach
+    public void destroy() {
+        this.template.delete("scripts_test:LOCK_OWNER", "scripts_test:LOCK_NOSCRIPT").block();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testReleaseRefusesOtherOwner() {
+        String lockKey = "scripts_test:LOCK_OWNER";
+        StepVerifier.create(this.template.opsForValue().set(lockKey, "other")
+                        .thenMany(this.template.execute(RedisReactiveLockScripts.RELEASE_LOCK,
+                                Collections.singletonList(lockKey), Arrays.asList("mine", ""))))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(this.template.opsForValue().get(lockKey))
+                .expectNext("other")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testReleaseKeepsKeyTakenOverByOtherOwner() throws Exception {
+        // 持有期间锁过期并被其他节点占有,释放时不能删除其他节点的锁
+        RedisReactiveLockRegistry registry = new RedisReactiveLockRegistry(this.template, Duration.ofMinutes(1),
+                Duration.ofSeconds(10), "scripts_test");
+        registry.afterPropertiesSet();
+        try {
+            Mono<Boolean> critical = registry.obtain("LOCK_OWNER")
+                    .tryLock(lockResult -> this.template.opsForValue().set("scripts_test:LOCK_OWNER", "other")
+                            .thenReturn(lockResult));
+            StepVerifier.create(critical.then(this.template.opsForValue().get("scripts_test:LOCK_OWNER")))
+                    .expectNext("other")
+                    .verifyComplete();
+        } finally {
+            registry.destroy();
+        }
+    }
+
+    @Test
+    public void testPreloadAndNoScriptFallback() {
+        String sha1 = RedisReactiveLockScripts.RELEASE_LOCK.getSha1();
+        StepVerifier.create(RedisReactiveLockScripts.load(this.template).thenMany(scriptExists(sha1)))
+                .expectNext(true)
+                .verifyComplete();
+        // 脚本缓存被清空(例如 redis 重启或主从切换)后,EVALSHA 返回 NOSCRIPT,回退为 EVAL 并重新缓存
+        StepVerifier.create(this.template.execute(connection -> connection.scriptingCommands().scriptFlush())
+                        .thenMany(scriptExists(sha1)))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(this.template.execute(RedisReactiveLockScripts.RELEASE_LOCK,
+                        Collections.singletonList("scripts_test:LOCK_NOSCRIPT"), Arrays.asList("mine", "")))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(scriptExists(sha1))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    private Flux<Boolean> scriptExists(String sha1) {
+        return this.template.execute(connection -> connection.scriptingCommands()
+                .scriptExists(Collections.singletonList(sha1)));
+    }
+}
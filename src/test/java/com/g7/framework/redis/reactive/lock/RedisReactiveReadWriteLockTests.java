@@ -0,0 +1,91 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisReactiveReadWriteLockTests {
+
+    @Autowired
+    private ExtendedReactiveLockRegistry redisReactiveLockRegistry;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Test
+    public void testReadersShareLock() throws Exception {
+        String lockKey = "LOCK_RW_SHARED";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> this.redisReactiveLockRegistry.obtainReadWriteLock(lockKey)
+                        .readLock()
+                        .tryLock(lockResult -> {
+                            if (!lockResult) {
+                                return Mono.just(ProcessFunctions.FAILED);
+                            }
+                            return processFunctions.processDelayFunction(Duration.ofSeconds(1));
+                        })
+                );
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testWriterExcludedByReader() throws Exception {
+        String lockKey = "LOCK_RW_EXCLUSIVE";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        ReactiveReadWriteLock readWriteLock = this.redisReactiveLockRegistry.obtainReadWriteLock(lockKey);
+        Mono<String> mono = readWriteLock.readLock()
+                .tryLock(readResult -> {
+                    if (!readResult) {
+                        return Mono.just(ProcessFunctions.FAILED);
+                    }
+                    return readWriteLock.writeLock()
+                            .tryLock(writeResult -> writeResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED));
+                });
+        StepVerifier.create(mono)
+                .expectNext(ProcessFunctions.FAILED)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testExpiredReaderDoesNotBlockWriter() throws Exception {
+        String lockKey = "LOCK_RW_READER_EXPIRY";
+        List<String> keys = Arrays.asList(lockKey,
+                RedisLockKeys.sameSlot(lockKey, RedisReactiveLockScripts.READERS_SUFFIX));
+        this.reactiveStringRedisTemplate.delete(keys.get(0), keys.get(1)).block();
+        RedisReactiveWriteLock writeLock = new RedisReactiveWriteLock(this.reactiveStringRedisTemplate, lockKey,
+                Duration.ofSeconds(10), null, Duration.ofMillis(100), null);
+        Mono<Boolean> live = Mono.from(this.reactiveStringRedisTemplate.execute(
+                RedisReactiveLockScripts.OBTAIN_READ_LOCK, keys, Arrays.asList("live", "60000")));
+        // 停止续期的读者只在 zset 中过期,不延长锁KEY的过期时间
+        Mono<Boolean> crashed = Mono.from(this.reactiveStringRedisTemplate.execute(
+                RedisReactiveLockScripts.OBTAIN_READ_LOCK, keys, Arrays.asList("crashed", "200")));
+        Mono<Boolean> releaseLive = Mono.from(this.reactiveStringRedisTemplate.execute(
+                RedisReactiveLockScripts.RELEASE_READ_LOCK, keys, Arrays.asList("live", "")));
+        Mono<String> write = writeLock.tryLock(writeResult -> Mono.just(writeResult ? ProcessFunctions.OK :
+                ProcessFunctions.FAILED));
+        StepVerifier.create(live.then(crashed)
+                        .then(Mono.delay(Duration.ofMillis(400)))
+                        .then(write)
+                        .concatWith(releaseLive.then(write)))
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,88 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisReactiveSemaphoreTests {
+
+    @Autowired
+    private ExtendedReactiveLockRegistry redisReactiveLockRegistry;
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+
+    @Test
+    public void testPermitsLimitConcurrency() throws Exception {
+        String semaphoreKey = "SEMAPHORE_LIMIT";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 3)
+                .flatMap(value -> this.redisReactiveLockRegistry.obtainSemaphore(semaphoreKey, 2)
+                        .tryAcquire(1, acquireResult -> {
+                            if (!acquireResult) {
+                                return Mono.just(ProcessFunctions.FAILED);
+                            }
+                            return processFunctions.processDelayFunction(Duration.ofSeconds(1));
+                        })
+                );
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.FAILED)
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testBulkAcquireWaitsForPermits() throws Exception {
+        String semaphoreKey = "SEMAPHORE_BULK";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Flux<String> flux = Flux.range(0, 2)
+                .flatMap(value -> this.redisReactiveLockRegistry.obtainSemaphore(semaphoreKey, 3)
+                        .acquire(2, Duration.ofSeconds(5), acquireResult -> {
+                            if (!acquireResult) {
+                                return Mono.just(ProcessFunctions.FAILED);
+                            }
+                            return processFunctions.processDelayFunction(Duration.ofMillis(500));
+                        })
+                );
+        StepVerifier.create(flux)
+                .expectNext(ProcessFunctions.OK)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testPermitsMismatchFailsFast() throws Exception {
+        String semaphoreKey = "SEMAPHORE_MISMATCH";
+        this.redisReactiveLockRegistry.obtainSemaphore(semaphoreKey, 2);
+        assertThrows(IllegalArgumentException.class,
+                () -> this.redisReactiveLockRegistry.obtainSemaphore(semaphoreKey, 3));
+    }
+
+    @Test
+    public void testPermitsMismatchCheckedInRedis() {
+        // 信号量对象被驱逐后(或在另一个节点上)以不同的许可总数重新创建,由 redis 中记录的许可总数拒绝
+        String semaphoreKey = "semaphore_test:SEMAPHORE_RECREATED";
+        RedisReactiveSemaphore original = new RedisReactiveSemaphore(this.reactiveStringRedisTemplate, semaphoreKey,
+                2, Duration.ofSeconds(10), null, null, null);
+        RedisReactiveSemaphore recreated = new RedisReactiveSemaphore(this.reactiveStringRedisTemplate, semaphoreKey,
+                3, Duration.ofSeconds(10), null, null, null);
+        StepVerifier.create(original.tryAcquire(1, acquireResult -> recreated.tryAcquire(1, Mono::just)))
+                .verifyError(IllegalArgumentException.class);
+        // 旧的租约全部归还后可以使用新的许可总数
+        StepVerifier.create(recreated.tryAcquire(3, Mono::just))
+                .expectNext(true)
+                .verifyComplete();
+    }
+}
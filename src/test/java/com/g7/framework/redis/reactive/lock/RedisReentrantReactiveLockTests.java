@@ -0,0 +1,81 @@
+package com.g7.framework.redis.reactive.lock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(classes = ReactiveLockApplication.class)
+public class RedisReentrantReactiveLockTests {
+
+    @Autowired
+    private ExtendedReactiveLockRegistry redisReactiveLockRegistry;
+
+    @Test
+    public void testNestedAcquireSameOwner() throws Exception {
+        String lockKey = "LOCK_REENTRANT_NESTED";
+        ProcessFunctions processFunctions = new ProcessFunctions();
+        Mono<String> mono = this.redisReactiveLockRegistry.obtainReentrant(lockKey)
+                .lock(Duration.ofSeconds(3), outerResult -> {
+                    if (!outerResult) {
+                        return Mono.just(ProcessFunctions.FAILED);
+                    }
+                    return this.redisReactiveLockRegistry.obtainReentrant(lockKey)
+                            .tryLock(innerResult -> {
+                                if (!innerResult) {
+                                    return Mono.just(ProcessFunctions.FAILED);
+                                }
+                                return processFunctions.processFunction();
+                            });
+                });
+        StepVerifier.create(mono)
+                .expectNext(ProcessFunctions.OK)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDifferentOwnersExcludeEachOther() throws Exception {
+        String lockKey = "LOCK_REENTRANT_EXCLUSIVE";
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        ReactiveStringRedisTemplate template = new ReactiveStringRedisTemplate(connectionFactory);
+        // 两个注册表模拟两个实例,互斥只由 redis 上的持有者保证,不经过本地队列
+        RedisReactiveLockRegistry first = new RedisReactiveLockRegistry(template, "reentrant_test");
+        RedisReactiveLockRegistry second = new RedisReactiveLockRegistry(template, "reentrant_test");
+        first.afterPropertiesSet();
+        second.afterPropertiesSet();
+        try {
+            ProcessFunctions processFunctions = new ProcessFunctions();
+            Mono<String> holder = first.obtainReentrant(lockKey)
+                    .tryLock(lockResult -> lockResult ? processFunctions.processDelayFunction(Duration.ofSeconds(1)) :
+                            Mono.just(ProcessFunctions.FAILED));
+            Mono<String> contender = Mono.delay(Duration.ofMillis(200))
+                    .then(second.obtainReentrant(lockKey)
+                            .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED)));
+            StepVerifier.create(Flux.merge(holder, contender))
+                    .expectNext(ProcessFunctions.FAILED)
+                    .expectNext(ProcessFunctions.OK)
+                    .verifyComplete();
+            // 持有者释放后另一个实例可以获取
+            StepVerifier.create(second.obtainReentrant(lockKey)
+                            .tryLock(lockResult -> lockResult ? processFunctions.processFunction() :
+                                    Mono.just(ProcessFunctions.FAILED)))
+                    .expectNext(ProcessFunctions.OK)
+                    .verifyComplete();
+        } finally {
+            first.destroy();
+            second.destroy();
+            connectionFactory.destroy();
+        }
+    }
+}
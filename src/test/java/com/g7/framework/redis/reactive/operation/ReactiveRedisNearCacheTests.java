@@ -0,0 +1,148 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReactiveRedisNearCacheTests {
+
+    @Test
+    public void testHitAndLocalInvalidation() {
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Collections.singletonList(
+                new NearCacheRegion("near:", 16, 1024, Duration.ofMinutes(1))));
+        AtomicInteger loads = new AtomicInteger();
+        Mono<Object> loader = Mono.fromSupplier(() -> "value" + loads.incrementAndGet());
+        StepVerifier.create(nearCache.get("near:key", loader).concatWith(nearCache.get("near:key", loader)))
+                .expectNext("value1", "value1")
+                .verifyComplete();
+        StepVerifier.create(nearCache.invalidating("near:key", Mono.just(true))
+                        .then(nearCache.get("near:key", loader)))
+                .expectNext("value2")
+                .verifyComplete();
+        // 未匹配前缀的KEY与空结果不缓存
+        StepVerifier.create(nearCache.get("other:key", loader).concatWith(nearCache.get("other:key", loader)))
+                .expectNext("value3", "value4")
+                .verifyComplete();
+        StepVerifier.create(nearCache.get("near:empty", Mono.empty()))
+                .verifyComplete();
+        // 哈希字段按字段缓存
+        StepVerifier.create(nearCache.get("near:hash", "field", loader)
+                        .concatWith(nearCache.get("near:hash", "field", loader))
+                        .concatWith(nearCache.get("near:hash", "other", loader)))
+                .expectNext("value5", "value5", "value6")
+                .verifyComplete();
+        Assertions.assertEquals(2, nearCache.size());
+    }
+
+    @Test
+    public void testStaleLoadNotCached() {
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Collections.singletonList(
+                new NearCacheRegion("near:", 16, 1024, Duration.ofMinutes(1))));
+        // 读取期间KEY被失效,读到的旧值不回填
+        Mono<Object> racing = Mono.fromSupplier(() -> {
+            nearCache.invalidate("near:key");
+            return "stale";
+        });
+        StepVerifier.create(nearCache.get("near:key", racing))
+                .expectNext("stale")
+                .verifyComplete();
+        StepVerifier.create(nearCache.get("near:key", Mono.just("fresh")))
+                .expectNext("fresh")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testLookupOnSubscribe() {
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Collections.singletonList(
+                new NearCacheRegion("near:", 16, 1024, Duration.ofMinutes(1))));
+        AtomicInteger loads = new AtomicInteger();
+        // 在回填之前组装的 mono 订阅时读取缓存
+        Mono<Object> stored = nearCache.get("near:key", Mono.fromSupplier(() -> "value" + loads.incrementAndGet()));
+        StepVerifier.create(nearCache.get("near:key", Mono.just("filled")).then(stored))
+                .expectNext("filled")
+                .verifyComplete();
+        // 失效后重复订阅同一个 mono 重新读取
+        nearCache.invalidate("near:key");
+        StepVerifier.create(stored)
+                .expectNext("value1")
+                .verifyComplete();
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidationOnlyVoidsSameKey() {
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Collections.singletonList(
+                new NearCacheRegion("near:", 16, 1024, Duration.ofMinutes(1))));
+        // 读取期间同一区域的其他KEY被失效,回填仍然有效
+        Mono<Object> loader = Mono.fromSupplier(() -> {
+            nearCache.invalidate("near:other");
+            return "value";
+        });
+        StepVerifier.create(nearCache.get("near:key", loader)
+                        .then(nearCache.get("near:key", Mono.just("reloaded"))))
+                .expectNext("value")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testBounds() throws InterruptedException {
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Arrays.asList(
+                new NearCacheRegion("count:", 2, 1024, Duration.ofMinutes(1)),
+                new NearCacheRegion("weight:", 16, 8, Duration.ofMinutes(1)),
+                new NearCacheRegion("ttl:", 16, 1024, Duration.ofMillis(50))));
+        for (int i = 0; i < 3; i++) {
+            nearCache.get("count:" + i, Mono.just("v")).block();
+        }
+        Assertions.assertEquals(2, nearCache.size());
+        nearCache.get("weight:a", Mono.just("12345")).block();
+        nearCache.get("weight:b", Mono.just("12345")).block();
+        // 超过区域权重的值不缓存
+        nearCache.get("weight:c", Mono.just("123456789")).block();
+        Assertions.assertEquals(3, nearCache.size());
+        nearCache.get("ttl:a", Mono.just("v")).block();
+        Thread.sleep(100);
+        StepVerifier.create(nearCache.get("ttl:a", Mono.just("reloaded")))
+                .expectNext("reloaded")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testTrackingInvalidation() throws Exception {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory();
+        connectionFactory.afterPropertiesSet();
+        ReactiveRedisTemplate<String, Object> template = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.java());
+        ReactiveRedisNearCache nearCache = new ReactiveRedisNearCache(Collections.singletonList(
+                new NearCacheRegion("near_test:", 16, 1024, Duration.ofMinutes(1))));
+        nearCache.setInvalidator(new RedisNearCacheInvalidator(connectionFactory,
+                RedisNearCacheInvalidator.Mode.TRACKING));
+        nearCache.afterPropertiesSet();
+        ReactiveRedisValue value = new ReactiveRedisValue(template, RedisOperationInterceptors.NONE, nearCache);
+        try {
+            StepVerifier.create(value.set("near_test:key", "first").then(value.get("near_test:key")))
+                    .expectNext("first")
+                    .verifyComplete();
+            // 绕过近端缓存直接修改,等待 redis 推送失效消息
+            StepVerifier.create(template.opsForValue().set("near_test:key", "second")
+                            .then(Mono.defer(() -> value.get("near_test:key"))
+                                    .filter("second"::equals)
+                                    .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(20))))
+                            .timeout(Duration.ofSeconds(5)))
+                    .expectNext("second")
+                    .verifyComplete();
+        } finally {
+            template.delete("near_test:key").block();
+            nearCache.destroy();
+            connectionFactory.destroy();
+        }
+    }
+}
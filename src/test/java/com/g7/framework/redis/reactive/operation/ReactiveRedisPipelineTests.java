@@ -0,0 +1,121 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ReactiveRedisPipelineTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, Object> template;
+
+    @BeforeEach
+    public void init() {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveRedisTemplate<>(this.connectionFactory, RedisSerializationContext.java());
+    }
+
+    @AfterEach
+    public void destroy() {
+        this.template.delete("{order}:1", "{order}:index", "{order}:timeline", "{order}:users", "{order}:queue")
+                .block();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testExecute() {
+        verifyOrderWrite(false);
+    }
+
+    @Test
+    public void testExecuteAtomically() {
+        verifyOrderWrite(true);
+    }
+
+    @Test
+    public void testExecuteAtomicallyVariableArguments() {
+        // 不同结构的管道共用同一个脚本,命令参数个数由 ARGV 传入
+        ReactiveRedisPipeline pipeline = new ReactiveRedisPipeline(this.template);
+        ReactiveRedisPipeline.Response<Long> added = pipeline.set().add("{order}:users", "1", "2", "3");
+        ReactiveRedisPipeline.Response<Long> removed = pipeline.set().remove("{order}:users", "1", "2");
+        ReactiveRedisPipeline.Response<Boolean> member = pipeline.set().isMember("{order}:users", "3");
+        ReactiveRedisPipeline.Response<Object> popped = pipeline.list().leftPop("{order}:queue");
+        ReactiveRedisPipeline.Response<Boolean> deleted = pipeline.value().delete("{order}:users");
+        StepVerifier.create(pipeline.executeAtomically())
+                .expectNextMatches(results -> results.size() == 5)
+                .verifyComplete();
+        Assertions.assertEquals(3L, added.get());
+        Assertions.assertEquals(2L, removed.get());
+        Assertions.assertEquals(Boolean.TRUE, member.get());
+        Assertions.assertNull(popped.get());
+        Assertions.assertEquals(Boolean.TRUE, deleted.get());
+    }
+
+    @Test
+    public void testCommandsIntercepted() {
+        verifyIntercepted(false);
+        verifyIntercepted(true);
+    }
+
+    private void verifyIntercepted(boolean atomic) {
+        // 管道中的命令与五个操作对象一样经过拦截器链,命令名一致
+        List<String> rendered = new CopyOnWriteArrayList<>();
+        RedisOperationInterceptors interceptors = new RedisOperationInterceptors(Collections.singletonList(
+                (operation, result) -> rendered.add(operation + " -> " + operation.payload(result))), 1, 64);
+        ReactiveRedisPipeline pipeline = new ReactiveRedisPipeline(this.template, interceptors, null);
+        pipeline.value().set("{order}:1", "order");
+        pipeline.hash().get("{order}:index", "missing");
+        StepVerifier.create(atomic ? pipeline.executeAtomically() : pipeline.execute())
+                .expectNextMatches(results -> results.size() == 2)
+                .verifyComplete();
+        Assertions.assertEquals(Arrays.asList("value.set key is {order}:1 arguments are [order] -> true",
+                "hash.get key is {order}:index arguments are [missing] -> null"), rendered);
+    }
+
+    private void verifyOrderWrite(boolean atomic) {
+        ReactiveRedisPipeline pipeline = new ReactiveRedisPipeline(this.template);
+        ReactiveRedisPipeline.Response<Boolean> set = pipeline.value().set("{order}:1", "order", Duration.ofMinutes(1));
+        ReactiveRedisPipeline.Response<Boolean> absent = pipeline.value().setIfAbsent("{order}:1", "other");
+        ReactiveRedisPipeline.Response<Boolean> put = pipeline.hash().put("{order}:index", "1", "paid");
+        ReactiveRedisPipeline.Response<Long> increment = pipeline.hash().increment("{order}:index", "count", 2);
+        ReactiveRedisPipeline.Response<Boolean> timeline = pipeline.zSet().add("{order}:timeline", "1", 1.5);
+        ReactiveRedisPipeline.Response<Double> score = pipeline.zSet().incrementScore("{order}:timeline", "1", 1);
+        ReactiveRedisPipeline.Response<Long> members = pipeline.set().add("{order}:users", "1", "2");
+        ReactiveRedisPipeline.Response<Long> pushed = pipeline.list().rightPush("{order}:queue", "1");
+        ReactiveRedisPipeline.Response<Object> order = pipeline.value().get("{order}:1");
+        ReactiveRedisPipeline.Response<Object> status = pipeline.hash().get("{order}:index", "1");
+        ReactiveRedisPipeline.Response<Object> missing = pipeline.hash().get("{order}:index", "missing");
+        ReactiveRedisPipeline.Response<Double> noScore = pipeline.zSet().score("{order}:timeline", "2");
+        Assertions.assertThrows(IllegalStateException.class, order::get);
+        StepVerifier.create(atomic ? pipeline.executeAtomically() : pipeline.execute())
+                .expectNextMatches(results -> results.size() == 12)
+                .verifyComplete();
+        Assertions.assertEquals(Boolean.TRUE, set.get());
+        Assertions.assertEquals(Boolean.FALSE, absent.get());
+        Assertions.assertEquals(Boolean.TRUE, put.get());
+        Assertions.assertEquals(2L, increment.get());
+        Assertions.assertEquals(Boolean.TRUE, timeline.get());
+        Assertions.assertEquals(2.5, score.get());
+        Assertions.assertEquals(2L, members.get());
+        Assertions.assertEquals(1L, pushed.get());
+        Assertions.assertEquals("order", order.get());
+        Assertions.assertEquals("paid", status.get());
+        Assertions.assertNull(missing.get());
+        Assertions.assertNull(noScore.get());
+        // 一个管道只能执行一次
+        StepVerifier.create(pipeline.execute())
+                .verifyError(IllegalStateException.class);
+    }
+}
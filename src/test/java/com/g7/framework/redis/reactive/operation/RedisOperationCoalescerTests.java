@@ -0,0 +1,71 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RedisOperationCoalescerTests {
+
+    @Test
+    public void testConcurrentReadsShareOneCommand() {
+        RedisOperationCoalescer coalescer = new RedisOperationCoalescer();
+        AtomicInteger commands = new AtomicInteger();
+        Mono<Object> source = Mono.delay(Duration.ofMillis(100)).map(tick -> "value" + commands.incrementAndGet());
+        StepVerifier.create(Flux.range(0, 100).flatMap(i -> coalescer.coalesce("value.get", "key", source)))
+                .expectNextCount(100)
+                .verifyComplete();
+        Assertions.assertEquals(1, commands.get());
+        Assertions.assertEquals(0, coalescer.inFlight());
+        // 命令结束后重新发送
+        StepVerifier.create(coalescer.coalesce("value.get", "key", source))
+                .expectNext("value2")
+                .verifyComplete();
+        // 不同命令或KEY不合并
+        StepVerifier.create(Flux.merge(coalescer.coalesce("value.get", "a", source),
+                        coalescer.coalesce("value.get", "b", source), coalescer.coalesce("hash.get", "a", source)))
+                .expectNextCount(3)
+                .verifyComplete();
+        Assertions.assertEquals(5, commands.get());
+    }
+
+    @Test
+    public void testCoalesceManyAndForget() {
+        RedisOperationCoalescer coalescer = new RedisOperationCoalescer();
+        AtomicInteger commands = new AtomicInteger();
+        Flux<Integer> source = Flux.defer(() -> {
+            commands.incrementAndGet();
+            return Flux.just(1, 2, 3).delaySubscription(Duration.ofMillis(100));
+        });
+        StepVerifier.create(Flux.merge(coalescer.coalesceMany("hash.entries", "key", source),
+                        coalescer.coalesceMany("hash.entries", "key", source)))
+                .expectNextCount(6)
+                .verifyComplete();
+        Assertions.assertEquals(1, commands.get());
+        // 写操作之后的读取不加入之前的在途命令
+        Flux<Integer> first = coalescer.coalesceMany("hash.entries", "key", source);
+        Flux<Integer> afterWrite = Mono.delay(Duration.ofMillis(20))
+                .doOnNext(tick -> coalescer.forget("hash.entries", "key"))
+                .thenMany(coalescer.coalesceMany("hash.entries", "key", source));
+        StepVerifier.create(Flux.merge(first, afterWrite))
+                .expectNextCount(6)
+                .verifyComplete();
+        Assertions.assertEquals(3, commands.get());
+        Assertions.assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void testErrorSharedAndCleared() {
+        RedisOperationCoalescer coalescer = new RedisOperationCoalescer();
+        Mono<Object> failing = Mono.delay(Duration.ofMillis(50))
+                .then(Mono.error(new IllegalStateException("redis unavailable")));
+        StepVerifier.create(Flux.merge(coalescer.coalesce("value.get", "key", failing),
+                        coalescer.coalesce("value.get", "key", failing)))
+                .verifyError(IllegalStateException.class);
+        Assertions.assertEquals(0, coalescer.inFlight());
+    }
+}
@@ -0,0 +1,58 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RedisOperationInterceptorsTests {
+
+    @Test
+    public void testDisabledReturnsSamePublisher() {
+        Mono<String> mono = Mono.just("value");
+        Assertions.assertSame(mono, RedisOperationInterceptors.NONE.intercept(mono, "value.get", "key"));
+        RedisOperationInterceptors unsampled = new RedisOperationInterceptors(
+                Collections.singletonList((operation, result) -> Assertions.fail("should not be sampled")), 0, 16);
+        Assertions.assertSame(mono, unsampled.intercept(mono, "value.get", "key", "argument"));
+        Flux<String> flux = Flux.just("a", "b");
+        Assertions.assertSame(flux, unsampled.interceptEach(flux, "set.pop", "key"));
+    }
+
+    @Test
+    public void testInterceptorsInvoked() {
+        List<String> rendered = new ArrayList<>();
+        RedisOperationInterceptor failing = (operation, result) -> {
+            throw new IllegalStateException("interceptor failure");
+        };
+        RedisOperationInterceptor recording = (operation, result) ->
+                rendered.add(operation + " -> " + operation.payload(result));
+        RedisOperationInterceptors interceptors = new RedisOperationInterceptors(Arrays.asList(failing, recording),
+                1, 64);
+        StepVerifier.create(interceptors.intercept(Mono.just(1L), "value.increment", "counter", 1L))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(interceptors.interceptEach(Flux.just("a", "b"), "set.pop", "members"))
+                .expectNext("a", "b")
+                .verifyComplete();
+        Assertions.assertEquals(Arrays.asList("value.increment key is counter arguments are [1] -> 1",
+                "set.pop key is members -> a", "set.pop key is members -> b"), rendered);
+    }
+
+    @Test
+    public void testPayloadRenderingCapped() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(i);
+        }
+        Assertions.assertEquals("[0, 1, 2...", RedisOperation.render(values, 8));
+        Assertions.assertEquals("abcd...", RedisOperation.render("abcdefgh", 4));
+        Assertions.assertEquals("[[a, b], c]", RedisOperation.render(new Object[]{new String[]{"a", "b"}, "c"}, 64));
+        Assertions.assertEquals("null", RedisOperation.render(null, 64));
+    }
+}
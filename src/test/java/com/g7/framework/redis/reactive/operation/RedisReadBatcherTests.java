@@ -0,0 +1,71 @@
+package com.g7.framework.redis.reactive.operation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class RedisReadBatcherTests {
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, Object> template;
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        this.connectionFactory = new LettuceConnectionFactory();
+        this.connectionFactory.afterPropertiesSet();
+        this.template = new ReactiveRedisTemplate<>(this.connectionFactory, RedisSerializationContext.java());
+        this.template.opsForValue().set("batch_test:a", "A")
+                .then(this.template.opsForValue().set("batch_test:b", "B"))
+                .then(this.template.opsForHash().put("batch_test:hash", "f1", "F1"))
+                .block();
+    }
+
+    @AfterEach
+    public void destroy() {
+        this.template.delete("batch_test:a", "batch_test:b", "batch_test:hash").block();
+        this.connectionFactory.destroy();
+    }
+
+    @Test
+    public void testPointReadsMergedWithinWindow() {
+        RedisReadBatcher batcher = new RedisReadBatcher(this.template, 16, Duration.ofMillis(20));
+        batcher.setMetrics((command, requests, keys) -> this.batches.add(command + ":" + requests + ":" + keys));
+        ReactiveRedisValue value = new ReactiveRedisValue(this.template, RedisOperationInterceptors.NONE, null,
+                null, batcher);
+        ReactiveRedisHash hash = new ReactiveRedisHash(this.template, RedisOperationInterceptors.NONE, null, null,
+                batcher);
+        StepVerifier.create(Flux.mergeSequential(value.get("batch_test:a"), value.get("batch_test:b"),
+                        value.get("batch_test:a"), value.get("batch_test:missing").defaultIfEmpty("none"),
+                        hash.get("batch_test:hash", "f1"), hash.get("batch_test:hash", "f2").defaultIfEmpty("none")))
+                .expectNext("A", "B", "A", "none", "F1", "none")
+                .verifyComplete();
+        Assertions.assertEquals(Arrays.asList("value.get:4:3", "hash.get:2:2"), this.batches);
+    }
+
+    @Test
+    public void testFullWindowSentImmediately() {
+        RedisReadBatcher batcher = new RedisReadBatcher(this.template, 2, Duration.ofMinutes(1));
+        batcher.setMetrics((command, requests, keys) -> this.batches.add(command + ":" + requests + ":" + keys));
+        StepVerifier.create(Mono.zip(batcher.get("batch_test:a"), batcher.get("batch_test:b")))
+                .expectNextMatches(results -> "A".equals(results.getT1()) && "B".equals(results.getT2()))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        // 取消的读取不发送
+        batcher.get("batch_test:a").subscribe().dispose();
+        batcher.flush();
+        Assertions.assertEquals(Arrays.asList("value.get:2:2"), this.batches);
+    }
+}